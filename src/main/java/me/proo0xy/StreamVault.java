@@ -2,27 +2,40 @@ package me.proo0xy;
 
 import me.proo0xy.api.WebSocketController;
 import me.proo0xy.data.DataStore;
+import me.proo0xy.data.DataStoreSettings;
+import me.proo0xy.data.EvictionPolicy;
+import me.proo0xy.data.SaveRule;
+import me.proo0xy.data.StorageEngineType;
 import me.proo0xy.env.Environment;
 import me.proo0xy.env.EnvironmentVariableKey;
+import me.proo0xy.tools.SnapshotTool;
 
 import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.function.Function;
 
 public class StreamVault {
 
     public static final Environment ENVIRONMENT = new Environment();
 
     public static void main(String[] args) {
-        System.out.println("Starting StreamVault...");
-
-        long autoSaveInterval = 60;
+        if (args.length > 0) {
+            SnapshotTool.run(args);
+            return;
+        }
 
-        String storagePath = ENVIRONMENT.getEnv(EnvironmentVariableKey.STORAGE_PATH, EnvironmentVariableKey.STORAGE_PATH.getDefaultValue());
-        String backupPath = ENVIRONMENT.getEnv(EnvironmentVariableKey.BACKUP_PATH, EnvironmentVariableKey.BACKUP_PATH.getDefaultValue());
+        System.out.println("Starting StreamVault...");
 
         String websocketHostname = ENVIRONMENT.getEnv(EnvironmentVariableKey.API_HOST, EnvironmentVariableKey.API_HOST.getDefaultValue());
         int webSocketPort = 9000;
 
-        DataStore.initialize(storagePath, backupPath, autoSaveInterval);
+        DataStore.initialize(loadSettings(DataStore.DEFAULT_KEYSPACE));
+        for (String keyspace : ENVIRONMENT.getEnv(EnvironmentVariableKey.KEYSPACES, EnvironmentVariableKey.KEYSPACES.getDefaultValue()).split("[\\s,]+")) {
+            if (!keyspace.isEmpty()) {
+                DataStore.initialize(keyspace, loadSettings(keyspace));
+            }
+        }
         DataStore dataStore = DataStore.getInstance();
 
         WebSocketController webSocketController = new WebSocketController(new InetSocketAddress(websocketHostname, webSocketPort), dataStore);
@@ -32,7 +45,9 @@ public class StreamVault {
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("Shutting down StreamVault...");
-            dataStore.shutdown();
+            for (String keyspace : DataStore.getKeyspaces()) {
+                DataStore.getInstance(keyspace).shutdown();
+            }
             try {
                 webSocketController.stop();
             } catch (Exception ignored) {
@@ -41,4 +56,45 @@ public class StreamVault {
             System.out.println("StreamVault shut down successfully.");
         }));
     }
+
+    /**
+     * Reads the settings of a keyspace from the environment. A named keyspace may override
+     * every setting with a variable named KEYSPACE_<NAME>_<SETTING>, and otherwise uses the
+     * global one; its files go below the global storage and backup paths.
+     *
+     * @param keyspace The name of the keyspace.
+     * @return The settings.
+     */
+    private static DataStoreSettings loadSettings(String keyspace) {
+        boolean named = !keyspace.equals(DataStore.DEFAULT_KEYSPACE);
+        Function<EnvironmentVariableKey, String> env = key -> {
+            String value = ENVIRONMENT.getEnv(key, key.getDefaultValue());
+            return named ? ENVIRONMENT.getKeyspaceEnv(keyspace, key, value) : value;
+        };
+
+        String storagePath = env.apply(EnvironmentVariableKey.STORAGE_PATH);
+        String backupPath = env.apply(EnvironmentVariableKey.BACKUP_PATH);
+        if (named) {
+            storagePath = ENVIRONMENT.getKeyspaceEnv(keyspace, EnvironmentVariableKey.STORAGE_PATH, Paths.get(storagePath, "keyspaces", keyspace).toString());
+            backupPath = ENVIRONMENT.getKeyspaceEnv(keyspace, EnvironmentVariableKey.BACKUP_PATH, Paths.get(backupPath, "keyspaces", keyspace).toString());
+        }
+        List<SaveRule> saveRules = SaveRule.parse(env.apply(EnvironmentVariableKey.SAVE_RULES));
+        long backupInterval = Long.parseLong(env.apply(EnvironmentVariableKey.BACKUP_INTERVAL));
+        int backupRetention = Integer.parseInt(env.apply(EnvironmentVariableKey.BACKUP_RETENTION));
+        boolean pointInTimeRecovery = Boolean.parseBoolean(env.apply(EnvironmentVariableKey.POINT_IN_TIME_RECOVERY));
+        int snapshotPartitions = Integer.parseInt(env.apply(EnvironmentVariableKey.SNAPSHOT_PARTITIONS));
+        int persistenceThreads = Integer.parseInt(env.apply(EnvironmentVariableKey.PERSISTENCE_THREADS));
+        long walCheckpointSize = Long.parseLong(env.apply(EnvironmentVariableKey.WAL_CHECKPOINT_SIZE_MB)) << 20;
+        boolean walSyncWrites = Boolean.parseBoolean(env.apply(EnvironmentVariableKey.WAL_SYNC_WRITES));
+        boolean offHeapValues = Boolean.parseBoolean(env.apply(EnvironmentVariableKey.OFFHEAP_VALUES));
+        StorageEngineType storageEngine = StorageEngineType.valueOf(env.apply(EnvironmentVariableKey.STORAGE_ENGINE).trim().toUpperCase());
+        long memtableSize = Long.parseLong(env.apply(EnvironmentVariableKey.LSM_MEMTABLE_SIZE_MB)) << 20;
+        boolean orderedIndex = Boolean.parseBoolean(env.apply(EnvironmentVariableKey.ORDERED_INDEX));
+        long maxEntries = Long.parseLong(env.apply(EnvironmentVariableKey.MAX_ENTRIES));
+        long maxMemory = Long.parseLong(env.apply(EnvironmentVariableKey.MAX_MEMORY_MB)) << 20;
+        EvictionPolicy evictionPolicy = EvictionPolicy.valueOf(env.apply(EnvironmentVariableKey.EVICTION_POLICY).trim().toUpperCase());
+        long hotCounterInterval = Long.parseLong(env.apply(EnvironmentVariableKey.HOT_COUNTER_INTERVAL_MS));
+
+        return new DataStoreSettings(storagePath, backupPath, saveRules, backupInterval, backupRetention, pointInTimeRecovery, snapshotPartitions, persistenceThreads, walCheckpointSize, walSyncWrites, offHeapValues, storageEngine, memtableSize, orderedIndex, maxEntries, maxMemory, evictionPolicy, hotCounterInterval);
+    }
 }
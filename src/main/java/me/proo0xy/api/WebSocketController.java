@@ -1,20 +1,54 @@
 package me.proo0xy.api;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import me.proo0xy.api.models.ActionType;
 import me.proo0xy.api.models.ResponseStatus;
 import me.proo0xy.api.models.WebSocketActionMessage;
+import me.proo0xy.api.models.crud.VaultCompareAndSetMessage;
+import me.proo0xy.api.models.crud.VaultExpireMessage;
+import me.proo0xy.api.models.crud.VaultHashDeleteMessage;
+import me.proo0xy.api.models.crud.VaultHashMessage;
+import me.proo0xy.api.models.crud.VaultIncrementMessage;
 import me.proo0xy.api.models.crud.VaultPutMessage;
+import me.proo0xy.api.models.crud.VaultRangeMessage;
+import me.proo0xy.api.models.crud.VaultRemoveMessage;
+import me.proo0xy.api.models.crud.VaultScanMessage;
+import me.proo0xy.api.models.crud.VaultSortedSetMessage;
+import me.proo0xy.api.models.crud.VaultStreamMessage;
+import me.proo0xy.api.models.crud.VaultStreamReadMessage;
+import me.proo0xy.api.models.crud.VaultTransactionOperation;
 import me.proo0xy.data.DataEntry;
 import me.proo0xy.data.DataStore;
+import me.proo0xy.data.ExpiringEntry;
+import me.proo0xy.data.ExpiringValue;
+import me.proo0xy.data.HashEntry;
+import me.proo0xy.data.ScanPage;
+import me.proo0xy.data.ScoredMember;
+import me.proo0xy.data.SortedSetEntry;
+import me.proo0xy.data.SortedSetValue;
+import me.proo0xy.data.StreamEntry;
+import me.proo0xy.data.StreamEvent;
+import me.proo0xy.data.StreamId;
+import me.proo0xy.data.StreamValue;
+import me.proo0xy.data.TransactionOperation;
 import me.proo0xy.utils.GsonUtil;
 import org.java_websocket.WebSocket;
 import org.java_websocket.handshake.ClientHandshake;
 import org.java_websocket.server.WebSocketServer;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import org.slf4j.Logger;
@@ -27,22 +61,32 @@ import org.slf4j.LoggerFactory;
 public class WebSocketController extends WebSocketServer {
 
     private static final Logger log = LoggerFactory.getLogger(WebSocketController.class);
+    private static final int DEFAULT_SCAN_LIMIT = 100;
+    private static final int MAX_SCAN_LIMIT = 10_000;
+    private static final int MAX_TRANSACTION_OPERATIONS = 1_000;
+    private static final long MAX_XREAD_BLOCK_MILLIS = 300_000;
     private final Gson gson;
     private final DataStore dataStore;
-    private final Map<String, Set<WebSocket>> subscriptions = new ConcurrentHashMap<>();
+    // Subscribed clients by keyspace and key.
+    private final Map<String, Map<String, Set<WebSocket>>> subscriptions = new ConcurrentHashMap<>();
+    // Blocked XREADs by client, cancelled when the client disconnects.
+    private final Map<WebSocket, Set<CompletableFuture<?>>> pendingReads = new ConcurrentHashMap<>();
 
     /**
      * Constructs a new WebSocketController.
      *
      * @param address   The address to bind the WebSocket server to.
-     * @param dataStore The DataStore instance to interact with for data updates.
+     * @param dataStore The DataStore of the default keyspace; the other keyspaces are looked up by name.
      */
     public WebSocketController(InetSocketAddress address, DataStore dataStore) {
         super(address);
         this.gson = GsonUtil.getGson();
         this.dataStore = dataStore;
-        // Subscribe to DataStore updates
-        this.dataStore.subscribe(this::handleDataEntry);
+        // Subscribe to the updates of every keyspace
+        for (String keyspace : DataStore.getKeyspaces()) {
+            DataStore store = DataStore.getInstance(keyspace);
+            store.subscribe(entry -> handleDataEntry(keyspace, entry), entries -> handleDataEntries(keyspace, entries));
+        }
     }
 
     @Override
@@ -55,6 +99,7 @@ public class WebSocketController extends WebSocketServer {
         log.info("WebSocket client disconnected: {}", conn.getRemoteSocketAddress());
         // Удаляем клиента из всех подписок
         removeClientFromAllSubscriptions(conn);
+        cancelPendingReads(conn);
     }
 
     @Override
@@ -67,27 +112,131 @@ public class WebSocketController extends WebSocketServer {
                 sendError(conn, "Invalid message format: 'action' is required.");
                 return;
             }
+            DataStore store = selectKeyspace(conn, actionMessage.getKeyspace());
+            if (store == null) {
+                return;
+            }
 
             switch (actionMessage.getAction()) {
                 case GET:
                     String getKey = actionMessage.getData().trim();
-                    handleGet(conn, getKey);
+                    handleGet(conn, store, getKey);
                     break;
                 case PUT:
                     VaultPutMessage vaultPutMessage = gson.fromJson(actionMessage.getData(), VaultPutMessage.class);
-                    handlePut(conn, vaultPutMessage);
+                    handlePut(conn, store, vaultPutMessage);
                     break;
                 case REMOVE:
-                    String keyToRemove = actionMessage.getData().trim();
-                    handleRemove(conn, keyToRemove);
+                    String removeData = actionMessage.getData().trim();
+                    // A plain key, or an object carrying a version precondition.
+                    VaultRemoveMessage removeMessage = removeData.startsWith("{")
+                            ? gson.fromJson(removeData, VaultRemoveMessage.class)
+                            : new VaultRemoveMessage(removeData, null);
+                    handleRemove(conn, store, removeMessage);
+                    break;
+                case MGET:
+                    String[] getKeys = gson.fromJson(actionMessage.getData(), String[].class);
+                    handleMultiGet(conn, store, getKeys);
+                    break;
+                case MPUT:
+                    VaultPutMessage[] putMessages = gson.fromJson(actionMessage.getData(), VaultPutMessage[].class);
+                    handleMultiPut(conn, store, putMessages);
+                    break;
+                case MREMOVE:
+                    String[] removeKeys = gson.fromJson(actionMessage.getData(), String[].class);
+                    handleMultiRemove(conn, store, removeKeys);
+                    break;
+                case SCAN:
+                    VaultScanMessage scanMessage = gson.fromJson(actionMessage.getData(), VaultScanMessage.class);
+                    handleScan(conn, store, scanMessage);
+                    break;
+                case INCRBY:
+                case DECRBY:
+                    VaultIncrementMessage incrementMessage = gson.fromJson(actionMessage.getData(), VaultIncrementMessage.class);
+                    handleIncrement(conn, store, incrementMessage, actionMessage.getAction() == ActionType.DECRBY);
+                    break;
+                case HOTINCRBY:
+                    VaultIncrementMessage hotIncrementMessage = gson.fromJson(actionMessage.getData(), VaultIncrementMessage.class);
+                    handleHotIncrement(conn, store, hotIncrementMessage);
+                    break;
+                case ADD:
+                    VaultIncrementMessage addMessage = gson.fromJson(actionMessage.getData(), VaultIncrementMessage.class);
+                    handleAdd(conn, store, addMessage);
+                    break;
+                case GETSET:
+                    VaultPutMessage getSetMessage = gson.fromJson(actionMessage.getData(), VaultPutMessage.class);
+                    handleGetSet(conn, store, getSetMessage);
+                    break;
+                case CAS:
+                    VaultCompareAndSetMessage casMessage = gson.fromJson(actionMessage.getData(), VaultCompareAndSetMessage.class);
+                    handleCompareAndSet(conn, store, casMessage);
+                    break;
+                case EXPIRE:
+                    VaultExpireMessage expireMessage = gson.fromJson(actionMessage.getData(), VaultExpireMessage.class);
+                    handleExpire(conn, store, expireMessage);
+                    break;
+                case HSET:
+                    VaultHashMessage hashSetMessage = gson.fromJson(actionMessage.getData(), VaultHashMessage.class);
+                    handleHashSet(conn, store, hashSetMessage);
+                    break;
+                case HGET:
+                    VaultHashMessage hashGetMessage = gson.fromJson(actionMessage.getData(), VaultHashMessage.class);
+                    handleHashGet(conn, store, hashGetMessage);
+                    break;
+                case HDEL:
+                    VaultHashDeleteMessage hashDeleteMessage = gson.fromJson(actionMessage.getData(), VaultHashDeleteMessage.class);
+                    handleHashDelete(conn, store, hashDeleteMessage);
+                    break;
+                case HGETALL:
+                    String hashKey = actionMessage.getData().trim();
+                    handleHashGetAll(conn, store, hashKey);
+                    break;
+                case ZADD:
+                    VaultSortedSetMessage sortedSetAddMessage = gson.fromJson(actionMessage.getData(), VaultSortedSetMessage.class);
+                    handleSortedSetAdd(conn, store, sortedSetAddMessage);
+                    break;
+                case ZINCRBY:
+                    VaultSortedSetMessage sortedSetIncrementMessage = gson.fromJson(actionMessage.getData(), VaultSortedSetMessage.class);
+                    handleSortedSetIncrement(conn, store, sortedSetIncrementMessage);
+                    break;
+                case ZRANGE:
+                case ZREVRANGE:
+                    VaultRangeMessage rangeMessage = gson.fromJson(actionMessage.getData(), VaultRangeMessage.class);
+                    handleSortedSetRange(conn, store, rangeMessage, actionMessage.getAction() == ActionType.ZREVRANGE);
+                    break;
+                case ZRANK:
+                    VaultSortedSetMessage rankMessage = gson.fromJson(actionMessage.getData(), VaultSortedSetMessage.class);
+                    handleSortedSetRank(conn, store, rankMessage);
+                    break;
+                case XADD:
+                    VaultStreamMessage streamAddMessage = gson.fromJson(actionMessage.getData(), VaultStreamMessage.class);
+                    handleStreamAdd(conn, store, streamAddMessage);
+                    break;
+                case XRANGE:
+                    VaultStreamReadMessage streamRangeMessage = gson.fromJson(actionMessage.getData(), VaultStreamReadMessage.class);
+                    handleStreamRange(conn, store, streamRangeMessage);
+                    break;
+                case XREAD:
+                    VaultStreamReadMessage streamReadMessage = gson.fromJson(actionMessage.getData(), VaultStreamReadMessage.class);
+                    handleStreamRead(conn, store, streamReadMessage);
+                    break;
+                case MULTI:
+                    VaultTransactionOperation[] operations = gson.fromJson(actionMessage.getData(), VaultTransactionOperation[].class);
+                    handleTransaction(conn, store, operations);
+                    break;
+                case SYNC:
+                    handleSync(conn, store);
+                    break;
+                case USE:
+                    handleUse(conn, actionMessage.getData().trim());
                     break;
                 case SUBSCRIBE:
                     String subscribeKey = actionMessage.getData().trim();
-                    handleSubscribe(conn, subscribeKey);
+                    handleSubscribe(conn, store, subscribeKey);
                     break;
                 case UNSUBSCRIBE:
                     String unsubscribeKey = actionMessage.getData().trim();
-                    handleUnsubscribe(conn, unsubscribeKey);
+                    handleUnsubscribe(conn, store, unsubscribeKey);
                     break;
                 default:
                     sendError(conn, "Unknown action: " + actionMessage.getAction());
@@ -111,45 +260,103 @@ public class WebSocketController extends WebSocketServer {
         log.info("WebSocket server started on port: {}", getPort());
     }
 
+    /**
+     * Finds the DataStore a message applies to: the keyspace named in the message, else the
+     * one the connection selected with USE, else the default keyspace.
+     *
+     * @param conn     The WebSocket connection.
+     * @param keyspace The keyspace named in the message, or null.
+     * @return The DataStore, or null after answering with an error if the keyspace is unknown.
+     */
+    private DataStore selectKeyspace(WebSocket conn, String keyspace) {
+        String selected = keyspace != null ? keyspace.trim() : conn.getAttachment();
+        if (selected == null || selected.equals(DataStore.DEFAULT_KEYSPACE)) {
+            return dataStore;
+        }
+        try {
+            return DataStore.getInstance(selected);
+        } catch (IllegalArgumentException e) {
+            sendError(conn, e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Handles a DataEntry update from DataStore and broadcasts it to subscribed clients.
      *
-     * @param entry The DataEntry to handle.
+     * @param keyspace The keyspace of the entry.
+     * @param entry    The DataEntry to handle.
      */
-    private void handleDataEntry(DataEntry entry) {
+    private void handleDataEntry(String keyspace, DataEntry entry) {
         String key = entry.getKey();
         String message = gson.toJson(entry);
 
-        sendUpdateToSubscribers(key, message);
+        sendUpdateToSubscribers(keyspace, key, message);
+    }
+
+    /**
+     * Handles the changes of a transaction or a batch, sending every subscribed client one update
+     * holding an array of the changed entries it subscribed to.
+     *
+     * @param keyspace The keyspace of the entries.
+     * @param entries  The changed entries.
+     */
+    private void handleDataEntries(String keyspace, List<DataEntry> entries) {
+        Map<String, Set<WebSocket>> keyspaceSubscriptions = subscriptions.get(keyspace);
+        if (keyspaceSubscriptions == null) {
+            return;
+        }
+        Map<WebSocket, JsonArray> updates = new LinkedHashMap<>();
+        for (DataEntry entry : entries) {
+            Set<WebSocket> subscribersSet = keyspaceSubscriptions.get(entry.getKey());
+            if (subscribersSet == null) {
+                continue;
+            }
+            JsonElement json = gson.toJsonTree(entry);
+            for (WebSocket client : subscribersSet) {
+                updates.computeIfAbsent(client, c -> new JsonArray()).add(json);
+            }
+        }
+        updates.forEach((client, changes) -> sendUpdate(client, keyspace, gson.toJson(changes)));
     }
 
     /**
      * Processes a GET action to get a data entry.
      *
-     * @param conn The WebSocket connection.
-     * @param key  The key of the entry to get.
+     * @param conn  The WebSocket connection.
+     * @param store The DataStore of the selected keyspace.
+     * @param key   The key of the entry to get.
      */
-    private void handleGet(WebSocket conn, String key) {
+    private void handleGet(WebSocket conn, DataStore store, String key) {
         if (key == null || key.isEmpty()) {
             sendError(conn, "GET action requires a non-empty 'key'.");
             return;
         }
 
-        DataEntry dataEntry = dataStore.get(key);
+        DataEntry dataEntry = store.get(key);
         if (dataEntry != null) {
-            sendSuccess(conn, dataEntry.getValue().toString());
+            // Read before the value, see DataEntry.
+            long version = dataEntry.getVersion();
+            // Hashes are answered as objects, sorted sets and streams as arrays, all other values as text.
+            JsonElement value = dataEntry instanceof HashEntry || dataEntry instanceof SortedSetEntry || dataEntry instanceof StreamEntry
+                    || (dataEntry instanceof ExpiringEntry && (dataEntry.getValue() instanceof Map
+                    || dataEntry.getValue() instanceof SortedSetValue || dataEntry.getValue() instanceof StreamValue))
+                    ? toJsonValue(dataEntry.getValue()) : new JsonPrimitive(dataEntry.formatValue());
+            sendMessage(conn, ResponseStatus.SUCCESS, value, version);
         } else {
             sendError(conn, "Entry not found for key: " + key);
         }
     }
 
     /**
-     * Processes a PUT action to create or update a data entry.
+     * Processes a PUT action to create or update a data entry, with an optional time to live
+     * and an optional version the key must still be at. The response carries the new version.
      *
      * @param conn    The WebSocket connection.
+     * @param store   The DataStore of the selected keyspace.
      * @param message The VaultPutMessage message.
      */
-    private void handlePut(WebSocket conn, VaultPutMessage message) {
+    private void handlePut(WebSocket conn, DataStore store, VaultPutMessage message) {
         if (message == null || message.getKey() == null || message.getValue() == null) {
             sendError(conn, "PUT action requires 'key' and 'value'.");
             return;
@@ -163,24 +370,54 @@ public class WebSocketController extends WebSocketServer {
             sendError(conn, "Unsupported value type.");
             return;
         }
+        if (message.getTtl() != null && message.getTtl() <= 0) {
+            sendError(conn, "PUT 'ttl' must be positive.");
+            return;
+        }
+        if (message.getIfVersion() != null && message.getIfVersion() < 0) {
+            sendError(conn, "PUT 'ifVersion' must not be negative.");
+            return;
+        }
 
-        dataStore.put(key, value);
-        sendSuccess(conn, "Entry created/updated successfully.");
+        long version;
+        if (message.getIfVersion() != null) {
+            Object stored = message.getTtl() != null ? new ExpiringValue(System.currentTimeMillis() + message.getTtl(), value) : value;
+            version = store.putIfVersion(key, stored, message.getIfVersion());
+            if (version == 0) {
+                sendError(conn, "Version mismatch for key: " + key);
+                return;
+            }
+        } else if (message.getTtl() != null) {
+            version = store.put(key, value, message.getTtl());
+        } else {
+            version = store.put(key, value);
+        }
+        sendMessage(conn, ResponseStatus.SUCCESS, new JsonPrimitive("Entry created/updated successfully."), version);
     }
 
     /**
-     * Processes a REMOVE action to delete a data entry.
+     * Processes a REMOVE action to delete a data entry, optionally only at a given version.
      *
-     * @param conn The WebSocket connection.
-     * @param key  The key of the entry to remove.
+     * @param conn    The WebSocket connection.
+     * @param store   The DataStore of the selected keyspace.
+     * @param message The key and the optional version of the entry to remove.
      */
-    private void handleRemove(WebSocket conn, String key) {
+    private void handleRemove(WebSocket conn, DataStore store, VaultRemoveMessage message) {
+        String key = message != null && message.getKey() != null ? message.getKey().trim() : null;
         if (key == null || key.isEmpty()) {
             sendError(conn, "REMOVE action requires a non-empty 'key'.");
             return;
         }
 
-        DataEntry removed = dataStore.remove(key);
+        if (message.getIfVersion() != null) {
+            if (store.removeIfVersion(key, message.getIfVersion())) {
+                sendSuccess(conn, "Entry removed successfully.");
+            } else {
+                sendError(conn, "Version mismatch or entry not found for key: " + key);
+            }
+            return;
+        }
+        DataEntry removed = store.remove(key);
         if (removed != null) {
             sendSuccess(conn, "Entry removed successfully.");
         } else {
@@ -188,19 +425,745 @@ public class WebSocketController extends WebSocketServer {
         }
     }
 
+    /**
+     * Processes an MGET action, answering with one object mapping every found key to its value.
+     * Missing keys are left out.
+     *
+     * @param conn  The WebSocket connection.
+     * @param store The DataStore of the selected keyspace.
+     * @param keys  The keys to get.
+     */
+    private void handleMultiGet(WebSocket conn, DataStore store, String[] keys) {
+        if (keys == null || keys.length == 0) {
+            sendError(conn, "MGET action requires a non-empty array of keys.");
+            return;
+        }
+
+        List<String> trimmed = new ArrayList<>(keys.length);
+        for (String key : keys) {
+            if (key == null || key.isBlank()) {
+                sendError(conn, "MGET action requires non-empty keys.");
+                return;
+            }
+            trimmed.add(key.trim());
+        }
+
+        Map<String, DataEntry> found = store.getAll(trimmed);
+        JsonObject values = new JsonObject();
+        for (String key : trimmed) {
+            DataEntry entry = found.get(key);
+            if (entry != null) {
+                values.add(key, toJsonValue(entry.getValue()));
+            }
+        }
+        sendMessage(conn, ResponseStatus.SUCCESS, values);
+    }
+
+    /**
+     * Processes an MPUT action, storing an array of key/value pairs as one batch. Every pair
+     * may carry its own time to live.
+     *
+     * @param conn     The WebSocket connection.
+     * @param store    The DataStore of the selected keyspace.
+     * @param messages The VaultPutMessage pairs.
+     */
+    private void handleMultiPut(WebSocket conn, DataStore store, VaultPutMessage[] messages) {
+        if (messages == null || messages.length == 0) {
+            sendError(conn, "MPUT action requires a non-empty array of entries.");
+            return;
+        }
+
+        Map<String, Object> entries = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        for (VaultPutMessage message : messages) {
+            if (message == null || message.getKey() == null || message.getKey().isBlank() || message.getValue() == null) {
+                sendError(conn, "MPUT action requires 'key' and 'value' for every entry.");
+                return;
+            }
+            if (!isValidValue(message.getValue())) {
+                sendError(conn, "Unsupported value type for key: " + message.getKey());
+                return;
+            }
+            if (message.getTtl() != null && message.getTtl() <= 0) {
+                sendError(conn, "MPUT 'ttl' must be positive for key: " + message.getKey());
+                return;
+            }
+            entries.put(message.getKey().trim(), message.getTtl() != null
+                    ? new ExpiringValue(now + message.getTtl(), message.getValue())
+                    : message.getValue());
+        }
+
+        store.putAll(entries);
+        sendSuccess(conn, entries.size() + " entries created/updated successfully.");
+    }
+
+    /**
+     * Processes an MREMOVE action, removing an array of keys as one batch.
+     *
+     * @param conn  The WebSocket connection.
+     * @param store The DataStore of the selected keyspace.
+     * @param keys  The keys to remove.
+     */
+    private void handleMultiRemove(WebSocket conn, DataStore store, String[] keys) {
+        if (keys == null || keys.length == 0) {
+            sendError(conn, "MREMOVE action requires a non-empty array of keys.");
+            return;
+        }
+
+        Set<String> trimmed = new LinkedHashSet<>();
+        for (String key : keys) {
+            if (key == null || key.isBlank()) {
+                sendError(conn, "MREMOVE action requires non-empty keys.");
+                return;
+            }
+            trimmed.add(key.trim());
+        }
+
+        int removed = store.removeAll(trimmed);
+        sendSuccess(conn, removed + " of " + trimmed.size() + " entries removed successfully.");
+    }
+
+    /**
+     * Processes a SCAN action, answering with one page of entries in key order and the
+     * cursor for the next page, which is left out once the range is exhausted.
+     *
+     * @param conn    The WebSocket connection.
+     * @param store   The DataStore of the selected keyspace.
+     * @param message The VaultScanMessage message.
+     */
+    private void handleScan(WebSocket conn, DataStore store, VaultScanMessage message) {
+        if (message == null) {
+            sendError(conn, "SCAN action requires a scan request.");
+            return;
+        }
+        int limit = message.getLimit() != null ? message.getLimit() : DEFAULT_SCAN_LIMIT;
+        if (limit <= 0 || limit > MAX_SCAN_LIMIT) {
+            sendError(conn, "SCAN 'limit' must be between 1 and " + MAX_SCAN_LIMIT + ".");
+            return;
+        }
+
+        ScanPage page;
+        try {
+            page = store.scan(message.getPrefix(), message.getStart(), message.getEnd(), message.getCursor(), limit);
+        } catch (UnsupportedOperationException e) {
+            sendError(conn, e.getMessage());
+            return;
+        }
+
+        JsonObject result = new JsonObject();
+        result.add("entries", gson.toJsonTree(page.getEntries()));
+        if (page.getCursor() != null) {
+            result.addProperty("cursor", page.getCursor());
+        }
+        sendMessage(conn, ResponseStatus.SUCCESS, result);
+    }
+
+    /**
+     * Processes a MULTI action, running an array of operations as one transaction. Every
+     * operation may carry a version its key must be at; if any does not match, nothing is
+     * applied. The response maps every written or removed key to its new version.
+     *
+     * @param conn       The WebSocket connection.
+     * @param store      The DataStore of the selected keyspace.
+     * @param operations The VaultTransactionOperation operations.
+     */
+    private void handleTransaction(WebSocket conn, DataStore store, VaultTransactionOperation[] operations) {
+        if (operations == null || operations.length == 0) {
+            sendError(conn, "MULTI action requires a non-empty array of operations.");
+            return;
+        }
+        if (operations.length > MAX_TRANSACTION_OPERATIONS) {
+            sendError(conn, "MULTI action allows at most " + MAX_TRANSACTION_OPERATIONS + " operations.");
+            return;
+        }
+
+        List<TransactionOperation> transaction = new ArrayList<>(operations.length);
+        long now = System.currentTimeMillis();
+        for (VaultTransactionOperation operation : operations) {
+            if (operation == null || operation.getType() == null || operation.getKey() == null || operation.getKey().isBlank()) {
+                sendError(conn, "MULTI action requires 'type' and 'key' for every operation.");
+                return;
+            }
+            String key = operation.getKey().trim();
+            if (operation.getIfVersion() != null && operation.getIfVersion() < 0) {
+                sendError(conn, "MULTI 'ifVersion' must not be negative for key: " + key);
+                return;
+            }
+            Object value = null;
+            if (operation.getType() == TransactionOperation.Type.PUT) {
+                if (operation.getValue() == null || !isValidValue(operation.getValue())) {
+                    sendError(conn, "MULTI PUT requires a supported 'value' for key: " + key);
+                    return;
+                }
+                if (operation.getTtl() != null && operation.getTtl() <= 0) {
+                    sendError(conn, "MULTI 'ttl' must be positive for key: " + key);
+                    return;
+                }
+                value = operation.getTtl() != null ? new ExpiringValue(now + operation.getTtl(), operation.getValue()) : operation.getValue();
+            } else if (operation.getType() == TransactionOperation.Type.CHECK && operation.getIfVersion() == null) {
+                sendError(conn, "MULTI CHECK requires 'ifVersion' for key: " + key);
+                return;
+            }
+            transaction.add(new TransactionOperation(operation.getType(), key, value, operation.getIfVersion()));
+        }
+
+        Map<String, Long> versions = store.transact(transaction);
+        if (versions == null) {
+            sendError(conn, "Transaction aborted: a version did not match, nothing was applied.");
+            return;
+        }
+        JsonObject result = new JsonObject();
+        versions.forEach(result::addProperty);
+        sendMessage(conn, ResponseStatus.SUCCESS, result);
+    }
+
+    /**
+     * Processes an INCRBY or DECRBY action, atomically adding an integer to a counter.
+     *
+     * @param conn      The WebSocket connection.
+     * @param store     The DataStore of the selected keyspace.
+     * @param message   The VaultIncrementMessage message.
+     * @param decrement Whether the delta is subtracted.
+     */
+    private void handleIncrement(WebSocket conn, DataStore store, VaultIncrementMessage message, boolean decrement) {
+        if (message == null || message.getKey() == null || message.getKey().isBlank()) {
+            sendError(conn, "INCRBY and DECRBY actions require a non-empty 'key'.");
+            return;
+        }
+        Number delta = message.getDelta() != null ? message.getDelta() : 1L;
+        if (delta.doubleValue() != delta.longValue()) {
+            sendError(conn, "INCRBY and DECRBY actions require an integer 'delta'.");
+            return;
+        }
+
+        try {
+            long value = store.incrementBy(message.getKey().trim(), decrement ? Math.negateExact(delta.longValue()) : delta.longValue());
+            sendSuccess(conn, Long.toString(value));
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            sendError(conn, e.getMessage());
+        }
+    }
+
+    /**
+     * Processes a HOTINCRBY action, adding an integer to a hot counter. The response only
+     * acknowledges the increment once the key is known to hold an integer; the counter is
+     * read with GET, and subscribers receive its value at the hot counter cadence rather
+     * than after every increment. The increment reaches the write-ahead log at that cadence
+     * too, so a client that needs it durable sends SYNC.
+     *
+     * @param conn    The WebSocket connection.
+     * @param store   The DataStore of the selected keyspace.
+     * @param message The VaultIncrementMessage message.
+     */
+    private void handleHotIncrement(WebSocket conn, DataStore store, VaultIncrementMessage message) {
+        if (message == null || message.getKey() == null || message.getKey().isBlank()) {
+            sendError(conn, "HOTINCRBY action requires a non-empty 'key'.");
+            return;
+        }
+        Number delta = message.getDelta() != null ? message.getDelta() : 1L;
+        if (delta.doubleValue() != delta.longValue()) {
+            sendError(conn, "HOTINCRBY action requires an integer 'delta'.");
+            return;
+        }
+
+        try {
+            store.incrementHot(message.getKey().trim(), delta.longValue());
+            sendSuccess(conn, "Increment accepted.");
+        } catch (IllegalArgumentException e) {
+            sendError(conn, e.getMessage());
+        }
+    }
+
+    /**
+     * Processes an ADD action, atomically adding a number to a numeric value.
+     *
+     * @param conn    The WebSocket connection.
+     * @param store   The DataStore of the selected keyspace.
+     * @param message The VaultIncrementMessage message.
+     */
+    private void handleAdd(WebSocket conn, DataStore store, VaultIncrementMessage message) {
+        if (message == null || message.getKey() == null || message.getKey().isBlank() || message.getDelta() == null) {
+            sendError(conn, "ADD action requires 'key' and 'delta'.");
+            return;
+        }
+
+        try {
+            double value = store.add(message.getKey().trim(), message.getDelta().doubleValue());
+            sendSuccess(conn, Double.toString(value));
+        } catch (IllegalArgumentException e) {
+            sendError(conn, e.getMessage());
+        }
+    }
+
+    /**
+     * Processes a GETSET action, storing a value and returning the previous one.
+     *
+     * @param conn    The WebSocket connection.
+     * @param store   The DataStore of the selected keyspace.
+     * @param message The VaultPutMessage message.
+     */
+    private void handleGetSet(WebSocket conn, DataStore store, VaultPutMessage message) {
+        if (message == null || message.getKey() == null || message.getValue() == null) {
+            sendError(conn, "GETSET action requires 'key' and 'value'.");
+            return;
+        }
+        if (!isValidValue(message.getValue())) {
+            sendError(conn, "Unsupported value type.");
+            return;
+        }
+
+        DataEntry previous = store.getAndSet(message.getKey().trim(), message.getValue());
+        sendSuccess(conn, previous != null ? previous.formatValue() : "null");
+    }
+
+    /**
+     * Processes a CAS action, storing a value only if the current one matches the expected value.
+     *
+     * @param conn    The WebSocket connection.
+     * @param store   The DataStore of the selected keyspace.
+     * @param message The VaultCompareAndSetMessage message.
+     */
+    private void handleCompareAndSet(WebSocket conn, DataStore store, VaultCompareAndSetMessage message) {
+        if (message == null || message.getKey() == null || message.getValue() == null) {
+            sendError(conn, "CAS action requires 'key' and 'value'.");
+            return;
+        }
+        if (!isValidValue(message.getValue()) || (message.getExpected() != null && !isValidValue(message.getExpected()))) {
+            sendError(conn, "Unsupported value type.");
+            return;
+        }
+
+        if (store.compareAndSet(message.getKey().trim(), message.getExpected(), message.getValue())) {
+            sendSuccess(conn, "Entry updated successfully.");
+        } else {
+            sendError(conn, "Current value does not match the expected value.");
+        }
+    }
+
+    /**
+     * Processes an EXPIRE action, setting a new time to live on an existing entry.
+     *
+     * @param conn    The WebSocket connection.
+     * @param store   The DataStore of the selected keyspace.
+     * @param message The VaultExpireMessage message.
+     */
+    private void handleExpire(WebSocket conn, DataStore store, VaultExpireMessage message) {
+        if (message == null || message.getKey() == null || message.getKey().isBlank() || message.getTtl() == null) {
+            sendError(conn, "EXPIRE action requires 'key' and 'ttl'.");
+            return;
+        }
+
+        String key = message.getKey().trim();
+        if (store.expire(key, message.getTtl())) {
+            sendSuccess(conn, "Expiry set successfully.");
+        } else {
+            sendError(conn, "Entry not found for key: " + key);
+        }
+    }
+
+    /**
+     * Processes an HSET action, storing one field or several fields of a hash. The response
+     * carries the new version; subscribers of the key receive only the changed fields.
+     *
+     * @param conn    The WebSocket connection.
+     * @param store   The DataStore of the selected keyspace.
+     * @param message The VaultHashMessage message.
+     */
+    private void handleHashSet(WebSocket conn, DataStore store, VaultHashMessage message) {
+        if (message == null || message.getKey() == null || message.getKey().isBlank()) {
+            sendError(conn, "HSET action requires a non-empty 'key'.");
+            return;
+        }
+
+        Map<String, Object> fields = new LinkedHashMap<>();
+        if (message.getFields() != null) {
+            fields.putAll(message.getFields());
+        }
+        if (message.getField() != null) {
+            fields.put(message.getField(), message.getValue());
+        }
+        if (fields.isEmpty()) {
+            sendError(conn, "HSET action requires 'field' and 'value', or 'fields'.");
+            return;
+        }
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            if (!isValidValue(field.getValue())) {
+                sendError(conn, "Unsupported value type for field: " + field.getKey());
+                return;
+            }
+        }
+
+        try {
+            long version = store.hset(message.getKey().trim(), fields);
+            sendMessage(conn, ResponseStatus.SUCCESS, new JsonPrimitive(fields.size() + " fields stored successfully."), version);
+        } catch (IllegalArgumentException e) {
+            sendError(conn, e.getMessage());
+        }
+    }
+
+    /**
+     * Processes an HGET action, answering with the value of one field of a hash and the version of the hash.
+     *
+     * @param conn    The WebSocket connection.
+     * @param store   The DataStore of the selected keyspace.
+     * @param message The VaultHashMessage message.
+     */
+    private void handleHashGet(WebSocket conn, DataStore store, VaultHashMessage message) {
+        if (message == null || message.getKey() == null || message.getKey().isBlank() || message.getField() == null) {
+            sendError(conn, "HGET action requires 'key' and 'field'.");
+            return;
+        }
+
+        String key = message.getKey().trim();
+        DataEntry entry = store.get(key);
+        try {
+            // Read before the value, see DataEntry.
+            long version = entry != null ? entry.getVersion() : 0;
+            Map<String, Object> fields = HashEntry.fieldsOf(entry);
+            Object value = fields != null ? fields.get(message.getField()) : null;
+            if (value == null) {
+                sendError(conn, "Field '" + message.getField() + "' not found for key: " + key);
+                return;
+            }
+            sendMessage(conn, ResponseStatus.SUCCESS, toJsonValue(value), version);
+        } catch (IllegalArgumentException e) {
+            sendError(conn, e.getMessage());
+        }
+    }
+
+    /**
+     * Processes an HDEL action, removing one field or several fields of a hash.
+     *
+     * @param conn    The WebSocket connection.
+     * @param store   The DataStore of the selected keyspace.
+     * @param message The VaultHashDeleteMessage message.
+     */
+    private void handleHashDelete(WebSocket conn, DataStore store, VaultHashDeleteMessage message) {
+        if (message == null || message.getKey() == null || message.getKey().isBlank()) {
+            sendError(conn, "HDEL action requires a non-empty 'key'.");
+            return;
+        }
+
+        List<String> fields = new ArrayList<>();
+        if (message.getFields() != null) {
+            fields.addAll(message.getFields());
+        }
+        if (message.getField() != null) {
+            fields.add(message.getField());
+        }
+        if (fields.isEmpty()) {
+            sendError(conn, "HDEL action requires 'field' or 'fields'.");
+            return;
+        }
+
+        try {
+            int removed = store.hdel(message.getKey().trim(), fields);
+            sendSuccess(conn, removed + " fields removed successfully.");
+        } catch (IllegalArgumentException e) {
+            sendError(conn, e.getMessage());
+        }
+    }
+
+    /**
+     * Processes an HGETALL action, answering with every field of a hash as one object and the version of the hash.
+     *
+     * @param conn  The WebSocket connection.
+     * @param store The DataStore of the selected keyspace.
+     * @param key   The key of the hash.
+     */
+    private void handleHashGetAll(WebSocket conn, DataStore store, String key) {
+        if (key == null || key.isEmpty()) {
+            sendError(conn, "HGETALL action requires a non-empty 'key'.");
+            return;
+        }
+
+        DataEntry entry = store.get(key);
+        if (entry == null) {
+            sendError(conn, "Entry not found for key: " + key);
+            return;
+        }
+        try {
+            // Read before the value, see DataEntry.
+            long version = entry.getVersion();
+            sendMessage(conn, ResponseStatus.SUCCESS, toJsonValue(HashEntry.fieldsOf(entry)), version);
+        } catch (IllegalArgumentException e) {
+            sendError(conn, e.getMessage());
+        }
+    }
+
+    /**
+     * Processes a ZADD action, setting the score of one member or several members of a sorted
+     * set. The response carries the new version; subscribers of the key receive only the
+     * changed scores.
+     *
+     * @param conn    The WebSocket connection.
+     * @param store   The DataStore of the selected keyspace.
+     * @param message The VaultSortedSetMessage message.
+     */
+    private void handleSortedSetAdd(WebSocket conn, DataStore store, VaultSortedSetMessage message) {
+        if (message == null || message.getKey() == null || message.getKey().isBlank()) {
+            sendError(conn, "ZADD action requires a non-empty 'key'.");
+            return;
+        }
+
+        Map<String, Double> scores = new LinkedHashMap<>();
+        if (message.getMembers() != null) {
+            scores.putAll(message.getMembers());
+        }
+        if (message.getMember() != null && message.getScore() != null) {
+            scores.put(message.getMember(), message.getScore());
+        }
+        if (scores.isEmpty()) {
+            sendError(conn, "ZADD action requires 'member' and 'score', or 'members'.");
+            return;
+        }
+
+        try {
+            long version = store.zadd(message.getKey().trim(), scores);
+            sendMessage(conn, ResponseStatus.SUCCESS, new JsonPrimitive(scores.size() + " members stored successfully."), version);
+        } catch (IllegalArgumentException e) {
+            sendError(conn, e.getMessage());
+        }
+    }
+
+    /**
+     * Processes a ZINCRBY action, adding to the score of one member of a sorted set and
+     * answering with the new score.
+     *
+     * @param conn    The WebSocket connection.
+     * @param store   The DataStore of the selected keyspace.
+     * @param message The VaultSortedSetMessage message.
+     */
+    private void handleSortedSetIncrement(WebSocket conn, DataStore store, VaultSortedSetMessage message) {
+        if (message == null || message.getKey() == null || message.getKey().isBlank()
+                || message.getMember() == null || message.getDelta() == null) {
+            sendError(conn, "ZINCRBY action requires 'key', 'member' and 'delta'.");
+            return;
+        }
+
+        try {
+            double score = store.zincrby(message.getKey().trim(), message.getMember(), message.getDelta());
+            sendMessage(conn, ResponseStatus.SUCCESS, new JsonPrimitive(score));
+        } catch (IllegalArgumentException e) {
+            sendError(conn, e.getMessage());
+        }
+    }
+
+    /**
+     * Processes a ZRANGE or ZREVRANGE action, answering with the members of a sorted set
+     * between two ranks or two scores, as an array in rank order, and the version of the set.
+     *
+     * @param conn    The WebSocket connection.
+     * @param store   The DataStore of the selected keyspace.
+     * @param message The VaultRangeMessage message.
+     * @param reverse Whether to rank from the highest score down.
+     */
+    private void handleSortedSetRange(WebSocket conn, DataStore store, VaultRangeMessage message, boolean reverse) {
+        String action = reverse ? "ZREVRANGE" : "ZRANGE";
+        if (message == null || message.getKey() == null || message.getKey().isBlank()) {
+            sendError(conn, action + " action requires a non-empty 'key'.");
+            return;
+        }
+        boolean byScore = message.getMin() != null || message.getMax() != null;
+        if (byScore == (message.getStart() != null || message.getStop() != null)) {
+            sendError(conn, action + " action requires 'start' and 'stop', or 'min' and 'max'.");
+            return;
+        }
+        int limit = message.getLimit() != null ? message.getLimit() : MAX_SCAN_LIMIT;
+        if (limit <= 0 || limit > MAX_SCAN_LIMIT) {
+            sendError(conn, action + " 'limit' must be between 1 and " + MAX_SCAN_LIMIT + ".");
+            return;
+        }
+
+        String key = message.getKey().trim();
+        DataEntry entry = store.get(key);
+        try {
+            // Read before the value, see DataEntry.
+            long version = entry != null ? entry.getVersion() : 0;
+            SortedSetEntry sortedSet = SortedSetEntry.sortedSetOf(entry);
+            List<ScoredMember> range;
+            if (sortedSet == null) {
+                range = List.of();
+            } else if (byScore) {
+                double min = message.getMin() != null ? message.getMin() : Double.NEGATIVE_INFINITY;
+                double max = message.getMax() != null ? message.getMax() : Double.POSITIVE_INFINITY;
+                range = sortedSet.rangeByScore(min, max, reverse, limit);
+            } else {
+                long start = message.getStart() != null ? message.getStart() : 0;
+                long stop = message.getStop() != null ? message.getStop() : -1;
+                range = sortedSet.rangeByRank(start, stop, reverse, limit);
+            }
+
+            JsonArray members = new JsonArray(range.size());
+            for (ScoredMember member : range) {
+                members.add(toJsonValue(member));
+            }
+            sendMessage(conn, ResponseStatus.SUCCESS, members, version);
+        } catch (IllegalArgumentException e) {
+            sendError(conn, e.getMessage());
+        }
+    }
+
+    /**
+     * Processes a ZRANK action, answering with the zero-based rank of a member of a sorted
+     * set and the version of the set.
+     *
+     * @param conn    The WebSocket connection.
+     * @param store   The DataStore of the selected keyspace.
+     * @param message The VaultSortedSetMessage message.
+     */
+    private void handleSortedSetRank(WebSocket conn, DataStore store, VaultSortedSetMessage message) {
+        if (message == null || message.getKey() == null || message.getKey().isBlank() || message.getMember() == null) {
+            sendError(conn, "ZRANK action requires 'key' and 'member'.");
+            return;
+        }
+
+        String key = message.getKey().trim();
+        DataEntry entry = store.get(key);
+        try {
+            // Read before the value, see DataEntry.
+            long version = entry != null ? entry.getVersion() : 0;
+            SortedSetEntry sortedSet = SortedSetEntry.sortedSetOf(entry);
+            long rank = sortedSet != null ? sortedSet.rank(message.getMember(), Boolean.TRUE.equals(message.getReverse())) : -1;
+            if (rank < 0) {
+                sendError(conn, "Member '" + message.getMember() + "' not found for key: " + key);
+                return;
+            }
+            sendMessage(conn, ResponseStatus.SUCCESS, new JsonPrimitive(rank), version);
+        } catch (IllegalArgumentException e) {
+            sendError(conn, e.getMessage());
+        }
+    }
+
+    /**
+     * Processes an XADD action, appending an event to a stream and answering with the ID the
+     * server gave it. Subscribers of the key receive only the appended event.
+     *
+     * @param conn    The WebSocket connection.
+     * @param store   The DataStore of the selected keyspace.
+     * @param message The VaultStreamMessage message.
+     */
+    private void handleStreamAdd(WebSocket conn, DataStore store, VaultStreamMessage message) {
+        if (message == null || message.getKey() == null || message.getKey().isBlank()
+                || message.getFields() == null || message.getFields().isEmpty()) {
+            sendError(conn, "XADD action requires 'key' and 'fields'.");
+            return;
+        }
+
+        try {
+            StreamId id = store.xadd(message.getKey().trim(), message.getFields(), message.getMaxLength(), message.getMaxAge());
+            sendMessage(conn, ResponseStatus.SUCCESS, new JsonPrimitive(id.toString()));
+        } catch (IllegalArgumentException e) {
+            sendError(conn, e.getMessage());
+        }
+    }
+
+    /**
+     * Processes an XRANGE action, answering with the events of a stream between two IDs, as
+     * an array in ID order, and the version of the stream.
+     *
+     * @param conn    The WebSocket connection.
+     * @param store   The DataStore of the selected keyspace.
+     * @param message The VaultStreamReadMessage message.
+     */
+    private void handleStreamRange(WebSocket conn, DataStore store, VaultStreamReadMessage message) {
+        if (message == null || message.getKey() == null || message.getKey().isBlank()) {
+            sendError(conn, "XRANGE action requires a non-empty 'key'.");
+            return;
+        }
+        int count = message.getCount() != null ? message.getCount() : MAX_SCAN_LIMIT;
+        if (count <= 0 || count > MAX_SCAN_LIMIT) {
+            sendError(conn, "XRANGE 'count' must be between 1 and " + MAX_SCAN_LIMIT + ".");
+            return;
+        }
+
+        String key = message.getKey().trim();
+        DataEntry entry = store.get(key);
+        try {
+            StreamId start = message.getStart() == null || message.getStart().equals("-")
+                    ? StreamId.MIN : StreamId.parse(message.getStart(), 0);
+            StreamId end = message.getEnd() == null || message.getEnd().equals("+")
+                    ? StreamId.MAX : StreamId.parse(message.getEnd(), Long.MAX_VALUE);
+            // Read before the value, see DataEntry.
+            long version = entry != null ? entry.getVersion() : 0;
+            StreamEntry stream = StreamEntry.streamOf(entry);
+            List<StreamEvent> events = stream != null ? stream.range(start, end, count, System.currentTimeMillis()) : List.of();
+            sendMessage(conn, ResponseStatus.SUCCESS, toJsonValue(events), version);
+        } catch (IllegalArgumentException e) {
+            sendError(conn, e.getMessage());
+        }
+    }
+
+    /**
+     * Processes an XREAD action, answering with the events of a stream after a cursor and the
+     * cursor to read from next. If there are none yet, the answer waits for the next append
+     * up to the requested time without holding the connection's thread.
+     *
+     * @param conn    The WebSocket connection.
+     * @param store   The DataStore of the selected keyspace.
+     * @param message The VaultStreamReadMessage message.
+     */
+    private void handleStreamRead(WebSocket conn, DataStore store, VaultStreamReadMessage message) {
+        if (message == null || message.getKey() == null || message.getKey().isBlank()) {
+            sendError(conn, "XREAD action requires a non-empty 'key'.");
+            return;
+        }
+        int count = message.getCount() != null ? message.getCount() : DEFAULT_SCAN_LIMIT;
+        if (count <= 0 || count > MAX_SCAN_LIMIT) {
+            sendError(conn, "XREAD 'count' must be between 1 and " + MAX_SCAN_LIMIT + ".");
+            return;
+        }
+        long block = message.getBlock() != null ? message.getBlock() : 0;
+        if (block < 0 || block > MAX_XREAD_BLOCK_MILLIS) {
+            sendError(conn, "XREAD 'block' must be between 0 and " + MAX_XREAD_BLOCK_MILLIS + ".");
+            return;
+        }
+
+        String key = message.getKey().trim();
+        StreamId cursor;
+        try {
+            if (message.getCursor() == null || message.getCursor().equals("$")) {
+                // Resolved here, so the answer can name the cursor even if no event arrives.
+                StreamEntry stream = StreamEntry.streamOf(store.get(key));
+                cursor = stream != null ? stream.getLastId() : StreamId.MIN;
+            } else {
+                cursor = StreamId.parse(message.getCursor(), 0);
+            }
+            CompletableFuture<List<StreamEvent>> read = store.xread(key, cursor, count, block);
+            trackPendingRead(conn, read);
+            read.whenComplete((events, error) -> {
+                if (!conn.isOpen() || read.isCancelled()) {
+                    return;
+                }
+                if (error != null) {
+                    sendError(conn, error instanceof IllegalArgumentException ? error.getMessage() : "XREAD failed.");
+                    return;
+                }
+                JsonObject result = new JsonObject();
+                result.add("events", toJsonValue(events));
+                result.addProperty("cursor", (events.isEmpty() ? cursor : events.get(events.size() - 1).id()).toString());
+                sendMessage(conn, ResponseStatus.SUCCESS, result);
+            });
+        } catch (IllegalArgumentException e) {
+            sendError(conn, e.getMessage());
+        }
+    }
+
     /**
      * Handles the SUBSCRIBE action to subscribe the client to updates of a particular key.
      *
-     * @param conn WebSocket connection.
-     * @param key  Record key for subscription.
+     * @param conn  WebSocket connection.
+     * @param store The DataStore of the selected keyspace.
+     * @param key   Record key for subscription.
      */
-    private void handleSubscribe(WebSocket conn, String key) {
+    private void handleSubscribe(WebSocket conn, DataStore store, String key) {
         if (key == null || key.isEmpty()) {
             sendError(conn, "SUBSCRIBE action requires a non-empty 'key'.");
             return;
         }
 
-        subscriptions.computeIfAbsent(key, k -> new CopyOnWriteArraySet<>()).add(conn);
+        subscriptions.computeIfAbsent(store.getKeyspace(), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, k -> new CopyOnWriteArraySet<>()).add(conn);
         sendSuccess(conn, "Subscribed to key '" + key + "' successfully.");
         log.info("Client {} subscribed to key: {}", conn.getRemoteSocketAddress(), key);
     }
@@ -208,20 +1171,22 @@ public class WebSocketController extends WebSocketServer {
     /**
      * Handles the UNSUBSCRIBE action to unsubscribe the client from updates to a particular key.
      *
-     * @param conn WebSocket connection.
-     * @param key  Record key for unsubscription.
+     * @param conn  WebSocket connection.
+     * @param store The DataStore of the selected keyspace.
+     * @param key   Record key for unsubscription.
      */
-    private void handleUnsubscribe(WebSocket conn, String key) {
+    private void handleUnsubscribe(WebSocket conn, DataStore store, String key) {
         if (key == null || key.isEmpty()) {
             sendError(conn, "UNSUBSCRIBE action requires a non-empty 'key'.");
             return;
         }
 
-        Set<WebSocket> subscribersSet = subscriptions.get(key);
+        Map<String, Set<WebSocket>> keyspaceSubscriptions = subscriptions.getOrDefault(store.getKeyspace(), Map.of());
+        Set<WebSocket> subscribersSet = keyspaceSubscriptions.get(key);
         if (subscribersSet != null) {
             subscribersSet.remove(conn);
             if (subscribersSet.isEmpty()) {
-                subscriptions.remove(key);
+                keyspaceSubscriptions.remove(key);
             }
             sendSuccess(conn, "Unsubscribed from key '" + key + "' successfully.");
             log.info("Client {} unsubscribed from key: {}", conn.getRemoteSocketAddress(), key);
@@ -230,17 +1195,56 @@ public class WebSocketController extends WebSocketServer {
         }
     }
 
+    /**
+     * Processes a SYNC action, answering once every write acknowledged before it is on disk.
+     * Writes are acknowledged before the write-ahead log forces them, so a client that must
+     * not lose its writes to a crash sends SYNC and waits for the answer.
+     *
+     * @param conn  The WebSocket connection.
+     * @param store The DataStore of the selected keyspace.
+     */
+    private void handleSync(WebSocket conn, DataStore store) {
+        store.sync().whenComplete((ignored, error) -> {
+            if (!conn.isOpen()) {
+                return;
+            }
+            if (error != null) {
+                log.error("SYNC failed in keyspace '{}'", store.getKeyspace(), error);
+                sendError(conn, "SYNC failed: the write-ahead log cannot be written.");
+                return;
+            }
+            sendSuccess(conn, "Writes are on disk.");
+        });
+    }
+
+    /**
+     * Handles the USE action, selecting the keyspace for the following messages of the connection.
+     *
+     * @param conn     WebSocket connection.
+     * @param keyspace The name of the keyspace.
+     */
+    private void handleUse(WebSocket conn, String keyspace) {
+        if (!DataStore.getKeyspaces().contains(keyspace)) {
+            sendError(conn, "Unknown keyspace: " + keyspace);
+            return;
+        }
+
+        conn.setAttachment(keyspace);
+        sendSuccess(conn, "Using keyspace '" + keyspace + "'.");
+    }
+
     /**
      * Sends an update message only to clients subscribed to the specified key.
      *
-     * @param key     The key of the data entry.
-     * @param message The update message in JSON format.
+     * @param keyspace The keyspace of the data entry.
+     * @param key      The key of the data entry.
+     * @param message  The update message in JSON format.
      */
-    private void sendUpdateToSubscribers(String key, String message) {
-        Set<WebSocket> subscribersSet = subscriptions.get(key);
+    private void sendUpdateToSubscribers(String keyspace, String key, String message) {
+        Set<WebSocket> subscribersSet = subscriptions.getOrDefault(keyspace, Map.of()).get(key);
         if (subscribersSet != null) {
             for (WebSocket client : subscribersSet) {
-                sendUpdate(client, message);
+                sendUpdate(client, keyspace, message);
             }
         }
     }
@@ -252,13 +1256,88 @@ public class WebSocketController extends WebSocketServer {
      * @param message The message.
      */
     private void sendMessage(WebSocket conn, ResponseStatus status, String message) {
+        sendMessage(conn, status, new JsonPrimitive(message));
+    }
+
+    /**
+     * Sends a JSON-formatted message with a structured body to the specified client.
+     *
+     * @param conn    The WebSocket connection.
+     * @param message The message body.
+     */
+    private void sendMessage(WebSocket conn, ResponseStatus status, JsonElement message) {
+        sendMessage(conn, status, message, 0);
+    }
+
+    /**
+     * Sends a JSON-formatted message together with the version of the entry it concerns.
+     *
+     * @param conn    The WebSocket connection.
+     * @param message The message body.
+     * @param version The version of the entry, left out if 0.
+     */
+    private void sendMessage(WebSocket conn, ResponseStatus status, JsonElement message, long version) {
         JsonObject jsonObject = new JsonObject();
         jsonObject.addProperty("status", status.name());
-        jsonObject.addProperty("message", message);
+        jsonObject.add("message", message);
+        if (version != 0) {
+            jsonObject.addProperty("version", version);
+        }
         conn.send(gson.toJson(jsonObject));
         log.info("Sent {} message to client {}: {}", status.name(), conn.getRemoteSocketAddress(), message);
     }
 
+    /**
+     * Converts a stored value into a JSON value.
+     *
+     * @param value The value.
+     * @return The JSON value.
+     */
+    private static JsonElement toJsonValue(Object value) {
+        if (value instanceof String string) {
+            return new JsonPrimitive(string);
+        }
+        if (value instanceof Number number) {
+            return new JsonPrimitive(number);
+        }
+        if (value instanceof Boolean bool) {
+            return new JsonPrimitive(bool);
+        }
+        if (value instanceof Map<?, ?> fields) {
+            JsonObject object = new JsonObject();
+            fields.forEach((field, fieldValue) -> object.add((String) field, toJsonValue(fieldValue)));
+            return object;
+        }
+        if (value instanceof ScoredMember scored) {
+            JsonObject object = new JsonObject();
+            object.addProperty("member", scored.member());
+            object.addProperty("score", scored.score());
+            return object;
+        }
+        if (value instanceof StreamEvent event) {
+            JsonObject object = new JsonObject();
+            object.addProperty("id", event.id().toString());
+            object.add("fields", toJsonValue(event.fields()));
+            return object;
+        }
+        if (value instanceof StreamValue stream) {
+            return toJsonValue(stream.events());
+        }
+        if (value instanceof List<?> values) {
+            JsonArray array = new JsonArray(values.size());
+            values.forEach(element -> array.add(toJsonValue(element)));
+            return array;
+        }
+        if (value instanceof SortedSetValue sortedSet) {
+            JsonArray members = new JsonArray(sortedSet.members().length);
+            for (int i = 0; i < sortedSet.members().length; i++) {
+                members.add(toJsonValue(new ScoredMember(sortedSet.members()[i], sortedSet.scores()[i])));
+            }
+            return members;
+        }
+        return JsonNull.INSTANCE;
+    }
+
     private void sendSuccess(WebSocket conn, String message) {
         sendMessage(conn, ResponseStatus.SUCCESS, message);
     }
@@ -267,8 +1346,25 @@ public class WebSocketController extends WebSocketServer {
         sendMessage(conn, ResponseStatus.ERROR, message);
     }
 
-    private void sendUpdate(WebSocket conn, String message) {
-        sendMessage(conn, ResponseStatus.UPDATE, message);
+    /**
+     * Sends an update, naming its keyspace unless it is the default one, so existing
+     * clients see the same frames as before.
+     *
+     * @param conn     The WebSocket connection.
+     * @param keyspace The keyspace of the update.
+     * @param message  The update message in JSON format.
+     */
+    private void sendUpdate(WebSocket conn, String keyspace, String message) {
+        if (keyspace.equals(DataStore.DEFAULT_KEYSPACE)) {
+            sendMessage(conn, ResponseStatus.UPDATE, message);
+            return;
+        }
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("status", ResponseStatus.UPDATE.name());
+        jsonObject.addProperty("message", message);
+        jsonObject.addProperty("keyspace", keyspace);
+        conn.send(gson.toJson(jsonObject));
+        log.info("Sent {} message to client {}: {}", ResponseStatus.UPDATE.name(), conn.getRemoteSocketAddress(), message);
     }
 
     /**
@@ -277,17 +1373,52 @@ public class WebSocketController extends WebSocketServer {
      * @param conn The WebSocket connection of the client.
      */
     private void removeClientFromAllSubscriptions(WebSocket conn) {
-        for (Map.Entry<String, Set<WebSocket>> entry : subscriptions.entrySet()) {
-            Set<WebSocket> subscribersSet = entry.getValue();
-            if (subscribersSet.remove(conn)) {
-                log.info("Removed client {} from subscription of key: {}", conn.getRemoteSocketAddress(), entry.getKey());
-                if (subscribersSet.isEmpty()) {
-                    subscriptions.remove(entry.getKey());
+        for (Map<String, Set<WebSocket>> keyspaceSubscriptions : subscriptions.values()) {
+            for (Map.Entry<String, Set<WebSocket>> entry : keyspaceSubscriptions.entrySet()) {
+                Set<WebSocket> subscribersSet = entry.getValue();
+                if (subscribersSet.remove(conn)) {
+                    log.info("Removed client {} from subscription of key: {}", conn.getRemoteSocketAddress(), entry.getKey());
+                    if (subscribersSet.isEmpty()) {
+                        keyspaceSubscriptions.remove(entry.getKey());
+                    }
                 }
             }
         }
     }
 
+    /**
+     * Keeps a blocked XREAD of a client until it completes, so it can be cancelled if the client disconnects first.
+     *
+     * @param conn The WebSocket connection.
+     * @param read The pending read.
+     */
+    private void trackPendingRead(WebSocket conn, CompletableFuture<?> read) {
+        if (read.isDone()) {
+            return;
+        }
+        pendingReads.computeIfAbsent(conn, k -> ConcurrentHashMap.newKeySet()).add(read);
+        read.whenComplete((result, error) -> pendingReads.computeIfPresent(conn, (k, reads) -> {
+            reads.remove(read);
+            return reads.isEmpty() ? null : reads;
+        }));
+        // The client may have disconnected before the read was tracked.
+        if (!conn.isOpen()) {
+            read.cancel(false);
+        }
+    }
+
+    /**
+     * Cancels the blocked XREADs of a client, which releases their readers in the store.
+     *
+     * @param conn The disconnected WebSocket connection.
+     */
+    private void cancelPendingReads(WebSocket conn) {
+        Set<CompletableFuture<?>> reads = pendingReads.remove(conn);
+        if (reads != null) {
+            reads.forEach(read -> read.cancel(false));
+        }
+    }
+
     /**
      * Validates the type of the value being stored.
      *
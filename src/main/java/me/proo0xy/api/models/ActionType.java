@@ -4,6 +4,32 @@ public enum ActionType {
     GET,
     PUT,
     REMOVE,
+    MGET,
+    MPUT,
+    MREMOVE,
+    SCAN,
+    INCRBY,
+    DECRBY,
+    HOTINCRBY,
+    ADD,
+    GETSET,
+    CAS,
+    EXPIRE,
+    HSET,
+    HGET,
+    HDEL,
+    HGETALL,
+    ZADD,
+    ZINCRBY,
+    ZRANGE,
+    ZREVRANGE,
+    ZRANK,
+    XADD,
+    XRANGE,
+    XREAD,
+    MULTI,
+    SYNC,
+    USE,
     SUBSCRIBE,
     UNSUBSCRIBE
 }
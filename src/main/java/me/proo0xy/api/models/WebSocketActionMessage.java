@@ -11,4 +11,6 @@ import lombok.experimental.FieldDefaults;
 public class WebSocketActionMessage {
     ActionType action;
     String data;
+    // Optional keyspace for this message only; otherwise the one selected with USE, or the default one.
+    String keyspace;
 }
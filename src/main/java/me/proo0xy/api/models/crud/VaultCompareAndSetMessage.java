@@ -0,0 +1,16 @@
+package me.proo0xy.api.models.crud;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class VaultCompareAndSetMessage {
+    String key;
+    // Value the key must currently hold; null or missing if the key must be absent.
+    Object expected;
+    Object value;
+}
@@ -0,0 +1,15 @@
+package me.proo0xy.api.models.crud;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class VaultExpireMessage {
+    String key;
+    // Time to live in millis; zero or less removes the entry.
+    Long ttl;
+}
@@ -0,0 +1,19 @@
+package me.proo0xy.api.models.crud;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class VaultHashDeleteMessage {
+    String key;
+    // A single field to remove.
+    String field;
+    // Several fields to remove.
+    List<String> fields;
+}
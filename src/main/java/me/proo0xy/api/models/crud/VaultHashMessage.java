@@ -0,0 +1,21 @@
+package me.proo0xy.api.models.crud;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Map;
+
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class VaultHashMessage {
+    String key;
+    // A single field for HGET and HSET.
+    String field;
+    // The value of the single field for HSET.
+    Object value;
+    // Several fields with their values for HSET.
+    Map<String, Object> fields;
+}
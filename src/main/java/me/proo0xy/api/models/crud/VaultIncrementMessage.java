@@ -0,0 +1,15 @@
+package me.proo0xy.api.models.crud;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class VaultIncrementMessage {
+    String key;
+    // Integral amount for INCRBY, DECRBY and HOTINCRBY, which default to 1; any number for ADD.
+    Number delta;
+}
@@ -11,4 +11,8 @@ import lombok.experimental.FieldDefaults;
 public class VaultPutMessage {
     String key;
     Object value;
+    // Optional time to live in millis; only PUT and MPUT use it.
+    Long ttl;
+    // Optional version the key must still be at, 0 if it must be absent; only PUT uses it.
+    Long ifVersion;
 }
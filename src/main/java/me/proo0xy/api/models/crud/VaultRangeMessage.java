@@ -0,0 +1,21 @@
+package me.proo0xy.api.models.crud;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class VaultRangeMessage {
+    String key;
+    // The first and last rank of a range by rank, both included; negative ranks count from the end.
+    Long start;
+    Long stop;
+    // The lowest and highest score of a range by score, both included.
+    Double min;
+    Double max;
+    // Maximum number of members in the response.
+    Integer limit;
+}
@@ -0,0 +1,22 @@
+package me.proo0xy.api.models.crud;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class VaultScanMessage {
+    // Only keys starting with this prefix.
+    String prefix;
+    // Lowest key, inclusive.
+    String start;
+    // Key the range ends before.
+    String end;
+    // Cursor returned with the previous page.
+    String cursor;
+    // Maximum entries per page.
+    Integer limit;
+}
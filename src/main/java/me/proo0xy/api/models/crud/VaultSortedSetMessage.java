@@ -0,0 +1,25 @@
+package me.proo0xy.api.models.crud;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Map;
+
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class VaultSortedSetMessage {
+    String key;
+    // A single member for ZADD, ZINCRBY and ZRANK.
+    String member;
+    // The score of the single member for ZADD.
+    Double score;
+    // Several members with their scores for ZADD.
+    Map<String, Double> members;
+    // The amount ZINCRBY adds to the score.
+    Double delta;
+    // Whether ZRANK ranks from the highest score down.
+    Boolean reverse;
+}
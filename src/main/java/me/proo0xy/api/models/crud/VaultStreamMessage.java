@@ -0,0 +1,21 @@
+package me.proo0xy.api.models.crud;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Map;
+
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class VaultStreamMessage {
+    String key;
+    // The fields of the appended event.
+    Map<String, Object> fields;
+    // The new cap on the number of events, 0 for no limit; the current cap is kept if absent.
+    Long maxLength;
+    // The new cap on the age of events in millis, 0 for no limit; the current cap is kept if absent.
+    Long maxAge;
+}
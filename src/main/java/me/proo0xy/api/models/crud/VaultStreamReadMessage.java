@@ -0,0 +1,22 @@
+package me.proo0xy.api.models.crud;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class VaultStreamReadMessage {
+    String key;
+    // The lowest and highest ID for XRANGE, both included; "-" and "+" for the ends of the stream.
+    String start;
+    String end;
+    // The ID of the last event already read for XREAD; "$" for events appended from now on.
+    String cursor;
+    // Maximum number of events in the response.
+    Integer count;
+    // How long XREAD waits for an append in millis if there are no events yet, 0 to answer at once; at most five minutes.
+    Long block;
+}
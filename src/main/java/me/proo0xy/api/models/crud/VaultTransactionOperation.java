@@ -0,0 +1,22 @@
+package me.proo0xy.api.models.crud;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import me.proo0xy.data.TransactionOperation;
+
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class VaultTransactionOperation {
+    // PUT, REMOVE or CHECK.
+    TransactionOperation.Type type;
+    String key;
+    // The value for PUT.
+    Object value;
+    // Optional time to live in millis for PUT.
+    Long ttl;
+    // Optional version the key must be at before the transaction, 0 if it must be absent.
+    Long ifVersion;
+}
@@ -0,0 +1,81 @@
+package me.proo0xy.data;
+
+import com.google.gson.annotations.JsonAdapter;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * BooleanEntry holds a flag in a primitive field accessed through a {@link VarHandle}.
+ * Its boxed value is always one of the interned {@link Boolean} constants.
+ */
+@JsonAdapter(DataEntryTypeAdapter.class)
+public final class BooleanEntry extends DataEntry {
+
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(BooleanEntry.class, "flag", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private boolean flag;
+
+    public BooleanEntry(String key, boolean value) {
+        super(key, null);
+        VALUE.setRelease(this, value);
+    }
+
+    /**
+     * @return The current value.
+     */
+    public boolean getBoolean() {
+        return (boolean) VALUE.getAcquire(this);
+    }
+
+    /**
+     * Replaces the value.
+     *
+     * @param value The new value.
+     */
+    public void setBoolean(boolean value) {
+        VALUE.setRelease(this, value);
+    }
+
+    @Override
+    public Object getValue() {
+        return getBoolean() ? Boolean.TRUE : Boolean.FALSE;
+    }
+
+    @Override
+    public void setValue(Object value) {
+        if (!assign(value)) {
+            throw new IllegalArgumentException("Not a boolean value: " + value);
+        }
+    }
+
+    @Override
+    public boolean assign(Object value) {
+        if (!(value instanceof Boolean bool)) {
+            return false;
+        }
+        setBoolean(bool);
+        return true;
+    }
+
+    @Override
+    public DataEntry detach() {
+        long version = getVersion();
+        BooleanEntry copy = new BooleanEntry(getKey(), getBoolean());
+        copy.setVersion(version);
+        return copy;
+    }
+
+    @Override
+    public String formatValue() {
+        return Boolean.toString(getBoolean());
+    }
+}
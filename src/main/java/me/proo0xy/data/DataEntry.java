@@ -1,12 +1,212 @@
 package me.proo0xy.data;
 
-import lombok.AllArgsConstructor;
+import com.google.gson.annotations.JsonAdapter;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Map;
+
+/**
+ * DataEntry is a key with its value. Numbers and booleans are held by the typed
+ * subclasses {@link LongEntry}, {@link DoubleEntry} and {@link BooleanEntry} without
+ * boxing; use {@link #of} to pick the right one for a value.
+ * <p>
+ * Typed entries read from the store may be updated in place by later writes, so
+ * {@link #getValue()} always returns the current value; {@link #detach()} freezes it.
+ * Values with a time to live are held by {@link ExpiringEntry}, hashes by {@link HashEntry},
+ * sorted sets by {@link SortedSetEntry} and streams by {@link StreamEntry}.
+ * <p>
+ * Every write gives an entry the next version of the store's {@link VersionSequence}.
+ * The version is published after the value, so a reader that reads the version first
+ * never pairs a new version with an old value.
+ */
 @Data
-@AllArgsConstructor
+@JsonAdapter(DataEntryTypeAdapter.class)
 public class DataEntry {
+
+    private static final VarHandle VERSION;
+
+    static {
+        try {
+            VERSION = MethodHandles.lookup().findVarHandle(DataEntry.class, "version", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private final String key;
     private volatile Object value;
-}
+    // Recency or frequency of use kept by the eviction policy; fits into the object's padding.
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    int accessStamp;
+    // Version of the last write, 0 for entries written before versions existed.
+    @EqualsAndHashCode.Exclude
+    private long version;
+
+    public DataEntry(String key, Object value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    /**
+     * Creates the entry type that stores a value most compactly.
+     *
+     * @param key   The key.
+     * @param value The value.
+     * @return A typed entry for numbers, booleans, hashes and sorted sets, otherwise a plain entry.
+     */
+    @SuppressWarnings("unchecked")
+    public static DataEntry of(String key, Object value) {
+        if (value instanceof VersionedValue versioned) {
+            DataEntry entry = of(key, versioned.value());
+            entry.setVersion(versioned.version());
+            return entry;
+        }
+        if (value instanceof ExpiringValue expiring) {
+            return new ExpiringEntry(key, expiring.value(), expiring.expiresAt());
+        }
+        if (LongEntry.isIntegral(value)) {
+            return new LongEntry(key, ((Number) value).longValue());
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return new DoubleEntry(key, ((Number) value).doubleValue());
+        }
+        if (value instanceof Boolean bool) {
+            return new BooleanEntry(key, bool);
+        }
+        if (value instanceof Map<?, ?> fields) {
+            return new HashEntry(key, (Map<String, ?>) fields);
+        }
+        if (value instanceof SortedSetValue sortedSet) {
+            return new SortedSetEntry(key, sortedSet);
+        }
+        if (value instanceof StreamValue stream) {
+            return new StreamEntry(key, stream);
+        }
+        return new DataEntry(key, value);
+    }
+
+    /**
+     * Applies a logged partial change, see {@link StorageEngine#computeDelta}, to a recovered entry.
+     *
+     * @param key      The key.
+     * @param existing The recovered entry, or null.
+     * @param change   The logged value: the version with the changed fields of a hash, scores of a sorted set
+     *                 or events appended to a stream.
+     * @return The entry after the change, or null if the change left it empty.
+     */
+    @SuppressWarnings("unchecked")
+    public static DataEntry merge(String key, DataEntry existing, Object change) {
+        VersionedValue versioned = (VersionedValue) change;
+        DataEntry merged;
+        if (versioned.value() instanceof SortedSetValue scores) {
+            merged = SortedSetEntry.merge(key, existing, scores);
+        } else if (versioned.value() instanceof StreamValue appended) {
+            merged = StreamEntry.merge(key, existing, appended);
+        } else {
+            merged = HashEntry.merge(key, existing, (Map<String, ?>) versioned.value());
+        }
+        if (merged != null) {
+            merged.setVersion(versioned.version());
+        }
+        return merged;
+    }
+
+    /**
+     * Creates the entry announcing that a key was removed.
+     *
+     * @param key     The removed key.
+     * @param version The version of the removal.
+     * @return An entry without a value.
+     */
+    public static DataEntry removed(String key, long version) {
+        DataEntry entry = new DataEntry(key, null);
+        entry.setVersion(version);
+        return entry;
+    }
 
+    /**
+     * @return The version of the last write.
+     */
+    public long getVersion() {
+        return (long) VERSION.getAcquire(this);
+    }
+
+    /**
+     * Sets the version after the value was written. Only the storage engine calls this,
+     * while it holds the key.
+     *
+     * @param version The new version.
+     */
+    public void setVersion(long version) {
+        VERSION.setRelease(this, version);
+    }
+
+    /**
+     * Returns the value as it is logged and persisted, including its version and time to live.
+     *
+     * @return The value, wrapped in a {@link VersionedValue} once the entry has a version.
+     */
+    public Object getStoredValue() {
+        long version = getVersion();
+        Object value = storedValue();
+        return version != 0 ? new VersionedValue(version, value) : value;
+    }
+
+    /**
+     * Returns the value as it is persisted, without the version.
+     *
+     * @return The value.
+     */
+    protected Object storedValue() {
+        return getValue();
+    }
+
+    /**
+     * Checks whether the entry has expired.
+     *
+     * @param now The current time in epoch millis.
+     * @return Whether the entry has a time to live that has run out.
+     */
+    public boolean isExpired(long now) {
+        return false;
+    }
+
+    /**
+     * Stores a value in place if this entry can hold it without changing its type.
+     * Only the storage engine calls this, while no reader can observe the old value.
+     *
+     * @param value The new value.
+     * @return Whether the value was stored.
+     */
+    public boolean assign(Object value) {
+        return false;
+    }
+
+    /**
+     * Returns an entry holding the current value that later writes do not change.
+     *
+     * @return This entry, or a copy for entries updated in place.
+     */
+    public DataEntry detach() {
+        return this;
+    }
+
+    /**
+     * Formats the value for clients without boxing it.
+     *
+     * @return The value as text.
+     */
+    public String formatValue() {
+        return String.valueOf(getValue());
+    }
+}
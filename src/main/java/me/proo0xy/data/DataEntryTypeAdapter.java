@@ -0,0 +1,269 @@
+package me.proo0xy.data;
+
+import com.google.gson.ToNumberPolicy;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DataEntryTypeAdapter writes every entry type as {@code {"key": ..., "value": ...}},
+ * the shape clients already receive, plus {@code "expiresAt"} for entries with a time
+ * to live and {@code "version"} for versioned entries, and reads it back into the
+ * matching typed entry. Hashes are written as objects; a {@link HashChangeEntry} carries
+ * its changed fields as {@code "fields"} instead of a value, with null for removed fields.
+ * Sorted sets are written as {@code "sortedSet"}, an array of {@code {"member", "score"}}
+ * in rank order, and a {@link ScoreChangeEntry} as {@code "scores"} by member. Streams
+ * are written as {@code "stream"}, an object with the last ID, the caps and the events
+ * as {@code {"id", "fields"}}, and a {@link StreamAppendEntry} as {@code "event"}.
+ */
+class DataEntryTypeAdapter extends TypeAdapter<DataEntry> {
+
+    @Override
+    public void write(JsonWriter out, DataEntry entry) throws IOException {
+        // Read before the value, see DataEntry.
+        long version = entry.getVersion();
+        out.beginObject();
+        out.name("key").value(entry.getKey());
+        if (entry instanceof LongEntry longEntry) {
+            out.name("value").value(longEntry.getLong());
+        } else if (entry instanceof DoubleEntry doubleEntry) {
+            out.name("value").value(doubleEntry.getDouble());
+        } else if (entry instanceof BooleanEntry booleanEntry) {
+            out.name("value").value(booleanEntry.getBoolean());
+        } else if (entry instanceof HashChangeEntry change) {
+            out.name("fields");
+            writeFields(out, change.getChanges());
+        } else if (entry instanceof ScoreChangeEntry change) {
+            out.name("scores");
+            writeFields(out, change.getChanges());
+        } else if (entry instanceof StreamAppendEntry append) {
+            out.name("event");
+            writeEvent(out, append.getEvent());
+        } else {
+            Object value = entry.getValue();
+            if (value instanceof String string) {
+                out.name("value").value(string);
+            } else if (value instanceof Number number) {
+                out.name("value").value(number);
+            } else if (value instanceof Boolean bool) {
+                out.name("value").value(bool);
+            } else if (value instanceof Map<?, ?> fields) {
+                out.name("value");
+                writeFields(out, fields);
+            } else if (value instanceof SortedSetValue sortedSet) {
+                out.name("sortedSet");
+                writeSortedSet(out, sortedSet);
+            } else if (value instanceof StreamValue stream) {
+                out.name("stream");
+                writeStream(out, stream);
+            }
+        }
+        if (entry instanceof ExpiringEntry expiring) {
+            out.name("expiresAt").value(expiring.getExpiresAt());
+        }
+        if (version != 0) {
+            out.name("version").value(version);
+        }
+        out.endObject();
+    }
+
+    /**
+     * Writes the fields of a hash as an object, including null values.
+     */
+    private static void writeFields(JsonWriter out, Map<?, ?> fields) throws IOException {
+        boolean serializeNulls = out.getSerializeNulls();
+        out.setSerializeNulls(true);
+        out.beginObject();
+        for (Map.Entry<?, ?> field : fields.entrySet()) {
+            out.name((String) field.getKey());
+            Object value = field.getValue();
+            if (value instanceof String string) {
+                out.value(string);
+            } else if (value instanceof Number number) {
+                out.value(number);
+            } else if (value instanceof Boolean bool) {
+                out.value(bool);
+            } else {
+                out.nullValue();
+            }
+        }
+        out.endObject();
+        out.setSerializeNulls(serializeNulls);
+    }
+
+    private static void writeSortedSet(JsonWriter out, SortedSetValue sortedSet) throws IOException {
+        out.beginArray();
+        for (int i = 0; i < sortedSet.members().length; i++) {
+            out.beginObject();
+            out.name("member").value(sortedSet.members()[i]);
+            out.name("score").value(sortedSet.scores()[i]);
+            out.endObject();
+        }
+        out.endArray();
+    }
+
+    private static void writeStream(JsonWriter out, StreamValue stream) throws IOException {
+        out.beginObject();
+        out.name("lastId").value(stream.lastId().toString());
+        out.name("maxLength").value(stream.maxLength());
+        out.name("maxAge").value(stream.maxAge());
+        out.name("events");
+        out.beginArray();
+        for (StreamEvent event : stream.events()) {
+            writeEvent(out, event);
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+    private static void writeEvent(JsonWriter out, StreamEvent event) throws IOException {
+        out.beginObject();
+        out.name("id").value(event.id().toString());
+        out.name("fields");
+        writeFields(out, event.fields());
+        out.endObject();
+    }
+
+    /**
+     * Reads the object written by {@link #writeStream}.
+     */
+    @SuppressWarnings("unchecked")
+    private static StreamValue readStream(JsonReader in) throws IOException {
+        StreamId lastId = StreamId.MIN;
+        long maxLength = 0;
+        long maxAge = 0;
+        List<StreamEvent> events = new ArrayList<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (name.equals("lastId")) {
+                lastId = StreamId.parse(in.nextString(), 0);
+            } else if (name.equals("maxLength")) {
+                maxLength = in.nextLong();
+            } else if (name.equals("maxAge")) {
+                maxAge = in.nextLong();
+            } else if (name.equals("events")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    StreamId id = null;
+                    Object fields = null;
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        String eventName = in.nextName();
+                        if (eventName.equals("id")) {
+                            id = StreamId.parse(in.nextString(), 0);
+                        } else if (eventName.equals("fields")) {
+                            fields = readValue(in);
+                        } else {
+                            in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    if (id != null && fields instanceof Map) {
+                        events.add(new StreamEvent(id, (Map<String, Object>) fields));
+                    }
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return new StreamValue(lastId, maxLength, maxAge, events);
+    }
+
+    /**
+     * Reads the array written by {@link #writeSortedSet}.
+     */
+    private static SortedSetValue readSortedSet(JsonReader in) throws IOException {
+        List<String> members = new ArrayList<>();
+        List<Double> scores = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            String member = null;
+            double score = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (name.equals("member")) {
+                    member = in.nextString();
+                } else if (name.equals("score")) {
+                    score = in.nextDouble();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            if (member != null) {
+                members.add(member);
+                scores.add(score);
+            }
+        }
+        in.endArray();
+        return new SortedSetValue(members.toArray(new String[0]), scores.stream().mapToDouble(Double::doubleValue).toArray());
+    }
+
+    @Override
+    public DataEntry read(JsonReader in) throws IOException {
+        String key = null;
+        Object value = null;
+        Long expiresAt = null;
+        long version = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (name.equals("key")) {
+                key = in.nextString();
+            } else if (name.equals("value")) {
+                value = readValue(in);
+            } else if (name.equals("sortedSet")) {
+                value = readSortedSet(in);
+            } else if (name.equals("stream")) {
+                value = readStream(in);
+            } else if (name.equals("expiresAt")) {
+                expiresAt = in.nextLong();
+            } else if (name.equals("version")) {
+                version = in.nextLong();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        DataEntry entry = DataEntry.of(key, expiresAt != null ? new ExpiringValue(expiresAt, value) : value);
+        entry.setVersion(version);
+        return entry;
+    }
+
+    private static Object readValue(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        return switch (token) {
+            case STRING -> in.nextString();
+            case NUMBER -> ToNumberPolicy.LONG_OR_DOUBLE.readNumber(in);
+            case BOOLEAN -> in.nextBoolean();
+            case BEGIN_OBJECT -> {
+                Map<String, Object> fields = new HashMap<>();
+                in.beginObject();
+                while (in.hasNext()) {
+                    String field = in.nextName();
+                    Object value = readValue(in);
+                    if (value != null) {
+                        fields.put(field, value);
+                    }
+                }
+                in.endObject();
+                yield fields;
+            }
+            default -> {
+                in.skipValue();
+                yield null;
+            }
+        };
+    }
+}
@@ -1,70 +1,125 @@
 package me.proo0xy.data;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import me.proo0xy.data.lsm.LsmStorageEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.*;
-import java.lang.reflect.Type;
+import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 /**
  * DataStore is a singleton class that manages key-value data storage,
  * providing thread-safe operations and real-time update notifications.
+ * <p>
+ * Besides the default instance, named keyspaces each get a DataStore of their own,
+ * with separate storage files, schedulers, save rules and limits, so a busy keyspace
+ * never delays the snapshots or evictions of another one.
  */
 public class DataStore {
 
     private static final Logger log = LoggerFactory.getLogger(DataStore.class);
+    public static final String DEFAULT_KEYSPACE = "default";
+    // Names are used in file paths and environment variables.
+    private static final Pattern KEYSPACE_NAME = Pattern.compile("[a-z0-9][a-z0-9_-]{0,63}");
+    private static final Map<String, DataStore> keyspaces = new ConcurrentHashMap<>();
     private static DataStore instance;
+    // Expired keys are removed at most one tick after their expiry.
+    private static final long EXPIRY_TICK_MILLIS = 100;
+    // Hot counters without increments for this long are retired.
+    private static final long HOT_COUNTER_IDLE_MILLIS = 60_000;
 
-    private final Map<String, DataEntry> dataMap = new ConcurrentHashMap<>();
-    private final CopyOnWriteArrayList<Consumer<DataEntry>> subscribers = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    // Blocked stream reads by key, completed by the next append or their timeout.
+    private final Map<String, Set<StreamReader>> streamReaders = new ConcurrentHashMap<>();
+    private final KeyLocks keyLocks = new KeyLocks();
+    private final String keyspace;
     private final String storagePath;
     private final String backupPath;
-    private final Gson gson;
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
     private final ExecutorService subscriberExecutor = Executors.newCachedThreadPool();
-    private final Type mapType = new TypeToken<Map<String, DataEntry>>() {}.getType();
+    private final ScheduledExecutorService expiryExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final ScheduledExecutorService hotCounterExecutor = Executors.newSingleThreadScheduledExecutor();
+    // Striped increments of hot keys by key, drained at a fixed cadence.
+    private final Map<String, HotCounter> hotCounters = new ConcurrentHashMap<>();
+    // Counters retired by the last drain, drained once more by the next one; used by the drain only.
+    private final Map<String, HotCounter> retiredHotCounters = new HashMap<>();
+    private final long hotCounterInterval;
+    private final TimingWheel expiryWheel = new TimingWheel(EXPIRY_TICK_MILLIS, System.currentTimeMillis());
+    private final VersionSequence versions;
+    private final StorageEngine engine;
+    private final SavePolicy savePolicy;
+    private long backedUpSaves;
 
     /**
      * Private constructor to enforce Singleton pattern.
      *
-     * @param storagePath      Path to store the main data file.
-     * @param backupPath       Path to store the backup.
-     * @param autoSaveInterval Auto-save interval in seconds.
+     * @param keyspace The name of the keyspace.
+     * @param settings Storage and persistence settings.
      */
-    private DataStore(String storagePath, String backupPath, long autoSaveInterval) {
-        this.storagePath = ensureTrailingSlash(storagePath);
-        this.backupPath = ensureTrailingSlash(backupPath);
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
+    private DataStore(String keyspace, DataStoreSettings settings) {
+        this.keyspace = keyspace;
+        this.storagePath = ensureTrailingSlash(settings.getStoragePath());
+        this.backupPath = ensureTrailingSlash(settings.getBackupPath());
 
         ensureDirectoryExists(this.storagePath);
         ensureDirectoryExists(this.backupPath);
-
-        loadFromDisk();
-        startAutoSave(autoSaveInterval);
+        this.versions = new VersionSequence(Paths.get(this.storagePath, "versions"));
+        this.engine = createEngine(settings);
+        if (versions.isCreated()) {
+            // Data restored without its sequence file may carry versions already.
+            versions.advanceTo(engine.maxVersion());
+        }
+        this.savePolicy = new SavePolicy(settings.getSaveRules());
+        this.hotCounterInterval = settings.getHotCounterInterval();
+        startAutoSave(settings.getSaveRules(), settings.getBackupInterval());
+        startExpiry();
+        hotCounterExecutor.scheduleAtFixedRate(this::drainHotCounters, hotCounterInterval, hotCounterInterval, TimeUnit.MILLISECONDS);
+        log.info("Hot counters of keyspace '{}' are stored every {} ms; a crash loses the increments of the last interval.", keyspace, hotCounterInterval);
     }
 
     /**
      * Initializes the singleton instance of DataStore.
      *
-     * @param storagePath      Path to store the main data file.
-     * @param backupPath       Path to store the backup.
-     * @param autoSaveInterval Auto-save interval in seconds.
+     * @param settings Storage and persistence settings.
      */
-    public static synchronized void initialize(String storagePath, String backupPath, long autoSaveInterval) {
-        if (instance == null) {
-            instance = new DataStore(storagePath, backupPath, autoSaveInterval);
-            log.info("DataStore initialized successfully.");
-        } else {
-            log.warn("DataStore is already initialized.");
+    public static synchronized void initialize(DataStoreSettings settings) {
+        initialize(DEFAULT_KEYSPACE, settings);
+    }
+
+    /**
+     * Initializes the DataStore of a keyspace.
+     *
+     * @param keyspace The name of the keyspace; {@link #DEFAULT_KEYSPACE} is the singleton instance.
+     * @param settings Storage and persistence settings of the keyspace.
+     * @throws IllegalArgumentException If the name is not a valid keyspace name.
+     */
+    public static synchronized void initialize(String keyspace, DataStoreSettings settings) {
+        if (!isValidKeyspaceName(keyspace)) {
+            throw new IllegalArgumentException("Invalid keyspace name: " + keyspace);
         }
+        if (keyspaces.containsKey(keyspace)) {
+            log.warn("Keyspace '{}' is already initialized.", keyspace);
+            return;
+        }
+        DataStore store = new DataStore(keyspace, settings);
+        keyspaces.put(keyspace, store);
+        if (keyspace.equals(DEFAULT_KEYSPACE)) {
+            instance = store;
+        }
+        log.info("Keyspace '{}' initialized successfully.", keyspace);
     }
 
     /**
@@ -79,65 +134,898 @@ public class DataStore {
         return instance;
     }
 
+    /**
+     * Retrieves the DataStore of a keyspace.
+     *
+     * @param keyspace The name of the keyspace.
+     * @return The DataStore.
+     * @throws IllegalArgumentException If no such keyspace is initialized.
+     */
+    public static DataStore getInstance(String keyspace) {
+        DataStore store = keyspaces.get(keyspace);
+        if (store == null) {
+            throw new IllegalArgumentException("Unknown keyspace: " + keyspace);
+        }
+        return store;
+    }
+
+    /**
+     * @return The names of all initialized keyspaces.
+     */
+    public static Set<String> getKeyspaces() {
+        return Set.copyOf(keyspaces.keySet());
+    }
+
+    /**
+     * Checks whether a name may be used for a keyspace: lower-case letters, digits,
+     * '-' and '_', starting with a letter or digit, at most 64 characters.
+     *
+     * @param name The name.
+     * @return Whether it is valid.
+     */
+    public static boolean isValidKeyspaceName(String name) {
+        return name != null && KEYSPACE_NAME.matcher(name).matches();
+    }
+
+    /**
+     * @return The name of this store's keyspace.
+     */
+    public String getKeyspace() {
+        return keyspace;
+    }
+
     /**
      * Adds or updates an entry in the store.
      *
      * @param key   The key of the entry.
      * @param value The value of the entry.
+     * @return The version of the written entry.
      */
-    public void put(String key, Object value) {
-        DataEntry entry = dataMap.computeIfAbsent(key, k -> new DataEntry(k, value));
-        entry.setValue(value);
+    public long put(String key, Object value) {
+        long[] version = new long[1];
+        DataEntry entry = compute(key, (k, existing) -> {
+            DataEntry created = DataEntry.of(k, value);
+            version[0] = stamp(created);
+            return created;
+        }, existing -> {
+            if (!existing.assign(value)) {
+                return false;
+            }
+            version[0] = stamp(existing);
+            return true;
+        });
+        track(entry);
+        savePolicy.recordChanges(1);
         notifySubscribers(entry);
+        evictIfNeeded(key);
+        return version[0];
+    }
+
+    /**
+     * Adds or updates an entry only if the key is still at the version the caller last saw,
+     * so concurrent clients cannot overwrite each other's changes unnoticed.
+     *
+     * @param key             The key of the entry.
+     * @param value           The value of the entry; an {@link ExpiringValue} gives it a time to live.
+     * @param expectedVersion The current version of the key, or 0 if the key must be absent.
+     * @return The version of the written entry, or 0 if the key was at another version.
+     */
+    public long putIfVersion(String key, Object value, long expectedVersion) {
+        long[] version = new long[1];
+        DataEntry entry = compute(key, (k, existing) -> {
+            if (!isAtVersion(live(existing), expectedVersion)) {
+                return existing;
+            }
+            DataEntry created = DataEntry.of(k, value);
+            version[0] = stamp(created);
+            return created;
+        }, existing -> {
+            if (!isAtVersion(live(existing), expectedVersion) || !existing.assign(value)) {
+                return false;
+            }
+            version[0] = stamp(existing);
+            return true;
+        });
+        if (version[0] != 0) {
+            track(entry);
+            savePolicy.recordChanges(1);
+            notifySubscribers(entry);
+            evictIfNeeded(key);
+        }
+        return version[0];
+    }
+
+    /**
+     * Adds or updates an entry that is removed once its time to live has passed.
+     *
+     * @param key       The key of the entry.
+     * @param value     The value of the entry.
+     * @param ttlMillis The time to live in millis.
+     * @return The version of the written entry.
+     * @throws IllegalArgumentException If the time to live is not positive.
+     */
+    public long put(String key, Object value, long ttlMillis) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("TTL must be positive.");
+        }
+        return put(key, new ExpiringValue(System.currentTimeMillis() + ttlMillis, value));
+    }
+
+    /**
+     * Sets a new time to live on an existing entry, keeping its value.
+     *
+     * @param key       The key of the entry.
+     * @param ttlMillis The time to live in millis; zero or less removes the entry right away.
+     * @return Whether the entry existed.
+     */
+    public boolean expire(String key, long ttlMillis) {
+        if (ttlMillis <= 0) {
+            return remove(key) != null;
+        }
+
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        DataEntry[] updated = new DataEntry[1];
+        compute(key, (k, existing) -> {
+            DataEntry current = live(existing);
+            if (current == null) {
+                return existing;
+            }
+            // A copy: the value of an entry changed in place, such as a hash, is a live view.
+            updated[0] = new ExpiringEntry(k, current.detach().getValue(), expiresAt);
+            return updated[0];
+        });
+        if (updated[0] == null) {
+            return false;
+        }
+        track(updated[0]);
+        savePolicy.recordChanges(1);
+        notifySubscribers(updated[0]);
+        evictIfNeeded(key);
+        return true;
     }
 
     /**
-     * Retrieves an entry by key.
+     * Atomically adds to an integral value. A missing key counts as zero, and the
+     * time to live of an existing entry is kept.
+     * <p>
+     * The atomic actions are not lock-free: the read and the write run inside the engine's
+     * compute of the key, which locks its map bin or lock stripe, while the key's
+     * transaction stripe is held shared. Writers of one key therefore wait for each other.
+     *
+     * @param key   The key of the entry.
+     * @param delta The amount to add, negative to decrement.
+     * @return The value after the addition.
+     * @throws IllegalArgumentException If the current value is not an integer.
+     * @throws ArithmeticException      If the result overflows a long.
+     */
+    public long incrementBy(String key, long delta) {
+        long[] result = new long[1];
+        long[] version = new long[1];
+        compute(key, (k, existing) -> {
+            DataEntry current = live(existing);
+            result[0] = current == null ? delta : Math.addExact(integerValue(current), delta);
+            DataEntry updated = retain(current, new LongEntry(k, result[0]));
+            version[0] = stamp(updated);
+            return updated;
+        }, existing -> {
+            if (!(existing instanceof LongEntry counter)) {
+                return false;
+            }
+            result[0] = Math.addExact(counter.getLong(), delta);
+            counter.setLong(result[0]);
+            version[0] = stamp(counter);
+            return true;
+        });
+        savePolicy.recordChanges(1);
+        if (!subscribers.isEmpty()) {
+            notifySubscribers(withVersion(new LongEntry(key, result[0]), version[0]));
+        }
+        evictIfNeeded(key);
+        return result[0];
+    }
+
+    /**
+     * Adds to an integer without waiting for the key, for counters taking more increments
+     * than one slot absorbs. The increment lands in striped cells and is stored, logged and
+     * announced together with the others at the hot counter cadence, through
+     * {@link #incrementBy}; until then {@link #get} adds it to the stored value.
+     * <p>
+     * The key must hold an integer or nothing when the increment is made. Increments apply
+     * to whatever the key holds when they are stored, and are dropped with a warning if a
+     * write replaced the integer meanwhile. Until they are stored they are not in the
+     * write-ahead log either, so a crash loses up to one interval of them; {@link #sync()}
+     * stores them before it waits for the log.
+     *
+     * @param key   The key of the counter.
+     * @param delta The amount to add, negative to subtract.
+     * @throws IllegalArgumentException If the key holds something other than an integer.
+     */
+    public void incrementHot(String key, long delta) {
+        DataEntry current = live(engine.get(key));
+        if (current != null && !(current instanceof LongEntry) && (current instanceof HashEntry
+                || current instanceof SortedSetEntry || current instanceof StreamEntry || !LongEntry.isIntegral(current.getValue()))) {
+            throw new IllegalArgumentException("Value of key '" + key + "' is not an integer.");
+        }
+        while (true) {
+            HotCounter counter = hotCounters.get(key);
+            if (counter == null) {
+                counter = hotCounters.computeIfAbsent(key, k -> new HotCounter());
+            }
+            if (counter.add(delta)) {
+                return;
+            }
+            // Retired meanwhile: take the amount back, which the drain after the retirement stores with it, and retry.
+            counter.add(-delta);
+            hotCounters.remove(key, counter);
+        }
+    }
+
+    /**
+     * Atomically adds to a numeric value, turning integers into floating-point values.
+     * A missing key counts as zero, and the time to live of an existing entry is kept.
+     * Atomic under the key's lock, like {@link #incrementBy}.
+     *
+     * @param key   The key of the entry.
+     * @param delta The amount to add.
+     * @return The value after the addition.
+     * @throws IllegalArgumentException If the current value is not a number.
+     */
+    public double add(String key, double delta) {
+        double[] result = new double[1];
+        long[] version = new long[1];
+        compute(key, (k, existing) -> {
+            DataEntry current = live(existing);
+            result[0] = current == null ? delta : numericValue(current) + delta;
+            DataEntry updated = retain(current, new DoubleEntry(k, result[0]));
+            version[0] = stamp(updated);
+            return updated;
+        }, existing -> {
+            if (!(existing instanceof DoubleEntry gauge)) {
+                return false;
+            }
+            result[0] = gauge.getDouble() + delta;
+            gauge.setDouble(result[0]);
+            version[0] = stamp(gauge);
+            return true;
+        });
+        savePolicy.recordChanges(1);
+        if (!subscribers.isEmpty()) {
+            notifySubscribers(withVersion(new DoubleEntry(key, result[0]), version[0]));
+        }
+        evictIfNeeded(key);
+        return result[0];
+    }
+
+    /**
+     * Atomically stores a value and returns the one it replaced, under the key's lock
+     * like {@link #incrementBy}.
+     *
+     * @param key   The key of the entry.
+     * @param value The new value.
+     * @return The previous entry, or null if the key was absent.
+     */
+    public DataEntry getAndSet(String key, Object value) {
+        DataEntry[] previous = new DataEntry[1];
+        DataEntry entry = compute(key, (k, existing) -> {
+            DataEntry current = live(existing);
+            previous[0] = current != null ? current.detach() : null;
+            return DataEntry.of(k, value);
+        }, existing -> {
+            DataEntry before = existing.detach();
+            if (!existing.assign(value)) {
+                return false;
+            }
+            previous[0] = before;
+            return true;
+        });
+        track(entry);
+        savePolicy.recordChanges(1);
+        notifySubscribers(entry);
+        evictIfNeeded(key);
+        return previous[0];
+    }
+
+    /**
+     * Atomically stores a value if the current one equals the expected value; the
+     * comparison and the write run under the key's lock like {@link #incrementBy}.
+     * Numbers are compared by value, so 5 matches 5.0.
+     *
+     * @param key      The key of the entry.
+     * @param expected The expected value, or null if the key must be absent.
+     * @param value    The new value.
+     * @return Whether the value was stored.
+     */
+    public boolean compareAndSet(String key, Object expected, Object value) {
+        boolean[] swapped = new boolean[1];
+        DataEntry entry = compute(key, (k, existing) -> {
+            if (!matches(live(existing), expected)) {
+                return existing;
+            }
+            swapped[0] = true;
+            return DataEntry.of(k, value);
+        }, existing -> {
+            if (!matches(existing, expected) || !existing.assign(value)) {
+                return false;
+            }
+            swapped[0] = true;
+            return true;
+        });
+        if (swapped[0]) {
+            track(entry);
+            savePolicy.recordChanges(1);
+            notifySubscribers(entry);
+            evictIfNeeded(key);
+        }
+        return swapped[0];
+    }
+
+    /**
+     * Stores fields of a hash, creating the hash if the key is absent. On the memory engine
+     * a hash without a time to live is changed in place, so the cost of a write does not
+     * grow with the size of the hash. The LSM engine rewrites the whole hash instead.
+     * Either way subscribers receive only the changed fields.
+     *
+     * @param key    The key of the hash.
+     * @param fields The fields to store; values must be strings, numbers or booleans.
+     * @return The version of the written hash.
+     * @throws IllegalArgumentException If there are no fields, a value is not supported or the key holds another type.
+     */
+    public long hset(String key, Map<String, ?> fields) {
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("At least one field is required.");
+        }
+        Map<String, Object> changes = new HashMap<>(fields);
+        for (Map.Entry<String, Object> field : changes.entrySet()) {
+            if (field.getKey() == null || !HashEntry.isFieldValue(field.getValue())) {
+                throw new IllegalArgumentException("Unsupported value for field '" + field.getKey() + "'.");
+            }
+        }
+
+        long[] version = new long[1];
+        DataEntry entry = computeDelta(key, (k, existing) -> {
+            DataEntry updated = HashEntry.withChanges(k, live(existing), changes);
+            version[0] = stamp(updated);
+            return updated;
+        }, existing -> {
+            if (!(existing instanceof HashEntry hash)) {
+                return null;
+            }
+            hash.apply(changes);
+            version[0] = stamp(hash);
+            return changes;
+        });
+        track(entry);
+        savePolicy.recordChanges(1);
+        notifySubscribers(new HashChangeEntry(key, changes, version[0]));
+        evictIfNeeded(key);
+        return version[0];
+    }
+
+    /**
+     * Removes fields of a hash. The key is removed together with its last field.
+     *
+     * @param key    The key of the hash.
+     * @param fields The names of the fields to remove.
+     * @return Number of removed fields.
+     * @throws IllegalArgumentException If the key holds another type.
+     */
+    public int hdel(String key, Collection<String> fields) {
+        Map<String, Object> changes = new HashMap<>();
+        long[] version = new long[1];
+        DataEntry entry = computeDelta(key, (k, existing) -> {
+            DataEntry current = live(existing);
+            collectRemovals(HashEntry.fieldsOf(current), fields, changes);
+            if (changes.isEmpty()) {
+                return existing;
+            }
+            DataEntry updated = HashEntry.withChanges(k, current, changes);
+            version[0] = updated != null ? stamp(updated) : versions.next();
+            return updated;
+        }, existing -> {
+            if (!(existing instanceof HashEntry hash)) {
+                return null;
+            }
+            collectRemovals(hash.getFields(), fields, changes);
+            if (changes.isEmpty() || changes.size() == hash.size()) {
+                // Nothing to remove, or the key goes with its last field.
+                return null;
+            }
+            hash.apply(changes);
+            version[0] = stamp(hash);
+            return changes;
+        });
+        if (changes.isEmpty()) {
+            return 0;
+        }
+        savePolicy.recordChanges(1);
+        notifySubscribers(entry != null ? new HashChangeEntry(key, changes, version[0]) : DataEntry.removed(key, version[0]));
+        return changes.size();
+    }
+
+    /**
+     * Sets the scores of members of a sorted set, adding missing members and creating the
+     * set if the key is absent. On the memory engine a sorted set without a time to live is
+     * changed in place, so the cost of a write grows only logarithmically with its size. The
+     * LSM engine rewrites the whole set instead. Subscribers receive only the changed scores.
+     *
+     * @param key    The key of the sorted set.
+     * @param scores The scores by member.
+     * @return The version of the written sorted set.
+     * @throws IllegalArgumentException If there are no members, a score is not finite or the key holds another type.
+     */
+    public long zadd(String key, Map<String, Double> scores) {
+        if (scores.isEmpty()) {
+            throw new IllegalArgumentException("At least one member is required.");
+        }
+        Map<String, Double> changes = new HashMap<>(scores);
+        for (Map.Entry<String, Double> score : changes.entrySet()) {
+            if (score.getKey() == null || score.getValue() == null || !SortedSetEntry.isScore(score.getValue())) {
+                throw new IllegalArgumentException("Unsupported score for member '" + score.getKey() + "'.");
+            }
+        }
+
+        long[] version = new long[1];
+        DataEntry entry = computeDelta(key, (k, existing) -> {
+            DataEntry updated = SortedSetEntry.withChanges(k, live(existing), changes);
+            version[0] = stamp(updated);
+            return updated;
+        }, existing -> {
+            if (!(existing instanceof SortedSetEntry sortedSet)) {
+                return null;
+            }
+            sortedSet.apply(changes);
+            version[0] = stamp(sortedSet);
+            return SortedSetEntry.valueOf(changes);
+        });
+        track(entry);
+        savePolicy.recordChanges(1);
+        notifySubscribers(new ScoreChangeEntry(key, changes, version[0]));
+        evictIfNeeded(key);
+        return version[0];
+    }
+
+    /**
+     * Atomically adds to the score of a member of a sorted set. A missing member counts
+     * as zero, and a missing key as an empty sorted set.
+     *
+     * @param key    The key of the sorted set.
+     * @param member The member.
+     * @param delta  The amount to add, negative to subtract.
+     * @return The score after the addition.
+     * @throws IllegalArgumentException If the result is not finite or the key holds another type.
+     */
+    public double zincrby(String key, String member, double delta) {
+        double[] result = new double[1];
+        long[] version = new long[1];
+        DataEntry entry = computeDelta(key, (k, existing) -> {
+            DataEntry current = live(existing);
+            SortedSetEntry sortedSet = SortedSetEntry.sortedSetOf(current);
+            result[0] = incrementedScore(sortedSet, member, delta);
+            DataEntry updated = SortedSetEntry.withChanges(k, current, Map.of(member, result[0]));
+            version[0] = stamp(updated);
+            return updated;
+        }, existing -> {
+            if (!(existing instanceof SortedSetEntry sortedSet)) {
+                return null;
+            }
+            result[0] = incrementedScore(sortedSet, member, delta);
+            Map<String, Double> change = Map.of(member, result[0]);
+            sortedSet.apply(change);
+            version[0] = stamp(sortedSet);
+            return SortedSetEntry.valueOf(change);
+        });
+        track(entry);
+        savePolicy.recordChanges(1);
+        notifySubscribers(new ScoreChangeEntry(key, Map.of(member, result[0]), version[0]));
+        evictIfNeeded(key);
+        return result[0];
+    }
+
+    /**
+     * Appends an event to a stream, creating the stream if the key is absent. The event gets
+     * an ID above every earlier one, taken from the current time. A stream without a time
+     * to live is appended to in place, and subscribers receive only the appended event.
+     *
+     * @param key       The key of the stream.
+     * @param fields    The fields of the event.
+     * @param maxLength The new cap on the number of events, 0 for no limit, or null to keep the current one.
+     * @param maxAge    The new cap on the age of events in millis, 0 for no limit, or null to keep the current one.
+     * @return The ID of the event.
+     * @throws IllegalArgumentException If there are no fields, a value is unsupported, a cap is negative or the key holds another type.
+     */
+    public StreamId xadd(String key, Map<String, ?> fields, Long maxLength, Long maxAge) {
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("At least one field is required.");
+        }
+        Map<String, Object> event = new LinkedHashMap<>(fields);
+        for (Map.Entry<String, Object> field : event.entrySet()) {
+            if (field.getKey() == null || !HashEntry.isFieldValue(field.getValue())) {
+                throw new IllegalArgumentException("Unsupported value for field '" + field.getKey() + "'.");
+            }
+        }
+        if ((maxLength != null && maxLength < 0) || (maxAge != null && maxAge < 0)) {
+            throw new IllegalArgumentException("Stream caps must not be negative.");
+        }
+        Map<String, Object> frozen = Collections.unmodifiableMap(event);
+
+        StreamEvent[] appended = new StreamEvent[1];
+        long[] version = new long[1];
+        DataEntry entry = computeDelta(key, (k, existing) -> {
+            DataEntry current = live(existing);
+            StreamValue change = appendedValue(StreamEntry.streamOf(current), frozen, maxLength, maxAge);
+            appended[0] = change.events().get(0);
+            DataEntry updated = StreamEntry.withAppended(k, current, change);
+            version[0] = stamp(updated);
+            return updated;
+        }, existing -> {
+            if (!(existing instanceof StreamEntry stream)) {
+                return null;
+            }
+            StreamValue change = appendedValue(stream, frozen, maxLength, maxAge);
+            appended[0] = change.events().get(0);
+            stream.apply(change);
+            version[0] = stamp(stream);
+            return change;
+        });
+        track(entry);
+        savePolicy.recordChanges(1);
+        notifySubscribers(new StreamAppendEntry(key, appended[0], version[0]));
+        wakeStreamReaders(key);
+        evictIfNeeded(key);
+        return appended[0].id();
+    }
+
+    /**
+     * Reads the events of a stream after a cursor, waiting for the next append if there are none yet.
+     *
+     * @param key         The key of the stream.
+     * @param after       The ID of the last event already read, or null to read only events appended from now on.
+     * @param limit       Maximum number of events.
+     * @param blockMillis How long to wait for an append, 0 to answer at once.
+     * @return The events in ID order, completed with none if the wait times out; cancelling it stops the wait.
+     * @throws IllegalArgumentException If the key holds another type.
+     */
+    public CompletableFuture<List<StreamEvent>> xread(String key, StreamId after, int limit, long blockMillis) {
+        StreamEntry stream = StreamEntry.streamOf(get(key));
+        StreamId cursor = after != null ? after : stream != null ? stream.getLastId() : StreamId.MIN;
+        List<StreamEvent> events = readStream(stream, cursor, limit);
+        if (!events.isEmpty() || blockMillis <= 0) {
+            return CompletableFuture.completedFuture(events);
+        }
+
+        StreamReader reader = new StreamReader(cursor, limit, new CompletableFuture<>());
+        streamReaders.compute(key, (k, readers) -> {
+            Set<StreamReader> registered = readers != null ? readers : ConcurrentHashMap.newKeySet();
+            registered.add(reader);
+            return registered;
+        });
+        reader.events().whenComplete((result, error) -> streamReaders.computeIfPresent(key, (k, readers) -> {
+            readers.remove(reader);
+            return readers.isEmpty() ? null : readers;
+        }));
+        // An append between the first read and the registration would not wake this reader.
+        wakeStreamReader(key, reader);
+        reader.events().completeOnTimeout(List.of(), blockMillis, TimeUnit.MILLISECONDS);
+        return reader.events();
+    }
+
+    /**
+     * Retrieves an entry by key. Reading one key takes no lock: the engine returns the entry
+     * from before or after a transaction writing it, never a mix.
      *
      * @param key The key of the entry.
      * @return The DataEntry or null if not found.
      */
     public DataEntry get(String key) {
-        return dataMap.get(key);
+        HotCounter counter = hotCounters.isEmpty() ? null : hotCounters.get(key);
+        if (counter != null) {
+            return counter.read(key, () -> live(engine.get(key)));
+        }
+        return live(engine.get(key));
+    }
+
+    /**
+     * Retrieves several entries in one call. The stripes of the keys are held shared while
+     * they are read, so a transaction on some of the keys is seen completely or not at all.
+     *
+     * @param keys The keys to look up.
+     * @return The found entries by key, in the order of the keys; missing keys are left out.
+     */
+    public Map<String, DataEntry> getAll(Collection<String> keys) {
+        Map<String, DataEntry> found = new LinkedHashMap<>();
+        try (KeyLocks.Held ignored = keyLocks.lockShared(keys)) {
+            for (String key : keys) {
+                DataEntry entry = get(key);
+                if (entry != null) {
+                    found.put(key, entry);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Adds or updates several entries as one batch. Every entry is stored atomically on its
+     * own, and subscribers receive the whole batch as one group.
+     *
+     * @param entries The values by key; an {@link ExpiringValue} gives its entry a time to live.
+     */
+    public void putAll(Map<String, ?> entries) {
+        List<DataEntry> changed = new ArrayList<>(entries.size());
+        List<DataEntry> evicted = new ArrayList<>();
+        entries.forEach((key, value) -> {
+            DataEntry entry = compute(key, (k, existing) -> DataEntry.of(k, value), existing -> existing.assign(value));
+            track(entry);
+            changed.add(entry);
+            evicted.addAll(engine.evict(key, this::tryWithKey));
+        });
+        savePolicy.recordChanges(changed.size());
+        notifySubscribers(changed);
+        notifyEvicted(evicted);
+    }
+
+    /**
+     * Removes several entries as one batch; subscribers receive the removals as one group.
+     * Entries that already expired are left to the expiry, which announces them itself.
+     *
+     * @param keys The keys to remove.
+     * @return The number of removed entries, which equals the number of announced removals.
+     */
+    public int removeAll(Collection<String> keys) {
+        List<DataEntry> removed = new ArrayList<>();
+        for (String key : keys) {
+            DataEntry[] removal = new DataEntry[1];
+            compute(key, (k, existing) -> {
+                if (live(existing) == null) {
+                    return existing;
+                }
+                removal[0] = DataEntry.removed(k, versions.next());
+                return null;
+            });
+            if (removal[0] != null) {
+                removed.add(removal[0]);
+            }
+        }
+        savePolicy.recordChanges(removed.size());
+        notifySubscribers(removed);
+        return removed.size();
+    }
+
+    /**
+     * Runs several operations as one transaction. All version checks are made against the
+     * state before the transaction, and either every operation is applied or none is.
+     * Other writers to the same keys wait until the transaction is done, and subscribers
+     * receive its changes as one group. The operations are logged as one group as well,
+     * and the engine keeps a checkpoint from splitting them, so after a crash recovery
+     * restores all of them or none. {@link #getAll} sees the transaction whole; a scan
+     * takes no locks and may see part of it.
+     *
+     * @param operations The operations, applied in order; a key may appear more than once.
+     * @return The new version of every written or removed key, or null if a version did
+     * not match and nothing was applied.
+     */
+    public Map<String, Long> transact(List<TransactionOperation> operations) {
+        List<String> keys = new ArrayList<>(operations.size());
+        for (TransactionOperation operation : operations) {
+            keys.add(operation.getKey());
+        }
+
+        Map<String, Long> written = new LinkedHashMap<>();
+        List<DataEntry> changed = new ArrayList<>(operations.size());
+        KeyLocks.Held locks = keyLocks.lockExclusive(keys);
+        try {
+            for (TransactionOperation operation : operations) {
+                Long expected = operation.getExpectedVersion();
+                if (expected != null && !isAtVersion(live(engine.get(operation.getKey())), expected)) {
+                    return null;
+                }
+            }
+            engine.writeAtomically(() -> applyTransaction(operations, written, changed));
+        } finally {
+            locks.close();
+        }
+
+        savePolicy.recordChanges(changed.size());
+        notifySubscribers(changed);
+        for (TransactionOperation operation : operations) {
+            if (operation.getType() == TransactionOperation.Type.PUT) {
+                evictIfNeeded(operation.getKey());
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Applies the operations of a transaction whose keys are locked and whose versions matched.
+     *
+     * @param operations The operations.
+     * @param written    Receives the new version of every written or removed key.
+     * @param changed    Receives the changed entries.
+     */
+    private void applyTransaction(List<TransactionOperation> operations, Map<String, Long> written, List<DataEntry> changed) {
+        for (TransactionOperation operation : operations) {
+            DataEntry change = switch (operation.getType()) {
+                case PUT -> engine.compute(operation.getKey(), (k, existing) -> {
+                    DataEntry created = DataEntry.of(k, operation.getValue());
+                    stamp(created);
+                    return created;
+                });
+                case REMOVE -> {
+                    DataEntry[] removed = new DataEntry[1];
+                    engine.compute(operation.getKey(), (k, existing) -> {
+                        removed[0] = existing != null ? DataEntry.removed(k, versions.next()) : null;
+                        return null;
+                    });
+                    yield removed[0];
+                }
+                case CHECK -> null;
+            };
+            if (change != null) {
+                track(change);
+                written.put(change.getKey(), change.getVersion());
+                changed.add(change);
+            }
+        }
+    }
+
+    /**
+     * Lists one page of entries in key order. Prefix and start/end bounds are combined,
+     * and the cursor of a previous page continues right after its last key.
+     *
+     * @param prefix Only keys starting with this prefix, or null.
+     * @param start  The lowest key, inclusive, or null.
+     * @param end    The key the range ends before, or null.
+     * @param cursor The cursor of the previous page, or null for the first page.
+     * @param limit  Maximum number of entries in the page.
+     * @return The page, whose cursor is null once the range is exhausted. Expired entries
+     * are left out, so a page may hold fewer entries than the limit.
+     * @throws UnsupportedOperationException If the storage engine keeps no ordered index.
+     */
+    public ScanPage scan(String prefix, String start, String end, String cursor, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Scan limit must be positive.");
+        }
+        String from = maxKey(start, prefix);
+        String to = minKey(end, prefix != null ? prefixEnd(prefix) : null);
+        boolean inclusive = true;
+        if (cursor != null && (from == null || cursor.compareTo(from) >= 0)) {
+            from = cursor;
+            inclusive = false;
+        }
+        if (from != null && to != null && from.compareTo(to) >= 0) {
+            return new ScanPage(List.of(), null);
+        }
+
+        // One entry more than asked tells whether another page follows.
+        List<DataEntry> entries = engine.scan(from, inclusive, to, limit == Integer.MAX_VALUE ? limit : limit + 1);
+        String next = null;
+        if (entries.size() > limit) {
+            entries = entries.subList(0, limit);
+            next = entries.get(limit - 1).getKey();
+        }
+        long now = System.currentTimeMillis();
+        List<DataEntry> page = new ArrayList<>(entries.size());
+        for (DataEntry entry : entries) {
+            if (!entry.isExpired(now)) {
+                page.add(entry);
+            }
+        }
+        return new ScanPage(page, next);
+    }
+
+    /**
+     * Reports the eviction limits and how often reads found their key.
+     *
+     * @return The eviction statistics, or null if the storage engine has no limits.
+     */
+    public EvictionStats getEvictionStats() {
+        return engine.getEvictionStats();
+    }
+
+    /**
+     * Waits for the writes acknowledged so far to reach the disk. Writes are acknowledged
+     * once they are queued for the write-ahead log, so a crash may lose the last of them;
+     * a caller that must not lose a write waits for this. Hot counter increments not yet
+     * stored are stored first, on the calling thread once the store is shutting down.
+     *
+     * @return Future completed once the writes are durable, or completed exceptionally if the log failed or is closed.
+     */
+    public CompletableFuture<Void> sync() {
+        CompletableFuture<Void> drained;
+        try {
+            drained = CompletableFuture.runAsync(this::drainHotCounters, hotCounterExecutor);
+        } catch (RejectedExecutionException e) {
+            drainHotCounters();
+            drained = CompletableFuture.completedFuture(null);
+        }
+        return drained.thenCompose(ignored -> engine.sync());
     }
 
     /**
      * Retrieves all data as a map.
      *
-     * @return A copy of all key-value pairs.
+     * @return A copy of all key-value pairs, without expired entries.
      */
     public Map<String, DataEntry> getAllData() {
-        return new ConcurrentHashMap<>(dataMap);
+        Map<String, DataEntry> copy = engine.copy();
+        long now = System.currentTimeMillis();
+        copy.values().removeIf(entry -> entry.isExpired(now));
+        return copy;
     }
 
     /**
      * Removes an entry by key.
      *
      * @param key The key of the entry.
-     * @return The removed DataEntry or null if not found.
+     * @return The removed DataEntry or null if not found or expired.
      */
     public DataEntry remove(String key) {
-        DataEntry removed = dataMap.remove(key);
+        DataEntry[] removedHolder = new DataEntry[2];
+        compute(key, (k, existing) -> {
+            removedHolder[0] = existing;
+            removedHolder[1] = existing != null ? DataEntry.removed(k, versions.next()) : null;
+            return null;
+        });
+
+        DataEntry removed = removedHolder[0];
         if (removed != null) {
-            notifySubscribers(new DataEntry(key, null));
+            savePolicy.recordChanges(1);
+            notifySubscribers(removedHolder[1]);
+        }
+        return live(removed);
+    }
+
+    /**
+     * Removes an entry only if the key is still at the version the caller last saw.
+     *
+     * @param key             The key of the entry.
+     * @param expectedVersion The current version of the key.
+     * @return Whether the entry was removed.
+     */
+    public boolean removeIfVersion(String key, long expectedVersion) {
+        DataEntry[] removed = new DataEntry[1];
+        compute(key, (k, existing) -> {
+            DataEntry current = live(existing);
+            if (current == null || !isAtVersion(current, expectedVersion)) {
+                return existing;
+            }
+            removed[0] = DataEntry.removed(k, versions.next());
+            return null;
+        });
+        if (removed[0] == null) {
+            return false;
         }
-        return removed;
+        savePolicy.recordChanges(1);
+        notifySubscribers(removed[0]);
+        return true;
     }
 
     /**
      * Clears all entries in the store.
      */
     public void clear() {
-        dataMap.clear();
+        engine.clear();
+        savePolicy.recordChanges(1);
     }
 
     /**
-     * Subscribes to updates.
+     * Subscribes to updates. The changes of a transaction or a batch arrive one by one.
      *
      * @param subscriber The subscriber.
      */
     public void subscribe(Consumer<DataEntry> subscriber) {
-        subscribers.add(subscriber);
+        subscribe(subscriber, changes -> changes.forEach(subscriber));
+    }
+
+    /**
+     * Subscribes to updates, receiving the changes of every transaction or batch, such as
+     * {@link #putAll} and {@link #removeAll}, as one list.
+     *
+     * @param subscriber      Receives every other change.
+     * @param groupSubscriber Receives the changes of a transaction or a batch.
+     */
+    public void subscribe(Consumer<DataEntry> subscriber, Consumer<List<DataEntry>> groupSubscriber) {
+        subscribers.add(new Subscriber(subscriber, groupSubscriber));
     }
 
     /**
@@ -146,7 +1034,328 @@ public class DataStore {
      * @param subscriber The subscriber.
      */
     public void unsubscribe(Consumer<DataEntry> subscriber) {
-        subscribers.remove(subscriber);
+        subscribers.removeIf(registered -> registered.entries().equals(subscriber));
+    }
+
+    /**
+     * Runs an action on one key unless a transaction holds it, without waiting, so evictions
+     * never remove a key in the middle of a transaction.
+     *
+     * @param key    The key.
+     * @param action The action.
+     * @return false if a transaction held the key and the action did not run.
+     */
+    private boolean tryWithKey(String key, Runnable action) {
+        long stamp = keyLocks.tryLockShared(key);
+        if (stamp == 0) {
+            return false;
+        }
+        try {
+            action.run();
+            return true;
+        } finally {
+            keyLocks.unlockShared(key, stamp);
+        }
+    }
+
+    /**
+     * Applies an update to one key while no transaction holds it.
+     */
+    private DataEntry compute(String key, StorageEngine.Update update) {
+        long stamp = keyLocks.lockShared(key);
+        try {
+            return engine.compute(key, update);
+        } finally {
+            keyLocks.unlockShared(key, stamp);
+        }
+    }
+
+    /**
+     * Applies an update, possibly in place, to one key while no transaction holds it.
+     */
+    private DataEntry compute(String key, StorageEngine.Update update, StorageEngine.InPlaceUpdate inPlace) {
+        long stamp = keyLocks.lockShared(key);
+        try {
+            return engine.compute(key, update, inPlace);
+        } finally {
+            keyLocks.unlockShared(key, stamp);
+        }
+    }
+
+    /**
+     * Applies an update, possibly to part of the entry in place, to one key while no transaction holds it.
+     */
+    private DataEntry computeDelta(String key, StorageEngine.Update update, StorageEngine.DeltaUpdate inPlace) {
+        long stamp = keyLocks.lockShared(key);
+        try {
+            return engine.computeDelta(key, update, inPlace);
+        } finally {
+            keyLocks.unlockShared(key, stamp);
+        }
+    }
+
+    /**
+     * Stores the increments of every hot counter and retires the counters that stayed idle.
+     * Runs on the hot counter thread, or on a caller once that thread is stopped, one at a time.
+     */
+    private synchronized void drainHotCounters() {
+        try {
+            retiredHotCounters.forEach(this::drainHotCounter);
+            retiredHotCounters.clear();
+            long idleDrains = Math.max(1, HOT_COUNTER_IDLE_MILLIS / hotCounterInterval);
+            hotCounters.forEach((key, counter) -> {
+                drainHotCounter(key, counter);
+                if (counter.getIdleDrains() >= idleDrains) {
+                    counter.retire();
+                    hotCounters.remove(key, counter);
+                    drainHotCounter(key, counter);
+                    retiredHotCounters.put(key, counter);
+                }
+            });
+        } catch (Exception e) {
+            log.error("Error storing hot counters of keyspace '{}'", keyspace, e);
+        }
+    }
+
+    private void drainHotCounter(String key, HotCounter counter) {
+        counter.drain(sum -> {
+            try {
+                incrementBy(key, sum);
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                log.warn("Dropped {} from hot counter '{}': {}", sum, key, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Builds the logged append of one event, keeping the caps the caller leaves unset.
+     *
+     * @param stream    The stream, or null if absent.
+     * @param fields    The fields of the event.
+     * @param maxLength The new length cap, or null.
+     * @param maxAge    The new age cap, or null.
+     * @return The append.
+     */
+    private static StreamValue appendedValue(StreamEntry stream, Map<String, Object> fields, Long maxLength, Long maxAge) {
+        StreamId id = StreamEntry.nextId(stream, System.currentTimeMillis());
+        long length = maxLength != null ? maxLength : stream != null ? stream.getMaxLength() : 0;
+        long age = maxAge != null ? maxAge : stream != null ? stream.getMaxAge() : 0;
+        return new StreamValue(id, length, age, List.of(new StreamEvent(id, fields)));
+    }
+
+    private static List<StreamEvent> readStream(StreamEntry stream, StreamId after, int limit) {
+        if (stream == null || after.equals(StreamId.MAX)) {
+            return List.of();
+        }
+        return stream.range(after.next(), StreamId.MAX, limit, System.currentTimeMillis());
+    }
+
+    /**
+     * Completes the blocked reads of a stream that an append has given events, off the writer's thread.
+     *
+     * @param key The key of the stream.
+     */
+    private void wakeStreamReaders(String key) {
+        Set<StreamReader> readers = streamReaders.get(key);
+        if (readers == null) {
+            return;
+        }
+        subscriberExecutor.execute(() -> readers.forEach(reader -> wakeStreamReader(key, reader)));
+    }
+
+    private void wakeStreamReader(String key, StreamReader reader) {
+        if (reader.events().isDone()) {
+            return;
+        }
+        try {
+            List<StreamEvent> events = readStream(StreamEntry.streamOf(get(key)), reader.after(), reader.limit());
+            if (!events.isEmpty()) {
+                reader.events().complete(events);
+            }
+        } catch (IllegalArgumentException e) {
+            reader.events().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Computes the score of a member after an increment.
+     *
+     * @param sortedSet The sorted set, or null if absent.
+     * @param member    The member.
+     * @param delta     The amount to add.
+     * @return The new score.
+     * @throws IllegalArgumentException If the result is not finite.
+     */
+    private static double incrementedScore(SortedSetEntry sortedSet, String member, double delta) {
+        Double current = sortedSet != null ? sortedSet.getScore(member) : null;
+        double score = (current != null ? current : 0) + delta;
+        if (!SortedSetEntry.isScore(score)) {
+            throw new IllegalArgumentException("Score of member '" + member + "' would not be finite.");
+        }
+        return score;
+    }
+
+    /**
+     * Collects the fields of a hash that a removal finds.
+     *
+     * @param stored  The fields of the hash, or null if absent.
+     * @param fields  The fields to remove.
+     * @param changes Receives every found field mapped to null; cleared first.
+     */
+    private static void collectRemovals(Map<String, Object> stored, Collection<String> fields, Map<String, Object> changes) {
+        changes.clear();
+        if (stored == null) {
+            return;
+        }
+        for (String field : fields) {
+            if (stored.containsKey(field)) {
+                changes.put(field, null);
+            }
+        }
+    }
+
+    /**
+     * Returns the smallest key that does not start with a prefix but follows all keys that do.
+     *
+     * @param prefix The prefix.
+     * @return The exclusive upper bound, or null if no key follows the prefixed ones.
+     */
+    private static String prefixEnd(String prefix) {
+        for (int i = prefix.length() - 1; i >= 0; i--) {
+            char c = prefix.charAt(i);
+            if (c != Character.MAX_VALUE) {
+                return prefix.substring(0, i) + (char) (c + 1);
+            }
+        }
+        return null;
+    }
+
+    private static String maxKey(String a, String b) {
+        return a == null ? b : b == null ? a : a.compareTo(b) >= 0 ? a : b;
+    }
+
+    private static String minKey(String a, String b) {
+        return a == null ? b : b == null ? a : a.compareTo(b) <= 0 ? a : b;
+    }
+
+    /**
+     * Hides an entry whose time to live has passed but which the expiry has not removed yet.
+     *
+     * @param entry The entry, or null.
+     * @return The entry, or null if absent or expired.
+     */
+    private static DataEntry live(DataEntry entry) {
+        return entry instanceof ExpiringEntry expiring && expiring.isExpired(System.currentTimeMillis()) ? null : entry;
+    }
+
+    /**
+     * Gives an entry written by this store the next version, so the caller knows it exactly
+     * even if another write changes the entry right after.
+     *
+     * @param entry The new or changed entry.
+     * @return The version.
+     */
+    private long stamp(DataEntry entry) {
+        long version = versions.next();
+        entry.setVersion(version);
+        return version;
+    }
+
+    private static DataEntry withVersion(DataEntry entry, long version) {
+        entry.setVersion(version);
+        return entry;
+    }
+
+    /**
+     * Checks the precondition of a conditional write.
+     *
+     * @param current         The live entry, or null.
+     * @param expectedVersion The expected version, 0 for an absent key.
+     * @return Whether the key is at the expected version.
+     */
+    private static boolean isAtVersion(DataEntry current, long expectedVersion) {
+        if (expectedVersion == 0) {
+            return current == null;
+        }
+        return current != null && current.getVersion() == expectedVersion;
+    }
+
+    /**
+     * Carries the time to live of the current entry over to the entry replacing it.
+     *
+     * @param current The current entry, or null.
+     * @param updated The new entry.
+     * @return The new entry, with the expiry of the current one if it has a time to live.
+     */
+    private static DataEntry retain(DataEntry current, DataEntry updated) {
+        if (current instanceof ExpiringEntry expiring) {
+            return new ExpiringEntry(updated.getKey(), updated.getValue(), expiring.getExpiresAt());
+        }
+        return updated;
+    }
+
+    /**
+     * Reads the value of an entry holding an integer.
+     *
+     * @param entry The entry.
+     * @return The value.
+     * @throws IllegalArgumentException If the entry holds another type.
+     */
+    private static long integerValue(DataEntry entry) {
+        if (entry instanceof LongEntry counter) {
+            return counter.getLong();
+        }
+        if (LongEntry.isIntegral(entry.getValue())) {
+            return ((Number) entry.getValue()).longValue();
+        }
+        throw new IllegalArgumentException("Value of key '" + entry.getKey() + "' is not an integer.");
+    }
+
+    /**
+     * Reads the value of a numeric entry as a double.
+     *
+     * @param entry The entry.
+     * @return The value.
+     * @throws IllegalArgumentException If the entry holds no number.
+     */
+    private static double numericValue(DataEntry entry) {
+        if (entry instanceof LongEntry counter) {
+            return counter.getLong();
+        }
+        if (entry instanceof DoubleEntry gauge) {
+            return gauge.getDouble();
+        }
+        if (entry.getValue() instanceof Number number) {
+            return number.doubleValue();
+        }
+        throw new IllegalArgumentException("Value of key '" + entry.getKey() + "' is not a number.");
+    }
+
+    /**
+     * Compares the current value of a key with an expected one, numbers by value.
+     *
+     * @param entry    The current entry, or null.
+     * @param expected The expected value, or null for an absent key.
+     * @return Whether they match.
+     */
+    private static boolean matches(DataEntry entry, Object expected) {
+        if (entry == null || expected == null) {
+            return entry == null && expected == null;
+        }
+        if (expected instanceof Number number) {
+            if (entry instanceof LongEntry counter && LongEntry.isIntegral(number)) {
+                return counter.getLong() == number.longValue();
+            }
+            if (entry instanceof DoubleEntry || entry.getValue() instanceof Number) {
+                Object value = entry.getValue();
+                if (LongEntry.isIntegral(value) && LongEntry.isIntegral(number)) {
+                    return ((Number) value).longValue() == number.longValue();
+                }
+                return numericValue(entry) == number.doubleValue();
+            }
+            return false;
+        }
+        return expected.equals(entry.getValue());
     }
 
     /**
@@ -155,15 +1364,17 @@ public class DataStore {
      * @param entry The changed entry.
      */
     private void notifySubscribers(DataEntry entry) {
-        if (entry == null) {
+        if (entry == null || subscribers.isEmpty()) {
             return;
         }
 
-        for (Consumer<DataEntry> subscriber : subscribers) {
+        // Typed entries may change in place before the subscribers run.
+        DataEntry detached = entry.detach();
+        for (Subscriber subscriber : subscribers) {
             subscriberExecutor.submit(() -> {
                 try {
-                    log.info("Notifying subscriber: {}", subscriber);
-                    subscriber.accept(entry);
+                    log.info("Notifying subscriber: {}", subscriber.entries());
+                    subscriber.entries().accept(detached);
                 } catch (Exception e) {
                     log.warn("Error notifying subscriber", e);
                 }
@@ -172,62 +1383,188 @@ public class DataStore {
     }
 
     /**
-     * Saves data to disk.
+     * Notifies all subscribers about the changes of a transaction or a batch as one group.
+     *
+     * @param entries The changed entries.
      */
-    private void saveToDisk() {
-        String storageFilePath = getStorageFilePath();
-        try (Writer writer = new BufferedWriter(new FileWriter(storageFilePath))) {
-            gson.toJson(dataMap, writer);
-            log.info("Data successfully saved to disk.");
-        } catch (IOException e) {
-            log.error("Error saving data to disk", e);
+    private void notifySubscribers(List<DataEntry> entries) {
+        if (entries.isEmpty() || subscribers.isEmpty()) {
+            return;
+        }
+
+        List<DataEntry> detached = List.copyOf(detachAll(entries));
+        for (Subscriber subscriber : subscribers) {
+            subscriberExecutor.submit(() -> {
+                try {
+                    log.info("Notifying subscriber about a group of {} entries: {}", detached.size(), subscriber.entries());
+                    subscriber.groups().accept(detached);
+                } catch (Exception e) {
+                    log.warn("Error notifying subscriber", e);
+                }
+            });
+        }
+    }
+
+    private static List<DataEntry> detachAll(List<DataEntry> entries) {
+        List<DataEntry> detached = new ArrayList<>(entries.size());
+        for (DataEntry entry : entries) {
+            detached.add(entry.detach());
         }
+        return detached;
     }
 
     /**
-     * Creates a backup of data on disk.
+     * Evicts entries while the storage engine is over its limits.
+     *
+     * @param candidate The key just written, which the eviction policy may evict itself.
      */
-    private void backupToDisk() {
-        String backupFilePath = getBackupFilePath();
-        try (Writer writer = new BufferedWriter(new FileWriter(backupFilePath))) {
-            gson.toJson(dataMap, writer);
-            log.info("Data backup successfully created.");
-        } catch (IOException e) {
-            log.error("Error creating data backup", e);
-        }
+    private void evictIfNeeded(String candidate) {
+        notifyEvicted(engine.evict(candidate, this::tryWithKey));
     }
 
     /**
-     * Loads data from disk.
+     * Records evicted keys as changes and notifies subscribers about their removal.
+     *
+     * @param evicted The removals of the evicted keys.
      */
-    private void loadFromDisk() {
-        String storageFilePath = getStorageFilePath();
-        File storageFile = new File(storageFilePath);
-        if (!storageFile.exists()) {
-            log.info("Data file not found, starting fresh.");
+    private void notifyEvicted(List<DataEntry> evicted) {
+        if (evicted.isEmpty()) {
             return;
         }
+        savePolicy.recordChanges(evicted.size());
+        notifySubscribers(evicted);
+    }
+
+    /**
+     * Schedules the expiry of an entry with a time to live.
+     *
+     * @param entry The stored entry, or null.
+     */
+    private void track(DataEntry entry) {
+        if (entry instanceof ExpiringEntry expiring) {
+            expiryWheel.schedule(expiring.getKey(), expiring.getExpiresAt());
+        }
+    }
+
+    /**
+     * Schedules the expiries of the stored entries and starts ticking the timing wheel.
+     * The stored entries are read on the expiry thread before its first tick, so startup
+     * does not wait for them; reads hide expired entries in the meantime.
+     */
+    private void startExpiry() {
+        expiryExecutor.execute(() -> {
+            long start = System.currentTimeMillis();
+            engine.forEachExpiring(expiryWheel::schedule);
+            log.info("Scheduled {} expiring entries in {} ms.", expiryWheel.size(), System.currentTimeMillis() - start);
+        });
+        expiryExecutor.scheduleAtFixedRate(this::expireDue, EXPIRY_TICK_MILLIS, EXPIRY_TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Advances the timing wheel and removes the entries whose time to live has passed,
+     * notifying subscribers about the removals as one batch.
+     */
+    private void expireDue() {
+        try {
+            long now = System.currentTimeMillis();
+            List<DataEntry> expired = new ArrayList<>();
+            for (TimingWheel.Timer timer : expiryWheel.advance(now)) {
+                DataEntry removed = expireKey(timer.getKey(), timer.getExpiresAt(), now);
+                if (removed != null) {
+                    expired.add(removed);
+                }
+            }
+            if (!expired.isEmpty()) {
+                savePolicy.recordChanges(expired.size());
+                notifySubscribers(expired);
+            }
+        } catch (Exception e) {
+            // An exception would cancel the periodic task, which must keep running.
+            log.error("Error expiring entries", e);
+        }
+    }
+
+    /**
+     * Removes a key whose timer fired if it still has that expiry.
+     *
+     * @param key       The key.
+     * @param expiresAt The expiry of the timer.
+     * @param now       The current time in epoch millis.
+     * @return The removal of the key, or null if it was not removed.
+     */
+    private DataEntry expireKey(String key, long expiresAt, long now) {
+        // Timers of keys removed, overwritten or given another expiry since are stale.
+        if (!(engine.get(key) instanceof ExpiringEntry current) || current.getExpiresAt() != expiresAt) {
+            return null;
+        }
+        if (!current.isExpired(now)) {
+            // Expiries beyond the span of the wheel fire early and are placed again.
+            expiryWheel.schedule(key, expiresAt);
+            return null;
+        }
 
-        try (Reader reader = new BufferedReader(new FileReader(storageFilePath))) {
-            Map<String, DataEntry> loadedData = gson.fromJson(reader, mapType);
-            if (loadedData != null) {
-                dataMap.putAll(loadedData);
-                log.info("Data successfully loaded from disk.");
+        DataEntry[] removed = new DataEntry[1];
+        compute(key, (k, existing) -> {
+            if (existing == null || !existing.isExpired(now)) {
+                return existing;
             }
-        } catch (IOException e) {
-            log.error("Error loading data from disk", e);
+            removed[0] = DataEntry.removed(k, versions.next());
+            return null;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Saves data to disk as a checkpoint of the storage engine.
+     */
+    private void saveToDisk() {
+        long pending = savePolicy.pendingChanges();
+        long start = System.nanoTime();
+        engine.checkpoint();
+        savePolicy.saved(pending, System.nanoTime() - start);
+    }
+
+    /**
+     * Saves data to disk when a save rule is met.
+     */
+    private void saveIfDue() {
+        if (savePolicy.isDue(savePolicy.pendingChanges())) {
+            saveToDisk();
         }
     }
 
     /**
-     * Starts automatic saving and backup.
+     * Creates a backup generation from the persisted files of the storage engine.
+     */
+    private void backupToDisk() {
+        backedUpSaves = savePolicy.getSaveCount();
+        engine.backup();
+    }
+
+    /**
+     * Creates a backup generation if a snapshot was taken since the last backup.
+     */
+    private void backupIfSaved() {
+        if (savePolicy.getSaveCount() != backedUpSaves) {
+            backupToDisk();
+        }
+    }
+
+    /**
+     * Starts automatic saving and backup. The save rules are checked every second.
      *
-     * @param intervalInSeconds Interval in seconds.
+     * @param saveRules             Rules triggering a snapshot; empty disables automatic saving.
+     * @param backupIntervalSeconds Interval in seconds between backups.
      */
-    private void startAutoSave(long intervalInSeconds) {
-        scheduler.scheduleAtFixedRate(this::saveToDisk, intervalInSeconds, intervalInSeconds, TimeUnit.SECONDS);
-        scheduler.scheduleAtFixedRate(this::backupToDisk, intervalInSeconds * 2, intervalInSeconds * 2, TimeUnit.SECONDS);
-        log.info("Automatic saving and backup started.");
+    private void startAutoSave(List<SaveRule> saveRules, long backupIntervalSeconds) {
+        if (!saveRules.isEmpty()) {
+            scheduler.scheduleWithFixedDelay(this::saveIfDue, 1, 1, TimeUnit.SECONDS);
+        }
+        scheduler.scheduleAtFixedRate(this::backupIfSaved, backupIntervalSeconds, backupIntervalSeconds, TimeUnit.SECONDS);
+        if (engine.getEvictionStats() != null) {
+            scheduler.scheduleAtFixedRate(() -> log.info("Eviction in keyspace '{}': {}", keyspace, engine.getEvictionStats()), 60, 60, TimeUnit.SECONDS);
+        }
+        log.info("Automatic saving of keyspace '{}' started with rules {} and backups every {} seconds.", keyspace, saveRules, backupIntervalSeconds);
     }
 
     /**
@@ -235,6 +1572,13 @@ public class DataStore {
      */
     public void shutdown() {
         try {
+            expiryExecutor.shutdownNow();
+            hotCounterExecutor.shutdown();
+            if (!hotCounterExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                hotCounterExecutor.shutdownNow();
+            }
+            drainHotCounters();
+            streamReaders.values().forEach(readers -> readers.forEach(reader -> reader.events().complete(List.of())));
             scheduler.shutdown();
             if (!scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
                 scheduler.shutdownNow();
@@ -245,31 +1589,35 @@ public class DataStore {
             }
             saveToDisk();
             backupToDisk();
-            log.info("Store successfully shut down.");
+            engine.close();
+            keyspaces.remove(keyspace, this);
+            log.info("Keyspace '{}' successfully shut down.", keyspace);
         } catch (InterruptedException e) {
             log.error("Error shutting down the store", e);
+            expiryExecutor.shutdownNow();
+            hotCounterExecutor.shutdownNow();
             scheduler.shutdownNow();
             subscriberExecutor.shutdownNow();
+            engine.close();
             Thread.currentThread().interrupt();
         }
     }
 
     /**
-     * Gets the full path to the data storage file.
+     * Opens the configured storage engine, which recovers its data from disk.
      *
-     * @return Path to the data storage file.
+     * @param settings Storage and persistence settings.
+     * @return The storage engine.
      */
-    private String getStorageFilePath() {
-        return this.storagePath + "data.json";
-    }
-
-    /**
-     * Gets the full path to the backup file.
-     *
-     * @return Path to the backup file.
-     */
-    private String getBackupFilePath() {
-        return this.backupPath + "data.json.backup";
+    private StorageEngine createEngine(DataStoreSettings settings) {
+        log.info("Opening {} storage engine for keyspace '{}' in {}.", settings.getStorageEngine(), keyspace, storagePath);
+        if (settings.getStorageEngine() != StorageEngineType.MEMORY && (settings.getMaxEntries() > 0 || settings.getMaxMemory() > 0)) {
+            log.warn("Entry and memory limits only apply to the memory engine; the {} engine keeps its entries on disk.", settings.getStorageEngine());
+        }
+        return switch (settings.getStorageEngine()) {
+            case MEMORY -> new MemoryStorageEngine(settings, scheduler, versions);
+            case LSM -> new LsmStorageEngine(settings, versions);
+        };
     }
 
     /**
@@ -295,4 +1643,16 @@ public class DataStore {
     private String ensureTrailingSlash(String path) {
         return path.endsWith("/") || path.endsWith("\\") ? path : path + File.separator;
     }
+
+    /**
+     * A registered subscriber with its handlers for single changes and for groups of them.
+     */
+    private record Subscriber(Consumer<DataEntry> entries, Consumer<List<DataEntry>> groups) {
+    }
+
+    /**
+     * A blocked stream read with the cursor it reads after.
+     */
+    private record StreamReader(StreamId after, int limit, CompletableFuture<List<StreamEvent>> events) {
+    }
 }
@@ -0,0 +1,53 @@
+package me.proo0xy.data;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+/**
+ * DataStoreSettings groups the storage and persistence options of a {@link DataStore}.
+ */
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class DataStoreSettings {
+    // Path to store the data files.
+    String storagePath;
+    // Path to store the backups.
+    String backupPath;
+    // Rules triggering a snapshot after a time if enough changes were made; empty disables automatic saving.
+    List<SaveRule> saveRules;
+    // Interval in seconds between backups; a backup is only taken when a snapshot was saved since the last one.
+    long backupInterval;
+    // Number of backup generations to keep.
+    int backupRetention;
+    // Whether log segments are archived next to the backups for point-in-time restores.
+    boolean pointInTimeRecovery;
+    // Number of hash partitions the snapshot is split into.
+    int snapshotPartitions;
+    // Threads saving, merging and loading partitions.
+    int persistenceThreads;
+    // Bytes of write-ahead log after which the memory engine checkpoints early, bounding recovery replay; 0 disables.
+    long walCheckpointSize;
+    // Whether a write returns only once the write-ahead log forced it to disk; otherwise a crash can lose the records still queued.
+    boolean walSyncWrites;
+    // Whether the memory engine keeps values in direct-memory slabs.
+    boolean offHeapValues;
+    // Engine holding the entries.
+    StorageEngineType storageEngine;
+    // Size in bytes after which the LSM engine flushes its memtable.
+    long memtableSize;
+    // Whether the memory engine keeps a sorted key index for scans; the LSM engine is always ordered.
+    boolean orderedIndex;
+    // Maximum number of entries in the memory engine before it evicts; 0 means no limit.
+    long maxEntries;
+    // Maximum estimated size in bytes of the memory engine's entries before it evicts; 0 means no limit.
+    long maxMemory;
+    // Policy choosing the entries to evict.
+    EvictionPolicy evictionPolicy;
+    // Interval in millis at which hot counters store, log and announce their increments; a crash loses up to one interval of them.
+    long hotCounterInterval;
+}
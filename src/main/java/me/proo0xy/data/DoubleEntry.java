@@ -0,0 +1,81 @@
+package me.proo0xy.data;
+
+import com.google.gson.annotations.JsonAdapter;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * DoubleEntry holds a floating-point value in a primitive field accessed through a
+ * {@link VarHandle}, so gauges are read and updated without boxing.
+ */
+@JsonAdapter(DataEntryTypeAdapter.class)
+public final class DoubleEntry extends DataEntry {
+
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(DoubleEntry.class, "doubleValue", double.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private double doubleValue;
+
+    public DoubleEntry(String key, double value) {
+        super(key, null);
+        VALUE.setRelease(this, value);
+    }
+
+    /**
+     * @return The current value.
+     */
+    public double getDouble() {
+        return (double) VALUE.getAcquire(this);
+    }
+
+    /**
+     * Replaces the value.
+     *
+     * @param value The new value.
+     */
+    public void setDouble(double value) {
+        VALUE.setRelease(this, value);
+    }
+
+    @Override
+    public Object getValue() {
+        return getDouble();
+    }
+
+    @Override
+    public void setValue(Object value) {
+        if (!assign(value)) {
+            throw new IllegalArgumentException("Not a floating-point value: " + value);
+        }
+    }
+
+    @Override
+    public boolean assign(Object value) {
+        if (!(value instanceof Double || value instanceof Float)) {
+            return false;
+        }
+        setDouble(((Number) value).doubleValue());
+        return true;
+    }
+
+    @Override
+    public DataEntry detach() {
+        long version = getVersion();
+        DoubleEntry copy = new DoubleEntry(getKey(), getDouble());
+        copy.setVersion(version);
+        return copy;
+    }
+
+    @Override
+    public String formatValue() {
+        return Double.toString(getDouble());
+    }
+}
@@ -0,0 +1,15 @@
+package me.proo0xy.data;
+
+/**
+ * The policies choosing which entries the memory engine evicts once it is over its limits.
+ * Every policy ranks a small sample of entries and evicts the lowest, so no list
+ * has to be maintained on reads.
+ */
+public enum EvictionPolicy {
+    // Least recently used: the entry read or written longest ago.
+    LRU,
+    // Least frequently used: a logarithmic use counter per entry that decays over time.
+    LFU,
+    // Frequency from a shared count-min sketch, which also refuses new keys used less than the victim.
+    TINY_LFU
+}
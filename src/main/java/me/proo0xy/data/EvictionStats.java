@@ -0,0 +1,43 @@
+package me.proo0xy.data;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * EvictionStats reports the limits of the memory engine and how its eviction policy performs.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class EvictionStats {
+    // The active policy.
+    EvictionPolicy policy;
+    // Maximum number of entries; 0 means no limit.
+    long maxEntries;
+    // Maximum estimated size of the entries in bytes; 0 means no limit.
+    long maxMemory;
+    // Current number of entries.
+    long entries;
+    // Current estimated size of the entries in bytes.
+    long estimatedBytes;
+    // Reads that found their key.
+    long hits;
+    // Reads of absent keys.
+    long misses;
+    // Entries evicted.
+    long evictions;
+    // New keys the TinyLFU policy evicted in place of a more frequently used victim.
+    long rejections;
+
+    /**
+     * @return The share of reads that found their key, or 0 before the first read.
+     */
+    public double getHitRatio() {
+        long reads = hits + misses;
+        return reads == 0 ? 0 : (double) hits / reads;
+    }
+}
@@ -0,0 +1,351 @@
+package me.proo0xy.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Evictor keeps the memory engine within its entry and memory limits.
+ * <p>
+ * Reads only update the access stamp of the entry they found, without locks and
+ * only when the stamp changes, so eviction adds no contention to reads. When a write
+ * leaves the engine over a limit, the writer samples a few entries by walking the map
+ * from where the previous sample stopped, evicts the one the policy ranks lowest and
+ * repeats until the engine is back within its limits. Only one writer evicts at a
+ * time; the others carry on.
+ * <p>
+ * Sizes are estimates of the heap taken by keys, entries and values. Hashes, sorted
+ * sets and streams keep the estimate of their contents up to date themselves, so
+ * changing one field, member or event costs no walk.
+ */
+class Evictor {
+
+    private static final Logger log = LoggerFactory.getLogger(Evictor.class);
+
+    // Entries ranked per eviction.
+    private static final int SAMPLES = 5;
+    // Evictions per call at most, so one writer does not evict on behalf of all others indefinitely.
+    private static final int MAX_EVICTIONS_PER_CALL = 64;
+    // LRU stamps count units of 64 ms, which is also how often the clock is refreshed.
+    static final int CLOCK_SHIFT = 6;
+    // Initial LFU counter, so a new entry is not evicted before it had a chance to be used.
+    private static final int LFU_INITIAL = 5;
+    // How quickly the LFU counter saturates; higher values need more uses per step.
+    private static final int LFU_LOG_FACTOR = 10;
+    // Minutes after which an unused entry's LFU counter drops by one.
+    private static final int LFU_DECAY_MINUTES = 1;
+
+    private final EvictionPolicy policy;
+    private final long maxEntries;
+    private final long maxBytes;
+    private final VersionedMap map;
+    private final FrequencySketch sketch;
+    private final LongAdder usedBytes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final ReentrantLock evicting = new ReentrantLock();
+    // Where the next sample starts; guarded by the evicting lock.
+    private Iterator<String> sampleCursor;
+    // Coarse current time in epoch millis, so reads do not query the system clock.
+    private volatile long now = System.currentTimeMillis();
+
+    /**
+     * @param policy     The policy ranking entries.
+     * @param maxEntries Maximum number of entries, 0 for no limit.
+     * @param maxBytes   Maximum estimated size in bytes, 0 for no limit.
+     * @param map        The map holding the entries.
+     */
+    Evictor(EvictionPolicy policy, long maxEntries, long maxBytes, VersionedMap map) {
+        this.policy = policy;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.map = map;
+        // Without an entry limit, assume small entries to size the sketch.
+        this.sketch = policy == EvictionPolicy.TINY_LFU ? new FrequencySketch(maxEntries > 0 ? maxEntries : maxBytes / 128) : null;
+    }
+
+    /**
+     * Refreshes the coarse clock used for access stamps. Called every {@code 1 << CLOCK_SHIFT} millis.
+     */
+    void tick() {
+        now = System.currentTimeMillis();
+    }
+
+    /**
+     * Records a read that found an entry.
+     *
+     * @param key   The key.
+     * @param entry The stored entry.
+     */
+    void recordHit(String key, DataEntry entry) {
+        hits.increment();
+        touch(key, entry);
+    }
+
+    /**
+     * Records a read of an absent key.
+     */
+    void recordMiss() {
+        misses.increment();
+    }
+
+    /**
+     * Marks an entry as used.
+     *
+     * @param key   The key.
+     * @param entry The stored entry.
+     */
+    void touch(String key, DataEntry entry) {
+        int stamp = entry.accessStamp;
+        int updated = switch (policy) {
+            case LRU, TINY_LFU -> clock();
+            case LFU -> incrementFrequency(stamp);
+        };
+        if (updated != stamp) {
+            entry.accessStamp = updated;
+        }
+        if (sketch != null) {
+            sketch.increment(key.hashCode());
+        }
+    }
+
+    /**
+     * Records a written entry: carries the use of the entry it replaces over and counts the write as a use.
+     *
+     * @param key      The key.
+     * @param previous The stored entry replaced, or null.
+     * @param stored   The stored entry written.
+     */
+    void recordWrite(String key, DataEntry previous, DataEntry stored) {
+        if (policy == EvictionPolicy.LFU) {
+            stored.accessStamp = previous != null ? previous.accessStamp : (minutes(now) << 8) | LFU_INITIAL;
+        }
+        touch(key, stored);
+    }
+
+    /**
+     * Adjusts the estimated size for a changed entry.
+     *
+     * @param key     The key.
+     * @param before  The entry before the change, or null.
+     * @param after   The entry after the change, or null.
+     */
+    void resize(String key, DataEntry before, DataEntry after) {
+        long delta = (after != null ? estimateSize(key, after) : 0) - (before != null ? estimateSize(key, before) : 0);
+        if (delta != 0) {
+            usedBytes.add(delta);
+        }
+    }
+
+    /**
+     * Adjusts the estimated size for an entry changed in place.
+     *
+     * @param before The estimated size before the change.
+     * @param after  The estimated size after the change.
+     */
+    void resize(long before, long after) {
+        if (after != before) {
+            usedBytes.add(after - before);
+        }
+    }
+
+    /**
+     * @return Whether the entries exceed a limit.
+     */
+    boolean isOverLimit() {
+        return (maxEntries > 0 && map.size() > maxEntries) || (maxBytes > 0 && usedBytes.sum() > maxBytes);
+    }
+
+    /**
+     * Evicts entries until the engine is within its limits, unless another writer is evicting already.
+     *
+     * @param candidate The key just written, which TinyLFU may evict instead of a more frequently used victim; may be null.
+     * @param remover   Removes a key through the engine and returns its removal, or null if it was absent.
+     * @return The removals of the evicted keys.
+     */
+    List<DataEntry> evict(String candidate, Function<String, DataEntry> remover) {
+        if (!isOverLimit() || !evicting.tryLock()) {
+            return List.of();
+        }
+        try {
+            List<DataEntry> evicted = new ArrayList<>();
+            int attempts = 0;
+            while (isOverLimit() && attempts++ < MAX_EVICTIONS_PER_CALL) {
+                String victim = sampleVictim();
+                if (victim == null) {
+                    break;
+                }
+                if (candidate != null && sketch != null && !victim.equals(candidate)
+                        && sketch.frequency(candidate.hashCode()) < sketch.frequency(victim.hashCode())) {
+                    // The new key is used less than the victim, so it is the one to go.
+                    victim = candidate;
+                    rejections.increment();
+                }
+                if (victim.equals(candidate)) {
+                    candidate = null;
+                }
+                DataEntry removed = remover.apply(victim);
+                if (removed != null) {
+                    evicted.add(removed);
+                    evictions.increment();
+                }
+            }
+            return evicted;
+        } finally {
+            evicting.unlock();
+        }
+    }
+
+    /**
+     * Recomputes the estimated size from the entries, after recovery.
+     *
+     * @param reader Reads an entry in its heap form.
+     */
+    void recount(Function<String, DataEntry> reader) {
+        long start = System.currentTimeMillis();
+        usedBytes.reset();
+        long bytes = 0;
+        for (String key : map.keySet()) {
+            DataEntry entry = reader.apply(key);
+            if (entry != null) {
+                bytes += estimateSize(key, entry);
+            }
+        }
+        usedBytes.add(bytes);
+        log.info("Eviction policy {} with limits of {} entries and {} bytes; holding {} entries of about {} bytes, counted in {} ms.",
+                policy, maxEntries, maxBytes, map.size(), bytes, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return The current limits and counters.
+     */
+    EvictionStats getStats() {
+        return new EvictionStats(policy, maxEntries, maxBytes, map.size(), usedBytes.sum(),
+                hits.sum(), misses.sum(), evictions.sum(), rejections.sum());
+    }
+
+    /**
+     * Ranks a sample of entries and picks the lowest.
+     *
+     * @return The key to evict, or null if the map is empty.
+     */
+    private String sampleVictim() {
+        long now = System.currentTimeMillis();
+        this.now = now;
+        String victim = null;
+        long lowest = Long.MAX_VALUE;
+        boolean restarted = false;
+        for (int sampled = 0; sampled < SAMPLES; ) {
+            if (sampleCursor == null || !sampleCursor.hasNext()) {
+                if (restarted) {
+                    break;
+                }
+                sampleCursor = map.keySet().iterator();
+                restarted = true;
+                continue;
+            }
+            String key = sampleCursor.next();
+            DataEntry entry = map.get(key);
+            if (entry == null) {
+                continue;
+            }
+            sampled++;
+            long rank = rank(key, entry, now);
+            if (victim == null || rank < lowest) {
+                victim = key;
+                lowest = rank;
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * Ranks an entry; lower ranks are evicted first and expired entries rank lowest.
+     */
+    private long rank(String key, DataEntry entry, long now) {
+        if (entry.isExpired(now)) {
+            return Long.MIN_VALUE;
+        }
+        long recency = entry.accessStamp & 0xffffffffL;
+        return switch (policy) {
+            case LRU -> recency;
+            case LFU -> decayedFrequency(entry.accessStamp, now);
+            case TINY_LFU -> ((long) sketch.frequency(key.hashCode()) << 32) | recency;
+        };
+    }
+
+    /**
+     * Increments a packed LFU stamp, holding the minute of the last use in its upper 16 bits
+     * and the use counter in its lowest 8 bits. The counter is decayed first and then
+     * incremented with a probability falling as it grows, so it grows logarithmically.
+     */
+    private int incrementFrequency(int stamp) {
+        int counter = decayedFrequency(stamp, now);
+        if (counter < 255) {
+            int base = Math.max(0, counter - LFU_INITIAL);
+            if (ThreadLocalRandom.current().nextDouble() * (base * LFU_LOG_FACTOR + 1) < 1) {
+                counter++;
+            }
+        }
+        return (minutes(now) << 8) | counter;
+    }
+
+    private static int decayedFrequency(int stamp, long now) {
+        int elapsed = (minutes(now) - (stamp >>> 8)) & 0xffff;
+        return Math.max(0, (stamp & 0xff) - elapsed / LFU_DECAY_MINUTES);
+    }
+
+    private int clock() {
+        return (int) (now >>> CLOCK_SHIFT);
+    }
+
+    private static int minutes(long now) {
+        return (int) (now / 60_000) & 0xffff;
+    }
+
+    /**
+     * Estimates the heap taken by an entry: the map node, the key string, the entry object and its value.
+     *
+     * @param key   The key.
+     * @param entry The entry in its heap form.
+     * @return The estimated size in bytes.
+     */
+    static long estimateSize(String key, DataEntry entry) {
+        long size = 32 + 40 + key.length() + 32;
+        if (entry instanceof LongEntry || entry instanceof DoubleEntry || entry instanceof BooleanEntry) {
+            return size;
+        }
+        if (entry instanceof HashEntry hash) {
+            return size + 64 + hash.estimateFieldBytes();
+        }
+        if (entry instanceof SortedSetEntry sortedSet) {
+            return size + 128 + sortedSet.estimateMemberBytes();
+        }
+        if (entry instanceof StreamEntry stream) {
+            return size + 128 + stream.estimateEventBytes();
+        }
+        Object value = entry.getValue();
+        if (value instanceof String string) {
+            size += 40 + string.length();
+        } else if (value instanceof Map<?, ?> fields) {
+            size += 64 + fields.size() * 120L;
+        } else if (value instanceof SortedSetValue sortedSet) {
+            size += 64 + sortedSet.members().length * 64L;
+        } else if (value instanceof StreamValue stream) {
+            size += 64 + stream.events().size() * 160L;
+        } else if (value != null) {
+            size += 24;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,40 @@
+package me.proo0xy.data;
+
+import com.google.gson.annotations.JsonAdapter;
+
+/**
+ * ExpiringEntry is an entry with a time to live. It is immutable: a write without
+ * a TTL replaces it with a regular entry, which clears the expiry.
+ */
+@JsonAdapter(DataEntryTypeAdapter.class)
+public final class ExpiringEntry extends DataEntry {
+
+    private final long expiresAt;
+
+    public ExpiringEntry(String key, Object value, long expiresAt) {
+        super(key, value);
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @return When the entry expires, in epoch millis.
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    @Override
+    public void setValue(Object value) {
+        throw new UnsupportedOperationException("Expiring entries are immutable");
+    }
+
+    @Override
+    protected Object storedValue() {
+        return new ExpiringValue(expiresAt, getValue());
+    }
+
+    @Override
+    public boolean isExpired(long now) {
+        return expiresAt <= now;
+    }
+}
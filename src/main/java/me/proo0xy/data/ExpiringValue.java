@@ -0,0 +1,12 @@
+package me.proo0xy.data;
+
+/**
+ * ExpiringValue is the persisted form of a value with a time to live. It is what
+ * {@link ExpiringEntry#getStoredValue()} hands to the log and the snapshot files,
+ * and {@link DataEntry#of} turns it back into an {@link ExpiringEntry}.
+ *
+ * @param expiresAt When the value expires, in epoch millis.
+ * @param value     The value itself.
+ */
+public record ExpiringValue(long expiresAt, Object value) {
+}
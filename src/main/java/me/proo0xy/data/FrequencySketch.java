@@ -0,0 +1,84 @@
+package me.proo0xy.data;
+
+/**
+ * FrequencySketch estimates how often keys were used with a count-min sketch of
+ * 4-bit counters, four per key. Once the number of recorded uses reaches ten times
+ * the capacity every counter is halved, so the estimates follow recent use.
+ * <p>
+ * Updates are not synchronized. A lost increment only makes an estimate slightly low,
+ * which is acceptable for eviction, and saturated counters are not written at all,
+ * so hot keys do not keep writing the same cache lines.
+ */
+class FrequencySketch {
+
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+    private static final int[] SEEDS = {0x97cb3127, 0xb2f8c8a5, 0x5ee1d96b, 0x3c6ef372};
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param capacity The expected number of keys.
+     */
+    FrequencySketch(long capacity) {
+        long keys = Math.max(128, Math.min(capacity, 1 << 25));
+        // Half a word, eight counters, per key.
+        int length = Integer.highestOneBit((int) (keys / 2) - 1) << 1;
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = (int) (10 * keys);
+    }
+
+    /**
+     * Records one use of a key.
+     *
+     * @param hash The hash code of the key.
+     */
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int h = rehash(hash, i);
+            int index = h & tableMask;
+            int shift = (h >>> 28) << 2;
+            long word = table[index];
+            if (((word >>> shift) & 0xf) < 0xf) {
+                table[index] = word + (1L << shift);
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * @param hash The hash code of the key.
+     * @return The estimated number of recent uses, at most 15.
+     */
+    int frequency(int hash) {
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int h = rehash(hash, i);
+            int count = (int) ((table[h & tableMask] >>> ((h >>> 28) << 2)) & 0xf);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Halves every counter.
+     */
+    private void reset() {
+        additions = 0;
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+    }
+
+    private static int rehash(int hash, int row) {
+        int h = (hash + SEEDS[row]) * 0x9e3779b9;
+        return h ^ (h >>> 15);
+    }
+}
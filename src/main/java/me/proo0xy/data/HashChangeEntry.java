@@ -0,0 +1,39 @@
+package me.proo0xy.data;
+
+import com.google.gson.annotations.JsonAdapter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HashChangeEntry tells subscribers which fields a write changed in a hash, so they
+ * receive only those fields instead of the whole hash. Its value maps every changed
+ * field to its new value, or to null if the field was removed.
+ */
+@JsonAdapter(DataEntryTypeAdapter.class)
+public final class HashChangeEntry extends DataEntry {
+
+    /**
+     * @param key     The key of the hash.
+     * @param changes The changed fields, null for removed ones.
+     * @param version The version of the write.
+     */
+    public HashChangeEntry(String key, Map<String, ?> changes, long version) {
+        super(key, Collections.unmodifiableMap(new HashMap<>(changes)));
+        setVersion(version);
+    }
+
+    /**
+     * @return The changed fields, null for removed ones.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getChanges() {
+        return (Map<String, Object>) getValue();
+    }
+
+    @Override
+    public void setValue(Object value) {
+        throw new UnsupportedOperationException("Hash changes are immutable");
+    }
+}
@@ -0,0 +1,190 @@
+package me.proo0xy.data;
+
+import com.google.gson.annotations.JsonAdapter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HashEntry holds a hash: named fields with a string, number or boolean value each.
+ * <p>
+ * Writes change single fields in place, so their cost depends on the fields they
+ * change rather than on the size of the hash, and the engine logs only those fields.
+ * Readers may read fields while a write changes others. A hash with a time to live is
+ * held by an {@link ExpiringEntry} with a map as its value and copied on every write.
+ */
+@JsonAdapter(DataEntryTypeAdapter.class)
+public final class HashEntry extends DataEntry {
+
+    private final Map<String, Object> fields;
+    // Estimated heap size of the fields, kept per field so eviction never walks the hash; written under the key lock.
+    private volatile long fieldBytes;
+
+    /**
+     * @param key    The key.
+     * @param fields The fields; null values are left out.
+     */
+    public HashEntry(String key, Map<String, ?> fields) {
+        super(key, null);
+        this.fields = new ConcurrentHashMap<>(Math.max(16, fields.size() * 2));
+        apply(fields);
+    }
+
+    /**
+     * Checks whether a value can be stored in a hash field.
+     *
+     * @param value The value.
+     * @return true for strings, numbers and booleans.
+     */
+    public static boolean isFieldValue(Object value) {
+        return value instanceof String || value instanceof Number || value instanceof Boolean;
+    }
+
+    /**
+     * Returns the fields of an entry holding a hash.
+     *
+     * @param entry The entry, or null.
+     * @return The fields, which may change in place, or null if the entry is null.
+     * @throws IllegalArgumentException If the entry holds another type.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> fieldsOf(DataEntry entry) {
+        if (entry == null) {
+            return null;
+        }
+        if (entry instanceof HashEntry hash) {
+            return hash.getFields();
+        }
+        if (entry.getValue() instanceof Map<?, ?> fields) {
+            return Collections.unmodifiableMap((Map<String, Object>) fields);
+        }
+        throw new IllegalArgumentException("Value of key '" + entry.getKey() + "' is not a hash.");
+    }
+
+    /**
+     * Creates the entry holding a hash with some fields changed, keeping the time to live of the current entry.
+     *
+     * @param key     The key.
+     * @param current The current entry, or null.
+     * @param changes The changed fields, null for removed ones.
+     * @return The new entry, or null if no field is left.
+     * @throws IllegalArgumentException If the current entry holds another type.
+     */
+    public static DataEntry withChanges(String key, DataEntry current, Map<String, ?> changes) {
+        Map<String, Object> fields = new HashMap<>();
+        Map<String, Object> existing = fieldsOf(current);
+        if (existing != null) {
+            fields.putAll(existing);
+        }
+        for (Map.Entry<String, ?> change : changes.entrySet()) {
+            if (change.getValue() != null) {
+                fields.put(change.getKey(), change.getValue());
+            } else {
+                fields.remove(change.getKey());
+            }
+        }
+        if (fields.isEmpty()) {
+            return null;
+        }
+        if (current instanceof ExpiringEntry expiring) {
+            return new ExpiringEntry(key, Collections.unmodifiableMap(fields), expiring.getExpiresAt());
+        }
+        return new HashEntry(key, fields);
+    }
+
+    /**
+     * Applies logged field changes to a recovered entry, in place when it is a hash.
+     *
+     * @param key      The key.
+     * @param existing The recovered entry, or null.
+     * @param changes  The changed fields, null for removed ones.
+     * @return The entry after the change, or null if no field is left.
+     */
+    static DataEntry merge(String key, DataEntry existing, Map<String, ?> changes) {
+        if (existing instanceof HashEntry hash) {
+            hash.apply(changes);
+            return hash.size() > 0 ? hash : null;
+        }
+        return withChanges(key, existing, changes);
+    }
+
+    /**
+     * @param field The field name.
+     * @return The value of the field, or null if absent.
+     */
+    public Object getField(String field) {
+        return fields.get(field);
+    }
+
+    /**
+     * @return Number of fields.
+     */
+    public int size() {
+        return fields.size();
+    }
+
+    /**
+     * @return The fields, which later writes may change.
+     */
+    public Map<String, Object> getFields() {
+        return Collections.unmodifiableMap(fields);
+    }
+
+    /**
+     * Stores and removes fields in place. Only the storage engine and the store call this, while they hold the key.
+     *
+     * @param changes The changed fields, null for removed ones.
+     */
+    public void apply(Map<String, ?> changes) {
+        long bytes = fieldBytes;
+        for (Map.Entry<String, ?> change : changes.entrySet()) {
+            String field = change.getKey();
+            Object previous = change.getValue() != null ? fields.put(field, change.getValue()) : fields.remove(field);
+            if (previous != null) {
+                bytes -= fieldSize(field, previous);
+            }
+            if (change.getValue() != null) {
+                bytes += fieldSize(field, change.getValue());
+            }
+        }
+        fieldBytes = bytes;
+    }
+
+    /**
+     * @return The estimated heap size of the fields in bytes.
+     */
+    long estimateFieldBytes() {
+        return fieldBytes;
+    }
+
+    private static long fieldSize(String field, Object value) {
+        // Map node, field name and boxed value.
+        return 32 + 40 + field.length() + (value instanceof String string ? 40 + string.length() : 24);
+    }
+
+    @Override
+    public Object getValue() {
+        return getFields();
+    }
+
+    @Override
+    public void setValue(Object value) {
+        throw new UnsupportedOperationException("Hash entries change per field");
+    }
+
+    @Override
+    protected Object storedValue() {
+        // A copy, since the log encodes the value after the key is released.
+        return new HashMap<>(fields);
+    }
+
+    @Override
+    public DataEntry detach() {
+        long version = getVersion();
+        HashEntry copy = new HashEntry(getKey(), fields);
+        copy.setVersion(version);
+        return copy;
+    }
+}
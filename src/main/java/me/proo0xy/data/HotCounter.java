@@ -0,0 +1,111 @@
+package me.proo0xy.data;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * HotCounter collects the increments of a key that takes more of them than one slot
+ * could absorb. Increments go to striped cells, so contending threads spread over
+ * several cells instead of retrying on one, and take no lock. The store drains the
+ * cells at a fixed cadence and writes their sum through the regular increment, which
+ * logs, versions and announces it once per drain however many increments it holds.
+ * <p>
+ * Readers add the increments not yet drained to the stored value. A drain holds a lock
+ * that readers validate optimistically, so they never see increments drained but not
+ * yet stored, nor count them twice.
+ */
+final class HotCounter {
+
+    private final LongAdder pending = new LongAdder();
+    private final StampedLock draining = new StampedLock();
+    // Set once the store stops routing increments here; see DataStore.incrementHot.
+    private volatile boolean retired;
+    // Consecutive drains that found nothing; drains run one at a time, so only they use it.
+    private int idleDrains;
+
+    /**
+     * Adds to the counter.
+     *
+     * @param delta The amount to add.
+     * @return false if the counter was retired, in which case the caller takes the amount back and retries on a new one.
+     */
+    boolean add(long delta) {
+        pending.add(delta);
+        return !retired;
+    }
+
+    /**
+     * Reads the stored entry with the increments not yet drained added to it.
+     *
+     * @param key    The key.
+     * @param stored Reads the stored entry.
+     * @return The entry, or the stored entry unchanged if it does not hold an integer.
+     */
+    DataEntry read(String key, Supplier<DataEntry> stored) {
+        long stamp = draining.tryOptimisticRead();
+        DataEntry entry = stored.get();
+        long increments = pending.sum();
+        if (!draining.validate(stamp)) {
+            stamp = draining.readLock();
+            try {
+                entry = stored.get();
+                increments = pending.sum();
+            } finally {
+                draining.unlockRead(stamp);
+            }
+        }
+        if (increments == 0) {
+            return entry;
+        }
+        if (entry == null) {
+            return new LongEntry(key, increments);
+        }
+        if (!(entry instanceof LongEntry) && !LongEntry.isIntegral(entry.getValue())) {
+            return entry;
+        }
+        // Read before the value, see DataEntry.
+        long version = entry.getVersion();
+        long value = (entry instanceof LongEntry counter ? counter.getLong() : ((Number) entry.getValue()).longValue()) + increments;
+        DataEntry sum = entry instanceof ExpiringEntry expiring ? new ExpiringEntry(key, value, expiring.getExpiresAt()) : new LongEntry(key, value);
+        sum.setVersion(version);
+        return sum;
+    }
+
+    /**
+     * Drains the increments and hands their sum to the writer, keeping readers out until it has stored them.
+     *
+     * @param writer Stores the sum.
+     * @return The drained sum.
+     */
+    long drain(LongConsumer writer) {
+        long stamp = draining.writeLock();
+        try {
+            long sum = pending.sumThenReset();
+            if (sum != 0) {
+                writer.accept(sum);
+                idleDrains = 0;
+            } else {
+                idleDrains++;
+            }
+            return sum;
+        } finally {
+            draining.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return Consecutive drains that found nothing.
+     */
+    int getIdleDrains() {
+        return idleDrains;
+    }
+
+    /**
+     * Stops the counter from taking increments; the store drains it once more afterwards.
+     */
+    void retire() {
+        retired = true;
+    }
+}
@@ -0,0 +1,122 @@
+package me.proo0xy.data;
+
+import java.util.Collection;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * KeyLocks keeps transactions apart from the single-key writes of a {@link DataStore}.
+ * <p>
+ * Keys are hashed onto a fixed number of stripes. A single-key write holds its stripe
+ * shared, so single-key writes never wait for each other and the storage engine orders
+ * writes to one key as before. A transaction holds the stripes of all its keys
+ * exclusively, taken in stripe order, so two transactions never wait for each other
+ * in a cycle. A multi-key read holds the stripes of its keys shared in the same order,
+ * so it sees every transaction on those keys completely or not at all.
+ */
+class KeyLocks {
+
+    private static final int STRIPES = 1024;
+
+    private final StampedLock[] stripes = new StampedLock[STRIPES];
+
+    KeyLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new StampedLock();
+        }
+    }
+
+    /**
+     * Holds the stripe of a key shared, for a single-key write.
+     *
+     * @param key The key.
+     * @return The stamp to pass to {@link #unlockShared(String, long)}.
+     */
+    long lockShared(String key) {
+        return stripes[stripe(key)].readLock();
+    }
+
+    /**
+     * Holds the stripe of a key shared unless a transaction holds it, without waiting.
+     *
+     * @param key The key.
+     * @return The stamp to pass to {@link #unlockShared(String, long)}, or 0 if a transaction holds the stripe.
+     */
+    long tryLockShared(String key) {
+        return stripes[stripe(key)].tryReadLock();
+    }
+
+    /**
+     * Releases the stripe of a key held shared.
+     *
+     * @param key   The key.
+     * @param stamp The stamp returned when it was locked.
+     */
+    void unlockShared(String key, long stamp) {
+        stripes[stripe(key)].unlockRead(stamp);
+    }
+
+    /**
+     * Holds the stripes of several keys exclusively, in stripe order.
+     *
+     * @param keys The keys.
+     * @return The held stripes, released by closing them.
+     */
+    Held lockExclusive(Collection<String> keys) {
+        int[] indexes = stripes(keys);
+        long[] stamps = new long[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            stamps[i] = stripes[indexes[i]].writeLock();
+        }
+        return new Held(indexes, stamps, true);
+    }
+
+    /**
+     * Holds the stripes of several keys shared, in stripe order, for a multi-key read.
+     *
+     * @param keys The keys.
+     * @return The held stripes, released by closing them.
+     */
+    Held lockShared(Collection<String> keys) {
+        int[] indexes = stripes(keys);
+        long[] stamps = new long[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            stamps[i] = stripes[indexes[i]].readLock();
+        }
+        return new Held(indexes, stamps, false);
+    }
+
+    private static int[] stripes(Collection<String> keys) {
+        return keys.stream().mapToInt(KeyLocks::stripe).distinct().sorted().toArray();
+    }
+
+    private static int stripe(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * Stripes held by a transaction or a multi-key read.
+     */
+    final class Held implements AutoCloseable {
+        private final int[] indexes;
+        private final long[] stamps;
+        private final boolean exclusive;
+
+        private Held(int[] indexes, long[] stamps, boolean exclusive) {
+            this.indexes = indexes;
+            this.stamps = stamps;
+            this.exclusive = exclusive;
+        }
+
+        @Override
+        public void close() {
+            for (int i = indexes.length - 1; i >= 0; i--) {
+                if (exclusive) {
+                    stripes[indexes[i]].unlockWrite(stamps[i]);
+                } else {
+                    stripes[indexes[i]].unlockRead(stamps[i]);
+                }
+            }
+        }
+    }
+}
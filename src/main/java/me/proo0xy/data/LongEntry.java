@@ -0,0 +1,91 @@
+package me.proo0xy.data;
+
+import com.google.gson.annotations.JsonAdapter;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * LongEntry holds an integral value in a primitive field accessed through a
+ * {@link VarHandle}, so counters are read and updated without boxing.
+ */
+@JsonAdapter(DataEntryTypeAdapter.class)
+public final class LongEntry extends DataEntry {
+
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(LongEntry.class, "longValue", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private long longValue;
+
+    public LongEntry(String key, long value) {
+        super(key, null);
+        VALUE.setRelease(this, value);
+    }
+
+    /**
+     * Checks whether a value is stored by this entry type.
+     *
+     * @param value The value.
+     * @return true for integral boxed numbers.
+     */
+    static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    /**
+     * @return The current value.
+     */
+    public long getLong() {
+        return (long) VALUE.getAcquire(this);
+    }
+
+    /**
+     * Replaces the value.
+     *
+     * @param value The new value.
+     */
+    public void setLong(long value) {
+        VALUE.setRelease(this, value);
+    }
+
+    @Override
+    public Object getValue() {
+        return getLong();
+    }
+
+    @Override
+    public void setValue(Object value) {
+        if (!assign(value)) {
+            throw new IllegalArgumentException("Not an integral value: " + value);
+        }
+    }
+
+    @Override
+    public boolean assign(Object value) {
+        if (!isIntegral(value)) {
+            return false;
+        }
+        setLong(((Number) value).longValue());
+        return true;
+    }
+
+    @Override
+    public DataEntry detach() {
+        long version = getVersion();
+        LongEntry copy = new LongEntry(getKey(), getLong());
+        copy.setVersion(version);
+        return copy;
+    }
+
+    @Override
+    public String formatValue() {
+        return Long.toString(getLong());
+    }
+}
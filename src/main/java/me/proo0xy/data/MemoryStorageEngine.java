@@ -0,0 +1,681 @@
+package me.proo0xy.data;
+
+import me.proo0xy.data.offheap.OffHeapValues;
+import me.proo0xy.data.persistence.BackupManager;
+import me.proo0xy.data.persistence.LogArchive;
+import me.proo0xy.data.persistence.MutationType;
+import me.proo0xy.data.persistence.PartitionedSnapshotStore;
+import me.proo0xy.data.persistence.WalRecord;
+import me.proo0xy.data.persistence.WriteAheadLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * MemoryStorageEngine keeps every entry on the heap in a {@link VersionedMap}.
+ * Changes go to the write-ahead log, and checkpoints write the keys changed
+ * since the previous one into the partitioned snapshot store.
+ * <p>
+ * With off-heap values enabled, the map holds compact records whose values are
+ * encoded in direct-memory slabs, and every entry leaving the engine is a heap copy.
+ * <p>
+ * With point-in-time recovery enabled, log segments are archived instead of deleted,
+ * and every backup records the log position its snapshot covers.
+ */
+public class MemoryStorageEngine implements StorageEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(MemoryStorageEngine.class);
+    private static final int MAX_DELTA_SEGMENTS = 8;
+
+    private final VersionedMap dataMap = new VersionedMap();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService persistenceExecutor;
+    private final WriteAheadLog writeAheadLog;
+    private final PartitionedSnapshotStore snapshotStore;
+    private final BackupManager backupManager;
+    // Null unless point-in-time recovery is enabled.
+    private final LogArchive logArchive;
+    // Null unless values are stored off-heap.
+    private final OffHeapValues offHeapValues;
+    // Keys changed per write epoch, indexed by epoch parity; a checkpoint consumes the closed epoch's set.
+    private final AtomicReferenceArray<Set<String>> dirtyKeys = new AtomicReferenceArray<>(2);
+    // Keys in order for scans, null unless the ordered index is enabled.
+    private final ConcurrentSkipListSet<String> orderedKeys;
+    // Null unless an entry or memory limit is set.
+    private final Evictor evictor;
+    private final VersionSequence versions;
+    private volatile boolean fullSnapshotRequired;
+    private final long walCheckpointSize;
+    // Logged bytes already covered by the last checkpoint.
+    private volatile long checkpointedLogBytes;
+    // Log position the snapshot files cover, null until a checkpoint succeeds.
+    private WriteAheadLog.Seal checkpointedLog;
+
+    /**
+     * Opens the engine and recovers its data from the snapshot files and the write-ahead log.
+     *
+     * @param settings  Storage and persistence settings.
+     * @param scheduler Scheduler running background merges.
+     * @param versions  Sequence of the versions given to written entries.
+     */
+    public MemoryStorageEngine(DataStoreSettings settings, ScheduledExecutorService scheduler, VersionSequence versions) {
+        Path storageDirectory = Paths.get(settings.getStoragePath());
+        this.scheduler = scheduler;
+        this.versions = versions;
+        this.persistenceExecutor = Executors.newFixedThreadPool(Math.max(1, settings.getPersistenceThreads()));
+        this.dirtyKeys.set(0, ConcurrentHashMap.newKeySet());
+        this.dirtyKeys.set(1, ConcurrentHashMap.newKeySet());
+        this.logArchive = settings.isPointInTimeRecovery() ? new LogArchive(Paths.get(settings.getBackupPath()).resolve("wal-archive")) : null;
+        this.writeAheadLog = new WriteAheadLog(storageDirectory.resolve("wal"), logArchive, settings.isWalSyncWrites());
+        this.snapshotStore = createSnapshotStore(storageDirectory, settings.getSnapshotPartitions());
+        this.backupManager = new BackupManager(Paths.get(settings.getBackupPath()), storageDirectory.resolve("backup-staging"), settings.getBackupRetention());
+        this.offHeapValues = settings.isOffHeapValues() ? new OffHeapValues() : null;
+        this.walCheckpointSize = settings.getWalCheckpointSize();
+
+        long recoveryStart = System.currentTimeMillis();
+        loadFromDisk();
+        recoverFromLog();
+        log.info("Recovered {} entries in {} ms.", dataMap.size(), System.currentTimeMillis() - recoveryStart);
+        this.orderedKeys = settings.isOrderedIndex() ? buildOrderedIndex() : null;
+        this.evictor = settings.getMaxEntries() > 0 || settings.getMaxMemory() > 0
+                ? new Evictor(settings.getEvictionPolicy(), settings.getMaxEntries(), settings.getMaxMemory(), dataMap) : null;
+        if (evictor != null) {
+            evictor.recount(this::read);
+            scheduler.scheduleAtFixedRate(evictor::tick, 0, 1 << Evictor.CLOCK_SHIFT, TimeUnit.MILLISECONDS);
+        }
+        if (offHeapValues != null) {
+            scheduler.scheduleWithFixedDelay(this::reclaimValues, 1, 1, TimeUnit.SECONDS);
+        }
+        if (walCheckpointSize > 0) {
+            scheduler.scheduleWithFixedDelay(this::checkpointIfLogFull, 1, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Reads an entry and records the read for the eviction policy.
+     */
+    @Override
+    public DataEntry get(String key) {
+        if (evictor == null) {
+            return read(key);
+        }
+        if (offHeapValues == null) {
+            DataEntry entry = dataMap.get(key);
+            recordRead(key, entry);
+            return entry;
+        }
+        long token = offHeapValues.enterRead();
+        try {
+            DataEntry entry = dataMap.get(key);
+            recordRead(key, entry);
+            return offHeapValues.materialize(entry);
+        } finally {
+            offHeapValues.exitRead(token);
+        }
+    }
+
+    /**
+     * Reads an entry without counting it as a use.
+     *
+     * @param key The key.
+     * @return The entry in its heap form, or null if absent.
+     */
+    private DataEntry read(String key) {
+        if (offHeapValues == null) {
+            return dataMap.get(key);
+        }
+        long token = offHeapValues.enterRead();
+        try {
+            return offHeapValues.materialize(dataMap.get(key));
+        } finally {
+            offHeapValues.exitRead(token);
+        }
+    }
+
+    private void recordRead(String key, DataEntry entry) {
+        if (entry != null) {
+            evictor.recordHit(key, entry);
+        } else {
+            evictor.recordMiss();
+        }
+    }
+
+    @Override
+    public DataEntry compute(String key, Update update) {
+        DataEntry[] results = new DataEntry[2];
+        dataMap.compute(key, (k, existing, epoch) -> {
+            DataEntry visible = offHeapValues != null ? offHeapValues.materialize(existing) : existing;
+            DataEntry updated = update.apply(k, visible);
+            results[0] = updated;
+            if (updated == visible) {
+                return existing;
+            }
+            if (updated != null && updated.getVersion() == 0) {
+                updated.setVersion(versions.next());
+            }
+            logChange(k, existing, updated, epoch);
+            updateOrderedIndex(k, existing, updated);
+            DataEntry stored = updated;
+            if (offHeapValues != null) {
+                results[1] = existing;
+                stored = updated != null ? offHeapValues.store(updated) : null;
+            }
+            recordChange(k, existing, visible, stored, updated);
+            return stored;
+        });
+
+        // Retired only once the map no longer holds it, so readers starting later cannot reach it.
+        if (offHeapValues != null) {
+            offHeapValues.retire(results[1]);
+        }
+        writeAheadLog.awaitDurable();
+        return results[0];
+    }
+
+    /**
+     * Changes typed entries in place while no snapshot can read them, so repeated writes
+     * to a key allocate a new entry at most once per checkpoint. Off-heap entries are
+     * immutable and always take the regular update.
+     */
+    @Override
+    public DataEntry compute(String key, Update update, InPlaceUpdate inPlace) {
+        if (offHeapValues != null) {
+            return compute(key, update);
+        }
+        DataEntry result = dataMap.compute(key, (k, existing, epoch) -> {
+            long version = existing != null ? existing.getVersion() : 0;
+            if (existing != null && dataMap.isExclusive(k, epoch) && inPlace.apply(existing)) {
+                if (existing.getVersion() == version) {
+                    existing.setVersion(versions.next());
+                }
+                writeAheadLog.append(epoch, MutationType.PUT, k, existing.getStoredValue());
+                markDirty(k, epoch);
+                if (evictor != null) {
+                    evictor.touch(k, existing);
+                }
+                return existing;
+            }
+            return applyUpdate(k, existing, epoch, update);
+        });
+        writeAheadLog.awaitDurable();
+        return result;
+    }
+
+    /**
+     * Changes entries in place like {@link #compute(String, Update, InPlaceUpdate)} and logs
+     * only the changed part as a {@link MutationType#MERGE} record.
+     */
+    @Override
+    public DataEntry computeDelta(String key, Update update, DeltaUpdate inPlace) {
+        if (offHeapValues != null) {
+            return compute(key, update);
+        }
+        DataEntry result = dataMap.compute(key, (k, existing, epoch) -> {
+            if (existing != null && dataMap.isExclusive(k, epoch)) {
+                long version = existing.getVersion();
+                long sizeBefore = evictor != null ? Evictor.estimateSize(k, existing) : 0;
+                Object delta = inPlace.apply(existing);
+                if (delta != null) {
+                    if (existing.getVersion() == version) {
+                        existing.setVersion(versions.next());
+                    }
+                    writeAheadLog.append(epoch, MutationType.MERGE, k, new VersionedValue(existing.getVersion(), delta));
+                    markDirty(k, epoch);
+                    if (evictor != null) {
+                        evictor.resize(sizeBefore, Evictor.estimateSize(k, existing));
+                        evictor.touch(k, existing);
+                    }
+                    return existing;
+                }
+            }
+            return applyUpdate(k, existing, epoch, update);
+        });
+        writeAheadLog.awaitDurable();
+        return result;
+    }
+
+    /**
+     * Applies the regular update of an on-heap entry inside the map's compute.
+     *
+     * @param key      The key.
+     * @param existing The current entry, or null.
+     * @param epoch    The write epoch.
+     * @param update   Computes the new entry.
+     * @return The entry to store.
+     */
+    private DataEntry applyUpdate(String key, DataEntry existing, long epoch, Update update) {
+        DataEntry updated = update.apply(key, existing);
+        if (updated != existing) {
+            if (updated != null && updated.getVersion() == 0) {
+                updated.setVersion(versions.next());
+            }
+            logChange(key, existing, updated, epoch);
+            updateOrderedIndex(key, existing, updated);
+            recordChange(key, existing, existing, updated, updated);
+        }
+        return updated;
+    }
+
+    /**
+     * Updates the estimated size and the use of a changed entry for the eviction policy.
+     *
+     * @param key           The key.
+     * @param previous      The stored entry replaced, or null.
+     * @param previousValue The heap form of the replaced entry, or null.
+     * @param stored        The stored entry written, or null if removed.
+     * @param storedValue   The heap form of the written entry, or null if removed.
+     */
+    private void recordChange(String key, DataEntry previous, DataEntry previousValue, DataEntry stored, DataEntry storedValue) {
+        if (evictor == null) {
+            return;
+        }
+        evictor.resize(key, previousValue, storedValue);
+        if (stored != null) {
+            evictor.recordWrite(key, previous, stored);
+        }
+    }
+
+    /**
+     * Evicts through the regular update, so evictions are logged like removals.
+     */
+    @Override
+    public List<DataEntry> evict(String candidate, VictimGuard guard) {
+        if (evictor == null) {
+            return List.of();
+        }
+        return evictor.evict(candidate, key -> {
+            DataEntry[] removed = new DataEntry[1];
+            guard.tryRemove(key, () -> compute(key, (k, existing) -> {
+                if (existing != null) {
+                    removed[0] = DataEntry.removed(k, versions.next());
+                }
+                return null;
+            }));
+            return removed[0];
+        });
+    }
+
+    @Override
+    public EvictionStats getEvictionStats() {
+        return evictor != null ? evictor.getStats() : null;
+    }
+
+    /**
+     * Logs a replaced, created or removed entry and marks its key dirty.
+     *
+     * @param key      The key.
+     * @param existing The previous entry, or null.
+     * @param updated  The new entry, or null if removed.
+     * @param epoch    The write epoch.
+     */
+    private void logChange(String key, DataEntry existing, DataEntry updated, long epoch) {
+        if (updated != null) {
+            writeAheadLog.append(epoch, MutationType.PUT, key, updated.getStoredValue());
+            markDirty(key, epoch);
+        } else if (existing != null) {
+            writeAheadLog.append(epoch, MutationType.REMOVE, key, null);
+            markDirty(key, epoch);
+        }
+    }
+
+    /**
+     * Walks the ordered key index and reads every key from the map, skipping keys
+     * removed in the meantime.
+     */
+    @Override
+    public List<DataEntry> scan(String fromKey, boolean inclusive, String toKey, int limit) {
+        if (orderedKeys == null) {
+            throw new UnsupportedOperationException("The ordered key index is disabled.");
+        }
+        NavigableSet<String> range = fromKey == null ? orderedKeys : orderedKeys.tailSet(fromKey, inclusive);
+        if (toKey != null) {
+            range = range.headSet(toKey, false);
+        }
+
+        List<DataEntry> page = new ArrayList<>(Math.min(limit, 1024));
+        for (String key : range) {
+            if (page.size() >= limit) {
+                break;
+            }
+            DataEntry entry = read(key);
+            if (entry != null) {
+                page.add(entry);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public void forEachExpiring(ObjLongConsumer<String> action) {
+        for (String key : dataMap.keySet()) {
+            if (read(key) instanceof ExpiringEntry expiring) {
+                action.accept(key, expiring.getExpiresAt());
+            }
+        }
+    }
+
+    @Override
+    public long maxVersion() {
+        long max = 0;
+        for (String key : dataMap.keySet()) {
+            DataEntry entry = dataMap.get(key);
+            if (entry != null) {
+                max = Math.max(max, entry.getVersion());
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public Map<String, DataEntry> copy() {
+        if (offHeapValues == null) {
+            return dataMap.copy();
+        }
+        long token = offHeapValues.enterRead();
+        try {
+            Map<String, DataEntry> copy = dataMap.copy();
+            copy.replaceAll((key, entry) -> offHeapValues.materialize(entry));
+            return copy;
+        } finally {
+            offHeapValues.exitRead(token);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (String key : dataMap.keySet()) {
+            compute(key, (k, existing) -> null);
+        }
+    }
+
+    /**
+     * Runs the writes in one epoch of the map and queues their log group before the epoch
+     * ends, so a checkpoint either holds all of the writes, or none of them and keeps the
+     * segment with the group.
+     */
+    @Override
+    public void writeAtomically(Runnable writes) {
+        dataMap.runInEpoch(() -> writeAheadLog.group(writes));
+        writeAheadLog.awaitDurable();
+    }
+
+    @Override
+    public CompletableFuture<Void> sync() {
+        return writeAheadLog.sync();
+    }
+
+    /**
+     * Saves data to disk as a checkpoint. A point-in-time snapshot of the map is frozen
+     * without pausing writers, the keys changed in the closed epoch are written from that
+     * frozen view as a delta segment, and the log segments of the closed epoch are deleted
+     * once the delta is on disk. Nothing is written when no key changed.
+     */
+    @Override
+    public synchronized void checkpoint() {
+        long logPosition = writeAheadLog.getLoggedBytes();
+        try (VersionedMap.Snapshot snapshot = dataMap.beginSnapshot()) {
+            long closedEpoch = snapshot.getEpoch();
+            CompletableFuture<WriteAheadLog.Seal> sealed = writeAheadLog.rotate(closedEpoch + 1);
+            int slot = (int) (closedEpoch & 1);
+            Set<String> changedKeys = dirtyKeys.getAndSet(slot, ConcurrentHashMap.newKeySet());
+            boolean fullSnapshot = fullSnapshotRequired;
+            fullSnapshotRequired = false;
+
+            try {
+                if (fullSnapshot) {
+                    snapshotStore.writeBase(snapshot.keys(), key -> valueOf(snapshot.get(key)));
+                    log.info("Data successfully saved to disk.");
+                } else if (!changedKeys.isEmpty()) {
+                    int written = snapshotStore.writeDeltas(changedKeys, key -> valueOf(snapshot.get(key)));
+                    log.info("Saved {} changed keys into {} partitions.", changedKeys.size(), written);
+                }
+            } catch (IOException e) {
+                log.error("Error saving data to disk", e);
+                // The sealed log segments are kept, so the changes stay durable until the next attempt.
+                dirtyKeys.get((int) (dataMap.currentEpoch() & 1)).addAll(changedKeys);
+                fullSnapshotRequired |= fullSnapshot;
+                // Some partitions may already hold newer data than any known log position.
+                checkpointedLog = null;
+                return;
+            }
+
+            WriteAheadLog.Seal seal;
+            try {
+                seal = sealed.join();
+            } catch (CompletionException e) {
+                // The snapshot is on disk, but without a sealed position no segment can go.
+                log.error("Write-ahead log failed; keeping its segments.", e.getCause());
+                checkpointedLog = null;
+                return;
+            }
+            writeAheadLog.deleteSegmentsUpTo(seal.segmentId());
+            checkpointedLog = seal;
+            checkpointedLogBytes = logPosition;
+        }
+        scheduleMergeIfNeeded();
+    }
+
+    /**
+     * Creates a backup generation from the latest finished snapshot files.
+     * Nothing is serialized; the files are linked or copied at file level.
+     * Synchronized with {@link #checkpoint()}, so the recorded log position matches the files.
+     */
+    @Override
+    public synchronized void backup() {
+        try {
+            backupManager.createBackup(snapshotStore, logArchive != null ? checkpointedLog : null);
+            log.info("Data backup successfully created.");
+            if (logArchive != null) {
+                long oldestNeeded = backupManager.oldestLogSegment();
+                if (oldestNeeded >= 0) {
+                    logArchive.deleteUpTo(oldestNeeded);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error creating data backup", e);
+        }
+    }
+
+    /**
+     * Checkpoints as soon as the log written since the last checkpoint exceeds its limit,
+     * so a restart never has to replay more than about that much log.
+     */
+    private void checkpointIfLogFull() {
+        if (writeAheadLog.getLoggedBytes() - checkpointedLogBytes > walCheckpointSize) {
+            log.info("Write-ahead log exceeded {} bytes, checkpointing early.", walCheckpointSize);
+            checkpoint();
+        }
+    }
+
+    /**
+     * Frees the slab chunks of replaced and removed values. Synchronized with
+     * {@link #checkpoint()}, so no snapshot can still read them.
+     */
+    private synchronized void reclaimValues() {
+        offHeapValues.reclaim();
+    }
+
+    @Override
+    public void close() {
+        writeAheadLog.close();
+        persistenceExecutor.shutdown();
+    }
+
+    /**
+     * Adds a created key to the ordered index or drops a removed one. Called while the
+     * map holds the key's lock, so index changes of one key happen in write order.
+     *
+     * @param key      The key.
+     * @param existing The previous entry, or null.
+     * @param updated  The new entry, or null if removed.
+     */
+    private void updateOrderedIndex(String key, DataEntry existing, DataEntry updated) {
+        if (orderedKeys == null) {
+            return;
+        }
+        if (existing == null && updated != null) {
+            orderedKeys.add(key);
+        } else if (existing != null && updated == null) {
+            orderedKeys.remove(key);
+        }
+    }
+
+    /**
+     * Builds the ordered index from the recovered keys. Sorting first lets the skip list
+     * be built in one linear pass.
+     *
+     * @return The index.
+     */
+    private ConcurrentSkipListSet<String> buildOrderedIndex() {
+        long start = System.currentTimeMillis();
+        ConcurrentSkipListSet<String> index = new ConcurrentSkipListSet<>(new TreeSet<>(dataMap.keySet()));
+        log.info("Built the ordered index of {} keys in {} ms.", index.size(), System.currentTimeMillis() - start);
+        return index;
+    }
+
+    /**
+     * Marks a key as changed in the given write epoch.
+     *
+     * @param key   The changed key.
+     * @param epoch The write epoch.
+     */
+    private void markDirty(String key, long epoch) {
+        dirtyKeys.get((int) (epoch & 1)).add(key);
+    }
+
+    /**
+     * Extracts the value of an entry for persistence.
+     *
+     * @param entry The entry, possibly null.
+     * @return The value, or null if the entry is absent.
+     */
+    private static Object valueOf(DataEntry entry) {
+        return entry != null ? entry.getStoredValue() : null;
+    }
+
+    /**
+     * Folds the delta segments of busy partitions into their base snapshots on the scheduler.
+     */
+    private void scheduleMergeIfNeeded() {
+        if (!scheduler.isShutdown()) {
+            scheduler.execute(this::mergeSnapshots);
+        }
+    }
+
+    /**
+     * Merges the pending delta segments of every partition that has enough of them.
+     */
+    private void mergeSnapshots() {
+        try {
+            snapshotStore.mergeIfNeeded(MAX_DELTA_SEGMENTS);
+        } catch (IOException e) {
+            log.error("Error merging delta segments", e);
+        }
+    }
+
+    /**
+     * Loads the base snapshot and its delta segments from disk.
+     */
+    private void loadFromDisk() {
+        try {
+            snapshotStore.load(recoveryTarget());
+            fullSnapshotRequired = snapshotStore.requiresMigration();
+            log.info("Data successfully loaded from disk.");
+        } catch (IOException e) {
+            log.error("Error loading data from disk", e);
+        }
+    }
+
+    /**
+     * Replays the write-ahead log on top of the loaded snapshot and opens a new log segment.
+     */
+    private void recoverFromLog() {
+        try {
+            long start = System.currentTimeMillis();
+            long replayed = writeAheadLog.replay(this::applyRecord);
+            if (replayed > 0) {
+                log.info("Replayed {} mutations ({} bytes of log) from the write-ahead log in {} ms.",
+                        replayed, writeAheadLog.getLoggedBytes(), System.currentTimeMillis() - start);
+            }
+            writeAheadLog.start(dataMap.currentEpoch());
+        } catch (IOException e) {
+            log.error("Failed to open the write-ahead log", e);
+            throw new RuntimeException("Failed to open the write-ahead log", e);
+        }
+    }
+
+    /**
+     * Applies a replayed log record without logging or notifying it again.
+     * The key stays dirty so the next checkpoint persists it before the log is deleted.
+     *
+     * @param record The replayed record.
+     */
+    private void applyRecord(WalRecord record) {
+        Map<String, DataEntry> target = recoveryTarget();
+        switch (record.getType()) {
+            case PUT -> target.put(record.getKey(), DataEntry.of(record.getKey(), record.getValue()));
+            case REMOVE -> target.remove(record.getKey());
+            case MERGE -> {
+                DataEntry existing = dataMap.recoveryView().get(record.getKey());
+                DataEntry merged = DataEntry.merge(record.getKey(),
+                        offHeapValues != null ? offHeapValues.materialize(existing) : existing, record.getValue());
+                if (merged == null) {
+                    target.remove(record.getKey());
+                } else if (merged != existing) {
+                    target.put(record.getKey(), merged);
+                }
+            }
+            case CLEAR -> {
+                target.clear();
+                fullSnapshotRequired = true;
+            }
+        }
+        if (record.getKey() != null) {
+            markDirty(record.getKey(), dataMap.currentEpoch());
+        }
+    }
+
+    /**
+     * Returns the map recovery writes into, storing values off-heap when enabled.
+     *
+     * @return The recovery target.
+     */
+    private Map<String, DataEntry> recoveryTarget() {
+        return offHeapValues != null ? offHeapValues.encodingView(dataMap.recoveryView()) : dataMap.recoveryView();
+    }
+
+    /**
+     * Creates the partitioned snapshot store in the storage directory.
+     *
+     * @param storageDirectory The storage directory.
+     * @param partitions       Number of hash partitions.
+     * @return The snapshot store.
+     */
+    private PartitionedSnapshotStore createSnapshotStore(Path storageDirectory, int partitions) {
+        try {
+            return new PartitionedSnapshotStore(storageDirectory, partitions, persistenceExecutor);
+        } catch (IOException e) {
+            log.error("Failed to open snapshot store: {}", storageDirectory, e);
+            throw new RuntimeException("Failed to open snapshot store: " + storageDirectory, e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package me.proo0xy.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SavePolicy decides when the store takes a snapshot. It counts the changes made
+ * since the last snapshot and fires when any {@link SaveRule} is met, so an idle
+ * store does no I/O and a busy one saves soon after a burst of writes.
+ * <p>
+ * Snapshots are paced by their own cost: the quiet time after a snapshot must be
+ * at least {@link #PACING_FACTOR} times its duration, so when snapshots grow slow
+ * enough to approach a rule's interval the rule backs off instead of keeping the
+ * disk busy all the time.
+ */
+class SavePolicy {
+
+    private static final Logger log = LoggerFactory.getLogger(SavePolicy.class);
+
+    // Minimum quiet time after a snapshot, as a multiple of how long it took.
+    private static final long PACING_FACTOR = 2;
+
+    private final List<SaveRule> rules;
+    private final LongAdder changes = new LongAdder();
+    private volatile long lastSaveNanos = System.nanoTime();
+    private volatile long lastDurationNanos;
+    private volatile long saveCount;
+    private boolean pacing;
+
+    /**
+     * @param rules The rules, any of which triggers a snapshot.
+     */
+    SavePolicy(List<SaveRule> rules) {
+        this.rules = List.copyOf(rules);
+    }
+
+    /**
+     * Records changes made to the store.
+     *
+     * @param count Number of changed entries.
+     */
+    void recordChanges(long count) {
+        changes.add(count);
+    }
+
+    /**
+     * @return Changes made since the last snapshot started.
+     */
+    long pendingChanges() {
+        return changes.sum();
+    }
+
+    /**
+     * @return Number of snapshots taken through this policy.
+     */
+    long getSaveCount() {
+        return saveCount;
+    }
+
+    /**
+     * Checks whether a rule is met and the pacing allows a snapshot now.
+     *
+     * @param pending Changes made since the last snapshot.
+     * @return Whether to take a snapshot.
+     */
+    boolean isDue(long pending) {
+        if (pending == 0) {
+            return false;
+        }
+
+        long idleNanos = System.nanoTime() - lastSaveNanos;
+        SaveRule matched = null;
+        for (SaveRule rule : rules) {
+            if (pending >= rule.getChanges() && idleNanos >= TimeUnit.SECONDS.toNanos(rule.getSeconds())) {
+                matched = rule;
+                break;
+            }
+        }
+        if (matched == null) {
+            return false;
+        }
+
+        long pacedNanos = lastDurationNanos * PACING_FACTOR;
+        if (idleNanos < pacedNanos) {
+            if (!pacing) {
+                pacing = true;
+                log.info("Delaying snapshot for rule {}: the last one took {} ms.", matched, TimeUnit.NANOSECONDS.toMillis(lastDurationNanos));
+            }
+            return false;
+        }
+        pacing = false;
+        log.debug("Snapshot rule {} met with {} changes.", matched, pending);
+        return true;
+    }
+
+    /**
+     * Records a finished snapshot. Changes made while it ran count towards the next one.
+     *
+     * @param saved          Changes pending when the snapshot started.
+     * @param durationNanos  How long the snapshot took.
+     */
+    void saved(long saved, long durationNanos) {
+        changes.add(-saved);
+        lastDurationNanos = durationNanos;
+        lastSaveNanos = System.nanoTime();
+        saveCount++;
+    }
+}
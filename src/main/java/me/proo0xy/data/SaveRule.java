@@ -0,0 +1,52 @@
+package me.proo0xy.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SaveRule asks for a snapshot once a number of seconds has passed since the
+ * last one and at least a number of changes was made in that time.
+ */
+@Getter
+@AllArgsConstructor
+public class SaveRule {
+    // Seconds since the last snapshot before the rule applies.
+    private final long seconds;
+    // Changes needed since the last snapshot.
+    private final long changes;
+
+    /**
+     * Parses rules written as pairs of seconds and changes, e.g. {@code "3600 1 300 100 60 10000"}.
+     * An empty string disables automatic snapshots.
+     *
+     * @param rules The rules, separated by whitespace or commas.
+     * @return The parsed rules.
+     * @throws IllegalArgumentException If the numbers do not form positive pairs.
+     */
+    public static List<SaveRule> parse(String rules) {
+        String trimmed = rules.trim();
+        String[] parts = trimmed.isEmpty() ? new String[0] : trimmed.split("[\\s,]+");
+        if (parts.length % 2 != 0) {
+            throw new IllegalArgumentException("Save rules must be pairs of seconds and changes: " + rules);
+        }
+
+        List<SaveRule> parsed = new ArrayList<>();
+        for (int i = 0; i < parts.length; i += 2) {
+            long seconds = Long.parseLong(parts[i]);
+            long changes = Long.parseLong(parts[i + 1]);
+            if (seconds <= 0 || changes <= 0) {
+                throw new IllegalArgumentException("Save rule values must be positive: " + parts[i] + " " + parts[i + 1]);
+            }
+            parsed.add(new SaveRule(seconds, changes));
+        }
+        return parsed;
+    }
+
+    @Override
+    public String toString() {
+        return seconds + "s/" + changes;
+    }
+}
@@ -0,0 +1,21 @@
+package me.proo0xy.data;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+/**
+ * ScanPage is one page of a key-ordered scan.
+ */
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ScanPage {
+    // Entries of the page in key order.
+    List<DataEntry> entries;
+    // Key to continue after for the next page, or null if the range is exhausted.
+    String cursor;
+}
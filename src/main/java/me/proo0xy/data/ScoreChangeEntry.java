@@ -0,0 +1,39 @@
+package me.proo0xy.data;
+
+import com.google.gson.annotations.JsonAdapter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ScoreChangeEntry tells subscribers which scores a write changed in a sorted set, so
+ * they receive only those members instead of the whole set. Its value maps every
+ * changed member to its new score.
+ */
+@JsonAdapter(DataEntryTypeAdapter.class)
+public final class ScoreChangeEntry extends DataEntry {
+
+    /**
+     * @param key     The key of the sorted set.
+     * @param changes The new scores by member.
+     * @param version The version of the write.
+     */
+    public ScoreChangeEntry(String key, Map<String, Double> changes, long version) {
+        super(key, Collections.unmodifiableMap(new HashMap<>(changes)));
+        setVersion(version);
+    }
+
+    /**
+     * @return The new scores by member.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Double> getChanges() {
+        return (Map<String, Double>) getValue();
+    }
+
+    @Override
+    public void setValue(Object value) {
+        throw new UnsupportedOperationException("Score changes are immutable");
+    }
+}
@@ -0,0 +1,248 @@
+package me.proo0xy.data;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * ScoreIndex orders the members of a sorted set by score, then by member, in a skip
+ * list whose links also count the members they skip. Finding a member's rank, or the
+ * member at a rank, adds up those counts on the way down, so both are O(log n) like
+ * lookups by score. Callers serialize writes and keep reads away from them.
+ */
+final class ScoreIndex {
+
+    private static final int MAX_LEVEL = 32;
+    // Chance that a node reaching one level also reaches the next.
+    private static final double LEVEL_PROBABILITY = 0.25;
+
+    private final Node head = new Node(null, 0, MAX_LEVEL);
+    private Node tail;
+    private int level = 1;
+    private int size;
+
+    /**
+     * @return Number of members.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds a member that is not in the index yet.
+     *
+     * @param member The member.
+     * @param score  Its score.
+     */
+    void insert(String member, double score) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && compare(x.next[i], score, member) < 0) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size;
+            }
+            level = nodeLevel;
+        }
+        Node node = new Node(member, score, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        node.previous = update[0] == head ? null : update[0];
+        if (node.next[0] != null) {
+            node.next[0].previous = node;
+        } else {
+            tail = node;
+        }
+        size++;
+    }
+
+    /**
+     * Removes a member.
+     *
+     * @param member The member.
+     * @param score  Its current score.
+     * @return Whether the member was found.
+     */
+    boolean delete(String member, double score) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && compare(x.next[i], score, member) < 0) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        x = x.next[0];
+        if (x == null || compare(x, score, member) != 0) {
+            return false;
+        }
+
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == x) {
+                update[i].span[i] += x.span[i] - 1;
+                update[i].next[i] = x.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        if (x.next[0] != null) {
+            x.next[0].previous = x.previous;
+        } else {
+            tail = x.previous;
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * @param member The member.
+     * @param score  Its current score.
+     * @return The zero-based rank in ascending order, or -1 if the member is absent.
+     */
+    long rank(String member, double score) {
+        long rank = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && compare(x.next[i], score, member) <= 0) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+            if (x != head && x.member.equals(member)) {
+                return rank - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param rank The zero-based rank in ascending order.
+     * @return The node at the rank, or null if out of range.
+     */
+    Node byRank(long rank) {
+        if (rank < 0 || rank >= size) {
+            return null;
+        }
+        long target = rank + 1;
+        long traversed = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && traversed + x.span[i] <= target) {
+                traversed += x.span[i];
+                x = x.next[i];
+            }
+            if (traversed == target) {
+                return x;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param min The lowest score.
+     * @return The first node with at least that score, or null.
+     */
+    Node firstFrom(double min) {
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && x.next[i].score < min) {
+                x = x.next[i];
+            }
+        }
+        return x.next[0];
+    }
+
+    /**
+     * @param max The highest score.
+     * @return The last node with at most that score, or null.
+     */
+    Node lastUpTo(double max) {
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && x.next[i].score <= max) {
+                x = x.next[i];
+            }
+        }
+        return x == head ? null : x;
+    }
+
+    /**
+     * @return The node with the lowest score, or null if empty.
+     */
+    Node first() {
+        return head.next[0];
+    }
+
+    /**
+     * @return The node with the highest score, or null if empty.
+     */
+    Node last() {
+        return tail;
+    }
+
+    private static int compare(Node node, double score, String member) {
+        int order = Double.compare(node.score, score);
+        return order != 0 ? order : node.member.compareTo(member);
+    }
+
+    private static int randomLevel() {
+        int nodeLevel = 1;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (nodeLevel < MAX_LEVEL && random.nextDouble() < LEVEL_PROBABILITY) {
+            nodeLevel++;
+        }
+        return nodeLevel;
+    }
+
+    /**
+     * A member in the index.
+     */
+    static final class Node {
+        final String member;
+        final double score;
+        private final Node[] next;
+        // Members each link skips, counting the one it leads to.
+        private final int[] span;
+        private Node previous;
+
+        private Node(String member, double score, int level) {
+            this.member = member;
+            this.score = score;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+
+        /**
+         * @return The node with the next higher rank, or null.
+         */
+        Node next() {
+            return next[0];
+        }
+
+        /**
+         * @return The node with the next lower rank, or null.
+         */
+        Node previous() {
+            return previous;
+        }
+    }
+}
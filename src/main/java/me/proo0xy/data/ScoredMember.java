@@ -0,0 +1,10 @@
+package me.proo0xy.data;
+
+/**
+ * ScoredMember is a member of a sorted set read together with its score.
+ *
+ * @param member The member.
+ * @param score  Its score.
+ */
+public record ScoredMember(String member, double score) {
+}
@@ -0,0 +1,309 @@
+package me.proo0xy.data;
+
+import com.google.gson.annotations.JsonAdapter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * SortedSetEntry holds a sorted set: members with a score each, ordered by score and
+ * then by member. A {@link ScoreIndex} answers ranks and ranges in O(log n) plus the
+ * size of the range.
+ * <p>
+ * Writes change scores in place and the engine logs only the changed scores, so their
+ * cost does not grow with the size of the set. Readers share a lock that a write holds
+ * exclusively while it changes the index. A sorted set with a time to live is held by an
+ * {@link ExpiringEntry} with a {@link SortedSetValue}, which is copied on every write and
+ * indexed again on every read; leaderboards that need the O(log n) path should not expire.
+ */
+@JsonAdapter(DataEntryTypeAdapter.class)
+public final class SortedSetEntry extends DataEntry {
+
+    private final Map<String, Double> scores;
+    private final ScoreIndex index = new ScoreIndex();
+    private final StampedLock lock = new StampedLock();
+    // Estimated heap size of the members, kept per member so eviction never walks the set.
+    private volatile long memberBytes;
+
+    /**
+     * @param key   The key.
+     * @param value The members with their scores.
+     */
+    public SortedSetEntry(String key, SortedSetValue value) {
+        super(key, null);
+        this.scores = new HashMap<>(Math.max(16, (int) (value.members().length / 0.75f) + 1));
+        for (int i = 0; i < value.members().length; i++) {
+            set(value.members()[i], value.scores()[i]);
+        }
+    }
+
+    /**
+     * Checks whether a number can be a score.
+     *
+     * @param score The number.
+     * @return false for NaN and infinities.
+     */
+    public static boolean isScore(double score) {
+        return Double.isFinite(score);
+    }
+
+    /**
+     * Returns the sorted set held by an entry. A sorted set with a time to live is indexed first.
+     *
+     * @param entry The entry, or null.
+     * @return The sorted set, or null if the entry is null.
+     * @throws IllegalArgumentException If the entry holds another type.
+     */
+    public static SortedSetEntry sortedSetOf(DataEntry entry) {
+        if (entry == null) {
+            return null;
+        }
+        if (entry instanceof SortedSetEntry sortedSet) {
+            return sortedSet;
+        }
+        if (entry.getValue() instanceof SortedSetValue value) {
+            return new SortedSetEntry(entry.getKey(), value);
+        }
+        throw new IllegalArgumentException("Value of key '" + entry.getKey() + "' is not a sorted set.");
+    }
+
+    /**
+     * Creates the entry holding a sorted set with some scores changed, keeping the time to live of the current entry.
+     *
+     * @param key     The key.
+     * @param current The current entry, or null.
+     * @param changes The new scores by member.
+     * @return The new entry.
+     * @throws IllegalArgumentException If the current entry holds another type.
+     */
+    public static DataEntry withChanges(String key, DataEntry current, Map<String, Double> changes) {
+        SortedSetEntry existing = sortedSetOf(current);
+        SortedSetEntry updated = new SortedSetEntry(key, existing != null ? existing.toValue() : valueOf(Map.of()));
+        updated.apply(changes);
+        if (current instanceof ExpiringEntry expiring) {
+            return new ExpiringEntry(key, updated.toValue(), expiring.getExpiresAt());
+        }
+        return updated;
+    }
+
+    /**
+     * Applies logged score changes to a recovered entry, in place when it is a sorted set.
+     *
+     * @param key      The key.
+     * @param existing The recovered entry, or null.
+     * @param changes  The changed scores.
+     * @return The entry after the change.
+     */
+    static DataEntry merge(String key, DataEntry existing, SortedSetValue changes) {
+        Map<String, Double> scores = new HashMap<>();
+        for (int i = 0; i < changes.members().length; i++) {
+            scores.put(changes.members()[i], changes.scores()[i]);
+        }
+        if (existing instanceof SortedSetEntry sortedSet) {
+            sortedSet.apply(scores);
+            return sortedSet;
+        }
+        return withChanges(key, existing, scores);
+    }
+
+    /**
+     * Converts scores into the form in which they are logged.
+     *
+     * @param scores The scores by member.
+     * @return The members with their scores, in no particular order.
+     */
+    public static SortedSetValue valueOf(Map<String, Double> scores) {
+        String[] members = new String[scores.size()];
+        double[] values = new double[scores.size()];
+        int i = 0;
+        for (Map.Entry<String, Double> score : scores.entrySet()) {
+            members[i] = score.getKey();
+            values[i++] = score.getValue();
+        }
+        return new SortedSetValue(members, values);
+    }
+
+    /**
+     * Stores scores in place, adding missing members. Only the storage engine and the store call this, while they hold the key.
+     *
+     * @param changes The new scores by member.
+     */
+    public void apply(Map<String, Double> changes) {
+        long stamp = lock.writeLock();
+        try {
+            for (Map.Entry<String, Double> change : changes.entrySet()) {
+                set(change.getKey(), change.getValue());
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @param member The member.
+     * @return Its score, or null if absent.
+     */
+    public Double getScore(String member) {
+        long stamp = lock.readLock();
+        try {
+            return scores.get(member);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @param member  The member.
+     * @param reverse Whether to rank from the highest score down.
+     * @return The zero-based rank, or -1 if the member is absent.
+     */
+    public long rank(String member, boolean reverse) {
+        long stamp = lock.readLock();
+        try {
+            Double score = scores.get(member);
+            if (score == null) {
+                return -1;
+            }
+            long rank = index.rank(member, score);
+            return reverse ? index.size() - 1 - rank : rank;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Lists the members between two ranks, both included. Negative ranks count from the end, -1 being the last member.
+     *
+     * @param start   The first rank.
+     * @param stop    The last rank.
+     * @param reverse Whether to rank from the highest score down.
+     * @param limit   Maximum number of members.
+     * @return The members in rank order.
+     */
+    public List<ScoredMember> rangeByRank(long start, long stop, boolean reverse, int limit) {
+        long stamp = lock.readLock();
+        try {
+            long size = index.size();
+            long from = Math.max(0, start < 0 ? start + size : start);
+            long to = Math.min(Math.min(size - 1, stop < 0 ? stop + size : stop), from + limit - 1);
+            List<ScoredMember> range = new ArrayList<>((int) Math.max(0, Math.min(to - from + 1, 1024)));
+            if (from > to) {
+                return range;
+            }
+            ScoreIndex.Node node = index.byRank(reverse ? size - 1 - from : from);
+            for (long rank = from; rank <= to && node != null; rank++) {
+                range.add(new ScoredMember(node.member, node.score));
+                node = reverse ? node.previous() : node.next();
+            }
+            return range;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Lists the members with a score between two bounds, both included.
+     *
+     * @param min     The lowest score.
+     * @param max     The highest score.
+     * @param reverse Whether to list from the highest score down.
+     * @param limit   Maximum number of members.
+     * @return The members in rank order.
+     */
+    public List<ScoredMember> rangeByScore(double min, double max, boolean reverse, int limit) {
+        long stamp = lock.readLock();
+        try {
+            List<ScoredMember> range = new ArrayList<>(Math.min(limit, 1024));
+            ScoreIndex.Node node = reverse ? index.lastUpTo(max) : index.firstFrom(min);
+            while (node != null && range.size() < limit && (reverse ? node.score >= min : node.score <= max)) {
+                range.add(new ScoredMember(node.member, node.score));
+                node = reverse ? node.previous() : node.next();
+            }
+            return range;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return Number of members.
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return The estimated heap size of the members in bytes.
+     */
+    long estimateMemberBytes() {
+        return memberBytes;
+    }
+
+    /**
+     * @return The members with their scores in rank order.
+     */
+    public SortedSetValue toValue() {
+        long stamp = lock.readLock();
+        try {
+            String[] members = new String[index.size()];
+            double[] values = new double[index.size()];
+            int i = 0;
+            for (ScoreIndex.Node node = index.first(); node != null; node = node.next()) {
+                members[i] = node.member;
+                values[i++] = node.score;
+            }
+            return new SortedSetValue(members, values);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void set(String member, double score) {
+        Double previous = scores.put(member, score);
+        if (previous != null) {
+            if (Double.compare(previous, score) == 0) {
+                return;
+            }
+            index.delete(member, previous);
+        } else {
+            memberBytes += memberSize(member);
+        }
+        index.insert(member, score);
+    }
+
+    private static long memberSize(String member) {
+        // Map node, member string, boxed score and skip list node.
+        return 32 + 40 + member.length() + 16 + 80;
+    }
+
+    @Override
+    public Object getValue() {
+        return toValue();
+    }
+
+    @Override
+    public void setValue(Object value) {
+        throw new UnsupportedOperationException("Sorted set entries change per member");
+    }
+
+    @Override
+    protected Object storedValue() {
+        return toValue();
+    }
+
+    @Override
+    public DataEntry detach() {
+        long version = getVersion();
+        SortedSetEntry copy = new SortedSetEntry(getKey(), toValue());
+        copy.setVersion(version);
+        return copy;
+    }
+}
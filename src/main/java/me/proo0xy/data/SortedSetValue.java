@@ -0,0 +1,12 @@
+package me.proo0xy.data;
+
+/**
+ * SortedSetValue is the persisted form of a sorted set, with its members in rank order.
+ * It is what {@link SortedSetEntry#getStoredValue()} hands to the log and the snapshot
+ * files, and also the form in which changed scores are logged.
+ *
+ * @param members The members.
+ * @param scores  The score of every member, at the same index.
+ */
+public record SortedSetValue(String[] members, double[] scores) {
+}
@@ -0,0 +1,207 @@
+package me.proo0xy.data;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * StorageEngine holds the entries behind a {@link DataStore} and keeps them durable.
+ * Every change is queued for the log before it is acknowledged and forced to disk
+ * shortly after; {@link #sync()} waits for that. {@link #checkpoint()} persists the
+ * changes so the log can be truncated.
+ * <p>
+ * Every written entry gets a version before it is logged: the one the update set
+ * with {@link DataEntry#setVersion(long)}, or else the next one of the engine's
+ * {@link VersionSequence}.
+ */
+public interface StorageEngine {
+
+    /**
+     * Computes the new entry of a key from its current one.
+     */
+    @FunctionalInterface
+    interface Update {
+        /**
+         * @param key      The key being written.
+         * @param existing The current entry, or null if absent.
+         * @return The new entry, {@code existing} to leave the key untouched, or null to remove it.
+         */
+        DataEntry apply(String key, DataEntry existing);
+    }
+
+    /**
+     * Changes the current entry of a key in place instead of replacing it.
+     */
+    @FunctionalInterface
+    interface InPlaceUpdate {
+        /**
+         * @param existing The current entry.
+         * @return Whether the entry was changed; false falls back to the regular update.
+         */
+        boolean apply(DataEntry existing);
+    }
+
+    /**
+     * Changes part of the current entry of a key in place.
+     */
+    @FunctionalInterface
+    interface DeltaUpdate {
+        /**
+         * @param existing The current entry.
+         * @return The changed part, logged instead of the whole entry and applied again by
+         * {@link DataEntry#merge} on recovery, or null to fall back to the regular update.
+         */
+        Object apply(DataEntry existing);
+    }
+
+    /**
+     * Removes an eviction victim unless the caller keeps it from being written.
+     */
+    @FunctionalInterface
+    interface VictimGuard {
+        /**
+         * @param key     The victim.
+         * @param removal Removes the victim.
+         * @return Whether the removal ran; false skips the victim.
+         */
+        boolean tryRemove(String key, Runnable removal);
+    }
+
+    /**
+     * Retrieves the entry of a key.
+     *
+     * @param key The key.
+     * @return The entry or null if absent.
+     */
+    DataEntry get(String key);
+
+    /**
+     * Atomically applies an update to one key and logs the result. With synchronous writes
+     * this returns once the log record is on disk; the key is no longer locked while waiting.
+     *
+     * @param key    The key to write.
+     * @param update Computes the new entry.
+     * @return The entry stored after the update, or null if the key is absent.
+     */
+    DataEntry compute(String key, Update update);
+
+    /**
+     * Like {@link #compute(String, Update)}, but first offers the current entry to be
+     * changed in place when nothing can still read its old value, which avoids allocating
+     * a new entry per write. Engines that copy entries out use the regular update.
+     *
+     * @param key     The key to write.
+     * @param update  Computes the new entry when the entry cannot be changed in place.
+     * @param inPlace Changes the current entry in place.
+     * @return The entry stored after the update, or null if the key is absent.
+     */
+    default DataEntry compute(String key, Update update, InPlaceUpdate inPlace) {
+        return compute(key, update);
+    }
+
+    /**
+     * Like {@link #compute(String, Update, InPlaceUpdate)} for entries holding a collection,
+     * such as a hash: when the current entry can be changed in place, only the changed part
+     * is logged, so the cost of the write does not grow with the size of the collection.
+     * Engines without merge records, such as the LSM engine, keep this default, which
+     * rewrites and logs the whole entry.
+     *
+     * @param key     The key to write.
+     * @param update  Computes the new entry when the entry cannot be changed in place.
+     * @param inPlace Changes part of the current entry in place.
+     * @return The entry stored after the update, or null if the key is absent.
+     */
+    default DataEntry computeDelta(String key, Update update, DeltaUpdate inPlace) {
+        return compute(key, update);
+    }
+
+    /**
+     * Runs several writes whose log records are kept together, so recovery restores all
+     * of them or none. The caller must hold the written keys until the method returns.
+     * With synchronous writes this returns once the whole group is on disk.
+     *
+     * @param writes Makes the writes on the calling thread.
+     */
+    void writeAtomically(Runnable writes);
+
+    /**
+     * Lists entries in key order. Entries written while the scan runs may or may not be included.
+     *
+     * @param fromKey   The key the range starts at, or null to start at the lowest key.
+     * @param inclusive Whether an entry with exactly {@code fromKey} is included.
+     * @param toKey     The key the range ends before, or null for no upper bound.
+     * @param limit     Maximum number of entries.
+     * @return The entries in key order.
+     * @throws UnsupportedOperationException If the engine keeps no ordered index.
+     */
+    List<DataEntry> scan(String fromKey, boolean inclusive, String toKey, int limit);
+
+    /**
+     * Visits every entry with a time to live, so expiries can be scheduled after a restart.
+     *
+     * @param action Receives the key and the expiry time in epoch millis.
+     */
+    void forEachExpiring(ObjLongConsumer<String> action);
+
+    /**
+     * Finds the largest version of any entry, so a version sequence restored without its
+     * file continues after it.
+     *
+     * @return The largest version, or 0 if no entry has one.
+     */
+    long maxVersion();
+
+    /**
+     * Evicts entries while the engine is over its entry or memory limit.
+     *
+     * @param candidate The key just written, which the policy may evict itself; may be null.
+     * @param guard     Runs the removal of every victim, or skips it.
+     * @return The removals of the evicted keys, each with its version; empty for engines without limits.
+     */
+    default List<DataEntry> evict(String candidate, VictimGuard guard) {
+        return List.of();
+    }
+
+    /**
+     * @return The eviction limits and counters, or null if the engine never evicts.
+     */
+    default EvictionStats getEvictionStats() {
+        return null;
+    }
+
+    /**
+     * Returns a copy of all entries.
+     *
+     * @return Copy of the data.
+     */
+    Map<String, DataEntry> copy();
+
+    /**
+     * Removes every entry.
+     */
+    void clear();
+
+    /**
+     * Waits for the changes made so far to reach the disk.
+     *
+     * @return Future completed once every change acknowledged before the call is durable,
+     * or completed exceptionally if the log failed.
+     */
+    CompletableFuture<Void> sync();
+
+    /**
+     * Persists the changes made since the previous checkpoint.
+     */
+    void checkpoint();
+
+    /**
+     * Creates a backup generation from the persisted files.
+     */
+    void backup();
+
+    /**
+     * Flushes the log and releases the engine's resources.
+     */
+    void close();
+}
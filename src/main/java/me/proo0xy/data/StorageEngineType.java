@@ -0,0 +1,11 @@
+package me.proo0xy.data;
+
+/**
+ * The storage engines a {@link DataStore} can run on.
+ */
+public enum StorageEngineType {
+    // Every entry on the heap, persisted as partitioned snapshots.
+    MEMORY,
+    // Memtable on the heap, everything else in leveled SSTables on disk.
+    LSM
+}
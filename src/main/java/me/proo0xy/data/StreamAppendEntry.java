@@ -0,0 +1,33 @@
+package me.proo0xy.data;
+
+import com.google.gson.annotations.JsonAdapter;
+
+/**
+ * StreamAppendEntry tells subscribers which event a write appended to a stream, so they
+ * receive only that event instead of the whole stream. Its value is the event.
+ */
+@JsonAdapter(DataEntryTypeAdapter.class)
+public final class StreamAppendEntry extends DataEntry {
+
+    /**
+     * @param key     The key of the stream.
+     * @param event   The appended event.
+     * @param version The version of the write.
+     */
+    public StreamAppendEntry(String key, StreamEvent event, long version) {
+        super(key, event);
+        setVersion(version);
+    }
+
+    /**
+     * @return The appended event.
+     */
+    public StreamEvent getEvent() {
+        return (StreamEvent) getValue();
+    }
+
+    @Override
+    public void setValue(Object value) {
+        throw new UnsupportedOperationException("Stream appends are immutable");
+    }
+}
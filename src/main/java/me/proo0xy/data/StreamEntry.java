@@ -0,0 +1,387 @@
+package me.proo0xy.data;
+
+import com.google.gson.annotations.JsonAdapter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * StreamEntry holds a stream: an append-only sequence of events, each with an ID the
+ * server assigns and a few fields. Events are kept in chunks of parallel arrays rather
+ * than as objects of their own, and trimming drops whole chunks once their last event
+ * is gone, so a long stream costs little more than its fields.
+ * <p>
+ * A stream may cap its length, its age or both. Appends trim the events beyond the
+ * caps, taking the age from the ID of the appended event so recovery trims the same
+ * events; reads skip events past the age cap until the next append trims them.
+ * <p>
+ * Appends change the stream in place and the engine logs only the appended events.
+ * Readers share a lock that an append holds exclusively while it changes the chunks.
+ * A stream with a time to live is held by an {@link ExpiringEntry} with a
+ * {@link StreamValue}, which is copied on every append.
+ */
+@JsonAdapter(DataEntryTypeAdapter.class)
+public final class StreamEntry extends DataEntry {
+
+    // Events per chunk.
+    private static final int CHUNK_SIZE = 256;
+
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final StampedLock lock = new StampedLock();
+    private StreamId lastId;
+    private long maxLength;
+    private long maxAge;
+    private int size;
+    // Estimated heap size of the events, kept per event so eviction never walks the stream.
+    private volatile long eventBytes;
+
+    /**
+     * @param key   The key.
+     * @param value The stream.
+     */
+    public StreamEntry(String key, StreamValue value) {
+        super(key, null);
+        this.lastId = StreamId.MIN;
+        apply(value);
+    }
+
+    /**
+     * Returns the stream held by an entry. A stream with a time to live is copied into chunks first.
+     *
+     * @param entry The entry, or null.
+     * @return The stream, or null if the entry is null.
+     * @throws IllegalArgumentException If the entry holds another type.
+     */
+    public static StreamEntry streamOf(DataEntry entry) {
+        if (entry == null) {
+            return null;
+        }
+        if (entry instanceof StreamEntry stream) {
+            return stream;
+        }
+        if (entry.getValue() instanceof StreamValue value) {
+            return new StreamEntry(entry.getKey(), value);
+        }
+        throw new IllegalArgumentException("Value of key '" + entry.getKey() + "' is not a stream.");
+    }
+
+    /**
+     * Creates the entry holding a stream with events appended, keeping the time to live of the current entry.
+     *
+     * @param key      The key.
+     * @param current  The current entry, or null.
+     * @param appended The appended events with the caps of the stream.
+     * @return The new entry.
+     * @throws IllegalArgumentException If the current entry holds another type.
+     */
+    public static DataEntry withAppended(String key, DataEntry current, StreamValue appended) {
+        StreamEntry existing = streamOf(current);
+        StreamEntry updated = new StreamEntry(key, existing != null ? existing.toValue() : appended);
+        if (existing != null) {
+            updated.apply(appended);
+        }
+        if (current instanceof ExpiringEntry expiring) {
+            return new ExpiringEntry(key, updated.toValue(), expiring.getExpiresAt());
+        }
+        return updated;
+    }
+
+    /**
+     * Applies logged appends to a recovered entry, in place when it is a stream.
+     *
+     * @param key      The key.
+     * @param existing The recovered entry, or null.
+     * @param appended The appended events with the caps of the stream.
+     * @return The entry after the append.
+     */
+    static DataEntry merge(String key, DataEntry existing, StreamValue appended) {
+        if (existing instanceof StreamEntry stream) {
+            stream.apply(appended);
+            return stream;
+        }
+        return withAppended(key, existing, appended);
+    }
+
+    /**
+     * Returns the ID the next event gets: the current millis, or the millis of the last
+     * event with the next sequence if the clock has not moved past it.
+     *
+     * @param stream The stream, or null if absent.
+     * @param now    The current time in epoch millis.
+     * @return The ID.
+     */
+    public static StreamId nextId(StreamEntry stream, long now) {
+        StreamId last = stream != null ? stream.getLastId() : StreamId.MIN;
+        return now > last.millis() ? new StreamId(now, 0) : last.next();
+    }
+
+    /**
+     * Appends events and applies the caps that come with them. Only the storage engine and the store call this, while they hold the key.
+     *
+     * @param appended The events, with IDs above the last one, and the caps of the stream.
+     */
+    public void apply(StreamValue appended) {
+        long stamp = lock.writeLock();
+        try {
+            maxLength = appended.maxLength();
+            maxAge = appended.maxAge();
+            long bytes = eventBytes;
+            for (StreamEvent event : appended.events()) {
+                Chunk chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+                if (chunk == null || chunk.end == CHUNK_SIZE) {
+                    chunk = new Chunk();
+                    chunks.add(chunk);
+                }
+                Object[] fields = flatten(event.fields());
+                chunk.millis[chunk.end] = event.id().millis();
+                chunk.sequences[chunk.end] = event.id().sequence();
+                chunk.fields[chunk.end++] = fields;
+                bytes += eventSize(fields);
+                size++;
+            }
+            if (appended.lastId().compareTo(lastId) > 0) {
+                lastId = appended.lastId();
+            }
+            eventBytes = bytes - trim(lastId.millis());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Lists the events with IDs between two IDs, both included, that are within the age cap.
+     *
+     * @param from  The lowest ID.
+     * @param to    The highest ID.
+     * @param limit Maximum number of events.
+     * @param now   The current time in epoch millis.
+     * @return The events in ID order.
+     */
+    public List<StreamEvent> range(StreamId from, StreamId to, int limit, long now) {
+        long stamp = lock.readLock();
+        try {
+            if (maxAge > 0 && from.millis() < now - maxAge) {
+                from = new StreamId(now - maxAge, 0);
+            }
+            List<StreamEvent> range = new ArrayList<>(Math.min(limit, 64));
+            for (int c = firstChunk(from); c < chunks.size() && range.size() < limit; c++) {
+                Chunk chunk = chunks.get(c);
+                for (int i = chunk.indexOf(from); i < chunk.end && range.size() < limit; i++) {
+                    StreamId id = new StreamId(chunk.millis[i], chunk.sequences[i]);
+                    if (id.compareTo(to) > 0) {
+                        return range;
+                    }
+                    range.add(new StreamEvent(id, fieldsOf(chunk.fields[i])));
+                }
+            }
+            return range;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return The ID of the last event appended, which may have been trimmed since; the lowest ID if none was.
+     */
+    public StreamId getLastId() {
+        long stamp = lock.readLock();
+        try {
+            return lastId;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return Maximum number of events kept, 0 for no limit.
+     */
+    public long getMaxLength() {
+        long stamp = lock.readLock();
+        try {
+            return maxLength;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return Maximum age in millis of the events kept, 0 for no limit.
+     */
+    public long getMaxAge() {
+        long stamp = lock.readLock();
+        try {
+            return maxAge;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return Number of events kept.
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return The estimated heap size of the events in bytes.
+     */
+    long estimateEventBytes() {
+        return eventBytes;
+    }
+
+    /**
+     * @return The stream with all events kept.
+     */
+    public StreamValue toValue() {
+        long stamp = lock.readLock();
+        try {
+            List<StreamEvent> events = new ArrayList<>(size);
+            for (Chunk chunk : chunks) {
+                for (int i = chunk.start; i < chunk.end; i++) {
+                    events.add(new StreamEvent(new StreamId(chunk.millis[i], chunk.sequences[i]), fieldsOf(chunk.fields[i])));
+                }
+            }
+            return new StreamValue(lastId, maxLength, maxAge, events);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Drops the oldest events beyond the caps.
+     *
+     * @param now The millis the age cap counts from.
+     * @return The estimated size of the dropped events.
+     */
+    private long trim(long now) {
+        long dropped = 0;
+        while (!chunks.isEmpty()) {
+            Chunk chunk = chunks.get(0);
+            boolean tooMany = maxLength > 0 && size > maxLength;
+            boolean tooOld = maxAge > 0 && chunk.millis[chunk.start] < now - maxAge;
+            if (!tooMany && !tooOld) {
+                break;
+            }
+            dropped += eventSize(chunk.fields[chunk.start]);
+            chunk.fields[chunk.start++] = null;
+            size--;
+            if (chunk.start == chunk.end) {
+                chunks.remove(0);
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * @param from The lowest ID wanted.
+     * @return The index of the first chunk that may hold an event at or above the ID.
+     */
+    private int firstChunk(StreamId from) {
+        int low = 0;
+        int high = chunks.size() - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            Chunk chunk = chunks.get(middle);
+            if (chunk.compare(chunk.end - 1, from) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static Object[] flatten(Map<String, Object> fields) {
+        Object[] flat = new Object[fields.size() * 2];
+        int i = 0;
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            flat[i++] = field.getKey();
+            flat[i++] = field.getValue();
+        }
+        return flat;
+    }
+
+    private static Map<String, Object> fieldsOf(Object[] flat) {
+        Map<String, Object> fields = new LinkedHashMap<>(Math.max(4, flat.length));
+        for (int i = 0; i < flat.length; i += 2) {
+            fields.put((String) flat[i], flat[i + 1]);
+        }
+        return Collections.unmodifiableMap(fields);
+    }
+
+    private static long eventSize(Object[] fields) {
+        // Chunk slots and the array of fields, then the name and value of every field.
+        long size = 16 + 16 + fields.length * 4L;
+        for (int i = 0; i < fields.length; i += 2) {
+            size += 40 + ((String) fields[i]).length() + (fields[i + 1] instanceof String string ? 40 + string.length() : 24);
+        }
+        return size;
+    }
+
+    @Override
+    public Object getValue() {
+        return toValue();
+    }
+
+    @Override
+    public void setValue(Object value) {
+        throw new UnsupportedOperationException("Stream entries change by appending");
+    }
+
+    @Override
+    protected Object storedValue() {
+        return toValue();
+    }
+
+    @Override
+    public DataEntry detach() {
+        long version = getVersion();
+        StreamEntry copy = new StreamEntry(getKey(), toValue());
+        copy.setVersion(version);
+        return copy;
+    }
+
+    /**
+     * Events in parallel arrays, from {@code start}, the oldest event kept, up to {@code end}.
+     */
+    private static final class Chunk {
+        final long[] millis = new long[CHUNK_SIZE];
+        final long[] sequences = new long[CHUNK_SIZE];
+        // Names and values of the fields of every event, alternating.
+        final Object[][] fields = new Object[CHUNK_SIZE][];
+        int start;
+        int end;
+
+        /**
+         * @return The index of the first event kept at or above the ID, or {@code end} if there is none.
+         */
+        int indexOf(StreamId from) {
+            int low = start;
+            int high = end;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compare(middle, from) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        int compare(int index, StreamId id) {
+            int order = Long.compare(millis[index], id.millis());
+            return order != 0 ? order : Long.compare(sequences[index], id.sequence());
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package me.proo0xy.data;
+
+import java.util.Map;
+
+/**
+ * StreamEvent is an event of a stream read together with its ID.
+ *
+ * @param id     The ID.
+ * @param fields The fields of the event, with a string, number or boolean value each.
+ */
+public record StreamEvent(StreamId id, Map<String, Object> fields) {
+}
@@ -0,0 +1,64 @@
+package me.proo0xy.data;
+
+/**
+ * StreamId identifies an event of a stream: the millis at which the server appended it
+ * and a sequence number telling apart events appended within the same milli. IDs grow
+ * with every append, so they double as cursors for reading a stream.
+ *
+ * @param millis   The epoch millis of the append.
+ * @param sequence The number of the event within that milli.
+ */
+public record StreamId(long millis, long sequence) implements Comparable<StreamId> {
+
+    /**
+     * The lowest ID, below every event.
+     */
+    public static final StreamId MIN = new StreamId(0, 0);
+    /**
+     * The highest ID, above every event.
+     */
+    public static final StreamId MAX = new StreamId(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    /**
+     * Parses an ID written as {@code millis-sequence}, or as {@code millis} alone.
+     *
+     * @param text            The text.
+     * @param defaultSequence The sequence of an ID written without one.
+     * @return The ID.
+     * @throws IllegalArgumentException If the text is not an ID.
+     */
+    public static StreamId parse(String text, long defaultSequence) {
+        try {
+            int dash = text.indexOf('-');
+            if (dash < 0) {
+                return new StreamId(Long.parseLong(text), defaultSequence);
+            }
+            long millis = Long.parseLong(text.substring(0, dash));
+            long sequence = Long.parseLong(text.substring(dash + 1));
+            if (millis < 0 || sequence < 0) {
+                throw new NumberFormatException();
+            }
+            return new StreamId(millis, sequence);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid stream ID: " + text);
+        }
+    }
+
+    /**
+     * @return The lowest ID above this one.
+     */
+    public StreamId next() {
+        return sequence < Long.MAX_VALUE ? new StreamId(millis, sequence + 1) : new StreamId(millis + 1, 0);
+    }
+
+    @Override
+    public int compareTo(StreamId other) {
+        int order = Long.compare(millis, other.millis);
+        return order != 0 ? order : Long.compare(sequence, other.sequence);
+    }
+
+    @Override
+    public String toString() {
+        return millis + "-" + sequence;
+    }
+}
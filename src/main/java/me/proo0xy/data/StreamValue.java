@@ -0,0 +1,16 @@
+package me.proo0xy.data;
+
+import java.util.List;
+
+/**
+ * StreamValue is the persisted form of a stream. It is what {@link StreamEntry#getStoredValue()}
+ * hands to the log and the snapshot files, and also the form in which appends are logged,
+ * then holding only the appended events.
+ *
+ * @param lastId    The ID of the last event appended, which may have been trimmed since.
+ * @param maxLength Maximum number of events kept, 0 for no limit.
+ * @param maxAge    Maximum age in millis of the events kept, 0 for no limit.
+ * @param events    The events in ID order.
+ */
+public record StreamValue(StreamId lastId, long maxLength, long maxAge, List<StreamEvent> events) {
+}
@@ -0,0 +1,154 @@
+package me.proo0xy.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TimingWheel is a hierarchical timing wheel holding the expiry times of keys.
+ * <p>
+ * Time is cut into ticks. Level 0 has one slot per tick for the next 64 ticks,
+ * and every further level covers 64 times the span of the one below it. Adding
+ * a timer and advancing one tick are O(1): a tick only visits the level 0 slot
+ * it reaches, and once per revolution of a level the matching slot of the level
+ * above is cascaded down. Five levels cover 64^5 ticks; later timers wait in
+ * the top level and are placed again when they come around.
+ * <p>
+ * Timers are never cancelled. A key whose expiry changed leaves a stale timer
+ * behind, and the caller checks the key's current expiry when the timer fires.
+ */
+class TimingWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 5;
+    private static final long MAX_SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    private final long tickMillis;
+    private final Timer[][] slots = new Timer[LEVELS][SLOTS];
+    // Timers that were already due when they were added.
+    private Timer due;
+    // The last tick that has been processed.
+    private long currentTick;
+    private long size;
+
+    /**
+     * @param tickMillis Length of a tick in millis, the precision of expiries.
+     * @param now        The current time in epoch millis.
+     */
+    TimingWheel(long tickMillis, long now) {
+        this.tickMillis = tickMillis;
+        this.currentTick = now / tickMillis;
+    }
+
+    /**
+     * Adds a timer for a key.
+     *
+     * @param key       The key.
+     * @param expiresAt When the key expires, in epoch millis.
+     */
+    synchronized void schedule(String key, long expiresAt) {
+        place(new Timer(key, expiresAt), false);
+        size++;
+    }
+
+    /**
+     * Processes every tick up to the current time.
+     *
+     * @param now The current time in epoch millis.
+     * @return The timers that fired, possibly stale.
+     */
+    synchronized List<Timer> advance(long now) {
+        List<Timer> fired = new ArrayList<>();
+        collect(due, fired);
+        due = null;
+
+        long targetTick = now / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Cascade the levels whose lower levels just completed a revolution, top level first.
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    int index = (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+                    Timer cascaded = slots[level][index];
+                    slots[level][index] = null;
+                    while (cascaded != null) {
+                        Timer next = cascaded.next;
+                        place(cascaded, true);
+                        cascaded = next;
+                    }
+                }
+            }
+            int index = (int) currentTick & SLOT_MASK;
+            collect(slots[0][index], fired);
+            slots[0][index] = null;
+        }
+        size -= fired.size();
+        return fired;
+    }
+
+    /**
+     * @return Number of pending timers, including stale ones.
+     */
+    synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Puts a timer into the slot of its tick.
+     *
+     * @param timer     The timer.
+     * @param cascading Whether the current tick's level 0 slot is still to be processed.
+     */
+    private void place(Timer timer, boolean cascading) {
+        long tick = Math.floorDiv(timer.expiresAt + tickMillis - 1, tickMillis);
+        long delta = tick - currentTick;
+        if (delta < 0 || (delta == 0 && !cascading)) {
+            timer.next = due;
+            due = timer;
+            return;
+        }
+        if (delta >= MAX_SPAN) {
+            tick = currentTick + MAX_SPAN - 1;
+            delta = MAX_SPAN - 1;
+        }
+        int level = 0;
+        while (delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int index = (int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK;
+        timer.next = slots[level][index];
+        slots[level][index] = timer;
+    }
+
+    private static void collect(Timer head, List<Timer> target) {
+        for (Timer timer = head; timer != null; ) {
+            Timer next = timer.next;
+            timer.next = null;
+            target.add(timer);
+            timer = next;
+        }
+    }
+
+    /**
+     * A pending expiry of one key.
+     */
+    static final class Timer {
+        private final String key;
+        private final long expiresAt;
+        private Timer next;
+
+        private Timer(String key, long expiresAt) {
+            this.key = key;
+            this.expiresAt = expiresAt;
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+}
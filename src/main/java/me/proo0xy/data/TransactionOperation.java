@@ -0,0 +1,35 @@
+package me.proo0xy.data;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * TransactionOperation is one step of a transaction run by {@link DataStore#transact}.
+ */
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TransactionOperation {
+    // What the operation does.
+    Type type;
+    // The key it applies to.
+    String key;
+    // The value to put, an ExpiringValue for one with a time to live; null for other types.
+    Object value;
+    // The version the key must be at before the transaction, 0 if it must be absent, or null for any.
+    Long expectedVersion;
+
+    /**
+     * The kinds of operations.
+     */
+    public enum Type {
+        // Stores the value.
+        PUT,
+        // Removes the key.
+        REMOVE,
+        // Only checks the expected version, for keys the transaction read but does not write.
+        CHECK
+    }
+}
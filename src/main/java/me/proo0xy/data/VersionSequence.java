@@ -0,0 +1,107 @@
+package me.proo0xy.data;
+
+import me.proo0xy.data.persistence.DurableFiles;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * VersionSequence hands out the versions of entries from one global counter, so a
+ * larger version is always a later write, also across restarts.
+ * <p>
+ * The counter is not logged per write. Instead, the sequence durably reserves a block
+ * of versions ahead and only touches the disk again once the block is used up. After
+ * a crash the sequence continues after the reserved block, skipping the versions it
+ * never handed out.
+ */
+public class VersionSequence {
+
+    private static final Logger log = LoggerFactory.getLogger(VersionSequence.class);
+
+    // Versions reserved per write of the file.
+    private static final long BLOCK_SIZE = 1 << 20;
+
+    private final Path file;
+    // Whether the file did not exist yet, so versions found in the data may be ahead of it.
+    private final boolean created;
+    private final AtomicLong last;
+    private volatile long reserved;
+
+    /**
+     * Opens the sequence, continuing after every version reserved before.
+     *
+     * @param file The file holding the end of the reserved block.
+     * @throws UncheckedIOException If the file cannot be read or written.
+     */
+    public VersionSequence(Path file) {
+        this.file = file;
+        long start = 0;
+        this.created = !Files.exists(file);
+        try {
+            if (!created) {
+                start = Long.parseLong(Files.readString(file, StandardCharsets.UTF_8).trim());
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalStateException("Cannot read the version sequence from " + file, e);
+        }
+        this.last = new AtomicLong(start);
+        this.reserved = start;
+        reserveUpTo(start);
+        log.info("Versions continue after {}.", start);
+    }
+
+    /**
+     * @return A version larger than every version handed out before.
+     */
+    public long next() {
+        long version = last.incrementAndGet();
+        if (version > reserved) {
+            reserveUpTo(version);
+        }
+        return version;
+    }
+
+    /**
+     * @return Whether the sequence started without a file, e.g. on a new store or after
+     * restoring data into another directory.
+     */
+    public boolean isCreated() {
+        return created;
+    }
+
+    /**
+     * Moves the sequence past a version found on disk, for stores written before the
+     * sequence was persisted or restored without its file.
+     *
+     * @param version The version.
+     */
+    public void advanceTo(long version) {
+        if (last.accumulateAndGet(version, Math::max) > reserved) {
+            reserveUpTo(version);
+        }
+    }
+
+    /**
+     * Reserves a new block that covers a version before it is handed out.
+     *
+     * @param version The version to cover.
+     */
+    private synchronized void reserveUpTo(long version) {
+        if (version < reserved) {
+            return;
+        }
+        long limit = version + BLOCK_SIZE;
+        try {
+            DurableFiles.writeString(file, Long.toString(limit));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot reserve versions in " + file, e);
+        }
+        reserved = limit;
+    }
+}
@@ -0,0 +1,282 @@
+package me.proo0xy.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * VersionedMap is the concurrent map behind the store. It can freeze a
+ * point-in-time view in O(1) while writers keep going.
+ * <p>
+ * Every write runs inside an epoch. Starting a snapshot advances the epoch and
+ * waits only for writes still running in the old epoch. Writes in the new epoch
+ * copy the previous entry of a key into the snapshot before they replace it,
+ * once per key. The snapshot therefore reads the untouched live entries plus
+ * those preserved copies, and never blocks a writer.
+ * <p>
+ * Several writes can share one epoch through {@link #runInEpoch}, so a snapshot
+ * holds all of them or none.
+ */
+public class VersionedMap {
+
+    // Marks a key that did not exist when the snapshot was taken.
+    private static final DataEntry ABSENT = new DataEntry("", null);
+
+    private final ConcurrentHashMap<String, DataEntry> map = new ConcurrentHashMap<>();
+    private final LongAdder[] inFlight = {new LongAdder(), new LongAdder()};
+    private volatile long epoch;
+    private volatile Snapshot activeSnapshot;
+    // Epoch held by a thread inside runInEpoch(), which its writes join.
+    private final ThreadLocal<Long> heldEpoch = new ThreadLocal<>();
+
+    /**
+     * Computes a new entry for a key inside the current write epoch.
+     */
+    @FunctionalInterface
+    public interface Mutation {
+        /**
+         * @param key      The key being written.
+         * @param existing The current entry, or null if absent.
+         * @param epoch    The epoch the write belongs to.
+         * @return The new entry, or null to remove the key.
+         */
+        DataEntry apply(String key, DataEntry existing, long epoch);
+    }
+
+    /**
+     * Atomically applies a mutation to one key.
+     *
+     * @param key      The key to write.
+     * @param mutation Computes the new entry.
+     * @return The entry stored after the mutation, or null if the key is absent.
+     */
+    public DataEntry compute(String key, Mutation mutation) {
+        Long held = heldEpoch.get();
+        long writeEpoch = held != null ? held : enter();
+        try {
+            return map.compute(key, (k, existing) -> {
+                DataEntry updated = mutation.apply(k, existing, writeEpoch);
+                if (updated != existing) {
+                    preserve(k, existing, writeEpoch);
+                }
+                return updated;
+            });
+        } finally {
+            if (held == null) {
+                inFlight[(int) (writeEpoch & 1)].decrement();
+            }
+        }
+    }
+
+    /**
+     * Runs several writes of the calling thread in one epoch. A snapshot starting meanwhile
+     * waits until they are done, so it holds all of them or none. The writes must not wait
+     * for a snapshot. Nested calls join the outer epoch.
+     *
+     * @param writes Makes the writes on the calling thread.
+     */
+    public void runInEpoch(Runnable writes) {
+        if (heldEpoch.get() != null) {
+            writes.run();
+            return;
+        }
+        long writeEpoch = enter();
+        heldEpoch.set(writeEpoch);
+        try {
+            writes.run();
+        } finally {
+            heldEpoch.remove();
+            inFlight[(int) (writeEpoch & 1)].decrement();
+        }
+    }
+
+    /**
+     * Tells whether a write may change the live entry of a key in place. That is safe
+     * unless an active snapshot could still read the entry: the write either belongs to
+     * the snapshot's epoch, or the snapshot already keeps its own copy of the key.
+     * Must be called from the mutation of {@link #compute} for that key.
+     *
+     * @param key        The key being written.
+     * @param writeEpoch The epoch of the write.
+     * @return Whether the live entry may be changed in place.
+     */
+    public boolean isExclusive(String key, long writeEpoch) {
+        Snapshot snapshot = activeSnapshot;
+        return snapshot == null || writeEpoch <= snapshot.epoch || snapshot.preserved.containsKey(key);
+    }
+
+    /**
+     * Retrieves the live entry of a key.
+     *
+     * @param key The key.
+     * @return The entry or null if absent.
+     */
+    public DataEntry get(String key) {
+        return map.get(key);
+    }
+
+    /**
+     * Returns the number of live entries.
+     *
+     * @return Number of entries.
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Returns a live view of the keys.
+     *
+     * @return The key set view.
+     */
+    public Set<String> keySet() {
+        return map.keySet();
+    }
+
+    /**
+     * Returns a copy of all live entries.
+     *
+     * @return Copy of the map.
+     */
+    public Map<String, DataEntry> copy() {
+        return new ConcurrentHashMap<>(map);
+    }
+
+    /**
+     * Gives direct access to the backing map. Only for recovery, before any writer runs.
+     *
+     * @return The backing map.
+     */
+    public Map<String, DataEntry> recoveryView() {
+        return map;
+    }
+
+    /**
+     * Freezes the current content. All writes of the closed epoch are complete
+     * when this returns; later writes only add copies to the snapshot.
+     *
+     * @return The snapshot, to be closed once it has been persisted.
+     */
+    public synchronized Snapshot beginSnapshot() {
+        if (activeSnapshot != null) {
+            throw new IllegalStateException("A snapshot is already active.");
+        }
+        long closedEpoch = epoch;
+        Snapshot snapshot = new Snapshot(closedEpoch);
+        activeSnapshot = snapshot;
+        epoch = closedEpoch + 1;
+
+        LongAdder closing = inFlight[(int) (closedEpoch & 1)];
+        while (closing.sum() != 0) {
+            Thread.onSpinWait();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the epoch new writes currently belong to.
+     *
+     * @return The current epoch.
+     */
+    public long currentEpoch() {
+        return epoch;
+    }
+
+    private long enter() {
+        while (true) {
+            long current = epoch;
+            LongAdder counter = inFlight[(int) (current & 1)];
+            counter.increment();
+            if (epoch == current) {
+                return current;
+            }
+            counter.decrement();
+        }
+    }
+
+    private void preserve(String key, DataEntry previous, long writeEpoch) {
+        Snapshot snapshot = activeSnapshot;
+        // Writes of the closed epoch still running while the snapshot starts belong to it.
+        if (snapshot != null && writeEpoch > snapshot.epoch) {
+            snapshot.preserved.putIfAbsent(key, previous != null ? previous : ABSENT);
+        }
+    }
+
+    /**
+     * A frozen, point-in-time view of the map.
+     */
+    public class Snapshot implements AutoCloseable {
+        private final long epoch;
+        private final Map<String, DataEntry> preserved = new ConcurrentHashMap<>();
+
+        private Snapshot(long epoch) {
+            this.epoch = epoch;
+        }
+
+        /**
+         * Returns the epoch whose writes this snapshot contains.
+         *
+         * @return The closed epoch.
+         */
+        public long getEpoch() {
+            return epoch;
+        }
+
+        /**
+         * Retrieves the entry of a key as of the snapshot.
+         *
+         * @param key The key.
+         * @return The entry or null if the key was absent.
+         */
+        public DataEntry get(String key) {
+            DataEntry frozen = preserved.get(key);
+            if (frozen != null) {
+                return frozen == ABSENT ? null : frozen;
+            }
+            // Re-check after the live read: a writer preserves the old entry before it publishes a new one.
+            DataEntry live = map.get(key);
+            frozen = preserved.get(key);
+            if (frozen != null) {
+                return frozen == ABSENT ? null : frozen;
+            }
+            return live;
+        }
+
+        /**
+         * Lists every key present in the snapshot. A key changed while the list is
+         * built may appear twice, and a key created after the snapshot may appear
+         * with {@link #get} returning null; callers resolve values through {@link #get}.
+         *
+         * @return The keys.
+         */
+        public List<String> keys() {
+            List<String> keys = new ArrayList<>(map.size() + preserved.size());
+            for (String key : map.keySet()) {
+                if (preserved.get(key) != ABSENT) {
+                    keys.add(key);
+                }
+            }
+            preserved.forEach((key, entry) -> {
+                if (entry != ABSENT) {
+                    keys.add(key);
+                }
+            });
+            return keys;
+        }
+
+        /**
+         * Releases the snapshot; writers stop preserving entries for it.
+         */
+        @Override
+        public void close() {
+            synchronized (VersionedMap.this) {
+                if (activeSnapshot == this) {
+                    activeSnapshot = null;
+                }
+            }
+        }
+    }
+}
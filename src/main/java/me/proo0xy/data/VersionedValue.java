@@ -0,0 +1,12 @@
+package me.proo0xy.data;
+
+/**
+ * VersionedValue is the persisted form of a value together with the version of its entry.
+ * It is what {@link DataEntry#getStoredValue()} hands to the log and the snapshot files,
+ * and {@link DataEntry#of} restores the version from it.
+ *
+ * @param version The version of the entry.
+ * @param value   The value itself, possibly an {@link ExpiringValue}.
+ */
+public record VersionedValue(long version, Object value) {
+}
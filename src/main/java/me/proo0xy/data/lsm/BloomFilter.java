@@ -0,0 +1,106 @@
+package me.proo0xy.data.lsm;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * BloomFilter answers "definitely absent" for most keys an SSTable does not hold,
+ * so a point lookup skips the table without touching its blocks.
+ * Probes are derived from one 64-bit hash by double hashing.
+ */
+final class BloomFilter {
+
+    private static final int BITS_PER_KEY = 10;
+
+    private final long[] words;
+    private final int hashCount;
+
+    private BloomFilter(long[] words, int hashCount) {
+        this.words = words;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Builds a filter from the key hashes collected while a table was written.
+     *
+     * @param hashes Key hashes from {@link #hash}.
+     * @param count  Number of valid hashes in the array.
+     * @return The filter.
+     */
+    static BloomFilter build(long[] hashes, int count) {
+        long bits = Math.max(64, (long) count * BITS_PER_KEY);
+        // k = ln 2 * bits per key is optimal; 10 bits per key gives about 1% false positives.
+        int hashCount = Math.max(1, Math.min(30, (int) Math.round(BITS_PER_KEY * 0.69)));
+        BloomFilter filter = new BloomFilter(new long[(int) ((bits + 63) / 64)], hashCount);
+        for (int i = 0; i < count; i++) {
+            filter.add(hashes[i]);
+        }
+        return filter;
+    }
+
+    /**
+     * Hashes a key with 64-bit FNV-1a over its UTF-8 bytes, followed by a final mix.
+     *
+     * @param key The key.
+     * @return The hash.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Checks whether a key may be in the table.
+     *
+     * @param hash The key hash from {@link #hash}.
+     * @return false if the key is certainly absent.
+     */
+    boolean mightContain(long hash) {
+        long bits = (long) words.length * 64;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bits);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(long hash) {
+        long bits = (long) words.length * 64;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bits);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    int serializedSize() {
+        return Integer.BYTES * 2 + words.length * Long.BYTES;
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        buffer.putInt(hashCount);
+        buffer.putInt(words.length);
+        for (long word : words) {
+            buffer.putLong(word);
+        }
+    }
+
+    static BloomFilter readFrom(ByteBuffer buffer) {
+        int hashCount = buffer.getInt();
+        long[] words = new long[buffer.getInt()];
+        buffer.asLongBuffer().get(words);
+        return new BloomFilter(words, hashCount);
+    }
+}
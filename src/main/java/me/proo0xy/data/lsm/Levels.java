@@ -0,0 +1,164 @@
+package me.proo0xy.data.lsm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Levels is an immutable view of the SSTables of the engine. Level 0 holds
+ * flushed memtables, newest first, whose key ranges may overlap. Every deeper
+ * level is a single sorted run of tables with disjoint key ranges, ordered by key.
+ * Flushes and compactions publish a new instance, so readers never lock.
+ */
+final class Levels {
+
+    static final int LEVEL_COUNT = 7;
+
+    private final List<List<SSTable>> levels;
+
+    private Levels(List<List<SSTable>> levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * Creates the levels from their tables.
+     *
+     * @param levels Tables per level, in level order.
+     * @return The levels.
+     */
+    static Levels of(List<List<SSTable>> levels) {
+        List<List<SSTable>> copy = new ArrayList<>(LEVEL_COUNT);
+        for (int i = 0; i < LEVEL_COUNT; i++) {
+            copy.add(i < levels.size() ? List.copyOf(levels.get(i)) : List.of());
+        }
+        return new Levels(Collections.unmodifiableList(copy));
+    }
+
+    /**
+     * Returns the tables of a level.
+     *
+     * @param level The level.
+     * @return Its tables.
+     */
+    List<SSTable> level(int level) {
+        return levels.get(level);
+    }
+
+    /**
+     * Returns every table, newest data first.
+     *
+     * @return All tables.
+     */
+    List<SSTable> all() {
+        List<SSTable> all = new ArrayList<>();
+        levels.forEach(all::addAll);
+        return all;
+    }
+
+    /**
+     * Returns the total file size of a level.
+     *
+     * @param level The level.
+     * @return Size in bytes.
+     */
+    long levelBytes(int level) {
+        return levels.get(level).stream().mapToLong(SSTable::getSizeBytes).sum();
+    }
+
+    /**
+     * Checks whether any level below the given one holds tables.
+     *
+     * @param level The level.
+     * @return true if deeper data exists.
+     */
+    boolean hasDataBelow(int level) {
+        for (int i = level + 1; i < LEVEL_COUNT; i++) {
+            if (!levels.get(i).isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Looks a key up, level by level, stopping at the newest entry.
+     *
+     * @param key The key.
+     * @return The entry (possibly a tombstone), or null if no table holds the key.
+     */
+    TableEntry get(String key) {
+        long hash = BloomFilter.hash(key);
+        for (SSTable table : levels.get(0)) {
+            TableEntry entry = table.get(key, hash);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        for (int i = 1; i < LEVEL_COUNT; i++) {
+            SSTable table = findTable(levels.get(i), key);
+            if (table != null) {
+                TableEntry entry = table.get(key, hash);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a copy with a freshly flushed table on top of level 0.
+     *
+     * @param table The flushed table.
+     * @return The new levels.
+     */
+    Levels withFlushed(SSTable table) {
+        List<List<SSTable>> copy = new ArrayList<>(levels);
+        List<SSTable> levelZero = new ArrayList<>(levels.get(0).size() + 1);
+        levelZero.add(table);
+        levelZero.addAll(levels.get(0));
+        copy.set(0, levelZero);
+        return of(copy);
+    }
+
+    /**
+     * Returns a copy with compaction inputs replaced by the compaction output.
+     *
+     * @param inputs      Tables read by the compaction, from any level.
+     * @param outputLevel The level receiving the output.
+     * @param outputs     The written tables.
+     * @return The new levels.
+     */
+    Levels withCompaction(Collection<SSTable> inputs, int outputLevel, List<SSTable> outputs) {
+        List<List<SSTable>> copy = new ArrayList<>(LEVEL_COUNT);
+        for (int i = 0; i < LEVEL_COUNT; i++) {
+            List<SSTable> tables = new ArrayList<>(levels.get(i));
+            tables.removeAll(inputs);
+            if (i == outputLevel) {
+                tables.addAll(outputs);
+                tables.sort(Comparator.comparing(SSTable::firstKey));
+            }
+            copy.add(tables);
+        }
+        return of(copy);
+    }
+
+    private static SSTable findTable(List<SSTable> run, String key) {
+        int low = 0;
+        int high = run.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            SSTable table = run.get(mid);
+            if (key.compareTo(table.firstKey()) < 0) {
+                high = mid - 1;
+            } else if (key.compareTo(table.lastKey()) > 0) {
+                low = mid + 1;
+            } else {
+                return table;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,802 @@
+package me.proo0xy.data.lsm;
+
+import me.proo0xy.data.DataEntry;
+import me.proo0xy.data.DataStoreSettings;
+import me.proo0xy.data.ExpiringValue;
+import me.proo0xy.data.StorageEngine;
+import me.proo0xy.data.VersionSequence;
+import me.proo0xy.data.VersionedValue;
+import me.proo0xy.data.persistence.BackupManager;
+import me.proo0xy.data.persistence.DurableFiles;
+import me.proo0xy.data.persistence.MutationType;
+import me.proo0xy.data.persistence.WalRecord;
+import me.proo0xy.data.persistence.WriteAheadLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Stream;
+
+/**
+ * LsmStorageEngine keeps only recent writes on the heap, so the data set can be
+ * much larger than the heap.
+ * <p>
+ * Writes go to the write-ahead log and a sorted memtable. A full memtable is
+ * frozen and flushed into an SSTable on level 0 by a background thread, after
+ * which its log segments are deleted. A second background thread runs leveled
+ * compaction: level 0 is merged into level 1 once it holds enough tables, and a
+ * level exceeding its size budget (ten times the previous one) pushes one table
+ * at a time into the next level. Tombstones are dropped once no deeper level
+ * can hold an older value.
+ * <p>
+ * Reads check the memtables, then the tables from newest to oldest. Tables are
+ * memory-mapped and filtered by bloom filters, so hot blocks stay in the page
+ * cache and cold keys cost no heap.
+ * <p>
+ * Values are stored whole. There are no merge records, so a write to one field of a
+ * hash or one member of a sorted set reads, rewrites and logs the whole collection
+ * through the {@link StorageEngine#computeDelta} fallback; its cost grows with the size
+ * of the collection. Large, often changed collections belong on the memory engine.
+ */
+public class LsmStorageEngine implements StorageEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(LsmStorageEngine.class);
+
+    private static final String LSM_DIRECTORY = "lsm";
+    private static final String MANIFEST_FILE = "MANIFEST";
+    private static final String TABLE_SUFFIX = ".sst";
+    private static final int LOCK_STRIPES = 1024;
+    // Writers stall once this many frozen memtables wait for their flush.
+    private static final int MAX_IMMUTABLE_MEMTABLES = 4;
+    private static final int LEVEL_ZERO_COMPACTION_TRIGGER = 4;
+    private static final int LEVEL_SIZE_MULTIPLIER = 10;
+    private static final long MIN_TABLE_SIZE = 4L << 20;
+    private static final long MAX_TABLE_SIZE = 64L << 20;
+
+    private final Path storageDirectory;
+    private final Path directory;
+    private final Path manifestPath;
+    private final long memtableSize;
+    private final long targetTableSize;
+    private final WriteAheadLog writeAheadLog;
+    private final BackupManager backupManager;
+    private final VersionSequence versions;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Object rotationLock = new Object();
+    private final Object levelsLock = new Object();
+    private final AtomicLong nextTableId = new AtomicLong();
+    private final String[] compactionPointers = new String[Levels.LEVEL_COUNT];
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "lsm-flush"));
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "lsm-compaction"));
+
+    private volatile Memtable active = new Memtable(0);
+    // Frozen memtables waiting for their flush, newest first.
+    private volatile List<Memtable> immutables = List.of();
+    private volatile Levels levels = Levels.of(List.of());
+    private volatile boolean closed;
+    // Memtable held by a thread inside writeAtomically(), which its writes go to.
+    private final ThreadLocal<Memtable> heldMemtable = new ThreadLocal<>();
+
+    /**
+     * Opens the engine, loads the table manifest and replays the write-ahead log into the memtable.
+     *
+     * @param settings Storage and persistence settings.
+     * @param versions Sequence of the versions given to written entries.
+     */
+    public LsmStorageEngine(DataStoreSettings settings, VersionSequence versions) {
+        this.versions = versions;
+        this.storageDirectory = Paths.get(settings.getStoragePath());
+        this.directory = storageDirectory.resolve(LSM_DIRECTORY);
+        this.manifestPath = directory.resolve(MANIFEST_FILE);
+        this.memtableSize = Math.max(1L << 20, settings.getMemtableSize());
+        this.targetTableSize = Math.min(MAX_TABLE_SIZE, Math.max(MIN_TABLE_SIZE, memtableSize));
+        this.writeAheadLog = new WriteAheadLog(directory.resolve("wal"), null, settings.isWalSyncWrites());
+        this.backupManager = new BackupManager(Paths.get(settings.getBackupPath()), storageDirectory.resolve("backup-staging"), settings.getBackupRetention());
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+
+        long recoveryStart = System.currentTimeMillis();
+        try {
+            openTables();
+            long replayed = writeAheadLog.replay(this::applyRecord);
+            writeAheadLog.start(active.getGeneration());
+            log.info("Recovered {} tables and {} logged mutations in {} ms.",
+                    levels.all().size(), replayed, System.currentTimeMillis() - recoveryStart);
+        } catch (IOException e) {
+            log.error("Failed to open the LSM storage in {}", directory, e);
+            throw new RuntimeException("Failed to open the LSM storage in " + directory, e);
+        }
+        if (active.approximateSize() >= memtableSize) {
+            rotate(active);
+        }
+        scheduleCompaction();
+    }
+
+    @Override
+    public DataEntry get(String key) {
+        TableEntry entry = find(key);
+        return entry == null || entry.isTombstone() ? null : DataEntry.of(key, entry.value());
+    }
+
+    @Override
+    public DataEntry compute(String key, Update update) {
+        Memtable written;
+        DataEntry updated;
+        synchronized (locks[stripe(key)]) {
+            DataEntry existing = get(key);
+            updated = update.apply(key, existing);
+            if (updated == existing || (updated == null && existing == null)) {
+                return updated;
+            }
+
+            Memtable held = heldMemtable.get();
+            written = held != null ? held : enterActive();
+            try {
+                if (updated != null) {
+                    if (updated.getVersion() == 0) {
+                        updated.setVersion(versions.next());
+                    }
+                    Object value = updated.getStoredValue();
+                    writeAheadLog.append(written.getGeneration(), MutationType.PUT, key, value);
+                    written.put(new TableEntry(key, value));
+                } else {
+                    writeAheadLog.append(written.getGeneration(), MutationType.REMOVE, key, null);
+                    written.put(TableEntry.tombstone(key));
+                }
+            } finally {
+                if (held == null) {
+                    written.exit();
+                }
+            }
+        }
+
+        // A held memtable cannot be frozen by its own writer; writeAtomically rotates it afterwards.
+        if (heldMemtable.get() == null && written.approximateSize() >= memtableSize) {
+            rotate(written);
+        }
+        writeAheadLog.awaitDurable();
+        return updated;
+    }
+
+    /**
+     * Returns a copy of all entries. This reads every table, so the whole data set
+     * ends up on the heap; it is meant for exports, not for regular traffic.
+     *
+     * @return Copy of the data.
+     */
+    @Override
+    public Map<String, DataEntry> copy() {
+        Map<String, DataEntry> copy = new HashMap<>();
+        Iterator<TableEntry> entries = mergedEntries(true);
+        while (entries.hasNext()) {
+            TableEntry entry = entries.next();
+            copy.put(entry.key(), DataEntry.of(entry.key(), entry.value()));
+        }
+        return copy;
+    }
+
+    /**
+     * Visits the entries with a time to live in the memtables, then the keys every table
+     * listed when it was written, so no table block is read. A key written again since may
+     * be visited with an older expiry as well; the store skips such stale timers when they
+     * fire. Tables written before the lists existed are read whole.
+     */
+    @Override
+    public void forEachExpiring(ObjLongConsumer<String> action) {
+        // Memtables before tables: a memtable flushed meanwhile is then found in its table.
+        for (Memtable memtable : memtables()) {
+            forEachExpiring(memtable.iterator(), action);
+        }
+        for (SSTable table : levels.all()) {
+            if (!table.forEachExpiring(action)) {
+                forEachExpiring(table.iterator(), action);
+            }
+        }
+    }
+
+    /**
+     * Takes the largest version from the memtables and from the version every table recorded
+     * when it was written. Tables written before versions were recorded are read whole.
+     */
+    @Override
+    public long maxVersion() {
+        long max = 0;
+        for (Memtable memtable : memtables()) {
+            max = Math.max(max, maxVersion(memtable.iterator()));
+        }
+        for (SSTable table : levels.all()) {
+            long recorded = table.maxVersion();
+            max = Math.max(max, recorded >= 0 ? recorded : maxVersion(table.iterator()));
+        }
+        return max;
+    }
+
+    private List<Memtable> memtables() {
+        List<Memtable> memtables = new ArrayList<>();
+        memtables.add(active);
+        memtables.addAll(immutables);
+        return memtables;
+    }
+
+    private static void forEachExpiring(Iterator<TableEntry> entries, ObjLongConsumer<String> action) {
+        while (entries.hasNext()) {
+            TableEntry entry = entries.next();
+            Object value = entry.value() instanceof VersionedValue versioned ? versioned.value() : entry.value();
+            if (value instanceof ExpiringValue expiring) {
+                action.accept(entry.key(), expiring.expiresAt());
+            }
+        }
+    }
+
+    private static long maxVersion(Iterator<TableEntry> entries) {
+        long max = 0;
+        while (entries.hasNext()) {
+            if (entries.next().value() instanceof VersionedValue versioned) {
+                max = Math.max(max, versioned.version());
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Lists entries in key order by merging the memtables and tables from the start key on.
+     * Tables are sorted already, so this needs no separate index.
+     */
+    @Override
+    public List<DataEntry> scan(String fromKey, boolean inclusive, String toKey, int limit) {
+        List<DataEntry> page = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<TableEntry> entries = mergedEntries(true, fromKey);
+        while (page.size() < limit && entries.hasNext()) {
+            TableEntry entry = entries.next();
+            if (toKey != null && entry.key().compareTo(toKey) >= 0) {
+                break;
+            }
+            if (inclusive || !entry.key().equals(fromKey)) {
+                page.add(DataEntry.of(entry.key(), entry.value()));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Removes every entry by writing a tombstone per live key; compaction reclaims the space.
+     */
+    @Override
+    public void clear() {
+        Iterator<TableEntry> entries = mergedEntries(true);
+        while (entries.hasNext()) {
+            compute(entries.next().key(), (k, existing) -> null);
+        }
+    }
+
+    /**
+     * Writes everything to one memtable and queues the log group before leaving it, so the
+     * memtable cannot be frozen and flushed with only part of the writes, and the group
+     * lands in a segment that is kept until that flush.
+     */
+    @Override
+    public void writeAtomically(Runnable writes) {
+        if (heldMemtable.get() != null) {
+            writeAheadLog.group(writes);
+            return;
+        }
+        Memtable written = enterActive();
+        heldMemtable.set(written);
+        try {
+            writeAheadLog.group(writes);
+        } finally {
+            heldMemtable.remove();
+            written.exit();
+        }
+        if (written.approximateSize() >= memtableSize) {
+            rotate(written);
+        }
+        writeAheadLog.awaitDurable();
+    }
+
+    @Override
+    public CompletableFuture<Void> sync() {
+        return writeAheadLog.sync();
+    }
+
+    /**
+     * Flushes the current memtable and waits until every frozen memtable is on disk,
+     * so the write-ahead log is truncated.
+     */
+    @Override
+    public void checkpoint() {
+        Memtable current = active;
+        if (!current.isEmpty()) {
+            rotate(current);
+        }
+        try {
+            flushExecutor.submit(this::flushPending).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Error flushing memtables", e.getCause());
+        }
+    }
+
+    /**
+     * Creates a backup generation from the current tables and a matching manifest.
+     * Tables are immutable, so they are linked rather than copied.
+     */
+    @Override
+    public void backup() {
+        try {
+            backupManager.createBackup(this::captureFiles);
+            log.info("Data backup successfully created.");
+        } catch (IOException e) {
+            log.error("Error creating data backup", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (rotationLock) {
+            rotationLock.notifyAll();
+        }
+        flushExecutor.shutdown();
+        compactionExecutor.shutdown();
+        try {
+            if (!flushExecutor.awaitTermination(60, TimeUnit.SECONDS)) {
+                log.warn("Memtable flush did not finish in time; the write-ahead log keeps its data.");
+            }
+            if (!compactionExecutor.awaitTermination(60, TimeUnit.SECONDS)) {
+                log.warn("Compaction did not finish in time; it restarts on the next start.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeAheadLog.close();
+    }
+
+    /**
+     * Finds the newest entry of a key. The sources are read in the order a flush
+     * publishes them, so an entry moving from a memtable to a table is never missed.
+     *
+     * @param key The key.
+     * @return The entry (possibly a tombstone), or null if the key was never written.
+     */
+    private TableEntry find(String key) {
+        TableEntry entry = active.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        for (Memtable memtable : immutables) {
+            entry = memtable.get(key);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        return levels.get(key);
+    }
+
+    /**
+     * Iterates over all memtables and tables as one sorted stream.
+     *
+     * @param dropTombstones Whether deleted keys are skipped.
+     * @return The iterator.
+     */
+    private Iterator<TableEntry> mergedEntries(boolean dropTombstones) {
+        return mergedEntries(dropTombstones, null);
+    }
+
+    /**
+     * Iterates over all memtables and tables from a key on as one sorted stream.
+     *
+     * @param dropTombstones Whether deleted keys are skipped.
+     * @param fromKey        The lowest key to return, or null for all keys.
+     * @return The iterator.
+     */
+    private Iterator<TableEntry> mergedEntries(boolean dropTombstones, String fromKey) {
+        List<Iterator<TableEntry>> sources = new ArrayList<>();
+        sources.add(fromKey == null ? active.iterator() : active.iterator(fromKey));
+        for (Memtable memtable : immutables) {
+            sources.add(fromKey == null ? memtable.iterator() : memtable.iterator(fromKey));
+        }
+        for (SSTable table : levels.all()) {
+            sources.add(table.iterator(fromKey));
+        }
+        return new MergingIterator(sources, dropTombstones);
+    }
+
+    /**
+     * Registers the caller as a writer of the active memtable.
+     *
+     * @return The memtable the write belongs to.
+     */
+    private Memtable enterActive() {
+        while (true) {
+            Memtable memtable = active;
+            if (memtable.enter()) {
+                return memtable;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Freezes a full memtable, starts a new one and hands the frozen one to the flush thread.
+     * The caller waits while too many memtables are waiting for their flush.
+     *
+     * @param full The memtable to freeze; nothing happens if it is no longer active.
+     */
+    private void rotate(Memtable full) {
+        synchronized (rotationLock) {
+            if (active != full) {
+                return;
+            }
+            Memtable next = new Memtable(full.getGeneration() + 1);
+            List<Memtable> pending = new ArrayList<>(immutables.size() + 1);
+            pending.add(full);
+            pending.addAll(immutables);
+            immutables = List.copyOf(pending);
+            active = next;
+
+            full.freeze();
+            full.setSealedSegment(writeAheadLog.rotate(next.getGeneration()).thenApply(WriteAheadLog.Seal::segmentId));
+            if (!closed) {
+                flushExecutor.execute(this::flushPending);
+            }
+
+            try {
+                while (immutables.size() > MAX_IMMUTABLE_MEMTABLES && !closed) {
+                    rotationLock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Flushes the frozen memtables, oldest first. A failed flush leaves the memtable
+     * readable and its log segments in place; the next rotation or checkpoint retries it.
+     */
+    private void flushPending() {
+        while (true) {
+            List<Memtable> pending = immutables;
+            if (pending.isEmpty()) {
+                return;
+            }
+            Memtable oldest = pending.get(pending.size() - 1);
+            if (oldest.getSealedSegment() == null) {
+                // Its rotation still waits for writers, such as a transaction, and schedules a flush once done.
+                return;
+            }
+            try {
+                flush(oldest);
+            } catch (IOException e) {
+                log.error("Failed to flush memtable {}", oldest.getGeneration(), e);
+                return;
+            }
+        }
+    }
+
+    private void flush(Memtable memtable) throws IOException {
+        long start = System.currentTimeMillis();
+        if (!memtable.isEmpty()) {
+            List<SSTable> tables = writeTables(memtable.iterator(), Long.MAX_VALUE);
+            synchronized (levelsLock) {
+                Levels updated = levels;
+                for (SSTable table : tables) {
+                    updated = updated.withFlushed(table);
+                }
+                publish(updated, tables);
+            }
+            log.info("Flushed memtable {} with {} keys in {} ms.", memtable.getGeneration(), memtable.size(), System.currentTimeMillis() - start);
+        }
+
+        synchronized (rotationLock) {
+            List<Memtable> remaining = new ArrayList<>(immutables);
+            remaining.remove(memtable);
+            immutables = List.copyOf(remaining);
+            rotationLock.notifyAll();
+        }
+        try {
+            writeAheadLog.deleteSegmentsUpTo(memtable.getSealedSegment().join());
+        } catch (CompletionException e) {
+            log.error("Write-ahead log failed; keeping the segments of memtable {}.", memtable.getGeneration(), e.getCause());
+        }
+        scheduleCompaction();
+    }
+
+    /**
+     * Writes a sorted stream into new tables of at most the given size.
+     *
+     * @param entries The sorted entries.
+     * @param maxSize Size after which a new table is started.
+     * @return The written tables.
+     * @throws IOException If a table cannot be written; partial output is deleted.
+     */
+    private List<SSTable> writeTables(Iterator<TableEntry> entries, long maxSize) throws IOException {
+        List<SSTable> tables = new ArrayList<>();
+        SSTableWriter writer = null;
+        long writerId = 0;
+        try {
+            while (entries.hasNext()) {
+                TableEntry entry = entries.next();
+                if (writer == null) {
+                    writerId = nextTableId.getAndIncrement();
+                    writer = new SSTableWriter(tablePath(writerId));
+                }
+                writer.add(entry);
+                if (writer.size() >= maxSize) {
+                    tables.add(writer.finish(writerId));
+                    writer = null;
+                }
+            }
+            if (writer != null) {
+                tables.add(writer.finish(writerId));
+            }
+            return tables;
+        } catch (IOException | UncheckedIOException e) {
+            if (writer != null) {
+                writer.close();
+            }
+            for (SSTable table : tables) {
+                Files.deleteIfExists(table.getPath());
+            }
+            throw e instanceof UncheckedIOException unchecked ? unchecked.getCause() : (IOException) e;
+        }
+    }
+
+    private void scheduleCompaction() {
+        if (!closed) {
+            compactionExecutor.execute(this::compactWhileNeeded);
+        }
+    }
+
+    /**
+     * Runs compactions until every level is within its budget.
+     */
+    private void compactWhileNeeded() {
+        while (!closed) {
+            Compaction compaction = pickCompaction(levels);
+            if (compaction == null) {
+                return;
+            }
+            try {
+                compact(compaction);
+            } catch (IOException e) {
+                log.error("Compaction into level {} failed", compaction.outputLevel(), e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Picks the next compaction: all of level 0 once it holds enough tables, otherwise
+     * one table of the first level over its budget, taken round-robin by key.
+     *
+     * @param current The current levels.
+     * @return The compaction, or null if none is needed.
+     */
+    private Compaction pickCompaction(Levels current) {
+        List<SSTable> levelZero = current.level(0);
+        if (levelZero.size() >= LEVEL_ZERO_COMPACTION_TRIGGER) {
+            String from = levelZero.stream().map(SSTable::firstKey).min(Comparator.naturalOrder()).orElse("");
+            String to = levelZero.stream().map(SSTable::lastKey).max(Comparator.naturalOrder()).orElse("");
+            List<SSTable> inputs = new ArrayList<>(levelZero);
+            inputs.addAll(overlapping(current.level(1), from, to));
+            return new Compaction(0, inputs, 1);
+        }
+
+        long budget = targetTableSize * LEVEL_SIZE_MULTIPLIER;
+        for (int level = 1; level < Levels.LEVEL_COUNT - 1; level++, budget *= LEVEL_SIZE_MULTIPLIER) {
+            if (current.levelBytes(level) <= budget) {
+                continue;
+            }
+            List<SSTable> run = current.level(level);
+            String pointer = compactionPointers[level];
+            SSTable picked = run.get(0);
+            for (SSTable table : run) {
+                if (pointer == null || table.firstKey().compareTo(pointer) > 0) {
+                    picked = table;
+                    break;
+                }
+            }
+            compactionPointers[level] = picked.lastKey();
+
+            List<SSTable> inputs = new ArrayList<>();
+            inputs.add(picked);
+            inputs.addAll(overlapping(current.level(level + 1), picked.firstKey(), picked.lastKey()));
+            return new Compaction(level, inputs, level + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Merges the input tables into the output level. A single table without overlap
+     * is moved by a manifest update instead of being rewritten.
+     *
+     * @param compaction The compaction.
+     * @throws IOException If the output cannot be written.
+     */
+    private void compact(Compaction compaction) throws IOException {
+        long start = System.currentTimeMillis();
+        List<SSTable> inputs = compaction.inputs();
+        boolean move = inputs.size() == 1 && compaction.level() > 0;
+
+        List<SSTable> outputs;
+        if (move) {
+            outputs = inputs;
+        } else {
+            boolean dropTombstones = !levels.hasDataBelow(compaction.outputLevel());
+            List<Iterator<TableEntry>> sources = new ArrayList<>(inputs.size());
+            for (SSTable table : inputs) {
+                sources.add(table.iterator());
+            }
+            outputs = writeTables(new MergingIterator(sources, dropTombstones), targetTableSize);
+        }
+
+        synchronized (levelsLock) {
+            publish(levels.withCompaction(inputs, compaction.outputLevel(), outputs), outputs);
+            if (!move) {
+                for (SSTable table : inputs) {
+                    Files.deleteIfExists(table.getPath());
+                }
+            }
+        }
+        log.info("Compacted {} tables from level {} into {} tables on level {} in {} ms.",
+                inputs.size(), compaction.level(), outputs.size(), compaction.outputLevel(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Records new levels in the manifest and makes them visible to readers.
+     * Must be called while holding the levels lock.
+     *
+     * @param updated The new levels.
+     * @param written Tables written for this change, deleted again if the manifest cannot be saved.
+     * @throws IOException If the manifest cannot be written.
+     */
+    private void publish(Levels updated, List<SSTable> written) throws IOException {
+        try {
+            Manifest.write(manifestPath, updated, nextTableId.get());
+        } catch (IOException e) {
+            List<SSTable> live = levels.all();
+            for (SSTable table : written) {
+                if (!live.contains(table)) {
+                    Files.deleteIfExists(table.getPath());
+                }
+            }
+            throw e;
+        }
+        levels = updated;
+    }
+
+    /**
+     * Hard-links the current tables into a directory and writes a manifest naming exactly them.
+     *
+     * @param target Directory on the same file system as the store.
+     * @return Relative paths of the captured files.
+     * @throws IOException If a link cannot be created.
+     */
+    private List<Path> captureFiles(Path target) throws IOException {
+        synchronized (levelsLock) {
+            Levels current = levels;
+            List<Path> captured = new ArrayList<>();
+            for (SSTable table : current.all()) {
+                Path relative = storageDirectory.relativize(table.getPath());
+                Path link = target.resolve(relative);
+                Files.createDirectories(link.getParent());
+                Files.createLink(link, table.getPath());
+                captured.add(relative);
+            }
+
+            Path relative = storageDirectory.relativize(manifestPath);
+            Path manifest = target.resolve(relative);
+            Files.createDirectories(manifest.getParent());
+            Manifest.write(manifest, current, nextTableId.get());
+            captured.add(relative);
+            return captured;
+        }
+    }
+
+    /**
+     * Opens the tables named by the manifest and deletes table files it does not name,
+     * which are leftovers of a flush or compaction interrupted by a crash.
+     *
+     * @throws IOException If a table cannot be opened.
+     */
+    private void openTables() throws IOException {
+        DurableFiles.createDirectories(directory);
+        if (!Files.exists(manifestPath) && (Files.exists(storageDirectory.resolve("partitions")) || Files.exists(storageDirectory.resolve("data.snapshot")))) {
+            log.warn("Found snapshot files of the memory engine in {}; the LSM engine keeps its own data in {} and does not import them.",
+                    storageDirectory, directory);
+        }
+
+        Manifest manifest = Manifest.read(manifestPath);
+        Set<Long> referenced = new HashSet<>();
+        List<List<SSTable>> tables = new ArrayList<>(Levels.LEVEL_COUNT);
+        for (int level = 0; level < Levels.LEVEL_COUNT; level++) {
+            List<SSTable> run = new ArrayList<>();
+            for (long id : manifest.tableIds(level)) {
+                run.add(SSTable.open(tablePath(id), id));
+                referenced.add(id);
+            }
+            tables.add(run);
+        }
+        levels = Levels.of(tables);
+        nextTableId.set(manifest.getNextTableId());
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(path -> path.getFileName().toString().endsWith(TABLE_SUFFIX)).toList()) {
+                String name = file.getFileName().toString();
+                long id = Long.parseLong(name.substring(0, name.length() - TABLE_SUFFIX.length()));
+                if (!referenced.contains(id)) {
+                    Files.delete(file);
+                    log.info("Deleted unreferenced table {}", file);
+                }
+                nextTableId.accumulateAndGet(id + 1, Math::max);
+            }
+        }
+    }
+
+    /**
+     * Applies a replayed log record to the memtable without logging it again.
+     * This engine logs whole values only, so there are no MERGE records to apply.
+     *
+     * @param record The replayed record.
+     */
+    private void applyRecord(WalRecord record) {
+        switch (record.getType()) {
+            case PUT -> active.put(new TableEntry(record.getKey(), record.getValue()));
+            case REMOVE -> active.put(TableEntry.tombstone(record.getKey()));
+            case CLEAR -> {
+                Iterator<TableEntry> entries = mergedEntries(true);
+                while (entries.hasNext()) {
+                    active.put(TableEntry.tombstone(entries.next().key()));
+                }
+            }
+        }
+    }
+
+    private static List<SSTable> overlapping(List<SSTable> run, String from, String to) {
+        List<SSTable> overlapping = new ArrayList<>();
+        for (SSTable table : run) {
+            if (table.overlaps(from, to)) {
+                overlapping.add(table);
+            }
+        }
+        return overlapping;
+    }
+
+    private Path tablePath(long id) {
+        return directory.resolve(String.format("%020d%s", id, TABLE_SUFFIX));
+    }
+
+    private static int stripe(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1);
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Tables of one level, plus the overlapping tables of the next, merged into that next level.
+     */
+    private record Compaction(int level, List<SSTable> inputs, int outputLevel) {
+    }
+}
@@ -0,0 +1,97 @@
+package me.proo0xy.data.lsm;
+
+import me.proo0xy.data.persistence.DurableFiles;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Manifest records which table files make up each level. It is rewritten through
+ * a temporary file and an atomic rename after every flush and compaction, so a
+ * table becomes part of the store only once the manifest names it.
+ * <pre>
+ * next &lt;nextTableId&gt;
+ * &lt;level&gt; &lt;tableId&gt;     one line per table, level 0 newest first
+ * </pre>
+ */
+final class Manifest {
+
+    private final long nextTableId;
+    private final List<List<Long>> tableIds;
+
+    private Manifest(long nextTableId, List<List<Long>> tableIds) {
+        this.nextTableId = nextTableId;
+        this.tableIds = tableIds;
+    }
+
+    long getNextTableId() {
+        return nextTableId;
+    }
+
+    /**
+     * Returns the table ids of a level in manifest order.
+     *
+     * @param level The level.
+     * @return The ids.
+     */
+    List<Long> tableIds(int level) {
+        return tableIds.get(level);
+    }
+
+    /**
+     * Reads a manifest; a missing file is an empty store.
+     *
+     * @param path The manifest file.
+     * @return The manifest.
+     * @throws IOException If the file cannot be read or is malformed.
+     */
+    static Manifest read(Path path) throws IOException {
+        List<List<Long>> tableIds = new ArrayList<>(Levels.LEVEL_COUNT);
+        for (int i = 0; i < Levels.LEVEL_COUNT; i++) {
+            tableIds.add(new ArrayList<>());
+        }
+        if (!Files.exists(path)) {
+            return new Manifest(1, tableIds);
+        }
+
+        long nextTableId = 1;
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            String[] parts = line.trim().split(" ");
+            if (parts.length != 2) {
+                continue;
+            }
+            try {
+                if (parts[0].equals("next")) {
+                    nextTableId = Long.parseLong(parts[1]);
+                } else {
+                    tableIds.get(Integer.parseInt(parts[0])).add(Long.parseLong(parts[1]));
+                }
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                throw new IOException("Malformed manifest line '" + line + "' in " + path, e);
+            }
+        }
+        return new Manifest(nextTableId, tableIds);
+    }
+
+    /**
+     * Atomically replaces a manifest file.
+     *
+     * @param path        The manifest file.
+     * @param levels      The levels to record.
+     * @param nextTableId The next unused table id.
+     * @throws IOException If the file cannot be written.
+     */
+    static void write(Path path, Levels levels, long nextTableId) throws IOException {
+        StringBuilder content = new StringBuilder("next ").append(nextTableId).append('\n');
+        for (int i = 0; i < Levels.LEVEL_COUNT; i++) {
+            for (SSTable table : levels.level(i)) {
+                content.append(i).append(' ').append(table.getId()).append('\n');
+            }
+        }
+        DurableFiles.writeString(path, content);
+    }
+}
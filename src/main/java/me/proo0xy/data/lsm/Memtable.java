@@ -0,0 +1,140 @@
+package me.proo0xy.data.lsm;
+
+import me.proo0xy.data.persistence.ValueCodec;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memtable is the sorted in-memory table receiving all writes of one generation.
+ * Once full it is frozen, and the writes still running in it are drained before
+ * it is flushed into an SSTable.
+ */
+final class Memtable {
+
+    // Rough per-entry overhead of the skip list node, the entry and the key string.
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final long generation;
+    private final ConcurrentSkipListMap<String, TableEntry> entries = new ConcurrentSkipListMap<>();
+    private final AtomicLong approximateSize = new AtomicLong();
+    private final LongAdder writers = new LongAdder();
+    private volatile boolean frozen;
+    private volatile CompletableFuture<Long> sealedSegment;
+
+    /**
+     * Creates an empty memtable.
+     *
+     * @param generation The write generation, used as the write-ahead log epoch.
+     */
+    Memtable(long generation) {
+        this.generation = generation;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Registers a writer.
+     *
+     * @return false if the memtable is frozen and the writer has to use the next one.
+     */
+    boolean enter() {
+        writers.increment();
+        if (frozen) {
+            writers.decrement();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Deregisters a writer.
+     */
+    void exit() {
+        writers.decrement();
+    }
+
+    /**
+     * Stops new writers and waits for the running ones to finish.
+     */
+    void freeze() {
+        frozen = true;
+        while (writers.sum() != 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Stores an entry, replacing the previous one of the key.
+     *
+     * @param entry The entry or tombstone.
+     */
+    void put(TableEntry entry) {
+        TableEntry previous = entries.put(entry.key(), entry);
+        long delta = sizeOf(entry) - (previous != null ? sizeOf(previous) : 0);
+        approximateSize.addAndGet(delta);
+    }
+
+    /**
+     * Looks a key up.
+     *
+     * @param key The key.
+     * @return The entry (possibly a tombstone), or null if this memtable does not hold the key.
+     */
+    TableEntry get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Iterates over the entries in key order.
+     *
+     * @return The iterator.
+     */
+    Iterator<TableEntry> iterator() {
+        return entries.values().iterator();
+    }
+
+    /**
+     * Iterates over the entries from a key on, in key order.
+     *
+     * @param fromKey The lowest key to return.
+     * @return The iterator.
+     */
+    Iterator<TableEntry> iterator(String fromKey) {
+        return entries.tailMap(fromKey).values().iterator();
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long approximateSize() {
+        return approximateSize.get();
+    }
+
+    /**
+     * Remembers the log rotation that sealed this memtable's segments.
+     *
+     * @param sealedSegment Completes with the newest segment holding this memtable's writes.
+     */
+    void setSealedSegment(CompletableFuture<Long> sealedSegment) {
+        this.sealedSegment = sealedSegment;
+    }
+
+    CompletableFuture<Long> getSealedSegment() {
+        return sealedSegment;
+    }
+
+    private static long sizeOf(TableEntry entry) {
+        return ENTRY_OVERHEAD + entry.key().length() * 2L + (entry.isTombstone() ? 0 : ValueCodec.valueSize(entry.value()));
+    }
+}
@@ -0,0 +1,90 @@
+package me.proo0xy.data.lsm;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * MergingIterator merges sorted sources into one sorted stream with a single
+ * entry per key. Sources are ordered newest first, and the newest entry of a
+ * key wins.
+ */
+final class MergingIterator implements Iterator<TableEntry> {
+
+    private final PriorityQueue<Source> queue = new PriorityQueue<>(
+            Comparator.comparing((Source source) -> source.current.key()).thenComparingInt(source -> source.rank));
+    private final boolean dropTombstones;
+    private TableEntry next;
+
+    /**
+     * Creates a merging iterator.
+     *
+     * @param sources        Sorted sources, newest first.
+     * @param dropTombstones Whether deleted keys are skipped instead of returned as tombstones.
+     */
+    MergingIterator(List<Iterator<TableEntry>> sources, boolean dropTombstones) {
+        this.dropTombstones = dropTombstones;
+        for (int rank = 0; rank < sources.size(); rank++) {
+            Iterator<TableEntry> iterator = sources.get(rank);
+            if (iterator.hasNext()) {
+                queue.add(new Source(rank, iterator, iterator.next()));
+            }
+        }
+        advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public TableEntry next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        TableEntry result = next;
+        advance();
+        return result;
+    }
+
+    private void advance() {
+        next = null;
+        while (next == null && !queue.isEmpty()) {
+            Source newest = queue.poll();
+            TableEntry candidate = newest.current;
+            moveOn(newest);
+            // Older entries of the same key are shadowed by the newest one.
+            while (!queue.isEmpty() && queue.peek().current.key().equals(candidate.key())) {
+                moveOn(queue.poll());
+            }
+            if (!dropTombstones || !candidate.isTombstone()) {
+                next = candidate;
+            }
+        }
+    }
+
+    private void moveOn(Source source) {
+        if (source.iterator.hasNext()) {
+            source.current = source.iterator.next();
+            queue.add(source);
+        }
+    }
+
+    /**
+     * A source positioned at its current entry.
+     */
+    private static final class Source {
+        private final int rank;
+        private final Iterator<TableEntry> iterator;
+        private TableEntry current;
+
+        private Source(int rank, Iterator<TableEntry> iterator, TableEntry current) {
+            this.rank = rank;
+            this.iterator = iterator;
+            this.current = current;
+        }
+    }
+}
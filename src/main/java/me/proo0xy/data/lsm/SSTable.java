@@ -0,0 +1,307 @@
+package me.proo0xy.data.lsm;
+
+import me.proo0xy.data.persistence.ValueCodec;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * SSTable is a sorted, immutable table file of the LSM engine.
+ * <p>
+ * The file is memory-mapped, so its blocks live in the page cache rather than on
+ * the heap. Only the sparse index (the first key of every block) and the bloom
+ * filter are kept in memory. A point lookup checks the bloom filter, binary-searches
+ * the index and decodes a single block.
+ * <p>
+ * The index also records the largest version in the table and the keys with a time
+ * to live, so a restart finds both without reading the blocks. Version 1 tables lack
+ * them and are read whole instead.
+ * <pre>
+ * header:  int magic, byte version
+ * block:   int bodyLength, int entryCount, int crc32(body), body
+ * entry:   string key, byte kind, value (upserts only)
+ * index:   int blockCount, (string firstKey, long offset) per block, string lastKey,
+ *          long maxVersion, int expiringCount, (string key, long expiresAt) per expiring key
+ * bloom:   int hashCount, int wordCount, long word per word
+ * trailer: long indexOffset, long bloomOffset, long entryCount, int magic
+ * </pre>
+ */
+final class SSTable {
+
+    static final int MAGIC = 0x53564c54; // "SVLT"
+    static final byte VERSION = 2;
+    static final int FILE_HEADER_SIZE = Integer.BYTES + 1;
+    static final int BLOCK_HEADER_SIZE = Integer.BYTES * 3;
+    static final int TRAILER_SIZE = Long.BYTES * 3 + Integer.BYTES;
+    static final int TARGET_BLOCK_SIZE = 4 * 1024;
+    static final byte KIND_UPSERT = 0;
+    static final byte KIND_DELETE = 1;
+
+    private final long id;
+    private final Path path;
+    private final MappedByteBuffer data;
+    private final String[] firstKeys;
+    private final long[] offsets;
+    private final String lastKey;
+    private final BloomFilter bloom;
+    private final long entryCount;
+    private final long sizeBytes;
+    // -1 for a version 1 table, which records neither.
+    private final long maxVersion;
+    private final int expiringOffset;
+
+    private SSTable(long id, Path path, MappedByteBuffer data, String[] firstKeys, long[] offsets, String lastKey,
+                    BloomFilter bloom, long entryCount, long sizeBytes, long maxVersion, int expiringOffset) {
+        this.id = id;
+        this.path = path;
+        this.data = data;
+        this.firstKeys = firstKeys;
+        this.offsets = offsets;
+        this.lastKey = lastKey;
+        this.bloom = bloom;
+        this.entryCount = entryCount;
+        this.sizeBytes = sizeBytes;
+        this.maxVersion = maxVersion;
+        this.expiringOffset = expiringOffset;
+    }
+
+    /**
+     * Maps a table file and reads its index and bloom filter.
+     *
+     * @param path The table file.
+     * @param id   The table id.
+     * @return The opened table.
+     * @throws IOException If the file is not a valid table.
+     */
+    static SSTable open(Path path, long id) throws IOException {
+        MappedByteBuffer data;
+        long size;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+            if (size < FILE_HEADER_SIZE + TRAILER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Table file has an invalid size: " + path);
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        byte version = data.get(Integer.BYTES);
+        if (data.getInt(0) != MAGIC || (version != 1 && version != VERSION)) {
+            throw new IOException("Not a table file: " + path);
+        }
+        int trailerOffset = (int) size - TRAILER_SIZE;
+        long indexOffset = data.getLong(trailerOffset);
+        long bloomOffset = data.getLong(trailerOffset + Long.BYTES);
+        long entryCount = data.getLong(trailerOffset + Long.BYTES * 2);
+        if (data.getInt(trailerOffset + Long.BYTES * 3) != MAGIC || indexOffset < FILE_HEADER_SIZE
+                || bloomOffset < indexOffset || bloomOffset > trailerOffset) {
+            throw new IOException("Table file has no valid trailer: " + path);
+        }
+
+        ByteBuffer index = data.slice((int) indexOffset, (int) (bloomOffset - indexOffset));
+        int blockCount = index.getInt();
+        String[] firstKeys = new String[blockCount];
+        long[] offsets = new long[blockCount + 1];
+        for (int i = 0; i < blockCount; i++) {
+            firstKeys[i] = ValueCodec.readString(index);
+            offsets[i] = index.getLong();
+        }
+        offsets[blockCount] = indexOffset;
+        String lastKey = ValueCodec.readString(index);
+        long maxVersion = -1;
+        int expiringOffset = -1;
+        if (version >= 2) {
+            maxVersion = index.getLong();
+            expiringOffset = (int) indexOffset + index.position();
+        }
+        BloomFilter bloom = BloomFilter.readFrom(data.slice((int) bloomOffset, (int) (trailerOffset - bloomOffset)));
+        return new SSTable(id, path, data, firstKeys, offsets, lastKey, bloom, entryCount, size, maxVersion, expiringOffset);
+    }
+
+    /**
+     * Looks a key up.
+     *
+     * @param key  The key.
+     * @param hash The key hash from {@link BloomFilter#hash}.
+     * @return The entry (possibly a tombstone), or null if the table does not hold the key.
+     */
+    TableEntry get(String key, long hash) {
+        if (firstKeys.length == 0 || key.compareTo(firstKeys[0]) < 0 || key.compareTo(lastKey) > 0 || !bloom.mightContain(hash)) {
+            return null;
+        }
+        int blockIndex = Arrays.binarySearch(firstKeys, key);
+        if (blockIndex < 0) {
+            blockIndex = -blockIndex - 2;
+        }
+
+        ByteBuffer block = block(blockIndex);
+        int entries = block.getInt(Integer.BYTES);
+        block.position(BLOCK_HEADER_SIZE);
+        for (int i = 0; i < entries; i++) {
+            String candidate = ValueCodec.readString(block);
+            int order = candidate.compareTo(key);
+            byte kind = block.get();
+            if (order == 0) {
+                return kind == KIND_UPSERT ? new TableEntry(candidate, ValueCodec.readValue(block)) : TableEntry.tombstone(candidate);
+            }
+            if (order > 0) {
+                return null;
+            }
+            if (kind == KIND_UPSERT) {
+                ValueCodec.readValue(block);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Iterates over all entries in key order, verifying the checksum of every block.
+     *
+     * @return The iterator; it throws {@link UncheckedIOException} on a corrupted block.
+     */
+    Iterator<TableEntry> iterator() {
+        return iterator(null);
+    }
+
+    /**
+     * Iterates in key order over the entries from a key on, starting at the block that may hold it.
+     *
+     * @param fromKey The lowest key to return, or null for all entries.
+     * @return The iterator; it throws {@link UncheckedIOException} on a corrupted block.
+     */
+    Iterator<TableEntry> iterator(String fromKey) {
+        int firstBlock = 0;
+        if (fromKey != null && firstKeys.length > 0) {
+            int found = Arrays.binarySearch(firstKeys, fromKey);
+            firstBlock = found >= 0 ? found : Math.max(0, -found - 2);
+        }
+        int startBlock = firstBlock;
+        return new Iterator<>() {
+            private int blockIndex = startBlock - 1;
+            private ByteBuffer block;
+            private int remaining;
+            private TableEntry pending;
+
+            @Override
+            public boolean hasNext() {
+                while (pending == null) {
+                    while (remaining == 0) {
+                        if (++blockIndex >= firstKeys.length) {
+                            return false;
+                        }
+                        block = verifiedBlock(blockIndex);
+                        remaining = block.getInt(Integer.BYTES);
+                        block.position(BLOCK_HEADER_SIZE);
+                    }
+                    remaining--;
+                    String key = ValueCodec.readString(block);
+                    TableEntry entry = block.get() == KIND_UPSERT ? new TableEntry(key, ValueCodec.readValue(block)) : TableEntry.tombstone(key);
+                    if (fromKey == null || key.compareTo(fromKey) >= 0) {
+                        pending = entry;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public TableEntry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                TableEntry entry = pending;
+                pending = null;
+                return entry;
+            }
+        };
+    }
+
+    /**
+     * Checks whether the key range of this table intersects the given range.
+     *
+     * @param from Lowest key of the range.
+     * @param to   Highest key of the range.
+     * @return true if the ranges overlap.
+     */
+    boolean overlaps(String from, String to) {
+        return firstKeys.length > 0 && firstKey().compareTo(to) <= 0 && lastKey.compareTo(from) >= 0;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    String firstKey() {
+        return firstKeys.length > 0 ? firstKeys[0] : "";
+    }
+
+    String lastKey() {
+        return lastKey;
+    }
+
+    long getEntryCount() {
+        return entryCount;
+    }
+
+    long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * Returns the largest version of the entries, recorded when the table was written.
+     *
+     * @return The version, 0 if no entry has one, or -1 for a version 1 table.
+     */
+    long maxVersion() {
+        return maxVersion;
+    }
+
+    /**
+     * Visits the keys with a time to live from the list recorded when the table was written,
+     * without reading its blocks.
+     *
+     * @param action Receives the key and the expiry time in epoch millis.
+     * @return false for a version 1 table, which has no list and visits nothing.
+     */
+    boolean forEachExpiring(ObjLongConsumer<String> action) {
+        if (expiringOffset < 0) {
+            return false;
+        }
+        ByteBuffer list = data.duplicate().position(expiringOffset);
+        int count = list.getInt();
+        for (int i = 0; i < count; i++) {
+            action.accept(ValueCodec.readString(list), list.getLong());
+        }
+        return true;
+    }
+
+    private ByteBuffer block(int index) {
+        return data.slice((int) offsets[index], (int) (offsets[index + 1] - offsets[index]));
+    }
+
+    private ByteBuffer verifiedBlock(int index) {
+        ByteBuffer block = block(index);
+        int bodyLength = block.getInt(0);
+        if (bodyLength != block.limit() - BLOCK_HEADER_SIZE) {
+            throw new UncheckedIOException(new IOException("Table block has an invalid length: " + path));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(block.slice(BLOCK_HEADER_SIZE, bodyLength));
+        if ((int) crc.getValue() != block.getInt(Integer.BYTES * 2)) {
+            throw new UncheckedIOException(new IOException("Table block failed its checksum: " + path));
+        }
+        return block;
+    }
+}
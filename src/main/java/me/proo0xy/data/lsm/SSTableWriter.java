@@ -0,0 +1,247 @@
+package me.proo0xy.data.lsm;
+
+import me.proo0xy.data.ExpiringValue;
+import me.proo0xy.data.VersionedValue;
+import me.proo0xy.data.persistence.DurableFiles;
+import me.proo0xy.data.persistence.ValueCodec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * SSTableWriter writes one sorted, immutable table in the {@link SSTable} format.
+ * Keys must be added in ascending order, each at most once.
+ */
+final class SSTableWriter implements Closeable {
+
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final CRC32 crc = new CRC32();
+    private final List<String> firstKeys = new ArrayList<>();
+    private final List<Long> offsets = new ArrayList<>();
+    private final List<String> expiringKeys = new ArrayList<>();
+    private final List<Long> expiries = new ArrayList<>();
+    private final ByteBuffer output = ByteBuffer.allocate(OUTPUT_BUFFER_SIZE);
+    private ByteBuffer block = ByteBuffer.allocate(SSTable.TARGET_BLOCK_SIZE * 2);
+    private long[] hashes = new long[1024];
+    private long entryCount;
+    private int blockEntries;
+    private String blockFirstKey;
+    private String lastKey;
+    private long maxVersion;
+    private long position;
+
+    /**
+     * Creates a table file; it must not exist yet.
+     *
+     * @param path The table file.
+     * @throws IOException If the file cannot be created.
+     */
+    SSTableWriter(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        output.putInt(SSTable.MAGIC).put(SSTable.VERSION);
+        position = SSTable.FILE_HEADER_SIZE;
+        block.position(SSTable.BLOCK_HEADER_SIZE);
+    }
+
+    /**
+     * Appends an entry.
+     *
+     * @param entry The entry; its key sorts after every key added before.
+     * @throws IOException If a block cannot be written.
+     */
+    void add(TableEntry entry) throws IOException {
+        byte[] key = entry.key().getBytes(StandardCharsets.UTF_8);
+        boolean tombstone = entry.isTombstone();
+        int size = ValueCodec.stringSize(key) + 1 + (tombstone ? 0 : ValueCodec.valueSize(entry.value()));
+        if (block.remaining() < size) {
+            if (blockEntries > 0) {
+                flushBlock();
+            }
+            if (block.remaining() < size) {
+                block = ByteBuffer.allocate(SSTable.BLOCK_HEADER_SIZE + size);
+                block.position(SSTable.BLOCK_HEADER_SIZE);
+            }
+        }
+
+        if (blockEntries == 0) {
+            blockFirstKey = entry.key();
+        }
+        ValueCodec.writeString(block, key);
+        block.put(tombstone ? SSTable.KIND_DELETE : SSTable.KIND_UPSERT);
+        if (!tombstone) {
+            ValueCodec.writeValue(block, entry.value());
+        }
+        blockEntries++;
+        lastKey = entry.key();
+        if (!tombstone) {
+            record(entry.key(), entry.value());
+        }
+
+        if (entryCount == hashes.length) {
+            hashes = Arrays.copyOf(hashes, hashes.length * 2);
+        }
+        hashes[(int) entryCount++] = BloomFilter.hash(entry.key());
+
+        if (block.position() >= SSTable.TARGET_BLOCK_SIZE) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * Returns the number of bytes written so far, used to split compaction output.
+     *
+     * @return Approximate file size.
+     */
+    long size() {
+        return position + block.position();
+    }
+
+    /**
+     * Checks whether no entry has been added.
+     *
+     * @return true if the table would be empty.
+     */
+    boolean isEmpty() {
+        return entryCount == 0;
+    }
+
+    /**
+     * Writes the index, bloom filter and trailer, syncs the file and opens it for reading.
+     *
+     * @param id The table id.
+     * @return The finished table.
+     * @throws IOException If the file cannot be written.
+     */
+    SSTable finish(long id) throws IOException {
+        if (blockEntries > 0) {
+            flushBlock();
+        }
+
+        long indexOffset = position;
+        List<byte[]> indexKeys = new ArrayList<>(firstKeys.size());
+        int indexSize = Integer.BYTES;
+        for (String firstKey : firstKeys) {
+            byte[] bytes = firstKey.getBytes(StandardCharsets.UTF_8);
+            indexKeys.add(bytes);
+            indexSize += ValueCodec.stringSize(bytes) + Long.BYTES;
+        }
+        byte[] lastKeyBytes = (lastKey != null ? lastKey : "").getBytes(StandardCharsets.UTF_8);
+        indexSize += ValueCodec.stringSize(lastKeyBytes);
+        List<byte[]> expiringKeyBytes = new ArrayList<>(expiringKeys.size());
+        indexSize += Long.BYTES + Integer.BYTES;
+        for (String expiringKey : expiringKeys) {
+            byte[] bytes = expiringKey.getBytes(StandardCharsets.UTF_8);
+            expiringKeyBytes.add(bytes);
+            indexSize += ValueCodec.stringSize(bytes) + Long.BYTES;
+        }
+
+        ByteBuffer index = ByteBuffer.allocate(indexSize);
+        index.putInt(indexKeys.size());
+        for (int i = 0; i < indexKeys.size(); i++) {
+            ValueCodec.writeString(index, indexKeys.get(i));
+            index.putLong(offsets.get(i));
+        }
+        ValueCodec.writeString(index, lastKeyBytes);
+        index.putLong(maxVersion).putInt(expiringKeyBytes.size());
+        for (int i = 0; i < expiringKeyBytes.size(); i++) {
+            ValueCodec.writeString(index, expiringKeyBytes.get(i));
+            index.putLong(expiries.get(i));
+        }
+        write(index.flip());
+
+        long bloomOffset = position;
+        BloomFilter bloom = BloomFilter.build(hashes, (int) entryCount);
+        ByteBuffer bloomBuffer = ByteBuffer.allocate(bloom.serializedSize());
+        bloom.writeTo(bloomBuffer);
+        write(bloomBuffer.flip());
+
+        ByteBuffer trailer = ByteBuffer.allocate(SSTable.TRAILER_SIZE);
+        trailer.putLong(indexOffset).putLong(bloomOffset).putLong(entryCount).putInt(SSTable.MAGIC);
+        write(trailer.flip());
+        drainOutput();
+        channel.force(true);
+        channel.close();
+        DurableFiles.forceDirectory(path.toAbsolutePath().getParent());
+        return SSTable.open(path, id);
+    }
+
+    /**
+     * Closes the file; a table that was not finished is deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            channel.close();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Records the version and expiry of a stored value for the index.
+     *
+     * @param key   The key.
+     * @param value The value as stored, possibly versioned and expiring.
+     */
+    private void record(String key, Object value) {
+        if (value instanceof VersionedValue versioned) {
+            maxVersion = Math.max(maxVersion, versioned.version());
+            value = versioned.value();
+        }
+        if (value instanceof ExpiringValue expiring) {
+            expiringKeys.add(key);
+            expiries.add(expiring.expiresAt());
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        int bodyLength = block.position() - SSTable.BLOCK_HEADER_SIZE;
+        crc.reset();
+        crc.update(block.array(), SSTable.BLOCK_HEADER_SIZE, bodyLength);
+        block.putInt(0, bodyLength).putInt(Integer.BYTES, blockEntries).putInt(Integer.BYTES * 2, (int) crc.getValue());
+
+        firstKeys.add(blockFirstKey);
+        offsets.add(position);
+        write(block.flip());
+
+        if (block.capacity() > SSTable.TARGET_BLOCK_SIZE * 2) {
+            block = ByteBuffer.allocate(SSTable.TARGET_BLOCK_SIZE * 2);
+        }
+        block.clear().position(SSTable.BLOCK_HEADER_SIZE);
+        blockEntries = 0;
+    }
+
+    private void write(ByteBuffer data) throws IOException {
+        position += data.remaining();
+        while (data.hasRemaining()) {
+            if (!output.hasRemaining()) {
+                drainOutput();
+            }
+            int chunk = Math.min(output.remaining(), data.remaining());
+            output.put(output.position(), data, data.position(), chunk);
+            output.position(output.position() + chunk);
+            data.position(data.position() + chunk);
+        }
+    }
+
+    private void drainOutput() throws IOException {
+        output.flip();
+        while (output.hasRemaining()) {
+            channel.write(output);
+        }
+        output.clear();
+    }
+}
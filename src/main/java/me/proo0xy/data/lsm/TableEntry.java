@@ -0,0 +1,27 @@
+package me.proo0xy.data.lsm;
+
+/**
+ * One key of a memtable or SSTable. A deleted key is kept as a tombstone so it
+ * hides older values of the key in deeper tables until compaction drops it.
+ *
+ * @param key   The key.
+ * @param value The value, or {@link #TOMBSTONE} for a deleted key.
+ */
+record TableEntry(String key, Object value) {
+
+    static final Object TOMBSTONE = new Object();
+
+    /**
+     * Creates the tombstone of a key.
+     *
+     * @param key The deleted key.
+     * @return The tombstone entry.
+     */
+    static TableEntry tombstone(String key) {
+        return new TableEntry(key, TOMBSTONE);
+    }
+
+    boolean isTombstone() {
+        return value == TOMBSTONE;
+    }
+}
@@ -0,0 +1,35 @@
+package me.proo0xy.data.offheap;
+
+import me.proo0xy.data.DataEntry;
+import me.proo0xy.data.persistence.ValueCodec;
+
+/**
+ * OffHeapEntry is the compact record kept in the map when values live in a slab.
+ * It holds the key and a chunk handle; the value is decoded on every read.
+ * Only the storage engine sees these entries, and only while the chunk cannot be freed.
+ */
+final class OffHeapEntry extends DataEntry {
+
+    private final SlabAllocator allocator;
+    private final long handle;
+
+    OffHeapEntry(String key, SlabAllocator allocator, long handle) {
+        super(key, null);
+        this.allocator = allocator;
+        this.handle = handle;
+    }
+
+    long getHandle() {
+        return handle;
+    }
+
+    @Override
+    public Object getValue() {
+        return ValueCodec.readValue(allocator.payload(handle));
+    }
+
+    @Override
+    public void setValue(Object value) {
+        throw new UnsupportedOperationException("Off-heap entries are immutable");
+    }
+}
@@ -0,0 +1,197 @@
+package me.proo0xy.data.offheap;
+
+import me.proo0xy.data.DataEntry;
+import me.proo0xy.data.persistence.ValueCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * OffHeapValues moves entry values into a {@link SlabAllocator}, so the map keeps
+ * only a small record per key instead of a boxed value object.
+ * <p>
+ * A replaced or removed entry is retired rather than freed: readers may still be
+ * decoding it. Reads run inside a read epoch, and {@link #reclaim()} frees the
+ * retired chunks only after every read that started before them has finished.
+ * Entries handed out of the engine are always heap copies from {@link #materialize}.
+ */
+public class OffHeapValues {
+
+    private static final Logger log = LoggerFactory.getLogger(OffHeapValues.class);
+    private static final int RETIRE_STRIPES = 8;
+
+    private final SlabAllocator allocator = new SlabAllocator();
+    private final LongAdder[] readers = {new LongAdder(), new LongAdder()};
+    private final RetireList[] retireLists = new RetireList[RETIRE_STRIPES];
+    private volatile long readEpoch;
+
+    public OffHeapValues() {
+        for (int i = 0; i < RETIRE_STRIPES; i++) {
+            retireLists[i] = new RetireList();
+        }
+    }
+
+    /**
+     * Encodes the value of an entry into a slab chunk.
+     *
+     * @param entry A heap entry.
+     * @return The compact entry to store, or the entry itself if its value is too large for a chunk.
+     */
+    public DataEntry store(DataEntry entry) {
+        Object value = entry.getStoredValue();
+        int size = ValueCodec.valueSize(value);
+        if (size > SlabAllocator.MAX_PAYLOAD) {
+            return entry;
+        }
+        long handle = allocator.allocate(size);
+        ValueCodec.writeValue(allocator.payload(handle), value);
+        return new OffHeapEntry(entry.getKey(), allocator, handle);
+    }
+
+    /**
+     * Returns a heap copy of an entry that stays valid after its chunk is freed.
+     *
+     * @param entry A stored entry, possibly null.
+     * @return The heap entry, or null.
+     */
+    public DataEntry materialize(DataEntry entry) {
+        return entry instanceof OffHeapEntry ? DataEntry.of(entry.getKey(), entry.getValue()) : entry;
+    }
+
+    /**
+     * Schedules the chunk of an entry that left the map to be freed.
+     *
+     * @param entry The replaced or removed entry, possibly null.
+     */
+    public void retire(DataEntry entry) {
+        if (entry instanceof OffHeapEntry offHeap) {
+            retireLists[(int) (Thread.currentThread().getId() & (RETIRE_STRIPES - 1))].add(offHeap.getHandle());
+        }
+    }
+
+    /**
+     * Starts a read; stored entries obtained afterwards stay readable until {@link #exitRead}.
+     *
+     * @return The token to pass to {@link #exitRead}.
+     */
+    public long enterRead() {
+        while (true) {
+            long epoch = readEpoch;
+            LongAdder counter = readers[(int) (epoch & 1)];
+            counter.increment();
+            if (readEpoch == epoch) {
+                return epoch;
+            }
+            counter.decrement();
+        }
+    }
+
+    /**
+     * Ends a read started by {@link #enterRead}.
+     *
+     * @param token The token returned by {@link #enterRead}.
+     */
+    public void exitRead(long token) {
+        readers[(int) (token & 1)].decrement();
+    }
+
+    /**
+     * Frees the chunks retired so far once the reads that might still see them are done.
+     * The caller must make sure no snapshot still reads retired entries.
+     */
+    public synchronized void reclaim() {
+        long[][] handles = new long[RETIRE_STRIPES][];
+        int[] counts = new int[RETIRE_STRIPES];
+        int total = 0;
+        for (int i = 0; i < RETIRE_STRIPES; i++) {
+            synchronized (retireLists[i]) {
+                handles[i] = retireLists[i].handles;
+                counts[i] = retireLists[i].count;
+                retireLists[i].reset();
+            }
+            total += counts[i];
+        }
+        if (total == 0) {
+            return;
+        }
+
+        long closing = readEpoch;
+        readEpoch = closing + 1;
+        LongAdder counter = readers[(int) (closing & 1)];
+        while (counter.sum() != 0) {
+            Thread.onSpinWait();
+        }
+
+        for (int i = 0; i < RETIRE_STRIPES; i++) {
+            for (int j = 0; j < counts[i]; j++) {
+                allocator.free(handles[i][j]);
+            }
+        }
+        log.debug("Freed {} slab chunks; {} of {} reserved bytes in use.", total, allocator.getUsedBytes(), allocator.getReservedBytes());
+    }
+
+    /**
+     * Wraps a map so that recovery writes store their values off-heap.
+     * Only for recovery, before any reader runs.
+     *
+     * @param target The backing map.
+     * @return A view that encodes on put and retires on replace and remove.
+     */
+    public Map<String, DataEntry> encodingView(Map<String, DataEntry> target) {
+        return new AbstractMap<>() {
+            @Override
+            public DataEntry put(String key, DataEntry value) {
+                DataEntry previous = target.put(key, store(value));
+                retire(previous);
+                return previous;
+            }
+
+            @Override
+            public DataEntry remove(Object key) {
+                DataEntry previous = target.remove(key);
+                retire(previous);
+                return previous;
+            }
+
+            @Override
+            public void clear() {
+                target.values().forEach(OffHeapValues.this::retire);
+                target.clear();
+            }
+
+            @Override
+            public Set<Entry<String, DataEntry>> entrySet() {
+                return target.entrySet();
+            }
+        };
+    }
+
+    public SlabAllocator getAllocator() {
+        return allocator;
+    }
+
+    /**
+     * Handles retired by the threads of one stripe since the last reclaim.
+     */
+    private static final class RetireList {
+        private long[] handles = new long[1024];
+        private int count;
+
+        synchronized void add(long handle) {
+            if (count == handles.length) {
+                handles = Arrays.copyOf(handles, handles.length * 2);
+            }
+            handles[count++] = handle;
+        }
+
+        void reset() {
+            handles = new long[Math.max(1024, count / 2)];
+            count = 0;
+        }
+    }
+}
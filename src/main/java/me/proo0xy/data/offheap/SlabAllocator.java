@@ -0,0 +1,169 @@
+package me.proo0xy.data.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SlabAllocator hands out chunks of direct-memory slabs. Chunks come in
+ * power-of-two size classes; a freed chunk goes onto a free list of its class
+ * and is reused by the next allocation of that class. The free lists are
+ * intrusive: a free chunk stores the handle of the next one, so no heap object
+ * is kept per chunk.
+ * <p>
+ * Threads are spread over a few arenas, each with its own free lists and its own
+ * slab to carve from, so concurrent writers rarely share a lock.
+ * <p>
+ * A handle packs the slab index into the upper and the chunk offset into the
+ * lower 32 bits. Every chunk starts with its size class and payload length.
+ */
+public final class SlabAllocator {
+
+    static final int CHUNK_HEADER_SIZE = 1 + Integer.BYTES;
+    private static final int MIN_CHUNK_SHIFT = 4;
+    private static final int MAX_CHUNK_SHIFT = 16;
+    private static final int SIZE_CLASSES = MAX_CHUNK_SHIFT - MIN_CHUNK_SHIFT + 1;
+    private static final int SLAB_SIZE = 4 << 20;
+    private static final int ARENAS = 8;
+    private static final long NO_CHUNK = -1;
+
+    /**
+     * Largest payload a chunk can hold; bigger values stay on the heap.
+     */
+    public static final int MAX_PAYLOAD = (1 << MAX_CHUNK_SHIFT) - CHUNK_HEADER_SIZE;
+
+    private final Arena[] arenas = new Arena[ARENAS];
+    private final AtomicLong usedBytes = new AtomicLong();
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+
+    public SlabAllocator() {
+        for (int i = 0; i < ARENAS; i++) {
+            arenas[i] = new Arena();
+        }
+    }
+
+    /**
+     * Allocates a chunk for a payload.
+     *
+     * @param length Payload length in bytes, at most {@link #MAX_PAYLOAD}.
+     * @return The chunk handle.
+     */
+    public long allocate(int length) {
+        int sizeClass = sizeClass(length);
+        long handle = arena().allocate(sizeClass);
+        ByteBuffer slab = slab(handle);
+        slab.put(offset(handle), (byte) sizeClass);
+        slab.putInt(offset(handle) + 1, length);
+        usedBytes.addAndGet(chunkSize(sizeClass));
+        return handle;
+    }
+
+    /**
+     * Returns a chunk to a free list of its size class. The caller must make
+     * sure no reader can still access it.
+     *
+     * @param handle The chunk handle.
+     */
+    public void free(long handle) {
+        int sizeClass = slab(handle).get(offset(handle));
+        arena().free(handle, sizeClass);
+        usedBytes.addAndGet(-chunkSize(sizeClass));
+    }
+
+    /**
+     * Returns a buffer over the payload of a chunk, positioned at its start.
+     *
+     * @param handle The chunk handle.
+     * @return A buffer whose limit is the payload length.
+     */
+    public ByteBuffer payload(long handle) {
+        ByteBuffer slab = slab(handle);
+        int offset = offset(handle);
+        return slab.slice(offset + CHUNK_HEADER_SIZE, slab.getInt(offset + 1));
+    }
+
+    /**
+     * Returns the bytes held by live chunks.
+     *
+     * @return Used bytes.
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * Returns the bytes of direct memory reserved by slabs.
+     *
+     * @return Reserved bytes.
+     */
+    public long getReservedBytes() {
+        return (long) slabs.length * SLAB_SIZE;
+    }
+
+    private synchronized int addSlab() {
+        ByteBuffer[] grown = Arrays.copyOf(slabs, slabs.length + 1);
+        grown[slabs.length] = ByteBuffer.allocateDirect(SLAB_SIZE);
+        slabs = grown;
+        return slabs.length - 1;
+    }
+
+    private Arena arena() {
+        return arenas[(int) (Thread.currentThread().getId() & (ARENAS - 1))];
+    }
+
+    private ByteBuffer slab(long handle) {
+        return slabs[(int) (handle >>> 32)];
+    }
+
+    private static int offset(long handle) {
+        return (int) handle;
+    }
+
+    private static int sizeClass(int length) {
+        int needed = Math.max(length + CHUNK_HEADER_SIZE, CHUNK_HEADER_SIZE + Long.BYTES);
+        int shift = Math.max(MIN_CHUNK_SHIFT, 32 - Integer.numberOfLeadingZeros(needed - 1));
+        if (shift > MAX_CHUNK_SHIFT) {
+            throw new IllegalArgumentException("Payload too large for a slab chunk: " + length);
+        }
+        return shift - MIN_CHUNK_SHIFT;
+    }
+
+    private static int chunkSize(int sizeClass) {
+        return 1 << (sizeClass + MIN_CHUNK_SHIFT);
+    }
+
+    /**
+     * Free lists and a slab to carve from, shared by the threads mapped to this arena.
+     */
+    private final class Arena {
+        private final long[] freeHeads = new long[SIZE_CLASSES];
+        private int slabIndex = -1;
+        private int slabPosition = SLAB_SIZE;
+
+        private Arena() {
+            Arrays.fill(freeHeads, NO_CHUNK);
+        }
+
+        synchronized long allocate(int sizeClass) {
+            long handle = freeHeads[sizeClass];
+            if (handle != NO_CHUNK) {
+                freeHeads[sizeClass] = slab(handle).getLong(offset(handle) + CHUNK_HEADER_SIZE);
+                return handle;
+            }
+
+            int size = chunkSize(sizeClass);
+            if (slabPosition + size > SLAB_SIZE) {
+                slabIndex = addSlab();
+                slabPosition = 0;
+            }
+            handle = ((long) slabIndex << 32) | slabPosition;
+            slabPosition += size;
+            return handle;
+        }
+
+        synchronized void free(long handle, int sizeClass) {
+            slab(handle).putLong(offset(handle) + CHUNK_HEADER_SIZE, freeHeads[sizeClass]);
+            freeHeads[sizeClass] = handle;
+        }
+    }
+}
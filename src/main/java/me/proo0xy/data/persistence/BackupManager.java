@@ -0,0 +1,266 @@
+package me.proo0xy.data.persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * BackupManager turns the latest finished snapshot files into a backup generation
+ * without serializing anything. Files are hard-linked when the backup directory is
+ * on the same file system and otherwise copied with {@link FileChannel#transferTo},
+ * which stays in the kernel. Each generation gets a manifest with file sizes and
+ * CRC32C checksums, and only the newest generations are kept.
+ * <p>
+ * A manifest can also record the write-ahead log position its snapshot files
+ * cover, which makes the generation a base for point-in-time restores.
+ */
+public class BackupManager {
+
+    private static final Logger log = LoggerFactory.getLogger(BackupManager.class);
+
+    private static final String GENERATION_PREFIX = "backup-";
+    private static final String MANIFEST_FILE = "manifest.json";
+    private static final DateTimeFormatter GENERATION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    private final Path backupDirectory;
+    private final Path stagingDirectory;
+    private final int retention;
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    // Snapshot files are immutable, so a checksum stays valid as long as name, size and mtime match.
+    private final Map<String, Long> checksumCache = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a backup manager.
+     *
+     * @param backupDirectory  Directory holding the backup generations.
+     * @param stagingDirectory Scratch directory on the same file system as the store.
+     * @param retention        Number of generations to keep.
+     */
+    public BackupManager(Path backupDirectory, Path stagingDirectory, int retention) {
+        this.backupDirectory = backupDirectory;
+        this.stagingDirectory = stagingDirectory;
+        this.retention = Math.max(1, retention);
+    }
+
+    /**
+     * Creates a new backup generation from the current snapshot files.
+     *
+     * @param source The files to back up.
+     * @return The generation directory.
+     * @throws IOException If the backup cannot be created.
+     */
+    public Path createBackup(BackupSource source) throws IOException {
+        return createBackup(source, null);
+    }
+
+    /**
+     * Creates a new backup generation from the current snapshot files.
+     *
+     * @param source      The files to back up.
+     * @param logPosition The log position the files cover, or null if unknown.
+     * @return The generation directory.
+     * @throws IOException If the backup cannot be created.
+     */
+    public synchronized Path createBackup(BackupSource source, WriteAheadLog.Seal logPosition) throws IOException {
+        long start = System.currentTimeMillis();
+        deleteRecursively(stagingDirectory);
+        Files.createDirectories(stagingDirectory);
+
+        Path generation = newGenerationDirectory();
+        try {
+            List<Path> files = source.captureFiles(stagingDirectory);
+            List<ManifestFile> manifestFiles = new ArrayList<>(files.size());
+            for (Path relative : files) {
+                Path staged = stagingDirectory.resolve(relative);
+                Path target = generation.resolve(relative);
+                Files.createDirectories(target.getParent());
+                DurableFiles.linkOrCopy(staged, target);
+                manifestFiles.add(new ManifestFile(relative.toString().replace('\\', '/'), Files.size(staged), checksum(staged)));
+            }
+
+            Path manifest = generation.resolve(MANIFEST_FILE);
+            try (Writer writer = Files.newBufferedWriter(manifest, StandardCharsets.UTF_8)) {
+                gson.toJson(new Manifest(System.currentTimeMillis(), manifestFiles,
+                        logPosition != null ? logPosition.segmentId() : null,
+                        logPosition != null ? logPosition.maxSequence() : null,
+                        logPosition != null ? logPosition.sealedAt() : null), writer);
+            }
+        } catch (IOException e) {
+            deleteRecursively(generation);
+            throw e;
+        } finally {
+            deleteRecursively(stagingDirectory);
+        }
+
+        applyRetention();
+        log.info("Backup {} created in {} ms.", generation.getFileName(), System.currentTimeMillis() - start);
+        return generation;
+    }
+
+    private Path newGenerationDirectory() throws IOException {
+        String name = GENERATION_PREFIX + ZonedDateTime.now(ZoneOffset.UTC).format(GENERATION_FORMAT);
+        Path generation = backupDirectory.resolve(name);
+        for (int suffix = 1; Files.exists(generation); suffix++) {
+            generation = backupDirectory.resolve(name + "-" + suffix);
+        }
+        return Files.createDirectories(generation);
+    }
+
+    /**
+     * Returns the oldest log segment any retained generation needs for a point-in-time restore.
+     *
+     * @return The segment id covered by the oldest generation with a log position, or -1 if none has one.
+     * @throws IOException If the generations cannot be listed.
+     */
+    public long oldestLogSegment() throws IOException {
+        return listGenerations(backupDirectory).stream()
+                .map(Generation::getManifest)
+                .filter(manifest -> manifest.getLogSegment() != null)
+                .mapToLong(Manifest::getLogSegment)
+                .min()
+                .orElse(-1);
+    }
+
+    /**
+     * Lists the generations of a backup directory with their manifests, newest first.
+     * Generations without a readable manifest are skipped.
+     *
+     * @param backupDirectory The backup directory.
+     * @return The generations.
+     * @throws IOException If the directory cannot be listed.
+     */
+    static List<Generation> listGenerations(Path backupDirectory) throws IOException {
+        List<Generation> generations = new ArrayList<>();
+        for (Path directory : listGenerationDirectories(backupDirectory)) {
+            Path manifestPath = directory.resolve(MANIFEST_FILE);
+            if (!Files.exists(manifestPath)) {
+                continue;
+            }
+            try (Reader reader = Files.newBufferedReader(manifestPath, StandardCharsets.UTF_8)) {
+                Manifest manifest = new Gson().fromJson(reader, Manifest.class);
+                if (manifest != null) {
+                    generations.add(new Generation(directory, manifest));
+                }
+            } catch (JsonParseException e) {
+                log.warn("Ignoring backup {} with an unreadable manifest.", directory.getFileName());
+            }
+        }
+        return generations;
+    }
+
+    private long checksum(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        String cacheKey = file.getFileName() + ":" + attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+        Long cached = checksumCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(Integer.MAX_VALUE, size - position));
+                crc.update(chunk);
+            }
+        }
+        checksumCache.put(cacheKey, crc.getValue());
+        return crc.getValue();
+    }
+
+    private void applyRetention() throws IOException {
+        List<Path> generations = listGenerationDirectories(backupDirectory);
+        for (int i = retention; i < generations.size(); i++) {
+            deleteRecursively(generations.get(i));
+            log.info("Backup {} removed by retention.", generations.get(i).getFileName());
+        }
+        // Checksums of files that left every generation are no longer needed.
+        if (checksumCache.size() > retention * 64) {
+            checksumCache.clear();
+        }
+    }
+
+    private static List<Path> listGenerationDirectories(Path backupDirectory) throws IOException {
+        if (!Files.isDirectory(backupDirectory)) {
+            return List.of();
+        }
+        try (Stream<Path> entries = Files.list(backupDirectory)) {
+            return entries
+                    .filter(path -> Files.isDirectory(path) && path.getFileName().toString().startsWith(GENERATION_PREFIX))
+                    .sorted(Comparator.comparing((Path path) -> path.getFileName().toString()).reversed())
+                    .toList();
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> entries = Files.walk(path)) {
+            for (Path entry : entries.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(entry);
+            }
+        }
+    }
+
+    /**
+     * On-disk manifest of one backup generation. The log fields are absent when
+     * the covered log position is unknown.
+     */
+    @Getter
+    @AllArgsConstructor
+    static class Manifest {
+        private final long createdAt;
+        private final List<ManifestFile> files;
+        // Newest write-ahead log segment whose records the snapshot files contain.
+        private final Long logSegment;
+        // Highest sequence number in the covered segments.
+        private final Long logSequence;
+        // Commit time of the last covered batch, in epoch millis.
+        private final Long logTime;
+    }
+
+    /**
+     * A backup generation directory and its manifest.
+     */
+    @Getter
+    @AllArgsConstructor
+    static class Generation {
+        private final Path directory;
+        private final Manifest manifest;
+    }
+
+    /**
+     * Size and checksum of one file in a backup generation.
+     */
+    @Getter
+    @AllArgsConstructor
+    static class ManifestFile {
+        private final String name;
+        private final long size;
+        private final long crc32c;
+    }
+}
@@ -0,0 +1,21 @@
+package me.proo0xy.data.persistence;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A set of immutable files that {@link BackupManager} can capture into a backup generation.
+ */
+public interface BackupSource {
+
+    /**
+     * Hard-links the current files into a directory, keeping their layout
+     * relative to the storage directory.
+     *
+     * @param target Directory on the same file system as the store.
+     * @return Relative paths of the captured files.
+     * @throws IOException If a link cannot be created.
+     */
+    List<Path> captureFiles(Path target) throws IOException;
+}
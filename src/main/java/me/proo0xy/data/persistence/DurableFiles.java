@@ -0,0 +1,130 @@
+package me.proo0xy.data.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * DurableFiles holds the file operations that must survive a crash: fsync of
+ * files and directories, and atomic replacement through a temporary file.
+ * A rename or a newly created file is only durable once its directory is
+ * synced, so every operation here syncs the directories it changed.
+ */
+public final class DurableFiles {
+
+    private static final Logger log = LoggerFactory.getLogger(DurableFiles.class);
+
+    private DurableFiles() {
+    }
+
+    /**
+     * Forces the content of a file to disk.
+     *
+     * @param file The file.
+     * @throws IOException If the file cannot be synced.
+     */
+    public static void force(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Forces the entries of a directory to disk, so files created, renamed or
+     * deleted in it stay that way after a crash. File systems that cannot open
+     * a directory for syncing are skipped.
+     *
+     * @param directory The directory.
+     */
+    public static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Cannot sync directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Creates a directory and its missing parents, syncing every directory that gained an entry.
+     *
+     * @param directory The directory.
+     * @throws IOException If a directory cannot be created.
+     */
+    public static void createDirectories(Path directory) throws IOException {
+        Deque<Path> missing = new ArrayDeque<>();
+        for (Path current = directory.toAbsolutePath(); current != null && !Files.isDirectory(current); current = current.getParent()) {
+            missing.push(current);
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(directory);
+        for (Path created : missing) {
+            forceDirectory(created.getParent());
+        }
+    }
+
+    /**
+     * Atomically moves a fully written and synced temporary file over its target
+     * and syncs the directory, so after a crash the target is either the old or the new file.
+     *
+     * @param temp   The temporary file, in the same directory as the target.
+     * @param target The target file.
+     * @throws IOException If the file cannot be moved.
+     */
+    public static void replace(Path temp, Path target) throws IOException {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(target.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Hard-links a file, or copies and syncs it when the target is on another file
+     * system. The copy is done with {@link FileChannel#transferTo}, which stays in the kernel.
+     *
+     * @param source The source file.
+     * @param target The target file, which must not exist.
+     * @throws IOException If the file can be neither linked nor copied.
+     */
+    public static void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+            return;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // Different file system: fall back to a kernel-side copy.
+        }
+
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+            out.force(true);
+        }
+    }
+
+    /**
+     * Atomically replaces a small text file.
+     *
+     * @param target  The target file.
+     * @param content The new content.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void writeString(Path target, CharSequence content) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        force(temp);
+        replace(temp, target);
+    }
+}
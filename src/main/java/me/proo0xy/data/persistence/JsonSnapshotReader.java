@@ -0,0 +1,212 @@
+package me.proo0xy.data.persistence;
+
+import com.google.gson.ToNumberPolicy;
+import me.proo0xy.data.ExpiringValue;
+import me.proo0xy.data.SortedSetValue;
+import me.proo0xy.data.StreamEvent;
+import me.proo0xy.data.StreamId;
+import me.proo0xy.data.StreamValue;
+import me.proo0xy.data.VersionedValue;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * JsonSnapshotReader streams a snapshot in the JSON layout of the former data.json
+ * ({@code {"key": {"key": "...", "value": ...}}}) without materializing it.
+ * <p>
+ * Parsing is sequential, but parsed entries are handed to the common pool in
+ * batches, so building entries and inserting them runs on all cores while the
+ * reader moves on.
+ */
+public final class JsonSnapshotReader {
+
+    private static final int BATCH_SIZE = 16384;
+
+    private JsonSnapshotReader() {
+    }
+
+    /**
+     * Streams all entries of a JSON snapshot into a visitor.
+     *
+     * @param path     The JSON file.
+     * @param visitor  Receives the entries; called concurrently.
+     * @param progress Receives the number of entries per batch.
+     * @throws IOException If the file cannot be read or is malformed.
+     */
+    public static void read(Path path, SnapshotFile.Visitor visitor, LoadProgress progress) throws IOException {
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+             JsonReader json = new JsonReader(reader)) {
+            if (json.peek() == JsonToken.NULL) {
+                return;
+            }
+
+            List<String> keys = new ArrayList<>(BATCH_SIZE);
+            List<Object> values = new ArrayList<>(BATCH_SIZE);
+            json.beginObject();
+            while (json.hasNext()) {
+                keys.add(json.nextName());
+                values.add(readEntryValue(json));
+                if (keys.size() == BATCH_SIZE) {
+                    pending.add(submit(keys, values, visitor, progress));
+                    keys = new ArrayList<>(BATCH_SIZE);
+                    values = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            json.endObject();
+            pending.add(submit(keys, values, visitor, progress));
+        } catch (IllegalStateException e) {
+            throw new IOException("Malformed JSON snapshot: " + path, e);
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    private static CompletableFuture<Void> submit(List<String> keys, List<Object> values, SnapshotFile.Visitor visitor, LoadProgress progress) {
+        return CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < keys.size(); i++) {
+                if (values.get(i) != null) {
+                    visitor.upsert(keys.get(i), values.get(i));
+                }
+            }
+            progress.add(keys.size());
+        }, ForkJoinPool.commonPool());
+    }
+
+    private static Object readEntryValue(JsonReader json) throws IOException {
+        Object value = null;
+        long expiresAt = -1;
+        long version = 0;
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (name.equals("value")) {
+                value = readValue(json);
+            } else if (name.equals("sortedSet")) {
+                value = readSortedSet(json);
+            } else if (name.equals("stream")) {
+                value = readStream(json);
+            } else if (name.equals("expiresAt")) {
+                expiresAt = json.nextLong();
+            } else if (name.equals("version")) {
+                version = json.nextLong();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        if (value != null && expiresAt >= 0) {
+            value = new ExpiringValue(expiresAt, value);
+        }
+        return value != null && version != 0 ? new VersionedValue(version, value) : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static StreamValue readStream(JsonReader json) throws IOException {
+        StreamId lastId = StreamId.MIN;
+        long maxLength = 0;
+        long maxAge = 0;
+        List<StreamEvent> events = new ArrayList<>();
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (name.equals("lastId")) {
+                lastId = StreamId.parse(json.nextString(), 0);
+            } else if (name.equals("maxLength")) {
+                maxLength = json.nextLong();
+            } else if (name.equals("maxAge")) {
+                maxAge = json.nextLong();
+            } else if (name.equals("events")) {
+                json.beginArray();
+                while (json.hasNext()) {
+                    StreamId id = null;
+                    Object fields = null;
+                    json.beginObject();
+                    while (json.hasNext()) {
+                        String eventName = json.nextName();
+                        if (eventName.equals("id")) {
+                            id = StreamId.parse(json.nextString(), 0);
+                        } else if (eventName.equals("fields")) {
+                            fields = readValue(json);
+                        } else {
+                            json.skipValue();
+                        }
+                    }
+                    json.endObject();
+                    if (id != null && fields instanceof Map) {
+                        events.add(new StreamEvent(id, (Map<String, Object>) fields));
+                    }
+                }
+                json.endArray();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        return new StreamValue(lastId, maxLength, maxAge, events);
+    }
+
+    private static SortedSetValue readSortedSet(JsonReader json) throws IOException {
+        List<String> members = new ArrayList<>();
+        List<Double> scores = new ArrayList<>();
+        json.beginArray();
+        while (json.hasNext()) {
+            String member = null;
+            double score = 0;
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if (name.equals("member")) {
+                    member = json.nextString();
+                } else if (name.equals("score")) {
+                    score = json.nextDouble();
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            if (member != null) {
+                members.add(member);
+                scores.add(score);
+            }
+        }
+        json.endArray();
+        return new SortedSetValue(members.toArray(new String[0]), scores.stream().mapToDouble(Double::doubleValue).toArray());
+    }
+
+    private static Object readValue(JsonReader json) throws IOException {
+        return switch (json.peek()) {
+            case STRING -> json.nextString();
+            case NUMBER -> ToNumberPolicy.LONG_OR_DOUBLE.readNumber(json);
+            case BOOLEAN -> json.nextBoolean();
+            case BEGIN_OBJECT -> {
+                Map<String, Object> fields = new HashMap<>();
+                json.beginObject();
+                while (json.hasNext()) {
+                    String field = json.nextName();
+                    Object value = readValue(json);
+                    if (value != null) {
+                        fields.put(field, value);
+                    }
+                }
+                json.endObject();
+                yield fields;
+            }
+            default -> {
+                json.skipValue();
+                yield null;
+            }
+        };
+    }
+}
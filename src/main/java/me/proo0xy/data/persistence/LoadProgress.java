@@ -0,0 +1,89 @@
+package me.proo0xy.data.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LoadProgress counts the entries read by a startup load and logs how far it got,
+ * so a long recovery is visible in the logs while it runs. It also collects the
+ * damaged parts of files that the load skipped.
+ */
+public class LoadProgress {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadProgress.class);
+    private static final long REPORT_EVERY = 1_000_000;
+
+    private final String source;
+    private final AtomicLong loaded = new AtomicLong();
+    private final AtomicInteger damaged = new AtomicInteger();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Creates a progress tracker.
+     *
+     * @param source Name of what is being loaded, used in the log lines.
+     */
+    public LoadProgress(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Records a number of loaded entries. Called once per decoded block or batch, not per entry.
+     *
+     * @param entries Number of entries just loaded.
+     */
+    public void add(long entries) {
+        long before = loaded.getAndAdd(entries);
+        long after = before + entries;
+        if (after / REPORT_EVERY != before / REPORT_EVERY) {
+            log.info("Loading {}: {} entries after {} ms.", source, after, elapsedMillis());
+        }
+    }
+
+    /**
+     * Records a damaged part of a file that the load skipped.
+     *
+     * @param file   The damaged file.
+     * @param detail What was skipped.
+     */
+    public void damaged(Path file, String detail) {
+        damaged.incrementAndGet();
+        log.error("Loading {}: skipped damaged {} of {}.", source, detail, file);
+    }
+
+    /**
+     * Checks whether any damage was skipped.
+     *
+     * @return true if the loaded data may be incomplete.
+     */
+    public boolean isDamaged() {
+        return damaged.get() > 0;
+    }
+
+    /**
+     * Logs the final count and duration.
+     *
+     * @return The number of loaded entries.
+     */
+    public long finish() {
+        long total = loaded.get();
+        log.info("Loaded {}: {} entries in {} ms.", source, total, elapsedMillis());
+        if (isDamaged()) {
+            log.warn("Loaded {} with {} damaged parts skipped.", source, damaged.get());
+        }
+        return total;
+    }
+
+    /**
+     * Returns the time since the load started.
+     *
+     * @return Elapsed milliseconds.
+     */
+    public long elapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
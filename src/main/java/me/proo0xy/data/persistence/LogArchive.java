@@ -0,0 +1,91 @@
+package me.proo0xy.data.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * LogArchive keeps the write-ahead log segments that checkpoints no longer need
+ * for recovery, so a backup generation plus the segments written after it can be
+ * replayed to any later point in time. Segments keep their ids and file names,
+ * and are dropped once no retained backup generation predates them.
+ */
+public class LogArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(LogArchive.class);
+
+    private final Path directory;
+
+    /**
+     * Creates a log archive in the given directory.
+     *
+     * @param directory Directory holding the archived segments.
+     */
+    public LogArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Adds a finished segment to the archive. The segment is linked or copied,
+     * and the caller deletes the original afterwards.
+     *
+     * @param segment The segment file.
+     * @throws IOException If the segment cannot be archived.
+     */
+    public void add(Path segment) throws IOException {
+        DurableFiles.createDirectories(directory);
+        Path target = directory.resolve(segment.getFileName());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        DurableFiles.linkOrCopy(segment, temp);
+        DurableFiles.replace(temp, target);
+    }
+
+    /**
+     * Returns the id of the newest archived segment.
+     *
+     * @return The id, or 0 if the archive is empty.
+     * @throws IOException If the archive cannot be listed.
+     */
+    public long lastSegmentId() throws IOException {
+        List<Long> ids = WriteAheadLog.listSegmentIds(directory);
+        return ids.isEmpty() ? 0 : ids.get(ids.size() - 1);
+    }
+
+    /**
+     * Returns the archived segments newer than the given id, oldest first.
+     *
+     * @param segmentId The id to start after.
+     * @return The segment files.
+     * @throws IOException If the archive cannot be listed.
+     */
+    public List<Path> segmentsAfter(long segmentId) throws IOException {
+        return WriteAheadLog.listSegmentIds(directory).stream()
+                .filter(id -> id > segmentId)
+                .map(id -> WriteAheadLog.segmentPath(directory, id))
+                .toList();
+    }
+
+    /**
+     * Deletes the archived segments up to and including the given id.
+     *
+     * @param segmentId The id of the newest segment to delete.
+     * @throws IOException If a segment cannot be deleted.
+     */
+    public void deleteUpTo(long segmentId) throws IOException {
+        int deleted = 0;
+        for (long id : WriteAheadLog.listSegmentIds(directory)) {
+            if (id <= segmentId) {
+                Files.deleteIfExists(WriteAheadLog.segmentPath(directory, id));
+                deleted++;
+            }
+        }
+        if (deleted > 0) {
+            log.debug("Dropped {} archived WAL segments up to {}.", deleted, segmentId);
+        }
+    }
+}
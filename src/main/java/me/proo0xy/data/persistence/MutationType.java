@@ -0,0 +1,45 @@
+package me.proo0xy.data.persistence;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum MutationType {
+    PUT((byte) 1),
+    REMOVE((byte) 2),
+    CLEAR((byte) 3),
+    // Opens every batch in the write-ahead log; the record's sequence holds the commit time in epoch millis.
+    TIMESTAMP((byte) 4),
+    // Changes some fields of a hash; the value holds the version and the changed fields, null for removed ones.
+    MERGE((byte) 5),
+    // Opens the records of a group, replayed only if the matching COMMIT follows; the sequence holds their number.
+    BEGIN((byte) 6),
+    // Closes the records of a group; the sequence holds their number.
+    COMMIT((byte) 7);
+
+    private final byte code;
+
+    /**
+     * @return Whether records of this type carry a value.
+     */
+    public boolean hasValue() {
+        return this == PUT || this == MERGE;
+    }
+
+    /**
+     * @return Whether records of this type only frame other records instead of changing the store.
+     */
+    public boolean isMarker() {
+        return this == TIMESTAMP || this == BEGIN || this == COMMIT;
+    }
+
+    public static MutationType fromCode(byte code) {
+        for (MutationType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        throw new IllegalStateException("Unknown mutation type: " + code);
+    }
+}
@@ -0,0 +1,279 @@
+package me.proo0xy.data.persistence;
+
+import me.proo0xy.data.DataEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * PartitionedSnapshotStore splits the key space into N hash partitions, each
+ * backed by its own {@link SnapshotStore} under {@code partitions/part-NNN}.
+ * Partitions are saved, merged and loaded concurrently on the persistence pool,
+ * and a checkpoint only touches the partitions that own a changed key.
+ * <p>
+ * Loading does not depend on the partition count, so a store written with a
+ * different count (or the former single-file layout) is loaded as is and then
+ * rewritten in the configured layout by a full snapshot.
+ */
+public class PartitionedSnapshotStore implements BackupSource {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionedSnapshotStore.class);
+
+    private static final String PARTITION_DIRECTORY = "partitions";
+    private static final String PARTITION_PREFIX = "part-";
+    private static final String LAYOUT_FILE = "layout";
+
+    private final Path storageDirectory;
+    private final Path partitionDirectory;
+    private final SnapshotStore[] partitions;
+    private final SnapshotStore rootStore;
+    private final ExecutorService executor;
+    private volatile boolean damagedOnLoad;
+
+    /**
+     * Opens a partitioned snapshot store.
+     *
+     * @param storageDirectory The storage directory.
+     * @param partitionCount   Number of hash partitions.
+     * @param executor         Pool running the per-partition work.
+     * @throws IOException If the partition directories cannot be listed.
+     */
+    public PartitionedSnapshotStore(Path storageDirectory, int partitionCount, ExecutorService executor) throws IOException {
+        this.storageDirectory = storageDirectory;
+        this.partitionDirectory = storageDirectory.resolve(PARTITION_DIRECTORY);
+        this.executor = executor;
+        this.rootStore = new SnapshotStore(storageDirectory);
+        this.partitions = new SnapshotStore[Math.max(1, partitionCount)];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new SnapshotStore(partitionPath(i));
+        }
+        if (listPartitionDirectories().isEmpty() && !rootStore.hasFiles()) {
+            writeLayout();
+        }
+    }
+
+    /**
+     * Returns the partition that owns a key.
+     *
+     * @param key The key.
+     * @return The partition index.
+     */
+    public int partitionOf(String key) {
+        return Math.floorMod(key.hashCode(), partitions.length);
+    }
+
+    /**
+     * Loads every partition in parallel, including partitions of an older layout.
+     * Damaged blocks are skipped and reported instead of failing the load.
+     *
+     * @param target The map receiving the loaded entries.
+     * @throws IOException If a snapshot file cannot be read.
+     */
+    public void load(Map<String, DataEntry> target) throws IOException {
+        LoadProgress progress = new LoadProgress("snapshot");
+        if (rootStore.hasFiles()) {
+            rootStore.load(target, progress);
+        }
+
+        List<SnapshotStore> stores = new ArrayList<>();
+        for (Path directory : listPartitionDirectories()) {
+            stores.add(new SnapshotStore(directory));
+        }
+        runAll(stores, store -> store.load(target, progress));
+        progress.finish();
+        damagedOnLoad = progress.isDamaged();
+    }
+
+    /**
+     * Checks whether the files on disk are not in the configured layout yet, or
+     * were damaged when loaded and must be replaced by intact ones.
+     *
+     * @return true if a full snapshot has to rewrite the store.
+     * @throws IOException If the storage cannot be inspected.
+     */
+    public boolean requiresMigration() throws IOException {
+        if (damagedOnLoad || rootStore.hasFiles()) {
+            return true;
+        }
+        List<Path> existing = listPartitionDirectories();
+        return !existing.isEmpty() && readLayout() != partitions.length;
+    }
+
+    /**
+     * Writes one delta segment per partition that owns a changed key; other partitions are skipped.
+     *
+     * @param keys   Keys changed since the previous checkpoint.
+     * @param lookup Resolves the current value of a key, or null if it was deleted.
+     * @return The number of partitions written.
+     * @throws IOException If a segment cannot be written.
+     */
+    public int writeDeltas(Collection<String> keys, Function<String, Object> lookup) throws IOException {
+        Map<Integer, List<String>> byPartition = groupByPartition(keys);
+        runAll(new ArrayList<>(byPartition.entrySet()), group -> partitions[group.getKey()].writeDelta(group.getValue(), lookup));
+        return byPartition.size();
+    }
+
+    /**
+     * Rewrites every partition from a complete data set, then removes files of older layouts.
+     *
+     * @param keys   Every key of the data set.
+     * @param lookup Resolves the value of a key.
+     * @throws IOException If a partition cannot be written.
+     */
+    public void writeBase(Collection<String> keys, Function<String, Object> lookup) throws IOException {
+        Map<Integer, List<String>> byPartition = groupByPartition(keys);
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < partitions.length; i++) {
+            indexes.add(i);
+        }
+        runAll(indexes, index -> partitions[index].writeBase(byPartition.getOrDefault(index, List.of()), lookup));
+
+        writeLayout();
+        for (Path directory : listPartitionDirectories()) {
+            if (partitionIndex(directory) >= partitions.length) {
+                new SnapshotStore(directory).deleteFiles();
+                Files.deleteIfExists(directory);
+            }
+        }
+        rootStore.deleteFiles();
+    }
+
+    /**
+     * Folds the deltas of every partition with at least the given number of segments.
+     *
+     * @param minDeltas Minimum number of deltas that makes a merge worthwhile.
+     * @throws IOException If a merge fails.
+     */
+    public void mergeIfNeeded(int minDeltas) throws IOException {
+        List<SnapshotStore> due = new ArrayList<>();
+        for (SnapshotStore partition : partitions) {
+            if (partition.deltaCount() >= minDeltas) {
+                due.add(partition);
+            }
+        }
+        runAll(due, SnapshotStore::merge);
+    }
+
+    /**
+     * Hard-links the files of every partition into a directory, keeping their layout
+     * relative to the storage directory.
+     *
+     * @param target Directory on the same file system as the store.
+     * @return Relative paths of the captured files.
+     * @throws IOException If a link cannot be created.
+     */
+    @Override
+    public List<Path> captureFiles(Path target) throws IOException {
+        List<Path> captured = new ArrayList<>();
+        for (SnapshotStore partition : partitions) {
+            captured.addAll(partition.captureFiles(storageDirectory, target));
+        }
+        Path layout = partitionDirectory.resolve(LAYOUT_FILE);
+        if (Files.exists(layout)) {
+            Path link = target.resolve(storageDirectory.relativize(layout));
+            Files.createDirectories(link.getParent());
+            Files.copy(layout, link);
+            captured.add(storageDirectory.relativize(layout));
+        }
+        return captured;
+    }
+
+    private Map<Integer, List<String>> groupByPartition(Collection<String> keys) {
+        Map<Integer, List<String>> byPartition = new HashMap<>();
+        for (String key : keys) {
+            byPartition.computeIfAbsent(partitionOf(key), index -> new ArrayList<>()).add(key);
+        }
+        return byPartition;
+    }
+
+    /**
+     * Runs a task per item on the persistence pool and waits for all of them.
+     */
+    private <T> void runAll(Collection<T> items, PartitionTask<T> task) throws IOException {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    task.run(item);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private Path partitionPath(int index) {
+        return partitionDirectory.resolve(String.format("%s%03d", PARTITION_PREFIX, index));
+    }
+
+    private static int partitionIndex(Path directory) {
+        return Integer.parseInt(directory.getFileName().toString().substring(PARTITION_PREFIX.length()));
+    }
+
+    private List<Path> listPartitionDirectories() throws IOException {
+        if (!Files.isDirectory(partitionDirectory)) {
+            return List.of();
+        }
+        try (Stream<Path> entries = Files.list(partitionDirectory)) {
+            return entries.filter(path -> Files.isDirectory(path) && path.getFileName().toString().startsWith(PARTITION_PREFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private int readLayout() throws IOException {
+        return readLayout(storageDirectory);
+    }
+
+    /**
+     * Reads the partition count a storage directory was written with.
+     *
+     * @param storageDirectory The storage directory.
+     * @return The partition count, or -1 if the directory has no readable layout file.
+     * @throws IOException If the layout file cannot be read.
+     */
+    public static int readLayout(Path storageDirectory) throws IOException {
+        Path layout = storageDirectory.resolve(PARTITION_DIRECTORY).resolve(LAYOUT_FILE);
+        if (!Files.exists(layout)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(Files.readString(layout, StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring unreadable partition layout file {}", layout);
+            return -1;
+        }
+    }
+
+    private void writeLayout() throws IOException {
+        DurableFiles.createDirectories(partitionDirectory);
+        DurableFiles.writeString(partitionDirectory.resolve(LAYOUT_FILE), Integer.toString(partitions.length));
+    }
+
+    /**
+     * A unit of per-partition work that may fail with an I/O error.
+     */
+    @FunctionalInterface
+    private interface PartitionTask<T> {
+        void run(T item) throws IOException;
+    }
+}
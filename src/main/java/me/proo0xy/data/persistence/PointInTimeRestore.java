@@ -0,0 +1,279 @@
+package me.proo0xy.data.persistence;
+
+import me.proo0xy.data.DataEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
+
+/**
+ * PointInTimeRestore rebuilds a store as it was at a given time or sequence number.
+ * It picks the newest backup generation whose snapshot is not newer than the target
+ * and streams the archived and live log segments written after it through the target
+ * filter, keeping only the last change per key.
+ * <p>
+ * The base snapshot files are linked into the new store unchanged and the net changes
+ * are written on top as delta segments, so the cost depends on the replayed log rather
+ * than on the size of the vault.
+ */
+public class PointInTimeRestore {
+
+    private static final Logger log = LoggerFactory.getLogger(PointInTimeRestore.class);
+
+    private final Path storagePath;
+    private final Path backupPath;
+    private final int partitions;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a restore over the files of a stopped vault.
+     *
+     * @param storagePath Storage directory of the vault, whose live log holds the newest segments.
+     * @param backupPath  Backup directory holding the generations and the log archive.
+     * @param partitions  Number of hash partitions used when the backup has no partition layout.
+     * @param executor    Pool loading and writing partitions.
+     */
+    public PointInTimeRestore(Path storagePath, Path backupPath, int partitions, ExecutorService executor) {
+        this.storagePath = storagePath;
+        this.backupPath = backupPath;
+        this.partitions = partitions;
+        this.executor = executor;
+    }
+
+    /**
+     * Restores the state including every batch committed at or before a time.
+     *
+     * @param time       The target time in epoch millis.
+     * @param targetPath Empty or missing directory receiving the restored store.
+     * @return What was restored.
+     * @throws IOException If no backup is old enough or the files cannot be read or written.
+     */
+    public Result restoreToTime(long time, Path targetPath) throws IOException {
+        return restore(time, Long.MAX_VALUE, targetPath);
+    }
+
+    /**
+     * Restores the state including every mutation with a sequence number up to the given one.
+     *
+     * @param sequence   The last sequence number to include.
+     * @param targetPath Empty or missing directory receiving the restored store.
+     * @return What was restored.
+     * @throws IOException If no backup is old enough or the files cannot be read or written.
+     */
+    public Result restoreToSequence(long sequence, Path targetPath) throws IOException {
+        return restore(Long.MAX_VALUE, sequence, targetPath);
+    }
+
+    private Result restore(long maxTime, long maxSequence, Path targetPath) throws IOException {
+        long start = System.currentTimeMillis();
+        requireEmpty(targetPath);
+        BackupManager.Generation base = findBase(maxTime, maxSequence);
+        BackupManager.Manifest manifest = base.getManifest();
+        log.info("Restoring from backup {} covering log segment {}.", base.getDirectory().getFileName(), manifest.getLogSegment());
+
+        Replay replay = new Replay(maxTime, maxSequence, manifest.getLogTime(), manifest.getLogSequence());
+        long expectedId = manifest.getLogSegment() + 1;
+        for (Map.Entry<Long, Path> segment : segmentsAfter(manifest.getLogSegment()).entrySet()) {
+            if (segment.getKey() != expectedId) {
+                log.warn("Log segments {} to {} are missing; mutations in them are not restored.", expectedId, segment.getKey() - 1);
+            }
+            expectedId = segment.getKey() + 1;
+            if (!WriteAheadLog.read(segment.getValue(), replay::apply)) {
+                log.warn("Stopping the replay at the damaged segment {}.", segment.getValue());
+                break;
+            }
+            if (replay.done) {
+                break;
+            }
+        }
+
+        copyBase(base, targetPath, replay.cleared);
+        if (!replay.baseMerges.isEmpty()) {
+            replay.mergeIntoBase(targetPath, partitions, executor);
+        }
+        if (!replay.changes.isEmpty()) {
+            int layout = PartitionedSnapshotStore.readLayout(targetPath);
+            // Deltas must land in the partitions holding the base entries of their keys.
+            new PartitionedSnapshotStore(targetPath, layout > 0 ? layout : partitions, executor)
+                    .writeDeltas(replay.changes.keySet(), replay.changes::get);
+        }
+
+        Result result = new Result(base.getDirectory().getFileName().toString(), replay.changes.size(), replay.applied, replay.lastSequence, replay.lastTime);
+        log.info("Restored {} changed keys from {} replayed mutations in {} ms.", result.changedKeys(), result.replayed(), System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * Links the files of a backup generation into the target directory. Snapshot files
+     * are skipped when the replayed log cleared the store.
+     */
+    private static void copyBase(BackupManager.Generation base, Path targetPath, boolean cleared) throws IOException {
+        List<BackupManager.ManifestFile> files = base.getManifest().getFiles();
+        for (BackupManager.ManifestFile file : files) {
+            boolean snapshotFile = !file.getName().endsWith("/layout");
+            if (cleared && snapshotFile) {
+                continue;
+            }
+            Path target = targetPath.resolve(file.getName());
+            DurableFiles.createDirectories(target.getParent());
+            DurableFiles.linkOrCopy(base.getDirectory().resolve(file.getName()), target);
+        }
+    }
+
+    private BackupManager.Generation findBase(long maxTime, long maxSequence) throws IOException {
+        for (BackupManager.Generation generation : BackupManager.listGenerations(backupPath)) {
+            BackupManager.Manifest manifest = generation.getManifest();
+            if (manifest.getLogSegment() != null && manifest.getLogTime() <= maxTime && manifest.getLogSequence() <= maxSequence) {
+                return generation;
+            }
+        }
+        throw new IOException("No backup in " + backupPath + " with a log position is old enough for the requested point");
+    }
+
+    /**
+     * Collects the archived and live log segments newer than a segment id, keyed by id.
+     * A segment present in both places is read from the archive.
+     */
+    private Map<Long, Path> segmentsAfter(long segmentId) throws IOException {
+        Map<Long, Path> segments = new TreeMap<>();
+        Path liveDirectory = storagePath.resolve("wal");
+        for (long id : WriteAheadLog.listSegmentIds(liveDirectory)) {
+            if (id > segmentId) {
+                segments.put(id, WriteAheadLog.segmentPath(liveDirectory, id));
+            }
+        }
+        for (Path archived : new LogArchive(backupPath.resolve("wal-archive")).segmentsAfter(segmentId)) {
+            String name = archived.getFileName().toString();
+            segments.put(Long.parseLong(name.substring(0, name.indexOf('.'))), archived);
+        }
+        return segments;
+    }
+
+    private static void requireEmpty(Path targetPath) throws IOException {
+        if (!Files.exists(targetPath)) {
+            return;
+        }
+        try (Stream<Path> entries = Files.list(targetPath)) {
+            if (entries.findAny().isPresent()) {
+                throw new IOException("Restore target is not empty: " + targetPath);
+            }
+        }
+    }
+
+    /**
+     * Collects the last change per key from log records until the target is passed.
+     */
+    private static final class Replay {
+        // Latest value per changed key; null marks a removed key.
+        private final Map<String, Object> changes = new HashMap<>();
+        // Partial changes of entries last written before the base, applied to the base values in order.
+        private final Map<String, List<Object>> baseMerges = new HashMap<>();
+        private final long maxTime;
+        private final long maxSequence;
+        private long batchTime;
+        private long lastTime;
+        private long lastSequence;
+        private long applied;
+        private boolean cleared;
+        private boolean done;
+
+        private Replay(long maxTime, long maxSequence, long baseTime, long baseSequence) {
+            this.maxTime = maxTime;
+            this.maxSequence = maxSequence;
+            this.batchTime = baseTime;
+            this.lastTime = baseTime;
+            this.lastSequence = baseSequence;
+        }
+
+        private void apply(WalRecord record) {
+            if (done) {
+                return;
+            }
+            if (record.getType() == MutationType.TIMESTAMP) {
+                // Batches are committed in time order, so the first later batch ends the replay.
+                done = record.getSequence() > maxTime;
+                batchTime = record.getSequence();
+                return;
+            }
+            // Sequence numbers are not strictly ordered in the log, so later records are filtered, not cut off.
+            if (record.getSequence() > maxSequence) {
+                return;
+            }
+            switch (record.getType()) {
+                case PUT -> {
+                    changes.put(record.getKey(), record.getValue());
+                    baseMerges.remove(record.getKey());
+                }
+                case REMOVE -> {
+                    changes.put(record.getKey(), null);
+                    baseMerges.remove(record.getKey());
+                }
+                case MERGE -> {
+                    if (changes.containsKey(record.getKey()) || cleared) {
+                        changes.put(record.getKey(), merge(record.getKey(), changes.get(record.getKey()), record.getValue()));
+                    } else {
+                        baseMerges.computeIfAbsent(record.getKey(), k -> new ArrayList<>()).add(record.getValue());
+                    }
+                }
+                case CLEAR -> {
+                    changes.clear();
+                    baseMerges.clear();
+                    cleared = true;
+                }
+            }
+            lastSequence = Math.max(lastSequence, record.getSequence());
+            lastTime = Math.max(lastTime, batchTime);
+            applied++;
+        }
+
+        /**
+         * Resolves the partial changes of entries whose full value is in the base, which has to be read for them.
+         */
+        private void mergeIntoBase(Path targetPath, int partitions, ExecutorService executor) throws IOException {
+            int layout = PartitionedSnapshotStore.readLayout(targetPath);
+            Map<String, DataEntry> base = new ConcurrentHashMap<>();
+            new PartitionedSnapshotStore(targetPath, layout > 0 ? layout : partitions, executor).load(base);
+            baseMerges.forEach((key, merges) -> {
+                DataEntry entry = base.get(key);
+                Object value = entry != null ? entry.getStoredValue() : null;
+                for (Object change : merges) {
+                    value = merge(key, value, change);
+                }
+                changes.put(key, value);
+            });
+            baseMerges.clear();
+        }
+    }
+
+    /**
+     * Applies a logged partial change to a stored value.
+     *
+     * @return The stored value after the change, or null if the change left the entry empty.
+     */
+    private static Object merge(String key, Object stored, Object change) {
+        DataEntry merged = DataEntry.merge(key, stored != null ? DataEntry.of(key, stored) : null, change);
+        return merged != null ? merged.getStoredValue() : null;
+    }
+
+    /**
+     * Summary of a finished restore.
+     *
+     * @param base         Name of the backup generation used as the base.
+     * @param changedKeys  Number of keys changed or removed by the replay.
+     * @param replayed     Number of log records applied on top of the base.
+     * @param lastSequence Highest sequence number included.
+     * @param lastTime     Commit time of the last included batch, in epoch millis.
+     */
+    public record Result(String base, long changedKeys, long replayed, long lastSequence, long lastTime) {
+    }
+}
@@ -0,0 +1,338 @@
+package me.proo0xy.data.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * SnapshotFile reads and writes the binary snapshot format used for the base
+ * snapshot and the delta segments.
+ * <p>
+ * Entries are sorted by key and packed into blocks, so every block covers a
+ * contiguous key range. Blocks carry their own CRC32 and are listed in a
+ * directory at the end of the file, which lets the reader map and decode them
+ * in parallel.
+ * <pre>
+ * header:    int magic, byte version
+ * block:     int bodyLength, int entryCount, int crc32(body), body
+ * entry:     string key, byte kind, value (upserts only)
+ * directory: int blockCount, long offset per block
+ * trailer:   long directoryOffset, int magic
+ * </pre>
+ */
+public final class SnapshotFile {
+
+    private static final int MAGIC = 0x53565354; // "SVST"
+    private static final byte VERSION = 1;
+    private static final int FILE_HEADER_SIZE = Integer.BYTES + 1;
+    private static final int BLOCK_HEADER_SIZE = Integer.BYTES * 3;
+    private static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int TARGET_BLOCK_SIZE = 256 * 1024;
+
+    private static final byte KIND_UPSERT = 0;
+    private static final byte KIND_DELETE = 1;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Receives the entries decoded from a snapshot file. Blocks are decoded
+     * concurrently, so implementations must be thread-safe.
+     */
+    public interface Visitor {
+        void upsert(String key, Object value);
+
+        void delete(String key);
+    }
+
+    /**
+     * Writes a snapshot file.
+     *
+     * @param path   The target file; it is created or truncated, and synced once complete.
+     * @param keys   The keys to write; duplicates are written once.
+     * @param lookup Resolves the value of a key; null records the key as deleted.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path path, Collection<String> keys, Function<String, Object> lookup) throws IOException {
+        List<String> sortedKeys = new ArrayList<>(keys);
+        sortedKeys.sort(null);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            BlockWriter writer = new BlockWriter(channel);
+            String previous = null;
+            for (String key : sortedKeys) {
+                if (key.equals(previous)) {
+                    continue;
+                }
+                previous = key;
+                Object value = lookup.apply(key);
+                writer.add(key, value != null ? KIND_UPSERT : KIND_DELETE, value);
+            }
+            writer.finish();
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Reads a snapshot file through memory-mapped blocks decoded in parallel.
+     *
+     * @param path    The snapshot file.
+     * @param visitor Receives the decoded entries.
+     * @throws IOException If the file is malformed or a block fails its checksum.
+     */
+    public static void read(Path path, Visitor visitor) throws IOException {
+        read(path, visitor, null);
+    }
+
+    /**
+     * Reads a snapshot file through memory-mapped blocks decoded in parallel.
+     * <p>
+     * With a progress tracker, as used by the startup load, damage does not reject
+     * the whole file: blocks failing their checksum are skipped and reported, and a
+     * file without a valid directory is scanned block by block up to the first bad one.
+     *
+     * @param path     The snapshot file.
+     * @param visitor  Receives the decoded entries.
+     * @param progress Receives the entry count of every decoded block and any damage, may be null.
+     * @throws IOException If the file cannot be read, or is damaged and no progress tracker is given.
+     */
+    public static void read(Path path, Visitor visitor, LoadProgress progress) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = size >= FILE_HEADER_SIZE ? readFully(channel, 0, FILE_HEADER_SIZE) : null;
+            if (header == null || header.getInt() != MAGIC || header.get() != VERSION) {
+                if (progress == null) {
+                    throw new IOException("Not a snapshot file: " + path);
+                }
+                progress.damaged(path, "the whole file, which has no valid header");
+                return;
+            }
+
+            long[] offsets = readDirectory(channel, size);
+            if (offsets == null) {
+                if (progress == null) {
+                    throw new IOException("Snapshot file has no valid trailer: " + path);
+                }
+                offsets = scanBlocks(channel, size);
+                progress.damaged(path, "the directory; recovered " + (offsets.length - 1) + " blocks before the first bad one");
+            }
+
+            long[] blockOffsets = offsets;
+            try {
+                IntStream.range(0, blockOffsets.length - 1).parallel().forEach(i -> {
+                    try {
+                        MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, blockOffsets[i], blockOffsets[i + 1] - blockOffsets[i]);
+                        int entries = decodeBlock(block, visitor);
+                        if (progress != null) {
+                            progress.add(entries);
+                        }
+                    } catch (IOException e) {
+                        if (progress == null) {
+                            throw new SnapshotReadException(e);
+                        }
+                        progress.damaged(path, "block " + i + " (" + e.getMessage() + ")");
+                    }
+                });
+            } catch (SnapshotReadException e) {
+                throw new IOException("Failed to read snapshot file: " + path, e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Reads the block offsets from the directory at the end of the file.
+     *
+     * @return The block offsets followed by the directory offset, or null if the trailer or directory is invalid.
+     */
+    private static long[] readDirectory(FileChannel channel, long size) throws IOException {
+        if (size < FILE_HEADER_SIZE + TRAILER_SIZE) {
+            return null;
+        }
+        ByteBuffer trailer = readFully(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+        long directoryOffset = trailer.getLong();
+        long directorySize = size - TRAILER_SIZE - directoryOffset;
+        if (trailer.getInt() != MAGIC || directoryOffset < FILE_HEADER_SIZE || directorySize < Integer.BYTES) {
+            return null;
+        }
+
+        ByteBuffer directory = readFully(channel, directoryOffset, (int) directorySize);
+        int blockCount = directory.getInt();
+        if (blockCount < 0 || (long) blockCount * Long.BYTES != directory.remaining()) {
+            return null;
+        }
+        long[] offsets = new long[blockCount + 1];
+        long previous = FILE_HEADER_SIZE;
+        for (int i = 0; i < blockCount; i++) {
+            offsets[i] = directory.getLong();
+            if (offsets[i] < previous || offsets[i] >= directoryOffset) {
+                return null;
+            }
+            previous = offsets[i] + BLOCK_HEADER_SIZE;
+        }
+        offsets[blockCount] = directoryOffset;
+        return offsets;
+    }
+
+    /**
+     * Walks the blocks from the start of the file and stops at the first one whose
+     * length or checksum is invalid, for files whose directory is lost.
+     *
+     * @return The offsets of the valid blocks followed by the end of the last one.
+     */
+    private static long[] scanBlocks(FileChannel channel, long size) throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        long position = FILE_HEADER_SIZE;
+        while (size - position >= BLOCK_HEADER_SIZE) {
+            ByteBuffer header = readFully(channel, position, BLOCK_HEADER_SIZE);
+            int bodyLength = header.getInt();
+            header.getInt();
+            int expectedCrc = header.getInt();
+            if (bodyLength <= 0 || bodyLength > size - position - BLOCK_HEADER_SIZE) {
+                break;
+            }
+            crc.reset();
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position + BLOCK_HEADER_SIZE, bodyLength));
+            if ((int) crc.getValue() != expectedCrc) {
+                break;
+            }
+            offsets.add(position);
+            position += BLOCK_HEADER_SIZE + bodyLength;
+        }
+        offsets.add(position);
+        return offsets.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static int decodeBlock(ByteBuffer block, Visitor visitor) throws IOException {
+        int bodyLength = block.getInt();
+        int entryCount = block.getInt();
+        int expectedCrc = block.getInt();
+        if (bodyLength != block.remaining()) {
+            throw new IOException("Snapshot block has an invalid length");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(block.duplicate());
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("Snapshot block failed its checksum");
+        }
+
+        for (int i = 0; i < entryCount; i++) {
+            String key = ValueCodec.readString(block);
+            if (block.get() == KIND_UPSERT) {
+                visitor.upsert(key, ValueCodec.readValue(block));
+            } else {
+                visitor.delete(key);
+            }
+        }
+        return entryCount;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of snapshot file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Packs entries into checksummed blocks and writes the directory and trailer.
+     */
+    private static class BlockWriter {
+        private final FileChannel channel;
+        private final List<Long> offsets = new ArrayList<>();
+        private final CRC32 crc = new CRC32();
+        private ByteBuffer block = ByteBuffer.allocate(TARGET_BLOCK_SIZE * 2);
+        private int entryCount;
+        private long position;
+
+        BlockWriter(FileChannel channel) throws IOException {
+            this.channel = channel;
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).put(VERSION).flip();
+            writeFully(header);
+            block.position(BLOCK_HEADER_SIZE);
+        }
+
+        void add(String key, byte kind, Object value) throws IOException {
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            int size = ValueCodec.stringSize(keyBytes) + 1 + (kind == KIND_UPSERT ? ValueCodec.valueSize(value) : 0);
+            if (block.remaining() < size) {
+                if (entryCount > 0) {
+                    flushBlock();
+                }
+                if (block.remaining() < size) {
+                    block = ByteBuffer.allocate(BLOCK_HEADER_SIZE + size);
+                    block.position(BLOCK_HEADER_SIZE);
+                }
+            }
+
+            ValueCodec.writeString(block, keyBytes);
+            block.put(kind);
+            if (kind == KIND_UPSERT) {
+                ValueCodec.writeValue(block, value);
+            }
+            entryCount++;
+            if (block.position() >= TARGET_BLOCK_SIZE) {
+                flushBlock();
+            }
+        }
+
+        void finish() throws IOException {
+            if (entryCount > 0) {
+                flushBlock();
+            }
+            long directoryOffset = position;
+            ByteBuffer directory = ByteBuffer.allocate(Integer.BYTES + offsets.size() * Long.BYTES + TRAILER_SIZE);
+            directory.putInt(offsets.size());
+            offsets.forEach(directory::putLong);
+            directory.putLong(directoryOffset).putInt(MAGIC);
+            writeFully(directory.flip());
+        }
+
+        private void flushBlock() throws IOException {
+            int bodyLength = block.position() - BLOCK_HEADER_SIZE;
+            crc.reset();
+            crc.update(block.array(), BLOCK_HEADER_SIZE, bodyLength);
+            block.putInt(0, bodyLength).putInt(Integer.BYTES, entryCount).putInt(Integer.BYTES * 2, (int) crc.getValue());
+
+            offsets.add(position);
+            writeFully(block.flip());
+
+            if (block.capacity() > TARGET_BLOCK_SIZE * 2) {
+                block = ByteBuffer.allocate(TARGET_BLOCK_SIZE * 2);
+            }
+            block.clear().position(BLOCK_HEADER_SIZE);
+            entryCount = 0;
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Carries an I/O failure out of the parallel block decoding.
+     */
+    private static class SnapshotReadException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        SnapshotReadException(IOException cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package me.proo0xy.data.persistence;
+
+import me.proo0xy.data.DataEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * SnapshotStore keeps the on-disk snapshot as a base file plus a chain of delta
+ * segments, both in the {@link SnapshotFile} format. A checkpoint only writes the
+ * keys changed since the previous one, and {@link #merge()} folds the accumulated
+ * deltas back into the base.
+ * <p>
+ * Replaying a delta that is already part of the base is harmless, so the base is
+ * replaced before the merged deltas are deleted and a crash in between loses nothing.
+ */
+public class SnapshotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private static final String BASE_FILE = "data.snapshot";
+    private static final String LEGACY_BASE_FILE = "data.json";
+    private static final String DELTA_DIRECTORY = "deltas";
+    private static final String DELTA_SUFFIX = ".delta";
+
+    private final Path basePath;
+    private final Path legacyBasePath;
+    private final Path deltaDirectory;
+    private final AtomicLong deltaSequence = new AtomicLong();
+    // Guards replacement of the base file by a merge or a full rewrite.
+    private final Object baseLock = new Object();
+
+    /**
+     * Creates a snapshot store in the given directory.
+     *
+     * @param directory Directory holding the base file and the delta segments.
+     * @throws IOException If the delta directory cannot be listed.
+     */
+    public SnapshotStore(Path directory) throws IOException {
+        this.basePath = directory.resolve(BASE_FILE);
+        this.legacyBasePath = directory.resolve(LEGACY_BASE_FILE);
+        this.deltaDirectory = directory.resolve(DELTA_DIRECTORY);
+        deltaSequence.set(listDeltaIds().stream().mapToLong(Long::longValue).max().orElse(0));
+    }
+
+    /**
+     * Loads the base snapshot and applies every delta segment on top of it.
+     *
+     * @param target   The map receiving the loaded entries.
+     * @param progress Receives the number of loaded entries.
+     * @throws IOException If a snapshot file cannot be read.
+     */
+    public void load(Map<String, DataEntry> target, LoadProgress progress) throws IOException {
+        SnapshotFile.Visitor visitor = entryVisitor(target);
+        if (Files.exists(basePath)) {
+            SnapshotFile.read(basePath, visitor, progress);
+        } else if (Files.exists(legacyBasePath)) {
+            JsonSnapshotReader.read(legacyBasePath, visitor, progress);
+        }
+
+        for (long id : listDeltaIds()) {
+            SnapshotFile.read(deltaPath(id), visitor, progress);
+        }
+    }
+
+    /**
+     * Checks whether the directory holds any snapshot file.
+     *
+     * @return true if a base, legacy base or delta exists.
+     * @throws IOException If the delta directory cannot be listed.
+     */
+    public boolean hasFiles() throws IOException {
+        return Files.exists(basePath) || Files.exists(legacyBasePath) || !listDeltaIds().isEmpty();
+    }
+
+    /**
+     * Checks whether only a JSON snapshot from an older version is present,
+     * in which case the caller should write a full binary snapshot.
+     *
+     * @return true if the base still has to be migrated.
+     */
+    public boolean requiresMigration() {
+        return !Files.exists(basePath) && Files.exists(legacyBasePath);
+    }
+
+    /**
+     * Writes a delta segment with the changed and deleted keys of one checkpoint.
+     *
+     * @param keys   Keys changed since the previous checkpoint.
+     * @param lookup Resolves the current value of a key, or null if it was deleted.
+     * @throws IOException If the segment cannot be written.
+     */
+    public void writeDelta(Collection<String> keys, Function<String, Object> lookup) throws IOException {
+        DurableFiles.createDirectories(deltaDirectory);
+        Path path = deltaPath(deltaSequence.incrementAndGet());
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        SnapshotFile.write(temp, keys, lookup);
+        DurableFiles.replace(temp, path);
+        log.debug("Delta segment {} written with {} keys.", path, keys.size());
+    }
+
+    /**
+     * Rewrites the base snapshot from the given data and drops all existing deltas.
+     *
+     * @param keys   Every key of the data set.
+     * @param lookup Resolves the value of a key.
+     * @throws IOException If the base cannot be written.
+     */
+    public void writeBase(Collection<String> keys, Function<String, Object> lookup) throws IOException {
+        synchronized (baseLock) {
+            List<Long> covered = listDeltaIds();
+            replaceBase(keys, lookup);
+            deleteDeltas(covered);
+            Files.deleteIfExists(legacyBasePath);
+        }
+    }
+
+    /**
+     * Folds all current delta segments into the base snapshot.
+     * Works only on files, so it never touches the live map.
+     *
+     * @throws IOException If a snapshot file cannot be read or written.
+     */
+    public void merge() throws IOException {
+        synchronized (baseLock) {
+            List<Long> deltaIds = listDeltaIds();
+            if (deltaIds.isEmpty()) {
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            Map<String, Object> merged = new ConcurrentHashMap<>();
+            SnapshotFile.Visitor visitor = valueVisitor(merged);
+            if (Files.exists(basePath)) {
+                SnapshotFile.read(basePath, visitor);
+            }
+            for (long id : deltaIds) {
+                SnapshotFile.read(deltaPath(id), visitor);
+            }
+
+            replaceBase(merged.keySet(), merged::get);
+            deleteDeltas(deltaIds);
+            log.info("Merged {} delta segments into the base snapshot in {} ms.", deltaIds.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Returns the number of delta segments waiting to be merged.
+     *
+     * @return Number of delta segments.
+     * @throws IOException If the delta directory cannot be listed.
+     */
+    public int deltaCount() throws IOException {
+        return listDeltaIds().size();
+    }
+
+    /**
+     * Hard-links the current base and delta files into a directory, keeping their
+     * layout relative to the given root. Files are never modified after they are written,
+     * so the links form a consistent copy; holding the base lock keeps a merge from
+     * swapping them meanwhile.
+     *
+     * @param root   Directory the captured paths are relative to.
+     * @param target Directory on the same file system as the store.
+     * @return Relative paths of the captured files, base first.
+     * @throws IOException If a link cannot be created.
+     */
+    public List<Path> captureFiles(Path root, Path target) throws IOException {
+        synchronized (baseLock) {
+            List<Path> sources = new ArrayList<>();
+            if (Files.exists(basePath)) {
+                sources.add(basePath);
+            }
+            for (long id : listDeltaIds()) {
+                sources.add(deltaPath(id));
+            }
+
+            List<Path> captured = new ArrayList<>(sources.size());
+            for (Path source : sources) {
+                Path relative = root.relativize(source);
+                Path link = target.resolve(relative);
+                Files.createDirectories(link.getParent());
+                Files.createLink(link, source);
+                captured.add(relative);
+            }
+            return captured;
+        }
+    }
+
+    /**
+     * Deletes every snapshot file of this store.
+     *
+     * @throws IOException If a file cannot be deleted.
+     */
+    public void deleteFiles() throws IOException {
+        synchronized (baseLock) {
+            deleteDeltas(listDeltaIds());
+            Files.deleteIfExists(basePath);
+            Files.deleteIfExists(legacyBasePath);
+            Files.deleteIfExists(deltaDirectory);
+        }
+    }
+
+    /**
+     * Gets the path of the base snapshot file.
+     *
+     * @return Path to the base snapshot.
+     */
+    public Path getBasePath() {
+        return basePath;
+    }
+
+    private void replaceBase(Collection<String> keys, Function<String, Object> lookup) throws IOException {
+        DurableFiles.createDirectories(basePath.getParent());
+        Path temp = basePath.resolveSibling(BASE_FILE + ".tmp");
+        SnapshotFile.write(temp, keys, lookup);
+        DurableFiles.replace(temp, basePath);
+    }
+
+    private static SnapshotFile.Visitor entryVisitor(Map<String, DataEntry> target) {
+        return new SnapshotFile.Visitor() {
+            @Override
+            public void upsert(String key, Object value) {
+                target.put(key, DataEntry.of(key, value));
+            }
+
+            @Override
+            public void delete(String key) {
+                target.remove(key);
+            }
+        };
+    }
+
+    private static SnapshotFile.Visitor valueVisitor(Map<String, Object> target) {
+        return new SnapshotFile.Visitor() {
+            @Override
+            public void upsert(String key, Object value) {
+                target.put(key, value);
+            }
+
+            @Override
+            public void delete(String key) {
+                target.remove(key);
+            }
+        };
+    }
+
+    private void deleteDeltas(List<Long> ids) throws IOException {
+        for (long id : ids) {
+            Files.deleteIfExists(deltaPath(id));
+        }
+    }
+
+    private Path deltaPath(long id) {
+        return deltaDirectory.resolve(String.format("%020d%s", id, DELTA_SUFFIX));
+    }
+
+    private List<Long> listDeltaIds() throws IOException {
+        if (!Files.isDirectory(deltaDirectory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(deltaDirectory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(DELTA_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - DELTA_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
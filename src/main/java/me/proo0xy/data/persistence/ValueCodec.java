@@ -0,0 +1,254 @@
+package me.proo0xy.data.persistence;
+
+import me.proo0xy.data.ExpiringValue;
+import me.proo0xy.data.SortedSetValue;
+import me.proo0xy.data.StreamEvent;
+import me.proo0xy.data.StreamId;
+import me.proo0xy.data.StreamValue;
+import me.proo0xy.data.VersionedValue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ValueCodec encodes keys and entry values into the compact binary form
+ * shared by every on-disk format of the store.
+ */
+public final class ValueCodec {
+
+    public static final byte TAG_NULL = 0;
+    public static final byte TAG_STRING = 1;
+    public static final byte TAG_NUMBER = 2;
+    public static final byte TAG_BOOLEAN = 3;
+    public static final byte TAG_LONG = 4;
+    public static final byte TAG_EXPIRING = 5;
+    public static final byte TAG_VERSIONED = 6;
+    // A hash: the number of fields, then every field name followed by its tagged value.
+    public static final byte TAG_HASH = 7;
+    // A sorted set: the number of members, then every member followed by its score as a double.
+    public static final byte TAG_SORTED_SET = 8;
+    // A stream: the last ID as two longs, the length and age caps, the number of events,
+    // then every event's ID as two longs followed by its fields as a hash.
+    public static final byte TAG_STREAM = 9;
+
+    private ValueCodec() {
+    }
+
+    /**
+     * Returns the number of bytes {@link #writeString} needs for the given string.
+     *
+     * @param bytes The UTF-8 bytes of the string.
+     * @return Encoded size in bytes.
+     */
+    public static int stringSize(byte[] bytes) {
+        return Integer.BYTES + bytes.length;
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string.
+     *
+     * @param buffer The target buffer.
+     * @param bytes  The UTF-8 bytes of the string.
+     */
+    public static void writeString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string.
+     *
+     * @param buffer The source buffer.
+     * @return The decoded string.
+     */
+    public static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalStateException("Invalid string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of bytes {@link #writeValue} needs for the given value.
+     *
+     * @param value The value to measure.
+     * @return Encoded size in bytes.
+     */
+    public static int valueSize(Object value) {
+        if (value == null) {
+            return 1;
+        }
+        if (value instanceof String string) {
+            return 1 + stringSize(string.getBytes(StandardCharsets.UTF_8));
+        }
+        if (value instanceof Number) {
+            // Integral numbers are written as a long, the others as a double; both take eight bytes.
+            return 1 + Long.BYTES;
+        }
+        if (value instanceof Boolean) {
+            return 2;
+        }
+        if (value instanceof ExpiringValue expiring) {
+            return 1 + Long.BYTES + valueSize(expiring.value());
+        }
+        if (value instanceof VersionedValue versioned) {
+            return 1 + Long.BYTES + valueSize(versioned.value());
+        }
+        if (value instanceof Map<?, ?> fields) {
+            int size = 1 + Integer.BYTES;
+            for (Map.Entry<?, ?> field : fields.entrySet()) {
+                size += stringSize(((String) field.getKey()).getBytes(StandardCharsets.UTF_8)) + valueSize(field.getValue());
+            }
+            return size;
+        }
+        if (value instanceof SortedSetValue sortedSet) {
+            int size = 1 + Integer.BYTES;
+            for (String member : sortedSet.members()) {
+                size += stringSize(member.getBytes(StandardCharsets.UTF_8)) + Double.BYTES;
+            }
+            return size;
+        }
+        if (value instanceof StreamValue stream) {
+            int size = 1 + 4 * Long.BYTES + Integer.BYTES;
+            for (StreamEvent event : stream.events()) {
+                size += 2 * Long.BYTES + valueSize(event.fields());
+            }
+            return size;
+        }
+        throw new IllegalArgumentException("Unsupported value type: " + value.getClass().getName());
+    }
+
+    /**
+     * Writes a value prefixed by its type tag.
+     *
+     * @param buffer The target buffer.
+     * @param value  The value to write.
+     */
+    public static void writeValue(ByteBuffer buffer, Object value) {
+        if (value == null) {
+            buffer.put(TAG_NULL);
+        } else if (value instanceof String string) {
+            buffer.put(TAG_STRING);
+            writeString(buffer, string.getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            buffer.put(TAG_LONG);
+            buffer.putLong(((Number) value).longValue());
+        } else if (value instanceof Number number) {
+            buffer.put(TAG_NUMBER);
+            buffer.putDouble(number.doubleValue());
+        } else if (value instanceof Boolean bool) {
+            buffer.put(TAG_BOOLEAN);
+            buffer.put((byte) (bool ? 1 : 0));
+        } else if (value instanceof ExpiringValue expiring) {
+            buffer.put(TAG_EXPIRING);
+            buffer.putLong(expiring.expiresAt());
+            writeValue(buffer, expiring.value());
+        } else if (value instanceof VersionedValue versioned) {
+            buffer.put(TAG_VERSIONED);
+            buffer.putLong(versioned.version());
+            writeValue(buffer, versioned.value());
+        } else if (value instanceof Map<?, ?> fields) {
+            buffer.put(TAG_HASH);
+            buffer.putInt(fields.size());
+            for (Map.Entry<?, ?> field : fields.entrySet()) {
+                writeString(buffer, ((String) field.getKey()).getBytes(StandardCharsets.UTF_8));
+                writeValue(buffer, field.getValue());
+            }
+        } else if (value instanceof SortedSetValue sortedSet) {
+            buffer.put(TAG_SORTED_SET);
+            buffer.putInt(sortedSet.members().length);
+            for (int i = 0; i < sortedSet.members().length; i++) {
+                writeString(buffer, sortedSet.members()[i].getBytes(StandardCharsets.UTF_8));
+                buffer.putDouble(sortedSet.scores()[i]);
+            }
+        } else if (value instanceof StreamValue stream) {
+            buffer.put(TAG_STREAM);
+            buffer.putLong(stream.lastId().millis());
+            buffer.putLong(stream.lastId().sequence());
+            buffer.putLong(stream.maxLength());
+            buffer.putLong(stream.maxAge());
+            buffer.putInt(stream.events().size());
+            for (StreamEvent event : stream.events()) {
+                buffer.putLong(event.id().millis());
+                buffer.putLong(event.id().sequence());
+                writeValue(buffer, event.fields());
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported value type: " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Reads a value written by {@link #writeValue}.
+     *
+     * @param buffer The source buffer.
+     * @return The decoded value.
+     */
+    public static Object readValue(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        return switch (tag) {
+            case TAG_NULL -> null;
+            case TAG_STRING -> readString(buffer);
+            case TAG_NUMBER -> buffer.getDouble();
+            case TAG_BOOLEAN -> buffer.get() != 0;
+            case TAG_LONG -> buffer.getLong();
+            case TAG_EXPIRING -> new ExpiringValue(buffer.getLong(), readValue(buffer));
+            case TAG_VERSIONED -> new VersionedValue(buffer.getLong(), readValue(buffer));
+            case TAG_HASH -> readHash(buffer);
+            case TAG_SORTED_SET -> readSortedSet(buffer);
+            case TAG_STREAM -> readStream(buffer);
+            default -> throw new IllegalStateException("Unknown value tag: " + tag);
+        };
+    }
+
+    private static Map<String, Object> readHash(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalStateException("Invalid hash size: " + count);
+        }
+        Map<String, Object> fields = new HashMap<>(Math.max(4, (int) (count / 0.75f) + 1));
+        for (int i = 0; i < count; i++) {
+            String field = readString(buffer);
+            fields.put(field, readValue(buffer));
+        }
+        return fields;
+    }
+
+    private static SortedSetValue readSortedSet(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalStateException("Invalid sorted set size: " + count);
+        }
+        String[] members = new String[count];
+        double[] scores = new double[count];
+        for (int i = 0; i < count; i++) {
+            members[i] = readString(buffer);
+            scores[i] = buffer.getDouble();
+        }
+        return new SortedSetValue(members, scores);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static StreamValue readStream(ByteBuffer buffer) {
+        StreamId lastId = new StreamId(buffer.getLong(), buffer.getLong());
+        long maxLength = buffer.getLong();
+        long maxAge = buffer.getLong();
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalStateException("Invalid stream size: " + count);
+        }
+        List<StreamEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StreamId id = new StreamId(buffer.getLong(), buffer.getLong());
+            events.add(new StreamEvent(id, (Map<String, Object>) readValue(buffer)));
+        }
+        return new StreamValue(lastId, maxLength, maxAge, events);
+    }
+}
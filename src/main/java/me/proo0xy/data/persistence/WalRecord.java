@@ -0,0 +1,16 @@
+package me.proo0xy.data.persistence;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class WalRecord {
+    long sequence;
+    MutationType type;
+    String key;
+    Object value;
+}
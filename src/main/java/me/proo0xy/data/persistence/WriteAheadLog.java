@@ -0,0 +1,739 @@
+package me.proo0xy.data.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * WriteAheadLog appends every mutation of the store to a binary, checksummed
+ * log. A single writer thread drains all pending records and writes them with
+ * one {@link FileChannel#write} and one {@link FileChannel#force}.
+ * <p>
+ * {@link #append} only queues the record and never blocks, so it can run while the
+ * mutated key is locked. The caller acknowledges the write after {@link #awaitDurable()},
+ * called once the key is released. With synchronous writes that waits until the batch
+ * holding the thread's last record is forced, so concurrent writers share one force.
+ * Otherwise it returns at once unless more than {@value #MAX_PENDING_RECORDS} records
+ * are queued, and a crash loses up to that many acknowledged records plus the batch
+ * being written; {@link #sync()} then waits for everything appended before it.
+ * <p>
+ * The log is split into segments. Every record carries the write epoch of the
+ * store, and the writer starts a new segment when it sees the first record or
+ * rotation marker of a newer epoch. A segment therefore never holds records newer
+ * than the snapshot of its epoch and can be deleted once that snapshot is on disk.
+ * <p>
+ * Every batch and every new segment starts with a {@link MutationType#TIMESTAMP}
+ * record carrying the commit time, so the log can be replayed up to a point in time.
+ * With a {@link LogArchive}, segments are moved there instead of being deleted.
+ * <p>
+ * Records appended inside {@link #group} are written together between a
+ * {@link MutationType#BEGIN} and a {@link MutationType#COMMIT} record, and reading
+ * delivers them only once the commit record is found, so a crash never replays part
+ * of a group.
+ * <p>
+ * A batch that fails to encode or write stops the log for good: the records in it are
+ * lost, so later records would no longer replay to the state the store holds. Pending
+ * rotations and syncs fail, and further appends throw instead of being acknowledged.
+ * <p>
+ * Record layout: {@code int payloadLength, int crc32(payload), payload}, where
+ * the payload is {@code long sequence, byte type, string key, value}.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String DISCARDED_SUFFIX = ".discarded";
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    private static final int MAX_BATCH_SIZE = 8192;
+    // Without synchronous writes, writers wait once this many items wait for the disk, which bounds both memory and the loss window.
+    private static final int MAX_PENDING_RECORDS = 65536;
+    private static final int INITIAL_BUFFER_SIZE = 1 << 20;
+    private static final Object SHUTDOWN = new Object();
+
+    private final Path directory;
+    private final LogArchive archive;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong loggedBytes = new AtomicLong();
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final CRC32 crc = new CRC32();
+    private final Thread writerThread;
+    private final boolean syncWrites;
+    // Numbers the queued items in queue order; the writer counts the items it forced the same way.
+    private final Object enqueueLock = new Object();
+    private long enqueued;
+    private volatile long durable;
+    // Set once the shutdown marker is queued; nothing is queued behind it.
+    private boolean closed;
+    // Number of the last item queued by each thread, which awaitDurable() waits for.
+    private final ThreadLocal<long[]> lastEnqueued = ThreadLocal.withInitial(() -> new long[1]);
+    // Set by the writer when a batch fails; see the class comment.
+    private volatile Throwable failure;
+    // Records appended by a thread inside group(), queued together when it ends.
+    private final ThreadLocal<List<PendingRecord>> openGroup = new ThreadLocal<>();
+
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+    private FileChannel channel;
+    private long segmentId;
+    private long segmentEpoch;
+    private long lastSealedSegmentId;
+    private long writtenSequence;
+    private long sealedSequence;
+    private long sealedAt;
+    private long batchTime;
+
+    /**
+     * Creates a write-ahead log in the given directory.
+     *
+     * @param directory Directory holding the log segments.
+     */
+    public WriteAheadLog(Path directory) {
+        this(directory, null, false);
+    }
+
+    /**
+     * Creates a write-ahead log that archives its segments instead of deleting them.
+     *
+     * @param directory  Directory holding the log segments.
+     * @param archive    Archive receiving deleted segments, may be null.
+     * @param syncWrites Whether {@link #awaitDurable()} waits until the records are forced to disk.
+     */
+    public WriteAheadLog(Path directory, LogArchive archive, boolean syncWrites) {
+        this.directory = directory;
+        this.archive = archive;
+        this.syncWrites = syncWrites;
+        this.writerThread = new Thread(this::runWriter, "wal-writer");
+        this.writerThread.setDaemon(true);
+    }
+
+    /**
+     * Replays the records of the existing segments in order. The scan stops at the
+     * first torn or corrupted record: its segment is truncated to the last valid
+     * record and later segments are set aside, so recovery always yields a prefix
+     * of the logged history and the damage is not read again on the next start.
+     *
+     * @param consumer Receives the replayed records.
+     * @return The number of replayed records.
+     * @throws IOException If a segment cannot be read or truncated.
+     */
+    public long replay(Consumer<WalRecord> consumer) throws IOException {
+        long[] replayed = new long[1];
+        List<Long> ids = listSegmentIds();
+        if (!ids.isEmpty()) {
+            segmentId = Math.max(segmentId, ids.get(ids.size() - 1));
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            long id = ids.get(i);
+            Path segment = segmentPath(id);
+            ByteBuffer data;
+            try (FileChannel segmentChannel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                data = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, segmentChannel.size());
+            }
+            loggedBytes.addAndGet(data.limit());
+
+            String damage = scan(data, record -> {
+                if (record.getType() != MutationType.TIMESTAMP) {
+                    sequence.accumulateAndGet(record.getSequence(), Math::max);
+                    consumer.accept(record);
+                    replayed[0]++;
+                }
+            });
+
+            if (damage != null) {
+                truncate(segment, data.position(), damage);
+                discard(ids.subList(i + 1, ids.size()));
+                break;
+            }
+        }
+        return replayed[0];
+    }
+
+    /**
+     * Reads every record of a segment file, including timestamp records, without
+     * changing it. Reading stops at the first torn or corrupted record.
+     *
+     * @param segment  The segment file.
+     * @param consumer Receives the records.
+     * @return false if the segment ended with a damaged record.
+     * @throws IOException If the segment cannot be read.
+     */
+    public static boolean read(Path segment, Consumer<WalRecord> consumer) throws IOException {
+        ByteBuffer data;
+        try (FileChannel segmentChannel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            data = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, segmentChannel.size());
+        }
+        String damage = scan(data, consumer);
+        if (damage != null) {
+            log.warn("Found a {} in WAL segment {}; ignoring the rest of it.", damage, segment);
+        }
+        return damage == null;
+    }
+
+    /**
+     * Decodes records from the position of a buffer until its end or the first invalid record,
+     * leaving the position after the last valid one. The records of a group are delivered
+     * when its commit record is read; a group without one counts as damage, and the position
+     * is left before it.
+     *
+     * @return A description of the damage, or null if the buffer ended cleanly.
+     */
+    private static String scan(ByteBuffer data, Consumer<WalRecord> consumer) {
+        CRC32 checksum = new CRC32();
+        List<WalRecord> group = null;
+        int groupStart = 0;
+        String damage = null;
+        while (data.hasRemaining()) {
+            if (data.remaining() < HEADER_SIZE) {
+                damage = "torn record header";
+                break;
+            }
+            int length = data.getInt(data.position());
+            int expectedCrc = data.getInt(data.position() + Integer.BYTES);
+            if (length <= 0 || length > data.remaining() - HEADER_SIZE) {
+                damage = "torn record";
+                break;
+            }
+
+            ByteBuffer payload = data.slice(data.position() + HEADER_SIZE, length);
+            checksum.reset();
+            checksum.update(payload.duplicate());
+            if ((int) checksum.getValue() != expectedCrc) {
+                damage = "checksum mismatch";
+                break;
+            }
+
+            WalRecord record = decode(payload);
+            int start = data.position();
+            data.position(start + HEADER_SIZE + length);
+            if (record.getType() == MutationType.BEGIN && group == null) {
+                group = new ArrayList<>((int) Math.min(record.getSequence(), 1024));
+                groupStart = start;
+            } else if (record.getType() == MutationType.COMMIT && group != null && group.size() == record.getSequence()) {
+                group.forEach(consumer);
+                group = null;
+            } else if (record.getType() == MutationType.BEGIN || record.getType() == MutationType.COMMIT) {
+                damage = "mismatched group marker";
+                data.position(start);
+                break;
+            } else if (group != null) {
+                group.add(record);
+            } else {
+                consumer.accept(record);
+            }
+        }
+        if (group != null) {
+            data.position(groupStart);
+            return damage != null ? damage : "group without a commit record";
+        }
+        return damage;
+    }
+
+    /**
+     * Returns the number of bytes logged so far, including the segments found at startup.
+     * The counter only grows; callers compare two readings.
+     *
+     * @return Logged bytes.
+     */
+    public long getLoggedBytes() {
+        return loggedBytes.get();
+    }
+
+    private void truncate(Path segment, long validLength, String damage) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            long dropped = channel.size() - validLength;
+            channel.truncate(validLength);
+            channel.force(true);
+            log.warn("Found a {} in WAL segment {}; truncated {} bytes after the last valid record.", damage, segment, dropped);
+        }
+    }
+
+    private void discard(List<Long> ids) throws IOException {
+        for (long id : ids) {
+            Path segment = segmentPath(id);
+            Path discarded = segment.resolveSibling(segment.getFileName() + DISCARDED_SUFFIX);
+            Files.move(segment, discarded);
+            log.error("WAL segment {} follows a damaged record and was not replayed; kept as {}.", segment, discarded);
+        }
+        if (!ids.isEmpty()) {
+            DurableFiles.forceDirectory(directory);
+        }
+    }
+
+    /**
+     * Opens a fresh segment and starts the writer thread.
+     *
+     * @param epoch The current write epoch of the store.
+     * @throws IOException If the segment cannot be created.
+     */
+    public void start(long epoch) throws IOException {
+        DurableFiles.createDirectories(directory);
+        segmentId = Math.max(segmentId, listSegmentIds().stream().mapToLong(Long::longValue).max().orElse(0));
+        if (archive != null) {
+            // Ids keep growing across restarts so archived segments are never overwritten.
+            segmentId = Math.max(segmentId, archive.lastSegmentId());
+        }
+        lastSealedSegmentId = segmentId;
+        writtenSequence = sequence.get();
+        sealedSequence = writtenSequence;
+        batchTime = System.currentTimeMillis();
+        sealedAt = batchTime;
+        segmentEpoch = epoch;
+        openSegment(segmentId + 1);
+        writerThread.start();
+    }
+
+    /**
+     * Enqueues a mutation for the next batch without blocking. The mutation is durable once
+     * {@link #awaitDurable()} or a later {@link #sync()} returns on the calling thread.
+     * Must be called while the mutated key is locked so the log order matches the apply order.
+     *
+     * @param epoch The write epoch of the mutation.
+     * @param type  The mutation type.
+     * @param key   The mutated key.
+     * @param value The new value for PUT, the changed fields for MERGE, otherwise null.
+     * @return The sequence number assigned to the mutation.
+     * @throws IllegalStateException If the log failed.
+     */
+    public long append(long epoch, MutationType type, String key, Object value) {
+        long seq = sequence.incrementAndGet();
+        PendingRecord pending = new PendingRecord(epoch, new WalRecord(seq, type, key, value));
+        List<PendingRecord> group = openGroup.get();
+        if (group != null) {
+            checkFailure();
+            group.add(pending);
+        } else {
+            enqueue(pending);
+        }
+        return seq;
+    }
+
+    /**
+     * Runs appends that are logged as one group, so replay delivers all of their records
+     * or none. The records are queued together when the appends return or throw, so the
+     * caller must still hold the keys it wrote for the log order to match the apply order.
+     * The group is written to the segment of its newest epoch. Appends of a nested group
+     * join the outer one.
+     *
+     * @param appends Makes the appends on the calling thread.
+     * @throws IllegalStateException If the log failed.
+     */
+    public void group(Runnable appends) {
+        if (openGroup.get() != null) {
+            appends.run();
+            return;
+        }
+        List<PendingRecord> records = new ArrayList<>();
+        openGroup.set(records);
+        try {
+            appends.run();
+        } finally {
+            openGroup.remove();
+            if (!records.isEmpty()) {
+                enqueue(new PendingGroup(records.stream().mapToLong(PendingRecord::epoch).max().getAsLong(), records));
+            }
+        }
+    }
+
+    /**
+     * Waits until the records the calling thread appended may be acknowledged: with synchronous
+     * writes until they are forced to disk, otherwise only while too many records are queued.
+     * Must be called without holding a key lock, and does nothing inside {@link #group}, whose
+     * records are queued only when it ends.
+     *
+     * @throws IllegalStateException If the log failed before the records reached the disk;
+     *                               the mutations are applied but not durable.
+     */
+    public void awaitDurable() {
+        if (openGroup.get() != null) {
+            return;
+        }
+        long target = lastEnqueued.get()[0] - (syncWrites ? 0 : MAX_PENDING_RECORDS);
+        if (durable >= target) {
+            return;
+        }
+        synchronized (enqueueLock) {
+            while (durable < target) {
+                checkFailure();
+                try {
+                    enqueueLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the write-ahead log", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the records appended so far to reach the disk.
+     *
+     * @return Future completed once every record appended before the call is forced to disk,
+     * or completed exceptionally if the log failed.
+     */
+    public CompletableFuture<Void> sync() {
+        if (failure != null) {
+            return CompletableFuture.failedFuture(failure);
+        }
+        // Queued even if the log fails meanwhile; the writer then fails the future.
+        Sync sync = new Sync(new CompletableFuture<>());
+        if (!offer(sync)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Write-ahead log closed"));
+        }
+        return sync.synced;
+    }
+
+    /**
+     * Makes sure the segments holding records of epochs before the given one are sealed.
+     *
+     * @param epoch The first epoch that must not share a segment with older ones.
+     * @return Future completed with the position of the newest sealed segment once it is flushed,
+     * or completed exceptionally if the log failed.
+     */
+    public CompletableFuture<Seal> rotate(long epoch) {
+        if (failure != null) {
+            return CompletableFuture.failedFuture(failure);
+        }
+        Rotation rotation = new Rotation(epoch, new CompletableFuture<>());
+        if (!offer(rotation)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Write-ahead log closed"));
+        }
+        return rotation.sealed;
+    }
+
+    /**
+     * Deletes all segments up to and including the given id, moving them to the archive if there is one.
+     *
+     * @param lastSegmentId The id of the newest segment to delete.
+     */
+    public void deleteSegmentsUpTo(long lastSegmentId) {
+        try {
+            for (long id : listSegmentIds()) {
+                if (id <= lastSegmentId) {
+                    if (archive != null) {
+                        archive.add(segmentPath(id));
+                    }
+                    Files.deleteIfExists(segmentPath(id));
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to delete WAL segments up to {}", lastSegmentId, e);
+        }
+    }
+
+    /**
+     * Flushes all pending records and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        if (!writerThread.isAlive()) {
+            return;
+        }
+        try {
+            // Not through enqueue, which refuses items once the log failed.
+            offer(SHUTDOWN);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new IllegalStateException("Write-ahead log failed", failure);
+        }
+    }
+
+    private void enqueue(Object item) {
+        checkFailure();
+        if (!offer(item)) {
+            throw new IllegalStateException("Write-ahead log closed");
+        }
+    }
+
+    /**
+     * Queues an item for the writer unless the log is closed.
+     *
+     * @param item The record, marker or shutdown to queue.
+     * @return False if the log was closed, so the writer would never take the item.
+     */
+    private boolean offer(Object item) {
+        long number;
+        synchronized (enqueueLock) {
+            if (closed) {
+                return false;
+            }
+            closed = item == SHUTDOWN;
+            number = ++enqueued;
+            queue.add(item);
+        }
+        lastEnqueued.get()[0] = number;
+        return true;
+    }
+
+    /**
+     * Records that the writer handled every item up to the given number and wakes the waiting writers.
+     *
+     * @param handled Number of items taken from the queue so far.
+     */
+    private void publishDurable(long handled) {
+        synchronized (enqueueLock) {
+            if (failure == null) {
+                durable = handled;
+            }
+            enqueueLock.notifyAll();
+        }
+    }
+
+    private void runWriter() {
+        List<Object> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        boolean running = true;
+        long handled = 0;
+
+        while (running) {
+            batch.clear();
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+            handled += batch.size();
+
+            if (failure == null) {
+                try {
+                    write(batch);
+                } catch (Throwable e) {
+                    log.error("Failed to write WAL batch of {} items; the log accepts no more records.", batch.size(), e);
+                    buffer.clear();
+                    failure = e;
+                }
+            }
+            publishDurable(handled);
+            // After a failure the writer keeps taking items, so nobody blocks on a full queue.
+            for (Object item : batch) {
+                if (item == SHUTDOWN) {
+                    running = false;
+                } else if (failure != null && item instanceof Rotation rotation) {
+                    rotation.sealed.completeExceptionally(failure);
+                } else if (item instanceof Sync sync) {
+                    if (failure != null) {
+                        sync.synced.completeExceptionally(failure);
+                    } else {
+                        sync.synced.complete(null);
+                    }
+                }
+            }
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.error("Failed to close WAL segment", e);
+        }
+    }
+
+    /**
+     * Encodes a batch behind a timestamp record and writes it with one flush.
+     *
+     * @param batch The records and markers taken from the queue.
+     * @throws IOException If the segment cannot be written.
+     */
+    private void write(List<Object> batch) throws IOException {
+        batchTime = System.currentTimeMillis();
+        encodeTimestamp();
+        for (Object item : batch) {
+            if (item instanceof PendingRecord pending) {
+                advanceEpoch(pending.epoch);
+                encode(pending.record);
+            } else if (item instanceof PendingGroup group) {
+                advanceEpoch(group.epoch);
+                encode(new WalRecord(group.records.size(), MutationType.BEGIN, null, null));
+                for (PendingRecord pending : group.records) {
+                    encode(pending.record);
+                }
+                encode(new WalRecord(group.records.size(), MutationType.COMMIT, null, null));
+            } else if (item instanceof Rotation rotation) {
+                advanceEpoch(rotation.epoch);
+                flush();
+                rotation.sealed.complete(new Seal(lastSealedSegmentId, sealedSequence, sealedAt));
+            }
+        }
+        flush();
+    }
+
+    private void advanceEpoch(long epoch) throws IOException {
+        if (epoch <= segmentEpoch) {
+            return;
+        }
+        flush();
+        channel.close();
+        lastSealedSegmentId = segmentId;
+        sealedSequence = writtenSequence;
+        sealedAt = batchTime;
+        segmentEpoch = epoch;
+        openSegment(segmentId + 1);
+        encodeTimestamp();
+    }
+
+    private void encodeTimestamp() {
+        encode(new WalRecord(batchTime, MutationType.TIMESTAMP, null, null));
+    }
+
+    private void encode(WalRecord record) {
+        byte[] key = record.getKey() == null ? new byte[0] : record.getKey().getBytes(StandardCharsets.UTF_8);
+        int payloadLength = Long.BYTES + 1 + ValueCodec.stringSize(key)
+                + (record.getType().hasValue() ? ValueCodec.valueSize(record.getValue()) : 0);
+        ensureCapacity(HEADER_SIZE + payloadLength);
+
+        int start = buffer.position();
+        buffer.position(start + HEADER_SIZE);
+        buffer.putLong(record.getSequence());
+        buffer.put(record.getType().getCode());
+        ValueCodec.writeString(buffer, key);
+        if (record.getType().hasValue()) {
+            ValueCodec.writeValue(buffer, record.getValue());
+        }
+
+        crc.reset();
+        crc.update(buffer.slice(start + HEADER_SIZE, payloadLength));
+        buffer.putInt(start, payloadLength);
+        buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+        if (!record.getType().isMarker()) {
+            writtenSequence = Math.max(writtenSequence, record.getSequence());
+        }
+    }
+
+    private static WalRecord decode(ByteBuffer payload) {
+        long seq = payload.getLong();
+        MutationType type = MutationType.fromCode(payload.get());
+        String key = ValueCodec.readString(payload);
+        Object value = type.hasValue() ? ValueCodec.readValue(payload) : null;
+        return new WalRecord(seq, type, type == MutationType.CLEAR || type.isMarker() ? null : key, value);
+    }
+
+    /**
+     * Position of the log at a rotation: every record in segments up to {@code segmentId}
+     * has a sequence of at most {@code maxSequence} and was committed no later than {@code sealedAt}.
+     *
+     * @param segmentId   The newest sealed segment.
+     * @param maxSequence The highest sequence written to the sealed segments.
+     * @param sealedAt    The commit time of the last sealed batch, in epoch millis.
+     */
+    public record Seal(long segmentId, long maxSequence, long sealedAt) {
+    }
+
+    /**
+     * A record waiting for the writer, tagged with its write epoch.
+     */
+    private record PendingRecord(long epoch, WalRecord record) {
+    }
+
+    /**
+     * Records appended inside one group, tagged with the newest of their write epochs.
+     */
+    private record PendingGroup(long epoch, List<PendingRecord> records) {
+    }
+
+    /**
+     * Asks the writer to seal every segment older than the given epoch.
+     */
+    private record Rotation(long epoch, CompletableFuture<Seal> sealed) {
+    }
+
+    /**
+     * Asks the writer to report when the records queued before it are forced to disk.
+     */
+    private record Sync(CompletableFuture<Void> synced) {
+    }
+
+    private void flush() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        buffer.clear();
+        loggedBytes.addAndGet(length);
+    }
+
+    private void ensureCapacity(int required) {
+        if (buffer.remaining() >= required) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        while (capacity - buffer.position() < required) {
+            capacity *= 2;
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+
+    private void openSegment(long id) throws IOException {
+        segmentId = id;
+        channel = FileChannel.open(segmentPath(id), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        DurableFiles.forceDirectory(directory);
+    }
+
+    private Path segmentPath(long id) {
+        return segmentPath(directory, id);
+    }
+
+    private List<Long> listSegmentIds() throws IOException {
+        return listSegmentIds(directory);
+    }
+
+    /**
+     * Lists the ids of the segment files in a directory, oldest first.
+     *
+     * @param directory The directory.
+     * @return The segment ids.
+     * @throws IOException If the directory cannot be listed.
+     */
+    static List<Long> listSegmentIds(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Returns the path of a segment file in a directory.
+     *
+     * @param directory The directory.
+     * @param id        The segment id.
+     * @return The segment path.
+     */
+    static Path segmentPath(Path directory, long id) {
+        return directory.resolve(String.format("%020d%s", id, SEGMENT_SUFFIX));
+    }
+}
@@ -4,7 +4,11 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class Environment {
+    private static final String KEYSPACE_PREFIX = "KEYSPACE_";
+
     private final Map<EnvironmentVariableKey, String> envParameters = new ConcurrentHashMap<>();
+    // Keyspace overrides by variable name, KEYSPACE_<NAME>_<KEY>
+    private final Map<String, String> keyspaceParameters = new ConcurrentHashMap<>();
 
     public Environment() {
         loadFromSystemEnv();
@@ -23,6 +27,11 @@ public class Environment {
                 envParameters.put(envKey, envKey.getDefaultValue());
             }
         }
+        systemEnv.forEach((name, value) -> {
+            if (name.startsWith(KEYSPACE_PREFIX)) {
+                keyspaceParameters.put(name, value);
+            }
+        });
     }
 
     // Add or override an environment variable
@@ -40,6 +49,20 @@ public class Environment {
         return envParameters.getOrDefault(key, defaultValue);
     }
 
+    // Retrieve the value a keyspace overrides a variable with, set as KEYSPACE_<NAME>_<KEY>
+    public String getKeyspaceEnv(String keyspace, EnvironmentVariableKey key, String defaultValue) {
+        return keyspaceParameters.getOrDefault(keyspaceVariable(keyspace, key), defaultValue);
+    }
+
+    // Add or override the value a keyspace overrides a variable with
+    public void setKeyspaceEnv(String keyspace, EnvironmentVariableKey key, String value) {
+        keyspaceParameters.put(keyspaceVariable(keyspace, key), value);
+    }
+
+    private static String keyspaceVariable(String keyspace, EnvironmentVariableKey key) {
+        return KEYSPACE_PREFIX + keyspace.toUpperCase().replace('-', '_') + "_" + key.name();
+    }
+
     // Check if an environment variable exists
     public boolean hasEnv(EnvironmentVariableKey key) {
         return envParameters.containsKey(key);
@@ -53,6 +76,7 @@ public class Environment {
     // Clear all environment variables (except system env)
     public void clearCustomEnv() {
         envParameters.clear();
+        keyspaceParameters.clear();
         loadFromSystemEnv();
     }
 }
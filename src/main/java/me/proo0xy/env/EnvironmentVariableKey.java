@@ -8,7 +8,24 @@ import lombok.Getter;
 public enum EnvironmentVariableKey {
     API_HOST("VAULT_HOST", "127.0.0.1"),
     STORAGE_PATH("VAULT_STORAGE_PATH", "/app/storage"),
-    BACKUP_PATH("VAULT_BACKUP_PATH", "/app/backup");
+    BACKUP_PATH("VAULT_BACKUP_PATH", "/app/backup"),
+    SAVE_RULES("VAULT_SAVE_RULES", "3600 1 300 100 60 10000"),
+    BACKUP_INTERVAL("VAULT_BACKUP_INTERVAL", "120"),
+    BACKUP_RETENTION("VAULT_BACKUP_RETENTION", "5"),
+    POINT_IN_TIME_RECOVERY("VAULT_POINT_IN_TIME_RECOVERY", "true"),
+    SNAPSHOT_PARTITIONS("VAULT_SNAPSHOT_PARTITIONS", "16"),
+    PERSISTENCE_THREADS("VAULT_PERSISTENCE_THREADS", "4"),
+    WAL_CHECKPOINT_SIZE_MB("VAULT_WAL_CHECKPOINT_SIZE_MB", "256"),
+    WAL_SYNC_WRITES("VAULT_WAL_SYNC_WRITES", "true"),
+    OFFHEAP_VALUES("VAULT_OFFHEAP_VALUES", "false"),
+    STORAGE_ENGINE("VAULT_STORAGE_ENGINE", "memory"),
+    LSM_MEMTABLE_SIZE_MB("VAULT_LSM_MEMTABLE_SIZE_MB", "64"),
+    ORDERED_INDEX("VAULT_ORDERED_INDEX", "true"),
+    MAX_ENTRIES("VAULT_MAX_ENTRIES", "0"),
+    MAX_MEMORY_MB("VAULT_MAX_MEMORY_MB", "0"),
+    EVICTION_POLICY("VAULT_EVICTION_POLICY", "lru"),
+    HOT_COUNTER_INTERVAL_MS("VAULT_HOT_COUNTER_INTERVAL_MS", "100"),
+    KEYSPACES("VAULT_KEYSPACES", "");
 
     private final String envKey;
     private final String defaultValue;
@@ -0,0 +1,170 @@
+package me.proo0xy.tools;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import me.proo0xy.StreamVault;
+import me.proo0xy.data.DataEntry;
+import me.proo0xy.data.persistence.JsonSnapshotReader;
+import me.proo0xy.data.persistence.LoadProgress;
+import me.proo0xy.data.persistence.SnapshotFile;
+import me.proo0xy.data.persistence.PartitionedSnapshotStore;
+import me.proo0xy.data.persistence.PointInTimeRestore;
+import me.proo0xy.data.persistence.WriteAheadLog;
+import me.proo0xy.env.EnvironmentVariableKey;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * SnapshotTool converts the binary storage of a stopped vault to and from the
+ * human-readable JSON layout of the former data.json file, and restores a store
+ * as of a point in time from its backups and archived log.
+ * <p>
+ * Usage: {@code export <storagePath> <file.json>}, {@code import <file.json> <storagePath>} or
+ * {@code restore <storagePath> <backupPath> <targetPath> time|sequence <value>}, where a time is
+ * an ISO-8601 instant or epoch millis.
+ */
+public final class SnapshotTool {
+
+    private static final Type MAP_TYPE = new TypeToken<Map<String, DataEntry>>() {}.getType();
+
+    private SnapshotTool() {
+    }
+
+    /**
+     * Runs the tool with command-line arguments.
+     *
+     * @param args The command and its arguments.
+     */
+    public static void run(String[] args) {
+        boolean convert = args.length == 3 && (args[0].equals("export") || args[0].equals("import"));
+        boolean restore = args.length == 6 && args[0].equals("restore") && (args[4].equals("time") || args[4].equals("sequence"));
+        if (!convert && !restore) {
+            System.err.println("Usage: export <storagePath> <file.json> | import <file.json> <storagePath>"
+                    + " | restore <storagePath> <backupPath> <targetPath> time|sequence <value>");
+            System.exit(2);
+        }
+
+        try {
+            if (restore) {
+                restore(Paths.get(args[1]), Paths.get(args[2]), Paths.get(args[3]), args[4].equals("time"), args[5]);
+            } else if (args[0].equals("export")) {
+                exportJson(Paths.get(args[1]), Paths.get(args[2]));
+            } else {
+                importJson(Paths.get(args[1]), Paths.get(args[2]));
+            }
+        } catch (IOException e) {
+            System.err.println("Snapshot tool failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Writes the current content of a storage directory, including unsnapshotted log records, as JSON.
+     *
+     * @param storagePath The storage directory.
+     * @param target      The JSON file to write.
+     * @throws IOException If reading the storage or writing the file fails.
+     */
+    public static void exportJson(Path storagePath, Path target) throws IOException {
+        Map<String, DataEntry> data = new ConcurrentHashMap<>();
+        openStore(storagePath).load(data);
+        new WriteAheadLog(storagePath.resolve("wal")).replay(record -> {
+            switch (record.getType()) {
+                case PUT -> data.put(record.getKey(), DataEntry.of(record.getKey(), record.getValue()));
+                case REMOVE -> data.remove(record.getKey());
+                case MERGE -> data.compute(record.getKey(), (k, existing) -> DataEntry.merge(k, existing, record.getValue()));
+                case CLEAR -> data.clear();
+            }
+        });
+
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            gson.toJson(new TreeMap<>(data), MAP_TYPE, writer);
+        }
+        System.out.println("Exported " + data.size() + " entries to " + target);
+    }
+
+    /**
+     * Replaces the content of a storage directory with the entries of a JSON file.
+     *
+     * @param source      The JSON file to read.
+     * @param storagePath The storage directory.
+     * @throws IOException If reading the file or writing the storage fails.
+     */
+    public static void importJson(Path source, Path storagePath) throws IOException {
+        Map<String, Object> data = new ConcurrentHashMap<>();
+        JsonSnapshotReader.read(source, new SnapshotFile.Visitor() {
+            @Override
+            public void upsert(String key, Object value) {
+                data.put(key, value);
+            }
+
+            @Override
+            public void delete(String key) {
+                data.remove(key);
+            }
+        }, new LoadProgress(source.toString()));
+
+        Files.createDirectories(storagePath);
+        openStore(storagePath).writeBase(data.keySet(), data::get);
+        new WriteAheadLog(storagePath.resolve("wal")).deleteSegmentsUpTo(Long.MAX_VALUE);
+        System.out.println("Imported " + data.size() + " entries into " + storagePath);
+    }
+
+    /**
+     * Rebuilds a store as of a time or sequence number into a new directory.
+     *
+     * @param storagePath The storage directory of the stopped vault.
+     * @param backupPath  The backup directory of the vault.
+     * @param targetPath  Empty directory receiving the restored store.
+     * @param byTime      Whether the value is a time rather than a sequence number.
+     * @param value       The time or sequence number.
+     * @throws IOException If the restore fails.
+     */
+    public static void restore(Path storagePath, Path backupPath, Path targetPath, boolean byTime, String value) throws IOException {
+        PointInTimeRestore restore = new PointInTimeRestore(storagePath, backupPath, partitionCount(), ForkJoinPool.commonPool());
+        PointInTimeRestore.Result result = byTime
+                ? restore.restoreToTime(parseTime(value), targetPath)
+                : restore.restoreToSequence(Long.parseLong(value), targetPath);
+        System.out.println("Restored " + targetPath + " from " + result.base() + " and " + result.replayed()
+                + " log records changing " + result.changedKeys() + " keys, up to sequence " + result.lastSequence()
+                + " committed at " + Instant.ofEpochMilli(result.lastTime()));
+        System.out.println("Start the restored vault with a new backup path so its log archive begins a new history.");
+    }
+
+    private static long parseTime(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return Instant.parse(value).toEpochMilli();
+        }
+    }
+
+    /**
+     * Opens the snapshot store of a storage directory with the configured partition count.
+     *
+     * @param storagePath The storage directory.
+     * @return The snapshot store.
+     * @throws IOException If the storage cannot be inspected.
+     */
+    private static PartitionedSnapshotStore openStore(Path storagePath) throws IOException {
+        return new PartitionedSnapshotStore(storagePath, partitionCount(), ForkJoinPool.commonPool());
+    }
+
+    private static int partitionCount() {
+        return Integer.parseInt(StreamVault.ENVIRONMENT.getEnv(EnvironmentVariableKey.SNAPSHOT_PARTITIONS,
+                EnvironmentVariableKey.SNAPSHOT_PARTITIONS.getDefaultValue()));
+    }
+}
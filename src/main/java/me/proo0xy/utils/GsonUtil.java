@@ -1,8 +1,10 @@
 package me.proo0xy.utils;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.google.gson.Strictness;
+import com.google.gson.ToNumberPolicy;
 import com.google.gson.stream.JsonReader;
 import lombok.Getter;
 import lombok.experimental.UtilityClass;
@@ -15,7 +17,8 @@ import java.io.StringReader;
 public class GsonUtil {
 
     @Getter
-    private static final Gson gson = new Gson();
+    // Integral JSON numbers become longs, so counters are stored without a double round trip.
+    private static final Gson gson = new GsonBuilder().setObjectToNumberStrategy(ToNumberPolicy.LONG_OR_DOUBLE).create();
 
     public String parseJson(Object object) {
         return gson.toJson(object);
@@ -0,0 +1,399 @@
+package me.proo0xy.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the actions of {@link DataStore} against both storage engines, including a restart
+ * that recovers the data from disk.
+ */
+class DataStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<DataStore> opened = new ArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        opened.forEach(DataStore::shutdown);
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageEngineType.class)
+    void keepsNumbersAndBooleansInTypedEntries(StorageEngineType type) {
+        DataStore store = open(type);
+        store.put("count", 41L);
+        store.put("small", 7);
+        store.put("ratio", 0.5);
+        store.put("flag", true);
+        assertEquals(42L, store.incrementBy("count", 1));
+        assertEquals(1.0, store.add("ratio", 0.5));
+
+        for (DataStore current : List.of(store, restart(store, type))) {
+            assertEquals(42L, assertInstanceOf(LongEntry.class, current.get("count")).getLong());
+            assertEquals(7L, assertInstanceOf(LongEntry.class, current.get("small")).getLong());
+            assertEquals(1.0, assertInstanceOf(DoubleEntry.class, current.get("ratio")).getDouble());
+            assertEquals(true, assertInstanceOf(BooleanEntry.class, current.get("flag")).getValue());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageEngineType.class)
+    void rejectsArithmeticOnOtherTypes(StorageEngineType type) {
+        DataStore store = open(type);
+        store.put("name", "vault");
+        store.put("max", Long.MAX_VALUE);
+
+        assertThrows(IllegalArgumentException.class, () -> store.incrementBy("name", 1));
+        assertThrows(IllegalArgumentException.class, () -> store.add("name", 1.0));
+        assertThrows(ArithmeticException.class, () -> store.incrementBy("max", 1));
+        assertEquals(Long.MAX_VALUE, store.get("max").getValue());
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageEngineType.class)
+    void countsConcurrentIncrementsExactly(StorageEngineType type) throws InterruptedException {
+        DataStore store = open(type);
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread writer = new Thread(() -> {
+                for (int j = 0; j < 250; j++) {
+                    store.incrementBy("hits", 1);
+                    store.add("total", 0.5);
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(2000L, store.get("hits").getValue());
+        assertEquals(1000.0, store.get("total").getValue());
+        assertEquals(2000L, restart(store, type).get("hits").getValue());
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageEngineType.class)
+    void swapsValuesOnlyWhenTheyMatch(StorageEngineType type) {
+        DataStore store = open(type);
+        assertTrue(store.compareAndSet("lock", null, "owner-1"));
+        assertFalse(store.compareAndSet("lock", null, "owner-2"));
+        assertEquals("owner-1", store.getAndSet("lock", "owner-3").getValue());
+        assertNull(store.getAndSet("fresh", 1L));
+
+        store.put("limit", 5L);
+        assertTrue(store.compareAndSet("limit", 5.0, 6L));
+        assertFalse(store.compareAndSet("limit", 5L, 7L));
+
+        DataStore restarted = restart(store, type);
+        assertEquals("owner-3", restarted.get("lock").getValue());
+        assertEquals(6L, restarted.get("limit").getValue());
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageEngineType.class)
+    void announcesExactlyTheEntriesABatchRemoves(StorageEngineType type) throws InterruptedException {
+        DataStore store = open(type);
+        Map<String, Object> batch = new LinkedHashMap<>();
+        batch.put("a", "1");
+        batch.put("b", 2L);
+        batch.put("c", true);
+        store.putAll(batch);
+        store.put("gone", "soon", 1);
+        Thread.sleep(10);
+        assertEquals(List.of("a", "b", "c"), List.copyOf(store.getAll(List.of("a", "missing", "b", "gone", "c")).keySet()));
+
+        BlockingQueue<List<DataEntry>> groups = new LinkedBlockingQueue<>();
+        store.subscribe(entry -> { }, groups::add);
+        assertEquals(2, store.removeAll(List.of("a", "b", "gone", "missing")));
+
+        // The expiry may announce "gone" in a group of its own; the batch announces just what it removed.
+        List<DataEntry> removals;
+        do {
+            removals = groups.poll(5, TimeUnit.SECONDS);
+        } while (removals != null && removals.stream().noneMatch(entry -> entry.getKey().equals("a")));
+        assertEquals(List.of("a", "b"), removals.stream().map(DataEntry::getKey).toList());
+        assertEquals(Map.of("c", true), values(restart(store, type).getAll(List.of("a", "b", "c"))));
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageEngineType.class)
+    void scansPrefixesAndRangesPageByPage(StorageEngineType type) {
+        DataStore store = open(type);
+        for (String key : List.of("user:3", "order:1", "user:1", "user:10", "user:2", "userx", "zone")) {
+            store.put(key, key);
+        }
+        store.remove("user:2");
+
+        List<String> keys = new ArrayList<>();
+        String cursor = null;
+        do {
+            ScanPage page = store.scan("user:", null, null, cursor, 2);
+            page.getEntries().forEach(entry -> keys.add(entry.getKey()));
+            cursor = page.getCursor();
+        } while (cursor != null);
+        assertEquals(List.of("user:1", "user:10", "user:3"), keys);
+
+        ScanPage range = restart(store, type).scan(null, "order:1", "user:10", null, 10);
+        assertEquals(List.of("order:1", "user:1"), range.getEntries().stream().map(DataEntry::getKey).toList());
+        assertNull(range.getCursor());
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageEngineType.class)
+    void expiresKeysAfterTheirTimeToLive(StorageEngineType type) throws InterruptedException {
+        DataStore store = open(type);
+        store.put("session", "token", 200);
+        store.hset("profile", Map.of("name", "vault"));
+        assertTrue(store.expire("profile", 60_000));
+        store.hset("profile", Map.of("plan", "pro"));
+        assertFalse(store.expire("missing", 1_000));
+
+        BlockingQueue<List<DataEntry>> groups = new LinkedBlockingQueue<>();
+        store.subscribe(entry -> { }, groups::add);
+        assertEquals("token", store.get("session").getValue());
+        List<DataEntry> expired = groups.poll(5, TimeUnit.SECONDS);
+        assertEquals(List.of("session"), expired.stream().map(DataEntry::getKey).toList());
+        assertNull(store.get("session"));
+
+        DataEntry profile = restart(store, type).get("profile");
+        assertEquals(Map.of("name", "vault", "plan", "pro"), profile.getValue());
+        assertFalse(profile.isExpired(System.currentTimeMillis()));
+        assertTrue(profile.isExpired(System.currentTimeMillis() + 60_000));
+    }
+
+    @ParameterizedTest
+    @EnumSource(EvictionPolicy.class)
+    void evictsDownToTheEntryLimit(EvictionPolicy policy) {
+        DataStore store = open("store", settings("store", StorageEngineType.MEMORY, 50, policy));
+        for (int i = 0; i < 200; i++) {
+            store.put("key-" + i, (long) i);
+        }
+
+        EvictionStats stats = store.getEvictionStats();
+        assertEquals(policy, stats.getPolicy());
+        assertTrue(stats.getEntries() <= 50, "entries: " + stats.getEntries());
+        assertEquals(200, stats.getEntries() + stats.getEvictions() + stats.getRejections());
+        assertEquals(stats.getEntries(), store.getAll(IntStream.range(0, 200).mapToObj(i -> "key-" + i).toList()).size());
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageEngineType.class)
+    void writesConditionallyOnVersions(StorageEngineType type) {
+        DataStore store = open(type);
+        long created = store.putIfVersion("doc", "v1", 0);
+        assertTrue(created > 0);
+        assertEquals(0, store.putIfVersion("doc", "lost", 0));
+        long updated = store.putIfVersion("doc", "v2", created);
+        assertTrue(updated > created);
+        assertEquals(0, store.putIfVersion("doc", "stale", created));
+        assertEquals(updated, store.get("doc").getVersion());
+        assertFalse(store.removeIfVersion("doc", created));
+
+        DataStore restarted = restart(store, type);
+        assertEquals(updated, restarted.get("doc").getVersion());
+        assertEquals("v2", restarted.get("doc").getValue());
+        // The sequence continues after the restart, so no version is handed out twice.
+        assertTrue(restarted.put("other", 1L) > updated);
+        assertTrue(restarted.removeIfVersion("doc", updated));
+        assertNull(restarted.get("doc"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageEngineType.class)
+    void appliesTransactionsWholeOrNotAtAll(StorageEngineType type) {
+        DataStore store = open(type);
+        long version = store.put("from", 100L);
+        assertNull(store.transact(List.of(
+                new TransactionOperation(TransactionOperation.Type.PUT, "to", 1L, null),
+                new TransactionOperation(TransactionOperation.Type.CHECK, "from", null, version + 1))));
+        assertNull(store.get("to"));
+
+        Thread transfers = new Thread(() -> {
+            for (long moved = 1; moved <= 100; moved++) {
+                store.transact(List.of(
+                        new TransactionOperation(TransactionOperation.Type.PUT, "from", 100 - moved, null),
+                        new TransactionOperation(TransactionOperation.Type.PUT, "to", moved, null)));
+            }
+        });
+        transfers.start();
+        // A multi-key read sees every transfer whole, so the sum never changes.
+        while (transfers.isAlive()) {
+            Map<String, DataEntry> both = store.getAll(List.of("from", "to"));
+            long to = both.containsKey("to") ? (long) both.get("to").getValue() : 0;
+            assertEquals(100L, (long) both.get("from").getValue() + to);
+        }
+
+        Map<String, Object> restarted = values(restart(store, type).getAll(List.of("from", "to")));
+        assertEquals(Map.of("from", 0L, "to", 100L), restarted);
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageEngineType.class)
+    void keepsKeyspacesApart(StorageEngineType type) {
+        DataStore alpha = open("alpha", settings("alpha", type));
+        DataStore beta = open("beta", settings("beta", StorageEngineType.MEMORY, 10, EvictionPolicy.LRU));
+        alpha.put("alpha-only", "from alpha");
+        for (int i = 0; i < 50; i++) {
+            alpha.put("key-" + i, (long) i);
+            beta.put("key-" + i, (long) i);
+        }
+
+        assertTrue(DataStore.getKeyspaces().containsAll(List.of("alpha", "beta")));
+        assertEquals(50, alpha.getAll(IntStream.range(0, 50).mapToObj(i -> "key-" + i).toList()).size());
+        assertTrue(beta.getEvictionStats().getEntries() <= 10);
+        assertThrows(IllegalArgumentException.class, () -> DataStore.initialize("Not/Valid", settings("invalid", type)));
+
+        assertNull(beta.get("alpha-only"));
+        DataStore restarted = restart(alpha, type);
+        assertEquals("from alpha", restarted.get("alpha-only").getValue());
+        assertEquals(49L, restarted.get("key-49").getValue());
+        assertNull(DataStore.getInstance("beta").get("alpha-only"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageEngineType.class)
+    void changesHashesFieldByField(StorageEngineType type) throws InterruptedException {
+        DataStore store = open(type);
+        store.hset("user", Map.of("name", "vault", "visits", 1L));
+        BlockingQueue<DataEntry> changes = new LinkedBlockingQueue<>();
+        store.subscribe(changes::add);
+        store.hset("user", Map.of("visits", 2L, "admin", true));
+        assertEquals(1, store.hdel("user", List.of("admin", "missing")));
+
+        // Subscribers get the changed fields only, on the LSM engine too, which rewrites the whole hash.
+        // Notifications of separate writes may arrive in either order.
+        List<Map<String, Object>> received = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            received.add(assertInstanceOf(HashChangeEntry.class, changes.poll(5, TimeUnit.SECONDS)).getChanges());
+        }
+        assertTrue(received.contains(Map.of("visits", 2L, "admin", true)), received::toString);
+        assertEquals(Map.of("name", "vault", "visits", 2L), restart(store, type).get("user").getValue());
+        assertThrows(IllegalArgumentException.class, () -> DataStore.getInstance("store").hset("user", Map.of("nested", List.of())));
+        assertEquals(2, DataStore.getInstance("store").hdel("user", List.of("name", "visits")));
+        assertNull(DataStore.getInstance("store").get("user"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageEngineType.class)
+    void ranksSortedSetMembersByScore(StorageEngineType type) {
+        DataStore store = open(type);
+        store.zadd("board", Map.of("ann", 30.0, "bob", 10.0, "cid", 20.0));
+        assertEquals(35.0, store.zincrby("board", "bob", 25.0));
+        assertEquals(5.0, store.zincrby("board", "dan", 5.0));
+        assertThrows(IllegalArgumentException.class, () -> store.zadd("board", Map.of("eve", Double.NaN)));
+
+        SortedSetEntry board = SortedSetEntry.sortedSetOf(restart(store, type).get("board"));
+        assertEquals(List.of(new ScoredMember("bob", 35.0), new ScoredMember("ann", 30.0)), board.rangeByRank(0, 1, true, 10));
+        assertEquals(List.of("dan", "cid"), board.rangeByScore(0, 25, false, 10).stream().map(ScoredMember::member).toList());
+        assertEquals(0, board.rank("dan", false));
+        assertEquals(-1, board.rank("eve", false));
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageEngineType.class)
+    void appendsStreamEventsAndWakesBlockedReaders(StorageEngineType type) throws Exception {
+        DataStore store = open(type);
+        StreamId first = store.xadd("events", Map.of("n", 1L), 2L, null);
+        StreamId second = store.xadd("events", Map.of("n", 2L), null, null);
+        StreamId third = store.xadd("events", Map.of("n", 3L), null, null);
+        assertTrue(first.compareTo(second) < 0 && second.compareTo(third) < 0);
+
+        // The cap of two events set by the first append drops the oldest one.
+        List<StreamEvent> events = store.xread("events", StreamId.MIN, 10, 0).get(1, TimeUnit.SECONDS);
+        assertEquals(List.of(second, third), events.stream().map(StreamEvent::id).toList());
+
+        CompletableFuture<List<StreamEvent>> blocked = store.xread("events", null, 10, 10_000);
+        assertFalse(blocked.isDone());
+        StreamId fourth = store.xadd("events", Map.of("n", 4L), null, null);
+        assertEquals(List.of(new StreamEvent(fourth, Map.of("n", 4L))), blocked.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(), store.xread("events", fourth, 10, 50).get(1, TimeUnit.SECONDS));
+
+        DataStore restarted = restart(store, type);
+        List<StreamEvent> replayed = restarted.xread("events", StreamId.MIN, 10, 0).get(1, TimeUnit.SECONDS);
+        assertEquals(List.of(third, fourth), replayed.stream().map(StreamEvent::id).toList());
+        assertTrue(restarted.xadd("events", Map.of("n", 5L), null, null).compareTo(fourth) > 0);
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageEngineType.class)
+    void storesHotCounterIncrementsOnSync(StorageEngineType type) throws Exception {
+        DataStore store = open(type);
+        store.put("name", "vault");
+        assertThrows(IllegalArgumentException.class, () -> store.incrementHot("name", 1));
+        IntStream.range(0, 4).parallel().forEach(thread -> {
+            for (int i = 0; i < 250; i++) {
+                store.incrementHot("hits", 1);
+            }
+        });
+
+        // Reads include the increments not yet stored.
+        assertEquals(1000L, store.get("hits").getValue());
+        store.sync().get(5, TimeUnit.SECONDS);
+        store.incrementHot("hits", 5);
+
+        // Shutting down stores the rest; a later sync fails instead of throwing or hanging.
+        DataStore restarted = restart(store, type);
+        assertTrue(store.sync().isCompletedExceptionally());
+        assertEquals(1005L, restarted.get("hits").getValue());
+    }
+
+    private DataStore open(StorageEngineType type) {
+        return open("store", settings("store", type));
+    }
+
+    private DataStore open(String keyspace, DataStoreSettings settings) {
+        DataStore.initialize(keyspace, settings);
+        DataStore store = DataStore.getInstance(keyspace);
+        opened.add(store);
+        return store;
+    }
+
+    /**
+     * Shuts a store down and opens its keyspace again from the same files.
+     */
+    private DataStore restart(DataStore store, StorageEngineType type) {
+        store.shutdown();
+        opened.remove(store);
+        return open(store.getKeyspace(), settings(store.getKeyspace(), type));
+    }
+
+    private static Map<String, Object> values(Map<String, DataEntry> entries) {
+        Map<String, Object> values = new HashMap<>();
+        entries.forEach((key, entry) -> values.put(key, entry.getValue()));
+        return values;
+    }
+
+    private DataStoreSettings settings(String keyspace, StorageEngineType type) {
+        return settings(keyspace, type, 0, EvictionPolicy.LRU);
+    }
+
+    private DataStoreSettings settings(String keyspace, StorageEngineType type, long maxEntries, EvictionPolicy policy) {
+        return new DataStoreSettings(directory.resolve(keyspace).toString(), directory.resolve(keyspace + "-backup").toString(),
+                List.of(), 3600, 1, false, 4, 2, 0, true, false, type, 1L << 20, true, maxEntries, 0, policy, 100);
+    }
+}
@@ -0,0 +1,124 @@
+package me.proo0xy.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the ranks and score ranges of {@link ScoreIndex} against a sorted set.
+ */
+class ScoreIndexTest {
+
+    private static final Comparator<ScoredMember> ORDER =
+            Comparator.comparingDouble(ScoredMember::score).thenComparing(ScoredMember::member);
+
+    @Test
+    void ordersTiedScoresByMember() {
+        ScoreIndex index = new ScoreIndex();
+        index.insert("b", 1.0);
+        index.insert("a", 1.0);
+        index.insert("c", 0.5);
+
+        assertEquals(List.of("c", "a", "b"), members(index));
+        assertEquals(0, index.rank("c", 0.5));
+        assertEquals(1, index.rank("a", 1.0));
+        assertEquals(2, index.rank("b", 1.0));
+        assertEquals(-1, index.rank("a", 0.5));
+    }
+
+    @Test
+    void emptyIndexHasNoRanks() {
+        ScoreIndex index = new ScoreIndex();
+
+        assertEquals(0, index.size());
+        assertNull(index.first());
+        assertNull(index.last());
+        assertNull(index.byRank(0));
+        assertNull(index.firstFrom(Double.NEGATIVE_INFINITY));
+        assertNull(index.lastUpTo(Double.POSITIVE_INFINITY));
+        assertFalse(index.delete("a", 1.0));
+    }
+
+    @Test
+    void matchesSortedSetAfterRandomChanges() {
+        Random random = new Random(42);
+        ScoreIndex index = new ScoreIndex();
+        TreeSet<ScoredMember> expected = new TreeSet<>(ORDER);
+        Map<String, Double> scores = new HashMap<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            String member = "m" + random.nextInt(2_000);
+            Double current = scores.get(member);
+            if (current != null) {
+                assertTrue(index.delete(member, current));
+                expected.remove(new ScoredMember(member, current));
+                scores.remove(member);
+            }
+            if (current == null || random.nextInt(4) > 0) {
+                // Few distinct scores, so ties are common.
+                double score = random.nextInt(50) / 2.0;
+                index.insert(member, score);
+                expected.add(new ScoredMember(member, score));
+                scores.put(member, score);
+            }
+        }
+
+        List<ScoredMember> sorted = new ArrayList<>(expected);
+        assertEquals(sorted.size(), index.size());
+        assertEquals(sorted.stream().map(ScoredMember::member).toList(), members(index));
+        for (int rank = 0; rank < sorted.size(); rank++) {
+            ScoredMember member = sorted.get(rank);
+            assertEquals(rank, index.rank(member.member(), member.score()));
+            assertEquals(member.member(), index.byRank(rank).member);
+        }
+        assertNull(index.byRank(sorted.size()));
+        assertSame(index.byRank(0), index.first());
+        assertSame(index.byRank(sorted.size() - 1), index.last());
+
+        for (double bound = -1; bound <= 26; bound += 0.5) {
+            ScoredMember from = expected.ceiling(new ScoredMember("", bound));
+            ScoredMember upTo = expected.lower(new ScoredMember("", Math.nextUp(bound)));
+            ScoreIndex.Node first = index.firstFrom(bound);
+            ScoreIndex.Node last = index.lastUpTo(bound);
+            assertEquals(from != null ? from.member() : null, first != null ? first.member : null, "first from " + bound);
+            assertEquals(upTo != null ? upTo.member() : null, last != null ? last.member : null, "last up to " + bound);
+        }
+    }
+
+    @Test
+    void linksBothWays() {
+        ScoreIndex index = new ScoreIndex();
+        for (int i = 0; i < 100; i++) {
+            index.insert("m" + i, i % 7);
+        }
+        index.delete("m0", 0);
+        index.delete("m99", 99 % 7);
+
+        List<String> backwards = new ArrayList<>();
+        for (ScoreIndex.Node node = index.last(); node != null; node = node.previous()) {
+            backwards.add(0, node.member);
+        }
+        assertEquals(members(index), backwards);
+        assertEquals(98, backwards.size());
+    }
+
+    private static List<String> members(ScoreIndex index) {
+        List<String> members = new ArrayList<>();
+        for (ScoreIndex.Node node = index.first(); node != null; node = node.next()) {
+            members.add(node.member);
+        }
+        return members;
+    }
+}
@@ -0,0 +1,146 @@
+package me.proo0xy.data;
+
+import me.proo0xy.data.lsm.LsmStorageEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks what the storage engines persist while writers keep going.
+ */
+class StorageEngineTest {
+
+    @TempDir
+    Path directory;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void stopScheduler() {
+        scheduler.shutdownNow();
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageEngineType.class)
+    void checkpointsHoldTransactionsWholeOrNotAtAll(StorageEngineType type) throws Exception {
+        StorageEngine engine = open(type);
+        AtomicBoolean stopped = new AtomicBoolean();
+        AtomicInteger transactions = new AtomicInteger();
+        Thread writer = new Thread(() -> {
+            while (!stopped.get()) {
+                String value = Integer.toString(transactions.get());
+                engine.writeAtomically(() -> {
+                    for (String key : keysOf(transactions.get())) {
+                        engine.compute(key, (k, existing) -> DataEntry.of(k, value));
+                    }
+                });
+                transactions.incrementAndGet();
+            }
+        });
+        writer.start();
+        for (int i = 0; i < 20; i++) {
+            engine.checkpoint();
+        }
+        stopped.set(true);
+        writer.join();
+        engine.close();
+
+        // Replaying the log restores every transaction.
+        StorageEngine replayed = open(type);
+        for (int i = 0; i < transactions.get(); i++) {
+            for (String key : keysOf(i)) {
+                assertEquals(Integer.toString(i), replayed.get(key).getValue(), key);
+            }
+        }
+        replayed.close();
+
+        // Without the log, only the last checkpoint is left, which must not split a transaction.
+        deleteRecursively(directory.resolve("storage").resolve(type == StorageEngineType.LSM ? "lsm/wal" : "wal"));
+        StorageEngine checkpointed = open(type);
+        for (int i = 0; i < transactions.get(); i++) {
+            long present = keysOf(i).stream().filter(key -> checkpointed.get(key) != null).count();
+            assertTrue(present == 0 || present == 3, "transaction " + i + " has " + present + " of 3 keys");
+        }
+        checkpointed.close();
+    }
+
+    @Test
+    void lsmEngineRewritesCollectionsInsteadOfMergingFields() {
+        StorageEngine engine = open(StorageEngineType.LSM);
+        engine.compute("user", (k, existing) -> DataEntry.of(k, Map.of("name", "vault")));
+        AtomicBoolean merged = new AtomicBoolean();
+        engine.computeDelta("user", (k, existing) -> DataEntry.of(k, Map.of("name", "vault", "visits", 1L)), existing -> {
+            merged.set(true);
+            return Map.of("visits", 1L);
+        });
+        engine.close();
+
+        // A known limit: without merge records the whole hash is written again.
+        assertFalse(merged.get());
+        StorageEngine reopened = open(StorageEngineType.LSM);
+        assertEquals(Map.of("name", "vault", "visits", 1L), reopened.get("user").getValue());
+        reopened.close();
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageEngineType.class)
+    void findsExpiriesAndVersionsAfterRestart(StorageEngineType type) {
+        StorageEngine engine = open(type);
+        long expiresAt = System.currentTimeMillis() + 3_600_000;
+        engine.compute("flushed", (k, existing) -> DataEntry.of(k, new ExpiringValue(expiresAt, "1")));
+        engine.compute("plain", (k, existing) -> DataEntry.of(k, "2"));
+        engine.checkpoint();
+        engine.compute("logged", (k, existing) -> DataEntry.of(k, new ExpiringValue(expiresAt + 1, "3")));
+        long maxVersion = engine.get("logged").getVersion();
+        assertTrue(maxVersion > 0);
+        engine.close();
+
+        StorageEngine reopened = open(type);
+        Map<String, Long> expiries = new HashMap<>();
+        reopened.forEachExpiring(expiries::put);
+        assertEquals(Map.of("flushed", expiresAt, "logged", expiresAt + 1), expiries);
+        assertEquals(maxVersion, reopened.maxVersion());
+        reopened.close();
+    }
+
+    private static List<String> keysOf(int transaction) {
+        return List.of("a-" + transaction, "b-" + transaction, "c-" + transaction);
+    }
+
+    private StorageEngine open(StorageEngineType type) {
+        DataStoreSettings settings = new DataStoreSettings(directory.resolve("storage").toString(), directory.resolve("backup").toString(),
+                List.of(), 3600, 1, false, 4, 2, 0, false, false, type, 1L << 20, true, 0, 0, EvictionPolicy.LRU, 100);
+        VersionSequence versions = new VersionSequence(directory.resolve("versions"));
+        return switch (type) {
+            case MEMORY -> new MemoryStorageEngine(settings, scheduler, versions);
+            case LSM -> new LsmStorageEngine(settings, versions);
+        };
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
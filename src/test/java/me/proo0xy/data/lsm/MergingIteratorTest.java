@@ -0,0 +1,83 @@
+package me.proo0xy.data.lsm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Merges sorted sources with {@link MergingIterator}.
+ */
+class MergingIteratorTest {
+
+    @Test
+    void newestEntryOfKeyWins() {
+        List<TableEntry> merged = merge(false,
+                List.of(entry("b", "new"), TableEntry.tombstone("d")),
+                List.of(entry("a", "old"), entry("b", "old"), entry("c", "old"), entry("d", "old")),
+                List.of(entry("b", "oldest"), entry("e", "oldest")));
+
+        assertEquals(List.of("a", "b", "c", "d", "e"), merged.stream().map(TableEntry::key).toList());
+        assertEquals("new", merged.get(1).value());
+        assertTrue(merged.get(3).isTombstone());
+        assertEquals("oldest", merged.get(4).value());
+    }
+
+    @Test
+    void dropsTombstonesWhenAsked() {
+        List<TableEntry> merged = merge(true,
+                List.of(TableEntry.tombstone("a"), TableEntry.tombstone("c")),
+                List.of(entry("a", "old"), entry("b", "old"), entry("c", "old")));
+
+        assertEquals(List.of(entry("b", "old")), merged);
+    }
+
+    @Test
+    void mergesEmptySources() {
+        Iterator<TableEntry> iterator = new MergingIterator(List.of(List.<TableEntry>of().iterator(), List.<TableEntry>of().iterator()), false);
+
+        assertFalse(iterator.hasNext());
+        assertThrows(NoSuchElementException.class, iterator::next);
+        assertEquals(List.of(entry("a", "1")), merge(true, List.of(), List.of(entry("a", "1"))));
+    }
+
+    @Test
+    void mergesInterleavedSources() {
+        List<TableEntry> even = new ArrayList<>();
+        List<TableEntry> odd = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            (i % 2 == 0 ? even : odd).add(entry(String.format("k%04d", i), i));
+        }
+
+        List<TableEntry> merged = merge(false, even, odd);
+        assertEquals(1_000, merged.size());
+        for (int i = 0; i < merged.size(); i++) {
+            assertEquals(i, merged.get(i).value());
+        }
+    }
+
+    private static TableEntry entry(String key, Object value) {
+        return new TableEntry(key, value);
+    }
+
+    /**
+     * Merges lists of entries, newest first.
+     */
+    @SafeVarargs
+    private static List<TableEntry> merge(boolean dropTombstones, List<TableEntry>... sources) {
+        List<Iterator<TableEntry>> iterators = new ArrayList<>();
+        for (List<TableEntry> source : sources) {
+            iterators.add(source.iterator());
+        }
+        List<TableEntry> merged = new ArrayList<>();
+        new MergingIterator(iterators, dropTombstones).forEachRemaining(merged::add);
+        return merged;
+    }
+}
@@ -0,0 +1,187 @@
+package me.proo0xy.data.lsm;
+
+import me.proo0xy.data.ExpiringValue;
+import me.proo0xy.data.VersionedValue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes tables with {@link SSTableWriter} and reads them back through {@link SSTable}.
+ */
+class SSTableTest {
+
+    // Enough entries to fill many blocks.
+    private static final int ENTRIES = 5_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void looksUpEveryKey() throws IOException {
+        SSTable table = write(directory.resolve("1.sst"), 1);
+
+        assertEquals(1, table.getId());
+        assertEquals(ENTRIES, table.getEntryCount());
+        assertEquals(Files.size(table.getPath()), table.getSizeBytes());
+        for (int i = 0; i < ENTRIES; i++) {
+            String key = key(i);
+            TableEntry entry = table.get(key, BloomFilter.hash(key));
+            if (i % 7 == 0) {
+                assertTrue(entry.isTombstone(), key);
+            } else {
+                assertEquals(value(i), entry.value(), key);
+            }
+        }
+        assertNull(table.get("k00000x", BloomFilter.hash("k00000x")));
+        assertNull(table.get("a", BloomFilter.hash("a")));
+        assertNull(table.get("z", BloomFilter.hash("z")));
+    }
+
+    @Test
+    void reopensFinishedTable() throws IOException {
+        Path path = directory.resolve("2.sst");
+        write(path, 2);
+        SSTable table = SSTable.open(path, 2);
+
+        assertEquals(key(0), table.firstKey());
+        assertEquals(key(ENTRIES - 1), table.lastKey());
+        assertEquals(value(1), table.get(key(1), BloomFilter.hash(key(1))).value());
+        assertTrue(table.overlaps("a", key(0)));
+        assertTrue(table.overlaps(key(10), key(20)));
+        assertFalse(table.overlaps("a", "j"));
+        assertFalse(table.overlaps("l", "z"));
+    }
+
+    @Test
+    void iteratesInKeyOrder() throws IOException {
+        SSTable table = write(directory.resolve("3.sst"), 3);
+
+        List<TableEntry> all = drain(table.iterator());
+        assertEquals(ENTRIES, all.size());
+        for (int i = 0; i < ENTRIES; i++) {
+            assertEquals(key(i), all.get(i).key());
+            assertEquals(i % 7 == 0, all.get(i).isTombstone());
+        }
+
+        List<TableEntry> tail = drain(table.iterator(key(4_321)));
+        assertEquals(ENTRIES - 4_321, tail.size());
+        assertEquals(key(4_321), tail.get(0).key());
+        // A key between two stored ones starts at the next stored key.
+        assertEquals(key(11), table.iterator(key(10) + "!").next().key());
+        assertEquals(ENTRIES, drain(table.iterator("a")).size());
+        assertFalse(table.iterator("z").hasNext());
+    }
+
+    @Test
+    void writesEmptyTable() throws IOException {
+        SSTable table;
+        try (SSTableWriter writer = new SSTableWriter(directory.resolve("4.sst"))) {
+            assertTrue(writer.isEmpty());
+            table = writer.finish(4);
+        }
+
+        assertEquals(0, table.getEntryCount());
+        assertNull(table.get("a", BloomFilter.hash("a")));
+        assertFalse(table.iterator().hasNext());
+        assertFalse(table.overlaps("a", "z"));
+    }
+
+    @Test
+    void deletesUnfinishedTable() throws IOException {
+        Path path = directory.resolve("5.sst");
+        try (SSTableWriter writer = new SSTableWriter(path)) {
+            writer.add(new TableEntry("a", "1"));
+        }
+        assertFalse(Files.exists(path));
+    }
+
+    @Test
+    void rejectsCorruptedBlock() throws IOException {
+        Path path = directory.resolve("6.sst");
+        write(path, 6);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The first byte of the first block body, after the file and block headers.
+            long offset = Integer.BYTES + 1 + Integer.BYTES * 3;
+            ByteBuffer current = ByteBuffer.allocate(1);
+            channel.read(current, offset);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) (current.get(0) ^ 0x5a)}), offset);
+        }
+
+        SSTable table = SSTable.open(path, 6);
+        Iterator<TableEntry> iterator = table.iterator();
+        assertThrows(UncheckedIOException.class, iterator::hasNext);
+        // Blocks after the damaged one are still readable.
+        assertTrue(table.iterator(key(ENTRIES - 1)).hasNext());
+    }
+
+    @Test
+    void recordsVersionsAndExpiriesInTheIndex() throws IOException {
+        Path path = directory.resolve("7.sst");
+        try (SSTableWriter writer = new SSTableWriter(path)) {
+            writer.add(new TableEntry("a", new VersionedValue(7, new ExpiringValue(1_000, "1"))));
+            writer.add(new TableEntry("b", new VersionedValue(42, "2")));
+            writer.add(TableEntry.tombstone("c"));
+            writer.add(new TableEntry("d", new ExpiringValue(2_000, 4L)));
+            writer.finish(7);
+        }
+
+        SSTable table = SSTable.open(path, 7);
+        assertEquals(42, table.maxVersion());
+        Map<String, Long> expiries = new LinkedHashMap<>();
+        assertTrue(table.forEachExpiring(expiries::put));
+        assertEquals(Map.of("a", 1_000L, "d", 2_000L), expiries);
+        assertEquals(List.of("a", "b", "c", "d"), drain(table.iterator()).stream().map(TableEntry::key).toList());
+
+        // A version 1 table has the same layout up to the last key and records neither.
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1}), Integer.BYTES);
+        }
+        SSTable old = SSTable.open(path, 7);
+        assertEquals(-1, old.maxVersion());
+        assertFalse(old.forEachExpiring((key, expiresAt) -> { }));
+        assertEquals("2", ((VersionedValue) old.get("b", BloomFilter.hash("b")).value()).value());
+    }
+
+    private static SSTable write(Path path, long id) throws IOException {
+        try (SSTableWriter writer = new SSTableWriter(path)) {
+            for (int i = 0; i < ENTRIES; i++) {
+                writer.add(i % 7 == 0 ? TableEntry.tombstone(key(i)) : new TableEntry(key(i), value(i)));
+            }
+            assertTrue(writer.size() > SSTable.TARGET_BLOCK_SIZE * 10);
+            return writer.finish(id);
+        }
+    }
+
+    private static String key(int i) {
+        return String.format("k%05d", i);
+    }
+
+    private static Object value(int i) {
+        return i % 2 == 0 ? "value " + i : (long) i;
+    }
+
+    private static List<TableEntry> drain(Iterator<TableEntry> iterator) {
+        List<TableEntry> entries = new ArrayList<>();
+        iterator.forEachRemaining(entries::add);
+        return entries;
+    }
+}
@@ -0,0 +1,194 @@
+package me.proo0xy.data.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round trips entries through {@link SnapshotFile} and reads files damaged by a crash.
+ */
+class SnapshotFileTest {
+
+    // Enough entries to fill several blocks.
+    private static final int ENTRIES = 20_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackUpsertsAndDeletes() throws IOException {
+        Path file = write();
+        assertTrue(blockOffsets(file).size() > 2);
+
+        Collected collected = new Collected();
+        SnapshotFile.read(file, collected);
+
+        for (int i = 0; i < ENTRIES; i++) {
+            String key = key(i);
+            if (i % 10 == 0) {
+                assertTrue(collected.deleted.contains(key), key);
+            } else {
+                assertEquals(value(i), collected.upserted.get(key), key);
+            }
+        }
+        assertEquals(ENTRIES, collected.upserted.size() + collected.deleted.size());
+    }
+
+    @Test
+    void countsLoadedEntries() throws IOException {
+        Path file = write();
+
+        LoadProgress progress = new LoadProgress("test");
+        SnapshotFile.read(file, new Collected(), progress);
+
+        assertFalse(progress.isDamaged());
+        assertEquals(ENTRIES, progress.finish());
+    }
+
+    @Test
+    void writesDuplicateKeysOnce() throws IOException {
+        Path file = directory.resolve("snapshot");
+        SnapshotFile.write(file, List.of("b", "a", "b"), key -> key.toUpperCase());
+
+        Collected collected = new Collected();
+        SnapshotFile.read(file, collected);
+        assertEquals(Map.of("a", "A", "b", "B"), collected.upserted);
+    }
+
+    @Test
+    void skipsBlockFailingItsChecksum() throws IOException {
+        Path file = write();
+        List<Long> offsets = blockOffsets(file);
+        int skipped = entryCount(file, offsets.get(1));
+        flipByte(file, offsets.get(1) + 20);
+
+        Collected collected = new Collected();
+        LoadProgress progress = new LoadProgress("test");
+        SnapshotFile.read(file, collected, progress);
+
+        assertTrue(progress.isDamaged());
+        assertEquals(ENTRIES - skipped, progress.finish());
+        assertTrue(collected.upserted.containsKey(key(1)));
+        assertTrue(collected.upserted.containsKey(key(ENTRIES - 1)));
+    }
+
+    @Test
+    void recoversBlocksBeforeTornTail() throws IOException {
+        Path file = write();
+        List<Long> offsets = blockOffsets(file);
+        int recovered = entryCount(file, offsets.get(0)) + entryCount(file, offsets.get(1));
+        truncate(file, offsets.get(2) + 20);
+
+        Collected collected = new Collected();
+        LoadProgress progress = new LoadProgress("test");
+        SnapshotFile.read(file, collected, progress);
+
+        assertTrue(progress.isDamaged());
+        assertEquals(recovered, progress.finish());
+        // Blocks hold sorted keys, so what is left is a prefix.
+        for (int i = 0; i < recovered; i++) {
+            assertTrue(collected.upserted.containsKey(key(i)) || collected.deleted.contains(key(i)), key(i));
+        }
+    }
+
+    @Test
+    void rejectsDamageWithoutProgress() throws IOException {
+        Path file = write();
+        flipByte(file, blockOffsets(file).get(0) + 20);
+        assertThrows(IOException.class, () -> SnapshotFile.read(file, new Collected()));
+
+        Path torn = write();
+        truncate(torn, Files.size(torn) - 1);
+        assertThrows(IOException.class, () -> SnapshotFile.read(torn, new Collected()));
+    }
+
+    private Path write() throws IOException {
+        Path file = Files.createTempFile(directory, "snapshot", ".bin");
+        List<String> keys = new ArrayList<>();
+        for (int i = ENTRIES - 1; i >= 0; i--) {
+            keys.add(key(i));
+        }
+        SnapshotFile.write(file, keys, key -> {
+            int i = Integer.parseInt(key.substring(1));
+            return i % 10 == 0 ? null : value(i);
+        });
+        return file;
+    }
+
+    private static String key(int i) {
+        return String.format("k%05d", i);
+    }
+
+    private static Object value(int i) {
+        return switch (i % 3) {
+            case 0 -> (long) i;
+            case 1 -> "value of entry number " + i + " padded out to take some room in its block";
+            default -> i % 2 == 0;
+        };
+    }
+
+    /**
+     * Walks the blocks between the header and the directory that the trailer points at.
+     */
+    private static List<Long> blockOffsets(Path file) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+        long directoryOffset = data.getLong(data.limit() - Long.BYTES - Integer.BYTES);
+        List<Long> offsets = new ArrayList<>();
+        long position = Integer.BYTES + 1;
+        while (position < directoryOffset) {
+            offsets.add(position);
+            position += Integer.BYTES * 3 + data.getInt((int) position);
+        }
+        return offsets;
+    }
+
+    private static int entryCount(Path file, long blockOffset) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(file)).getInt((int) blockOffset + Integer.BYTES);
+    }
+
+    private static void flipByte(Path file, long offset) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[(int) offset] ^= 0x5a;
+        Files.write(file, bytes);
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    /**
+     * Collects decoded entries; blocks arrive from several threads.
+     */
+    private static class Collected implements SnapshotFile.Visitor {
+        final Map<String, Object> upserted = new ConcurrentHashMap<>();
+        final Set<String> deleted = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void upsert(String key, Object value) {
+            upserted.put(key, value);
+        }
+
+        @Override
+        public void delete(String key) {
+            deleted.add(key);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package me.proo0xy.data.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round trips records through {@link WriteAheadLog} and recovers logs damaged by a crash.
+ */
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysMutationsAfterRestart() throws IOException {
+        WriteAheadLog wal = start(1);
+        wal.append(1, MutationType.PUT, "string", "héllo");
+        wal.append(1, MutationType.PUT, "long", 42L);
+        wal.append(1, MutationType.PUT, "double", 2.5);
+        wal.append(1, MutationType.PUT, "boolean", false);
+        wal.append(1, MutationType.REMOVE, "long", null);
+        wal.append(1, MutationType.CLEAR, null, null);
+        wal.close();
+
+        List<WalRecord> records = replay();
+        assertEquals(6, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i + 1, records.get(i).getSequence());
+        }
+        assertEquals("héllo", records.get(0).getValue());
+        assertEquals(42L, records.get(1).getValue());
+        assertEquals(2.5, records.get(2).getValue());
+        assertEquals(false, records.get(3).getValue());
+        assertEquals(MutationType.REMOVE, records.get(4).getType());
+        assertEquals("long", records.get(4).getKey());
+        assertEquals(MutationType.CLEAR, records.get(5).getType());
+        assertNull(records.get(5).getKey());
+    }
+
+    @Test
+    void continuesSequencesAfterRestart() throws IOException {
+        WriteAheadLog wal = start(1);
+        wal.append(1, MutationType.PUT, "a", "1");
+        wal.close();
+
+        WriteAheadLog restarted = new WriteAheadLog(directory);
+        assertEquals(1, restarted.replay(record -> { }));
+        restarted.start(1);
+        assertEquals(2, restarted.append(1, MutationType.PUT, "b", "2"));
+        restarted.close();
+
+        assertEquals(List.of("a", "b"), keys(replay()));
+    }
+
+    @Test
+    void syncCompletesOnceRecordsAreOnDisk() throws IOException {
+        WriteAheadLog wal = start(1);
+        wal.append(1, MutationType.PUT, "a", "1");
+        wal.append(1, MutationType.PUT, "b", "2");
+        wal.sync().join();
+
+        List<WalRecord> read = new ArrayList<>();
+        assertTrue(WriteAheadLog.read(lastSegment(), read::add));
+        assertEquals(List.of("a", "b"), keys(read.stream().filter(record -> record.getType() != MutationType.TIMESTAMP).toList()));
+        wal.close();
+    }
+
+    @Test
+    void synchronousWritesReturnOnceTheirRecordIsOnDisk() throws Exception {
+        WriteAheadLog wal = new WriteAheadLog(directory, null, true);
+        wal.replay(record -> { });
+        wal.start(1);
+        List<Thread> writers = new ArrayList<>();
+        List<String> acknowledged = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 8; i++) {
+            String key = "key-" + i;
+            Thread writer = new Thread(() -> {
+                wal.append(1, MutationType.PUT, key, "value");
+                wal.awaitDurable();
+                acknowledged.add(key);
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        // Read while the log is still open: every acknowledged record must already be forced.
+        List<WalRecord> read = new ArrayList<>();
+        assertTrue(WriteAheadLog.read(lastSegment(), read::add));
+        assertEquals(8, acknowledged.size());
+        assertTrue(keys(read).containsAll(acknowledged));
+        wal.close();
+    }
+
+    @Test
+    void synchronousWriteFailsWhenItsBatchFails() throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(directory, null, true);
+        wal.replay(record -> { });
+        wal.start(1);
+        wal.append(1, MutationType.PUT, "a", new Object());
+
+        assertThrows(IllegalStateException.class, wal::awaitDurable);
+        wal.close();
+    }
+
+    @Test
+    void truncatesTornTailAndKeepsEarlierRecords() throws IOException {
+        WriteAheadLog wal = start(1);
+        wal.append(1, MutationType.PUT, "a", "1");
+        wal.sync().join();
+        wal.append(1, MutationType.PUT, "b", "2");
+        wal.close();
+
+        Path segment = lastSegment();
+        long torn = endOf(segment, "b") - 3;
+        truncate(segment, torn);
+
+        assertEquals(List.of("a"), keys(replay()));
+        long recovered = Files.size(segment);
+        assertTrue(recovered < torn);
+        // The damage is cut off, so the next start reads the same prefix without truncating again.
+        assertEquals(List.of("a"), keys(replay()));
+        assertEquals(recovered, Files.size(segment));
+    }
+
+    @Test
+    void setsAsideSegmentsAfterCorruptedRecord() throws IOException {
+        WriteAheadLog wal = start(1);
+        wal.append(1, MutationType.PUT, "a", "1");
+        wal.append(1, MutationType.PUT, "b", "2");
+        wal.rotate(2).join();
+        wal.append(2, MutationType.PUT, "c", "3");
+        wal.close();
+
+        List<Long> ids = WriteAheadLog.listSegmentIds(directory);
+        assertEquals(2, ids.size());
+        Path first = WriteAheadLog.segmentPath(directory, ids.get(0));
+        byte[] bytes = Files.readAllBytes(first);
+        bytes[(int) endOf(first, "b") - 1] ^= 0x5a;
+        Files.write(first, bytes);
+
+        assertEquals(List.of("a"), keys(replay()));
+        assertEquals(List.of(ids.get(0)), WriteAheadLog.listSegmentIds(directory));
+        Path second = WriteAheadLog.segmentPath(directory, ids.get(1));
+        assertTrue(Files.exists(second.resolveSibling(second.getFileName() + ".discarded")));
+    }
+
+    @Test
+    void replaysGroupsWholeOrNotAtAll() throws IOException {
+        WriteAheadLog wal = start(1);
+        wal.append(1, MutationType.PUT, "a", "1");
+        wal.group(() -> {
+            wal.append(1, MutationType.PUT, "b", "2");
+            wal.append(1, MutationType.REMOVE, "a", null);
+        });
+        wal.sync().join();
+        wal.group(() -> {
+            wal.append(1, MutationType.PUT, "c", "3");
+            wal.append(1, MutationType.PUT, "d", "4");
+        });
+        wal.close();
+
+        assertEquals(List.of("a", "b", "a", "c", "d"), keys(replay()));
+
+        // Cut into the last group, as a crash in the middle of its write would.
+        Path segment = lastSegment();
+        truncate(segment, endOf(segment, "d"));
+        assertEquals(List.of("a", "b", "a"), keys(replay()));
+    }
+
+    @Test
+    void failedBatchFailsRotationsAndRejectsAppends() throws IOException {
+        WriteAheadLog wal = start(1);
+        wal.append(1, MutationType.PUT, "a", "1");
+        wal.append(1, MutationType.PUT, "b", new Object());
+        CompletableFuture<WriteAheadLog.Seal> sealed = wal.rotate(2);
+
+        CompletionException rotation = assertThrows(CompletionException.class, sealed::join);
+        assertInstanceOf(IllegalArgumentException.class, rotation.getCause());
+        assertThrows(IllegalStateException.class, () -> wal.append(2, MutationType.PUT, "c", "3"));
+        assertTrue(wal.rotate(3).isCompletedExceptionally());
+        assertThrows(CompletionException.class, () -> wal.sync().join());
+        wal.close();
+    }
+
+    @Test
+    void closedLogFailsSyncsAndRejectsAppends() throws IOException {
+        WriteAheadLog wal = start(1);
+        wal.append(1, MutationType.PUT, "a", "1");
+        wal.close();
+
+        assertThrows(CompletionException.class, () -> wal.sync().join());
+        assertTrue(wal.rotate(2).isCompletedExceptionally());
+        assertThrows(IllegalStateException.class, () -> wal.append(1, MutationType.PUT, "b", "2"));
+        assertEquals(List.of("a"), keys(replay()));
+    }
+
+    private WriteAheadLog start(long epoch) throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(directory);
+        wal.replay(record -> { });
+        wal.start(epoch);
+        return wal;
+    }
+
+    private List<WalRecord> replay() throws IOException {
+        List<WalRecord> records = new ArrayList<>();
+        new WriteAheadLog(directory).replay(records::add);
+        return records;
+    }
+
+    private Path lastSegment() throws IOException {
+        List<Long> ids = WriteAheadLog.listSegmentIds(directory);
+        return WriteAheadLog.segmentPath(directory, ids.get(ids.size() - 1));
+    }
+
+    private static List<String> keys(List<WalRecord> records) {
+        return records.stream().map(WalRecord::getKey).toList();
+    }
+
+    /**
+     * Finds the offset right after the last record of a key, following the length prefixes.
+     */
+    private static long endOf(Path segment, String key) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(segment));
+        long end = -1;
+        while (data.hasRemaining()) {
+            int length = data.getInt();
+            data.getInt();
+            ByteBuffer payload = data.slice(data.position() + Long.BYTES + 1, length - Long.BYTES - 1);
+            if (key.equals(ValueCodec.readString(payload))) {
+                end = data.position() + length;
+            }
+            data.position(data.position() + length);
+        }
+        return end;
+    }
+
+    private static void truncate(Path segment, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+}